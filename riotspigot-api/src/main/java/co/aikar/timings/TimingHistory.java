@@ -39,6 +39,7 @@ import co.aikar.util.MRUMapCache;
 import java.lang.management.ManagementFactory;
 import java.util.Collection;
 import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -55,6 +56,16 @@ public class TimingHistory {
     public static long entityTicks;
     public static long tileEntityTicks;
     public static long activatedEntityTicks;
+    public static long chunkLoadQueueTicks;
+    public static long chunkLoadTicks;
+    public static long chunkGeneratedTicks;
+    public static long lightQueuedTicks;
+    public static long lightProcessedTicks;
+    public static long lightMergedTicks;
+    public static long tickDegradationTicks;
+    static final Map<String, long[]> trackerWorldTicks = new HashMap<String, long[]>();
+    public static long eventsFiredTicks;
+    public static long eventsSkippedTicks;
     static int worldIdPool = 1;
     static Map<String, Integer> worldMap = LoadingMap.newHashMap(new Function<String, Integer>() {
         @Override
@@ -169,6 +180,33 @@ public class TimingHistory {
         tileEntityTicks = 0;
         entityTicks = 0;
         activatedEntityTicks = 0;
+        chunkLoadQueueTicks = 0;
+        chunkLoadTicks = 0;
+        chunkGeneratedTicks = 0;
+        lightQueuedTicks = 0;
+        lightProcessedTicks = 0;
+        lightMergedTicks = 0;
+        tickDegradationTicks = 0;
+        synchronized (trackerWorldTicks) {
+            trackerWorldTicks.clear();
+        }
+        eventsFiredTicks = 0;
+        eventsSkippedTicks = 0;
+    }
+
+    /**
+     * Adds the pair checks and the cell moves of the entity tracker of a world since the last call
+     */
+    public static void addTrackerTicks(String world, long pairChecks, long cellMoves) {
+        synchronized (trackerWorldTicks) {
+            long[] ticks = trackerWorldTicks.get(world);
+            if (ticks == null) {
+                ticks = new long[2];
+                trackerWorldTicks.put(world, ticks);
+            }
+            ticks[0] += pairChecks;
+            ticks[1] += cellMoves;
+        }
     }
 
     Object export() {
@@ -218,7 +256,19 @@ public class TimingHistory {
                     ticksRecord.player,
                     ticksRecord.entity,
                     ticksRecord.activatedEntity,
-                    ticksRecord.tileEntity
+                    ticksRecord.tileEntity,
+                    ticksRecord.chunkLoadQueue,
+                    ticksRecord.chunkLoad,
+                    ticksRecord.lightQueued,
+                    ticksRecord.lightProcessed,
+                    ticksRecord.lightMerged,
+                    ticksRecord.tickDegradation,
+                    ticksRecord.trackerPairChecks,
+                    ticksRecord.trackerCellMoves,
+                    ticksRecord.eventsFired,
+                    ticksRecord.eventsSkipped,
+                    ticksRecord.chunkGenerated,
+                    ticksRecord.trackerWorlds
                 ),
                 usedMemory,
                 freeMemory,
@@ -233,6 +283,18 @@ public class TimingHistory {
         final long entity;
         final long tileEntity;
         final long activatedEntity;
+        final long chunkLoadQueue;
+        final long chunkLoad;
+        final long lightQueued;
+        final long lightProcessed;
+        final long lightMerged;
+        final long tickDegradation;
+        final long trackerPairChecks;
+        final long trackerCellMoves;
+        final Map trackerWorlds;
+        final long eventsFired;
+        final long eventsSkipped;
+        final long chunkGenerated;
 
         TicksRecord() {
             timed = timedTicks - (TimingsManager.MINUTE_REPORTS.size() * 1200);
@@ -240,6 +302,27 @@ public class TimingHistory {
             entity = entityTicks;
             tileEntity = tileEntityTicks;
             activatedEntity = activatedEntityTicks;
+            chunkLoadQueue = chunkLoadQueueTicks;
+            chunkLoad = chunkLoadTicks;
+            lightQueued = lightQueuedTicks;
+            lightProcessed = lightProcessedTicks;
+            lightMerged = lightMergedTicks;
+            tickDegradation = tickDegradationTicks;
+            long pairChecks = 0, cellMoves = 0;
+            Map<Object, Object> worlds = new HashMap<Object, Object>();
+            synchronized (trackerWorldTicks) {
+                for (Map.Entry<String, long[]> entry : trackerWorldTicks.entrySet()) {
+                    pairChecks += entry.getValue()[0];
+                    cellMoves += entry.getValue()[1];
+                    worlds.put(String.valueOf(worldMap.get(entry.getKey())), toArray(entry.getValue()[0], entry.getValue()[1]));
+                }
+            }
+            trackerPairChecks = pairChecks;
+            trackerCellMoves = cellMoves;
+            trackerWorlds = worlds;
+            eventsFired = eventsFiredTicks;
+            eventsSkipped = eventsSkippedTicks;
+            chunkGenerated = chunkGeneratedTicks;
         }
 
     }
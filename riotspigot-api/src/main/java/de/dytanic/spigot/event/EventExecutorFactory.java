@@ -0,0 +1,160 @@
+package de.dytanic.spigot.event;
+
+import org.bukkit.event.Event;
+import org.bukkit.event.EventException;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.EventExecutor;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Creates the executors of EventHandler methods. Instance methods of listener classes are called through a class spun
+ * by the LambdaMetafactory inside the listener class, which calls the method directly. Static methods, or if the class
+ * can't be spun, are invoked through reflection like before.
+ * <p>
+ * The spun executor is returned as it is if the event class has its own HandlerList, only events of the class are
+ * passed to it then. Every handler has its own executor class at the call site of the listener, exceptions of the
+ * handler are passed on unwrapped. A handler of an event class without its own HandlerList receives the events of the
+ * parent class, its executor checks the class of the event first.
+ */
+public final class EventExecutorFactory {
+
+    private static final MethodType FACTORY_TYPE = MethodType.methodType(EventExecutor.class);
+
+    private static final MethodType EXECUTE_TYPE = MethodType.methodType(void.class, Listener.class, Event.class);
+
+    private static final int ALL_MODES = MethodHandles.Lookup.PUBLIC | MethodHandles.Lookup.PRIVATE | MethodHandles.Lookup.PROTECTED | MethodHandles.Lookup.PACKAGE;
+
+    // Java 9 and newer
+    private static final Method PRIVATE_LOOKUP_IN = findPrivateLookupIn();
+
+    // Java 8
+    private static final Constructor<MethodHandles.Lookup> LOOKUP_CONSTRUCTOR = PRIVATE_LOOKUP_IN == null ? findLookupConstructor() : null;
+
+    private EventExecutorFactory()
+    {
+    }
+
+    /**
+     * @param method     the handler method, which takes one event of the event class
+     * @param eventClass the class of events which are passed to the method, other events are ignored
+     */
+    public static EventExecutor create(final Method method, final Class<? extends Event> eventClass)
+    {
+        final EventExecutor direct = generate(method, eventClass);
+
+        if (direct != null && hasHandlerList(eventClass)) return direct;
+
+        if (direct == null)
+            return new EventExecutor() {
+                @Override
+                public void execute(Listener listener, Event event) throws EventException
+                {
+                    try
+                    {
+                        if (!eventClass.isAssignableFrom(event.getClass())) return;
+
+                        method.invoke(listener, event);
+                    } catch (InvocationTargetException ex)
+                    {
+                        throw new EventException(ex.getCause());
+                    } catch (Throwable t)
+                    {
+                        throw new EventException(t);
+                    }
+                }
+            };
+
+        return new EventExecutor() {
+            @Override
+            public void execute(Listener listener, Event event) throws EventException
+            {
+                if (!eventClass.isAssignableFrom(event.getClass())) return;
+
+                try
+                {
+                    direct.execute(listener, event);
+                } catch (Throwable t)
+                {
+                    throw new EventException(t);
+                }
+            }
+        };
+    }
+
+    private static boolean hasHandlerList(Class<? extends Event> eventClass)
+    {
+        try
+        {
+            eventClass.getDeclaredMethod("getHandlerList");
+            return true;
+        } catch (NoSuchMethodException ex)
+        {
+            return false;
+        }
+    }
+
+    private static EventExecutor generate(Method method, Class<? extends Event> eventClass)
+    {
+        Class<?> listenerClass = method.getDeclaringClass();
+
+        if (Modifier.isStatic(method.getModifiers()) || !Listener.class.isAssignableFrom(listenerClass)) return null;
+
+        try
+        {
+            // The spun class is hosted by the listener class, it resolves the classes of the plugin and may call private methods
+            MethodHandles.Lookup lookup = privateLookup(listenerClass);
+            MethodHandle handle = lookup.unreflect(method);
+            CallSite callSite = LambdaMetafactory.metafactory(lookup, "execute", FACTORY_TYPE, EXECUTE_TYPE, handle,
+                MethodType.methodType(void.class, listenerClass, eventClass));
+
+            return (EventExecutor) callSite.getTarget().invoke();
+        } catch (Throwable t)
+        {
+            return null;
+        }
+    }
+
+    private static MethodHandles.Lookup privateLookup(Class<?> clazz) throws Exception
+    {
+        if (PRIVATE_LOOKUP_IN != null)
+            return (MethodHandles.Lookup) PRIVATE_LOOKUP_IN.invoke(null, clazz, MethodHandles.lookup());
+
+        if (LOOKUP_CONSTRUCTOR != null)
+            return LOOKUP_CONSTRUCTOR.newInstance(clazz, ALL_MODES);
+
+        throw new UnsupportedOperationException("No private lookup available");
+    }
+
+    private static Method findPrivateLookupIn()
+    {
+        try
+        {
+            return MethodHandles.class.getMethod("privateLookupIn", Class.class, MethodHandles.Lookup.class);
+        } catch (Exception ex)
+        {
+            return null;
+        }
+    }
+
+    private static Constructor<MethodHandles.Lookup> findLookupConstructor()
+    {
+        try
+        {
+            Constructor<MethodHandles.Lookup> constructor = MethodHandles.Lookup.class.getDeclaredConstructor(Class.class, int.class);
+            constructor.setAccessible(true);
+            return constructor;
+        } catch (Exception ex)
+        {
+            return null;
+        }
+    }
+}
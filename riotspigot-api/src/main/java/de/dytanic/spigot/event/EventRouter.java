@@ -0,0 +1,18 @@
+package de.dytanic.spigot.event;
+
+import org.bukkit.event.Event;
+
+/**
+ * Decides on which thread the listeners of an event are called. The server routes the events of threads which must
+ * not run plugin code, like the world tick threads, to the main thread.
+ */
+public interface EventRouter {
+
+    /**
+     * @param event    the event which is called
+     * @param dispatch calls the listeners of the event
+     * @return true if the router ran the dispatch, false if the caller has to run it on the current thread
+     */
+    boolean route(Event event, Runnable dispatch);
+
+}
@@ -1025,6 +1025,15 @@ public interface Server extends PluginMessageRecipient {
             throw new UnsupportedOperationException("Not supported yet.");
         }
 
+        /**
+         * Like {@link Server#getOfflinePlayer(String)}, but looks the name up on another thread if its profile isn't
+         * cached. The future may be completed on that thread.
+         */
+        public java.util.concurrent.CompletableFuture<OfflinePlayer> getOfflinePlayerAsync(String name)
+        {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
     }
     //Dytanic end
 
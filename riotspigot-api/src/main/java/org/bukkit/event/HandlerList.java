@@ -15,12 +15,12 @@ public class HandlerList {
      * Handler array. This field being an array is the key to this system's
      * speed.
      */
-    private volatile RegisteredListener[] handlers = null;
+    private volatile RegisteredListener[] handlers = new RegisteredListener[0]; //Dytanic edit - never null, readers don't lock
 
     /**
      * Dynamic handler lists. These are changed using register() and
-     * unregister() and are automatically baked to the handlers array any time
-     * they have changed.
+     * unregister() and are baked to a new handlers array right after they
+     * have changed, so the published array is never modified.
      */
     private final EnumMap<EventPriority, ArrayList<RegisteredListener>> handlerslots;
 
@@ -52,7 +52,7 @@ public class HandlerList {
                     for (List<RegisteredListener> list : h.handlerslots.values()) {
                         list.clear();
                     }
-                    h.handlers = null;
+                    h.rebake(); //Dytanic edit
                 }
             }
         }
@@ -107,8 +107,8 @@ public class HandlerList {
     public synchronized void register(RegisteredListener listener) {
         if (handlerslots.get(listener.getPriority()).contains(listener))
             throw new IllegalStateException("This listener is already registered to priority " + listener.getPriority().toString());
-        handlers = null;
         handlerslots.get(listener.getPriority()).add(listener);
+        rebake(); //Dytanic edit
     }
 
     /**
@@ -116,10 +116,15 @@ public class HandlerList {
      *
      * @param listeners listeners to register
      */
-    public void registerAll(Collection<RegisteredListener> listeners) {
+    public synchronized void registerAll(Collection<RegisteredListener> listeners) { //Dytanic edit - baked once
         for (RegisteredListener listener : listeners) {
-            register(listener);
+            if (handlerslots.get(listener.getPriority()).contains(listener)) {
+                rebake();
+                throw new IllegalStateException("This listener is already registered to priority " + listener.getPriority().toString());
+            }
+            handlerslots.get(listener.getPriority()).add(listener);
         }
+        rebake();
     }
 
     /**
@@ -129,7 +134,7 @@ public class HandlerList {
      */
     public synchronized void unregister(RegisteredListener listener) {
         if (handlerslots.get(listener.getPriority()).remove(listener)) {
-            handlers = null;
+            rebake(); //Dytanic edit
         }
     }
 
@@ -148,7 +153,7 @@ public class HandlerList {
                 }
             }
         }
-        if (changed) handlers = null;
+        if (changed) rebake(); //Dytanic edit
     }
 
     /**
@@ -166,14 +171,22 @@ public class HandlerList {
                 }
             }
         }
-        if (changed) handlers = null;
+        if (changed) rebake(); //Dytanic edit
     }
 
     /**
      * Bake HashMap and ArrayLists to 2d array - does nothing if not necessary
      */
     public synchronized void bake() {
-        if (handlers != null) return; // don't re-bake when still valid
+        //Dytanic - the handlers are baked whenever the slots change
+    }
+
+    //Dytanic start
+    /**
+     * Publishes a new handlers array built from the slots, the old array
+     * stays valid for the dispatches which are still running over it.
+     */
+    private synchronized void rebake() {
         List<RegisteredListener> entries = new ArrayList<RegisteredListener>();
         for (Entry<EventPriority, ArrayList<RegisteredListener>> entry : handlerslots.entrySet()) {
             entries.addAll(entry.getValue());
@@ -181,15 +194,24 @@ public class HandlerList {
         handlers = entries.toArray(new RegisteredListener[entries.size()]);
     }
 
+    /**
+     * Check whether any listener is registered to this handler list, used to
+     * skip constructing events nobody listens to.
+     *
+     * @return true if at least one listener is registered
+     */
+    public boolean hasListeners() {
+        return handlers.length != 0;
+    }
+    //Dytanic end
+
     /**
      * Get the baked registered listeners associated with this handler list
      *
      * @return the array of registered listeners
      */
     public RegisteredListener[] getRegisteredListeners() {
-        RegisteredListener[] handlers;
-        while ((handlers = this.handlers) == null) bake(); // This prevents fringe cases of returning null
-        return handlers;
+        return handlers; //Dytanic edit - always baked
     }
 
     /**
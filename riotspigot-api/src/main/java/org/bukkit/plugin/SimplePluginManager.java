@@ -53,6 +53,7 @@ public final class SimplePluginManager implements PluginManager {
     private final Map<String, Map<Permissible, Boolean>> permSubs = new HashMap<String, Map<Permissible, Boolean>>();
     private final Map<Boolean, Map<Permissible, Boolean>> defSubs = new HashMap<Boolean, Map<Permissible, Boolean>>();
     private boolean useTimings = false;
+    private volatile de.dytanic.spigot.event.EventRouter eventRouter; //Dytanic
 
     public SimplePluginManager(Server instance, SimpleCommandMap commandMap) {
         server = instance;
@@ -496,11 +497,23 @@ public final class SimplePluginManager implements PluginManager {
     /**
      * Calls an event with the given details.
      * <p>
-     * This method only synchronizes when the event is not asynchronous.
+     * The listeners are called over the baked array of the handler list,
+     * registration never blocks a dispatch and no dispatch locks.
      *
      * @param event Event details
      */
-    public void callEvent(Event event) {
+    public void callEvent(final Event event) {
+        //Dytanic start
+        de.dytanic.spigot.event.EventRouter router = eventRouter;
+        if (router != null && router.route(event, new Runnable() {
+            @Override
+            public void run() {
+                fireEvent(event);
+            }
+        })) {
+            return;
+        }
+        //Dytanic end
         if (event.isAsynchronous()) {
             if (Thread.holdsLock(this)) {
                 throw new IllegalStateException(event.getEventName() + " cannot be triggered asynchronously from inside synchronized code.");
@@ -510,15 +523,14 @@ public final class SimplePluginManager implements PluginManager {
             }
             fireEvent(event);
         } else {
-            synchronized (this) {
-                fireEvent(event);
-            }
+            fireEvent(event); //Dytanic edit - no global lock, the handlers array is never modified after it was published
         }
     }
 
     private void fireEvent(Event event) {
         HandlerList handlers = event.getHandlers();
         RegisteredListener[] listeners = handlers.getRegisteredListeners();
+        if (listeners.length == 0) return; //Dytanic
 
         for (RegisteredListener registration : listeners) {
             if (!registration.getPlugin().isEnabled()) {
@@ -552,6 +564,19 @@ public final class SimplePluginManager implements PluginManager {
         }
     }
 
+    //Dytanic start
+    /**
+     * Sets the router which may call the listeners of an event on another
+     * thread than the caller's.
+     *
+     * @param eventRouter the router, or null to call all events on the
+     *     calling thread
+     */
+    public void setEventRouter(de.dytanic.spigot.event.EventRouter eventRouter) {
+        this.eventRouter = eventRouter;
+    }
+    //Dytanic end
+
     public void registerEvents(Listener listener, Plugin plugin) {
         if (!plugin.isEnabled()) {
             throw new IllegalPluginAccessException("Plugin attempted to register " + listener + " while not enabled");
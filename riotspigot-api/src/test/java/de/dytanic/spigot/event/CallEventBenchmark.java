@@ -0,0 +1,139 @@
+package de.dytanic.spigot.event;
+
+import org.bukkit.Server;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventException;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.EventExecutor;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.SimplePluginManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * SimplePluginManager.callEvent with 1, 10 and 50 registered handlers, called through the executors of the
+ * {@link EventExecutorFactory} or through the reflective executor JavaPluginLoader used before. Run with
+ * mvn -P benchmarks -pl riotspigot-api verify
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CallEventBenchmark {
+
+    @Param({"1", "10", "50"})
+    public int listeners;
+
+    @Param({"generated", "reflective"})
+    public String executor;
+
+    private SimplePluginManager pluginManager;
+
+    private BenchmarkEvent event;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception
+    {
+        BenchmarkEvent.handlers = new HandlerList();
+
+        pluginManager = new SimplePluginManager(stub(Server.class), null);
+        Plugin plugin = stub(Plugin.class);
+        Method method = BenchmarkListener.class.getDeclaredMethod("onEvent", BenchmarkEvent.class);
+
+        for (int i = 0; i < listeners; i++)
+        {
+            EventExecutor eventExecutor = executor.equals("generated") ? EventExecutorFactory.create(method, BenchmarkEvent.class) : reflective(method, BenchmarkEvent.class);
+            pluginManager.registerEvent(BenchmarkEvent.class, new BenchmarkListener(), EventPriority.NORMAL, eventExecutor, plugin);
+        }
+
+        event = new BenchmarkEvent();
+    }
+
+    @Benchmark
+    public int callEvent()
+    {
+        pluginManager.callEvent(event);
+        return event.calls;
+    }
+
+    /**
+     * The executor JavaPluginLoader created for every handler before the EventExecutorFactory.
+     */
+    private static EventExecutor reflective(final Method method, final Class<? extends Event> eventClass)
+    {
+        return new EventExecutor() {
+            @Override
+            public void execute(Listener listener, Event event) throws EventException
+            {
+                try
+                {
+                    if (!eventClass.isAssignableFrom(event.getClass())) return;
+
+                    method.invoke(listener, event);
+                } catch (InvocationTargetException ex)
+                {
+                    throw new EventException(ex.getCause());
+                } catch (Throwable t)
+                {
+                    throw new EventException(t);
+                }
+            }
+        };
+    }
+
+    /**
+     * An enabled plugin or a server on the primary thread, every other method returns a default value.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T stub(final Class<T> type)
+    {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+            {
+                if (method.getName().equals("getLogger")) return Logger.getLogger(type.getSimpleName());
+                if (method.getReturnType() == boolean.class) return Boolean.TRUE;
+                if (method.getReturnType() == int.class) return 0;
+                if (method.getReturnType() == long.class) return 0L;
+                if (method.getName().equals("toString")) return type.getSimpleName();
+                return null;
+            }
+        });
+    }
+
+    public static class BenchmarkEvent extends Event {
+
+        private static HandlerList handlers = new HandlerList();
+
+        int calls;
+
+        public static HandlerList getHandlerList()
+        {
+            return handlers;
+        }
+
+        @Override
+        public HandlerList getHandlers()
+        {
+            return handlers;
+        }
+    }
+
+    public static class BenchmarkListener implements Listener {
+
+        public void onEvent(BenchmarkEvent event)
+        {
+            event.calls++;
+        }
+    }
+}
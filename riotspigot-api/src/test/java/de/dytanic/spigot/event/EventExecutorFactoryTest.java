@@ -0,0 +1,146 @@
+package de.dytanic.spigot.event;
+
+import org.bukkit.event.Event;
+import org.bukkit.event.EventException;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.EventExecutor;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class EventExecutorFactoryTest {
+
+    @Test
+    public void testPublicHandlerIsCalled() throws Exception
+    {
+        TestListener listener = new TestListener();
+        EventExecutor executor = EventExecutorFactory.create(TestListener.class.getDeclaredMethod("onPublic", TestEvent.class), TestEvent.class);
+
+        executor.execute(listener, new TestEvent());
+
+        assertEquals(1, listener.publicCalls);
+    }
+
+    @Test
+    public void testPrivateHandlerIsCalled() throws Exception
+    {
+        TestListener listener = new TestListener();
+        EventExecutor executor = EventExecutorFactory.create(TestListener.class.getDeclaredMethod("onPrivate", TestEvent.class), TestEvent.class);
+
+        executor.execute(listener, new TestEvent());
+
+        assertEquals(1, listener.privateCalls);
+    }
+
+    @Test
+    public void testStaticHandlerIsCalled() throws Exception
+    {
+        TestListener.staticCalls = 0;
+        EventExecutor executor = EventExecutorFactory.create(TestListener.class.getDeclaredMethod("onStatic", TestEvent.class), TestEvent.class);
+
+        executor.execute(new TestListener(), new TestEvent());
+
+        assertEquals(1, TestListener.staticCalls);
+    }
+
+    @Test
+    public void testOtherEventsAreIgnored() throws Exception
+    {
+        TestListener listener = new TestListener();
+        EventExecutor executor = EventExecutorFactory.create(TestListener.class.getDeclaredMethod("onSub", SubEvent.class), SubEvent.class);
+
+        // SubEvent has no HandlerList of its own, its handlers receive every TestEvent
+        executor.execute(listener, new TestEvent());
+        executor.execute(listener, new SubEvent());
+
+        assertEquals(1, listener.subCalls);
+    }
+
+    @Test
+    public void testExceptionIsPassedOn() throws Exception
+    {
+        EventExecutor executor = EventExecutorFactory.create(TestListener.class.getDeclaredMethod("onFailure", TestEvent.class), TestEvent.class);
+
+        try
+        {
+            executor.execute(new TestListener(), new TestEvent());
+            fail("Expected an IllegalStateException");
+        } catch (IllegalStateException ex)
+        {
+            assertEquals("failure", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void testReflectiveExceptionIsWrapped() throws Exception
+    {
+        EventExecutor executor = EventExecutorFactory.create(TestListener.class.getDeclaredMethod("onStaticFailure", TestEvent.class), TestEvent.class);
+
+        try
+        {
+            executor.execute(new TestListener(), new TestEvent());
+            fail("Expected an EventException");
+        } catch (EventException ex)
+        {
+            assertTrue(ex.getCause() instanceof IllegalStateException);
+            assertEquals("failure", ex.getCause().getMessage());
+        }
+    }
+
+    public static class TestEvent extends Event {
+
+        private static final HandlerList handlers = new HandlerList();
+
+        public static HandlerList getHandlerList()
+        {
+            return handlers;
+        }
+
+        @Override
+        public HandlerList getHandlers()
+        {
+            return handlers;
+        }
+    }
+
+    public static class SubEvent extends TestEvent {
+    }
+
+    public static class TestListener implements Listener {
+
+        static int staticCalls;
+
+        int publicCalls, privateCalls, subCalls;
+
+        public void onPublic(TestEvent event)
+        {
+            publicCalls++;
+        }
+
+        private void onPrivate(TestEvent event)
+        {
+            privateCalls++;
+        }
+
+        public static void onStatic(TestEvent event)
+        {
+            staticCalls++;
+        }
+
+        public void onSub(SubEvent event)
+        {
+            subCalls++;
+        }
+
+        public void onFailure(TestEvent event)
+        {
+            throw new IllegalStateException("failure");
+        }
+
+        public static void onStaticFailure(TestEvent event)
+        {
+            throw new IllegalStateException("failure");
+        }
+    }
+}
@@ -1,6 +1,33 @@
 package com.mojang.authlib;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface GameProfileRepository
 {
     void findProfilesByNames(String[] p0, Agent p1, ProfileLookupCallback p2);
+
+    /**
+     * Dytanic - looks one name up without blocking the caller, repositories which can't do so look it up on the calling
+     * thread.
+     *
+     * @return a future which completes with the profile, or exceptionally with the reason of the failed lookup
+     */
+    default CompletableFuture<GameProfile> findProfileByName(final String name, final Agent agent) {
+        final CompletableFuture<GameProfile> future = new CompletableFuture<GameProfile>();
+        this.findProfilesByNames(new String[] { name }, agent, new ProfileLookupCallback() {
+            @Override
+            public void onProfileLookupSucceeded(final GameProfile profile) {
+                future.complete(profile);
+            }
+
+            @Override
+            public void onProfileLookupFailed(final GameProfile profile, final Exception e) {
+                future.completeExceptionally(e);
+            }
+        });
+        if (!future.isDone()) {
+            future.completeExceptionally(new IllegalArgumentException("Invalid name " + name));
+        }
+        return future;
+    }
 }
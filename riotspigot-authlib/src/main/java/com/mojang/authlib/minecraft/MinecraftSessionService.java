@@ -5,6 +5,9 @@ import com.mojang.authlib.exceptions.AuthenticationException;
 import com.mojang.authlib.exceptions.AuthenticationUnavailableException;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
 
 public interface MinecraftSessionService
 {
@@ -15,4 +18,24 @@ public interface MinecraftSessionService
     Map<MinecraftProfileTexture.Type, MinecraftProfileTexture> getTextures(GameProfile p0, boolean p1);
     
     GameProfile fillProfileProperties(GameProfile p0, boolean p1);
+
+    /**
+     * Dytanic - checks the session without blocking the caller, services which can't do so check it on the common pool.
+     *
+     * @return a future which completes with the profile or null if the session is invalid, or exceptionally with an
+     * {@link AuthenticationUnavailableException}
+     */
+    default CompletableFuture<GameProfile> hasJoinedServerAsync(final GameProfile user, final String serverId) {
+        return CompletableFuture.supplyAsync(new Supplier<GameProfile>() {
+            @Override
+            public GameProfile get() {
+                try {
+                    return MinecraftSessionService.this.hasJoinedServer(user, serverId);
+                }
+                catch (AuthenticationUnavailableException e) {
+                    throw new CompletionException(e);
+                }
+            }
+        });
+    }
 }
@@ -0,0 +1,35 @@
+package com.mojang.authlib.yggdrasil;
+
+/**
+ * Token bucket which limits the requests to the profile API. Holds up to {@code capacity} tokens and gains
+ * {@code tokensPerSecond} tokens every second. Never blocks, a caller without a token is told how long to wait.
+ */
+class TokenBucket
+{
+    private final int capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long lastRefill;
+
+    TokenBucket(final int capacity, final double tokensPerSecond) {
+        super();
+        this.capacity = Math.max(1, capacity);
+        this.tokensPerNano = tokensPerSecond / 1.0E9;
+        this.tokens = this.capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * @return 0 if a token was taken, otherwise the nanoseconds until the next token is available
+     */
+    synchronized long tryAcquire() {
+        final long now = System.nanoTime();
+        this.tokens = Math.min(this.capacity, this.tokens + (now - this.lastRefill) * this.tokensPerNano);
+        this.lastRefill = now;
+        if (this.tokens >= 1.0) {
+            --this.tokens;
+            return 0L;
+        }
+        return Math.max(1L, (long)Math.ceil((1.0 - this.tokens) / this.tokensPerNano));
+    }
+}
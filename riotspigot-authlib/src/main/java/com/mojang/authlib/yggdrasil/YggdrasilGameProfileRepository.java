@@ -1,32 +1,75 @@
 package com.mojang.authlib.yggdrasil;
 
 import com.google.common.base.Strings;
-import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.mojang.authlib.*;
 import com.mojang.authlib.exceptions.AuthenticationException;
+import com.mojang.authlib.exceptions.AuthenticationUnavailableException;
 import com.mojang.authlib.yggdrasil.response.ProfileSearchResultsResponse;
 import de.dytanic.log.DytanicLogger;
 
-import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Dytanic - looks names up on one lookup thread. Names which are requested while a request is running are sent
+ * together in pages of up to the limit of the API, a name which is looked up already is not requested twice. Requests
+ * are limited by a token bucket and failed pages are retried with a growing delay, nothing sleeps.
+ */
 public class YggdrasilGameProfileRepository implements GameProfileRepository
 {
     private static final DytanicLogger LOGGER = DytanicLogger.getInstance();
     private static final String BASE_URL = "https://api.mojang.com/";
     private static final String SEARCH_PAGE_URL = "https://api.mojang.com/profiles/";
-    private static final int ENTRIES_PER_PAGE = 2;
+    private static final int ENTRIES_PER_PAGE = 10;
     private static final int MAX_FAIL_COUNT = 3;
-    private static final int DELAY_BETWEEN_PAGES = 100;
     private static final int DELAY_BETWEEN_FAILURES = 750;
+    // The API allows 600 requests in 10 minutes
+    private static final int REQUEST_BURST = 10;
+    private static final double REQUESTS_PER_SECOND = 1.0;
     private final YggdrasilAuthenticationService authenticationService;
-    
+    private final String searchPageUrl;
+    private final TokenBucket bucket;
+    private final ScheduledExecutorService executor;
+    private final ConcurrentHashMap<String, CompletableFuture<GameProfile>> inFlight = new ConcurrentHashMap<String, CompletableFuture<GameProfile>>();
+    private final ConcurrentHashMap<String, Queue<Lookup>> pending = new ConcurrentHashMap<String, Queue<Lookup>>();
+    private final AtomicBoolean dispatchScheduled = new AtomicBoolean();
+
     public YggdrasilGameProfileRepository(final YggdrasilAuthenticationService authenticationService) {
+        this(authenticationService, SEARCH_PAGE_URL, REQUEST_BURST, REQUESTS_PER_SECOND);
+    }
+
+    /**
+     * @param searchPageUrl the url the lower case agent name is appended to
+     */
+    public YggdrasilGameProfileRepository(final YggdrasilAuthenticationService authenticationService, final String searchPageUrl, final int requestBurst, final double requestsPerSecond) {
         super();
         this.authenticationService = authenticationService;
+        this.searchPageUrl = searchPageUrl;
+        this.bucket = new TokenBucket(requestBurst, requestsPerSecond);
+        final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder().setNameFormat("Profile Lookup Thread - %1$d").setDaemon(true).build());
+        executor.setKeepAliveTime(60L, TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
+        this.executor = executor;
     }
-    
+
+    /**
+     * Waits for the lookups of all names and calls the callback on the calling thread.
+     */
     @Override
     public void findProfilesByNames(final String[] names, final Agent agent, final ProfileLookupCallback callback) {
         final Set<String> criteria = Sets.newHashSet();
@@ -35,47 +78,161 @@ public class YggdrasilGameProfileRepository implements GameProfileRepository
                 criteria.add(name.toLowerCase());
             }
         }
-        final int page = 0;
-        for (final Object request : Iterables.partition((Iterable)criteria, 2)) {
-            int failCount = 0;
-            boolean failed;
-            do {
-                failed = false;
-                try {
-                    final ProfileSearchResultsResponse response = this.authenticationService.makeRequest(HttpAuthenticationService.constantURL("https://api.mojang.com/profiles/" + agent.getName().toLowerCase()), request, ProfileSearchResultsResponse.class);
-                    failCount = 0;
-                    YggdrasilGameProfileRepository.LOGGER.debug("Page {} returned {} results, parsing", new Object[] { page, response.getProfiles().length });
-                    final Set<String> missing = (Set<String>)Sets.newHashSet((Iterable)request);
-                    for (final GameProfile profile : response.getProfiles()) {
-                        YggdrasilGameProfileRepository.LOGGER.debug("Successfully looked up profile {}", new Object[] { profile });
-                        missing.remove(profile.getName().toLowerCase());
-                        callback.onProfileLookupSucceeded(profile);
-                    }
-                    for (final String name2 : missing) {
-                        YggdrasilGameProfileRepository.LOGGER.debug("Couldn't find profile {}", new Object[] { name2 });
-                        callback.onProfileLookupFailed(new GameProfile(null, name2), new ProfileNotFoundException("Server did not find the requested profile"));
-                    }
-                    try {
-                        Thread.sleep(100L);
-                    }
-                    catch (InterruptedException ex) {}
+        final Map<String, CompletableFuture<GameProfile>> futures = Maps.newLinkedHashMap();
+        for (final String name : criteria) {
+            futures.put(name, this.findProfileByName(name, agent));
+        }
+        for (final Map.Entry<String, CompletableFuture<GameProfile>> entry : futures.entrySet()) {
+            try {
+                callback.onProfileLookupSucceeded(entry.getValue().join());
+            }
+            catch (CompletionException e) {
+                final Throwable cause = e.getCause();
+                callback.onProfileLookupFailed(new GameProfile(null, entry.getKey()), (cause instanceof Exception) ? ((Exception)cause) : new RuntimeException(cause));
+            }
+        }
+    }
+
+    /**
+     * Looks the name up on the lookup thread, together with the other names which are requested in the meantime.
+     *
+     * @return a future which completes with the profile, or exceptionally with a {@link ProfileNotFoundException} if
+     * there is no profile with the name or with the {@link AuthenticationException} of the last try
+     */
+    @Override
+    public CompletableFuture<GameProfile> findProfileByName(final String name, final Agent agent) {
+        final String lowerName = name.toLowerCase();
+        final String key = agent.getName().toLowerCase(Locale.ROOT) + ':' + lowerName;
+        final CompletableFuture<GameProfile> future = new CompletableFuture<GameProfile>();
+        final CompletableFuture<GameProfile> existing = this.inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            return existing;
+        }
+        Queue<Lookup> queue = this.pending.get(agent.getName());
+        if (queue == null) {
+            final Queue<Lookup> created = new ConcurrentLinkedQueue<Lookup>();
+            queue = this.pending.putIfAbsent(agent.getName(), created);
+            if (queue == null) {
+                queue = created;
+            }
+        }
+        queue.add(new Lookup(key, lowerName, future));
+        this.scheduleDispatch(0L);
+        return future;
+    }
+
+    private void scheduleDispatch(final long delayNanos) {
+        if (this.dispatchScheduled.compareAndSet(false, true)) {
+            this.executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    YggdrasilGameProfileRepository.this.dispatch();
+                }
+            }, delayNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // Lookup thread
+    private void dispatch() {
+        // Cleared first, a name queued from now on schedules the next dispatch
+        this.dispatchScheduled.set(false);
+        for (final Map.Entry<String, Queue<Lookup>> entry : this.pending.entrySet()) {
+            final Queue<Lookup> queue = entry.getValue();
+            while (!queue.isEmpty()) {
+                final long wait = this.bucket.tryAcquire();
+                if (wait > 0L) {
+                    this.scheduleDispatch(wait);
+                    return;
+                }
+                final List<Lookup> page = Lists.newArrayListWithCapacity(ENTRIES_PER_PAGE);
+                Lookup lookup;
+                while (page.size() < ENTRIES_PER_PAGE && (lookup = queue.poll()) != null) {
+                    page.add(lookup);
+                }
+                if (!page.isEmpty()) {
+                    this.request(entry.getKey(), page, 1);
+                }
+            }
+        }
+    }
+
+    // Lookup thread
+    private void request(final String agentName, final List<Lookup> page, final int attempt) {
+        final List<String> request = Lists.newArrayListWithCapacity(page.size());
+        for (final Lookup lookup : page) {
+            request.add(lookup.name);
+        }
+        try {
+            final ProfileSearchResultsResponse response = this.authenticationService.makeRequest(HttpAuthenticationService.constantURL(this.searchPageUrl + agentName.toLowerCase()), request, ProfileSearchResultsResponse.class);
+            // An empty body (204 No Content) means that none of the names has a profile
+            final GameProfile[] profiles = (response == null) ? new GameProfile[0] : response.getProfiles();
+            if (profiles == null) {
+                throw new AuthenticationUnavailableException("Cannot contact authentication server");
+            }
+            YggdrasilGameProfileRepository.LOGGER.debug("Page of {} names returned {} results, parsing", new Object[] { page.size(), profiles.length });
+            final Map<String, GameProfile> found = Maps.newHashMap();
+            for (final GameProfile profile : profiles) {
+                YggdrasilGameProfileRepository.LOGGER.debug("Successfully looked up profile {}", new Object[] { profile });
+                found.put(profile.getName().toLowerCase(), profile);
+            }
+            for (final Lookup lookup : page) {
+                final GameProfile profile = found.get(lookup.name);
+                this.inFlight.remove(lookup.key, lookup.future);
+                if (profile != null) {
+                    lookup.future.complete(profile);
+                }
+                else {
+                    YggdrasilGameProfileRepository.LOGGER.debug("Couldn't find profile {}", new Object[] { lookup.name });
+                    lookup.future.completeExceptionally(new ProfileNotFoundException("Server did not find the requested profile"));
                 }
-                catch (AuthenticationException e) {
-                    if (++failCount == 3) {
-                        for (final String name3 : (Collection<String>)request) {
-                            YggdrasilGameProfileRepository.LOGGER.debug("Couldn't find profile {} because of a server error", new Object[] { name3 });
-                            callback.onProfileLookupFailed(new GameProfile(null, name3), e);
-                        }
-                    }
-                    else {
-                        try {
-                            Thread.sleep(750L);
-                        }
-                        catch (InterruptedException ex2) {}
-                        failed = true;
-                    }
+            }
+        }
+        catch (AuthenticationException e) {
+            if (attempt >= MAX_FAIL_COUNT) {
+                for (final Lookup lookup : page) {
+                    YggdrasilGameProfileRepository.LOGGER.debug("Couldn't find profile {} because of a server error", new Object[] { lookup.name });
+                    this.inFlight.remove(lookup.key, lookup.future);
+                    lookup.future.completeExceptionally(e);
                 }
-            } while (failed);
+            }
+            else {
+                this.retry(agentName, page, attempt + 1, (long)DELAY_BETWEEN_FAILURES << attempt - 1, TimeUnit.MILLISECONDS);
+            }
+        }
+        catch (RuntimeException e) {
+            for (final Lookup lookup : page) {
+                this.inFlight.remove(lookup.key, lookup.future);
+                lookup.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void retry(final String agentName, final List<Lookup> page, final int attempt, final long delay, final TimeUnit unit) {
+        this.executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                final long wait = YggdrasilGameProfileRepository.this.bucket.tryAcquire();
+                if (wait > 0L) {
+                    YggdrasilGameProfileRepository.this.retry(agentName, page, attempt, wait, TimeUnit.NANOSECONDS);
+                }
+                else {
+                    YggdrasilGameProfileRepository.this.request(agentName, page, attempt);
+                }
+            }
+        }, delay, unit);
+    }
+
+    private static class Lookup
+    {
+        private final String key;
+        private final String name;
+        private final CompletableFuture<GameProfile> future;
+
+        private Lookup(final String key, final String name, final CompletableFuture<GameProfile> future) {
+            super();
+            this.key = key;
+            this.name = name;
+            this.future = future;
         }
     }
 }
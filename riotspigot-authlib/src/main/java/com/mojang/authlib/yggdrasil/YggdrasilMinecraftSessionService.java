@@ -1,10 +1,13 @@
 package com.mojang.authlib.yggdrasil;
 
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Multimap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonParseException;
@@ -35,7 +38,13 @@ import java.security.spec.X509EncodedKeySpec;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 public class YggdrasilMinecraftSessionService extends HttpMinecraftSessionService
 {
@@ -43,9 +52,13 @@ public class YggdrasilMinecraftSessionService extends HttpMinecraftSessionServic
     private static final String BASE_URL = "https://sessionserver.mojang.com/session/minecraft/";
     private static final URL JOIN_URL;
     private static final URL CHECK_URL;
+    // Dytanic - session checks which run at once, each keeps its own connection to the session server
+    public static final int SESSION_THREADS = 8;
     private final PublicKey publicKey;
     private final Gson gson;
     private final LoadingCache<GameProfile, GameProfile> insecureProfiles;
+    private final Cache<TexturesKey, Textures> textures;
+    private final ExecutorService sessionExecutor;
     
     protected YggdrasilMinecraftSessionService(final YggdrasilAuthenticationService authenticationService) {
         super(authenticationService);
@@ -63,6 +76,10 @@ public class YggdrasilMinecraftSessionService extends HttpMinecraftSessionServic
         catch (Exception e) {
             throw new Error("Missing/invalid yggdrasil public key!");
         }
+        this.textures = CacheBuilder.newBuilder().maximumSize(4096L).expireAfterAccess(1L, TimeUnit.HOURS).build();
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(SESSION_THREADS, SESSION_THREADS, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactoryBuilder().setNameFormat("Session Verifier Thread - %1$d").setDaemon(true).build());
+        executor.allowCoreThreadTimeOut(true);
+        this.sessionExecutor = executor;
     }
     
     @Override
@@ -99,22 +116,58 @@ public class YggdrasilMinecraftSessionService extends HttpMinecraftSessionServic
         }
     }
     
+    /**
+     * Dytanic - checks the session on one of the session threads.
+     */
+    @Override
+    public CompletableFuture<GameProfile> hasJoinedServerAsync(final GameProfile user, final String serverId) {
+        return CompletableFuture.supplyAsync(new Supplier<GameProfile>() {
+            @Override
+            public GameProfile get() {
+                try {
+                    return YggdrasilMinecraftSessionService.this.hasJoinedServer(user, serverId);
+                }
+                catch (AuthenticationUnavailableException e) {
+                    throw new CompletionException(e);
+                }
+            }
+        }, this.sessionExecutor);
+    }
+    
+    /**
+     * Dytanic - the decoded payload and the result of the signature check are cached by the value and signature of the
+     * property, the same skin is only decoded and verified once.
+     */
     @Override
     public Map<MinecraftProfileTexture.Type, MinecraftProfileTexture> getTextures(final GameProfile profile, final boolean requireSecure) {
         final Property textureProperty = (Property)Iterables.getFirst(profile.getProperties().get("textures"), (Object)null);
         if (textureProperty == null) {
             return new HashMap<MinecraftProfileTexture.Type, MinecraftProfileTexture>();
         }
+        final TexturesKey key = new TexturesKey(textureProperty.getValue(), textureProperty.getSignature());
+        Textures cached = this.textures.getIfPresent(key);
+        if (cached == null) {
+            cached = new Textures(this.decodeTextures(textureProperty));
+            this.textures.put(key, cached);
+        }
         if (requireSecure) {
             if (!textureProperty.hasSignature()) {
                 YggdrasilMinecraftSessionService.LOGGER.error("Signature is missing from textures payload");
                 throw new InsecureTextureException("Signature is missing from textures payload");
             }
-            if (!textureProperty.isSignatureValid(this.publicKey)) {
+            Boolean signatureValid = cached.signatureValid;
+            if (signatureValid == null) {
+                signatureValid = cached.signatureValid = textureProperty.isSignatureValid(this.publicKey);
+            }
+            if (!signatureValid) {
                 YggdrasilMinecraftSessionService.LOGGER.error("Textures payload has been tampered with (signature invalid)");
                 throw new InsecureTextureException("Textures payload has been tampered with (signature invalid)");
             }
         }
+        return new HashMap<MinecraftProfileTexture.Type, MinecraftProfileTexture>(cached.textures);
+    }
+    
+    private Map<MinecraftProfileTexture.Type, MinecraftProfileTexture> decodeTextures(final Property textureProperty) {
         MinecraftTexturesPayload result;
         try {
             final String json = new String(Base64.decodeBase64(textureProperty.getValue()), Charsets.UTF_8);
@@ -124,7 +177,7 @@ public class YggdrasilMinecraftSessionService extends HttpMinecraftSessionServic
             YggdrasilMinecraftSessionService.LOGGER.error("Could not decode textures payload", (Throwable)e);
             return new HashMap<MinecraftProfileTexture.Type, MinecraftProfileTexture>();
         }
-        return (result.getTextures() == null) ? new HashMap<MinecraftProfileTexture.Type, MinecraftProfileTexture>() : result.getTextures();
+        return (result == null || result.getTextures() == null) ? new HashMap<MinecraftProfileTexture.Type, MinecraftProfileTexture>() : result.getTextures();
     }
     
     @Override
@@ -164,6 +217,47 @@ public class YggdrasilMinecraftSessionService extends HttpMinecraftSessionServic
         return (YggdrasilAuthenticationService)super.getAuthenticationService();
     }
     
+    private static class TexturesKey
+    {
+        private final String value;
+        private final String signature;
+        
+        private TexturesKey(final String value, final String signature) {
+            super();
+            this.value = value;
+            this.signature = signature;
+        }
+        
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof TexturesKey)) {
+                return false;
+            }
+            final TexturesKey that = (TexturesKey)o;
+            return this.value.equals(that.value) && Objects.equal(this.signature, that.signature);
+        }
+        
+        @Override
+        public int hashCode() {
+            return 31 * this.value.hashCode() + ((this.signature == null) ? 0 : this.signature.hashCode());
+        }
+    }
+    
+    private static class Textures
+    {
+        private final Map<MinecraftProfileTexture.Type, MinecraftProfileTexture> textures;
+        // Checked when a caller requires a secure payload first
+        private volatile Boolean signatureValid;
+        
+        private Textures(final Map<MinecraftProfileTexture.Type, MinecraftProfileTexture> textures) {
+            super();
+            this.textures = textures;
+        }
+    }
+    
     static {
         JOIN_URL = HttpAuthenticationService.constantURL("https://sessionserver.mojang.com/session/minecraft/join");
         CHECK_URL = HttpAuthenticationService.constantURL("https://sessionserver.mojang.com/session/minecraft/hasJoined");
@@ -0,0 +1,179 @@
+package com.mojang.authlib.yggdrasil;
+
+import com.mojang.authlib.Agent;
+import com.mojang.authlib.GameProfile;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Points the repository at a local stub of the profiles API.
+ */
+public class YggdrasilGameProfileRepositoryTest
+{
+    private static final UUID NOTCH_ID = UUID.fromString("069a79f4-44e9-4726-a5be-fca90e38aaf5");
+    private HttpServer server;
+    private final List<String> requests = new CopyOnWriteArrayList<String>();
+    private final List<Long> requestTimes = new CopyOnWriteArrayList<Long>();
+    private volatile HttpHandler handler;
+    private YggdrasilGameProfileRepository repository;
+
+    @Before
+    public void setUp() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/profiles/", new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                YggdrasilGameProfileRepositoryTest.this.requests.add(IOUtils.toString(exchange.getRequestBody(), StandardCharsets.UTF_8));
+                YggdrasilGameProfileRepositoryTest.this.requestTimes.add(System.nanoTime());
+                YggdrasilGameProfileRepositoryTest.this.handler.handle(exchange);
+            }
+        });
+        this.server.start();
+        this.repository = this.createRepository(10, 100.0);
+    }
+
+    @After
+    public void tearDown() {
+        this.server.stop(0);
+    }
+
+    @Test
+    public void testProfileIsFound() throws Exception {
+        this.handler = respond(200, "[{\"id\":\"069a79f444e94726a5befca90e38aaf5\",\"name\":\"Notch\"}]");
+
+        final GameProfile profile = this.repository.findProfileByName("Notch", Agent.MINECRAFT).get(5L, TimeUnit.SECONDS);
+
+        assertEquals(NOTCH_ID, profile.getId());
+        assertEquals("Notch", profile.getName());
+        assertEquals(1, this.requests.size());
+        assertEquals("[\"notch\"]", this.requests.get(0));
+    }
+
+    @Test
+    public void testNamesInFlightAreBatched() throws Exception {
+        this.handler = respond(200, "[{\"id\":\"069a79f444e94726a5befca90e38aaf5\",\"name\":\"Notch\"}]");
+
+        final CompletableFuture<GameProfile> first = this.repository.findProfileByName("Notch", Agent.MINECRAFT);
+        final CompletableFuture<GameProfile> second = this.repository.findProfileByName("notch", Agent.MINECRAFT);
+
+        assertSame(first.get(5L, TimeUnit.SECONDS), second.get(5L, TimeUnit.SECONDS));
+        assertEquals(1, this.requests.size());
+    }
+
+    @Test
+    public void testNoContentIsNoProfile() throws Exception {
+        this.handler = respond(204, null);
+
+        assertNotFound(this.repository.findProfileByName("nobody", Agent.MINECRAFT));
+        assertEquals(1, this.requests.size());
+    }
+
+    @Test
+    public void testEmptyResultIsNoProfile() throws Exception {
+        this.handler = respond(200, "[]");
+
+        assertNotFound(this.repository.findProfileByName("nobody", Agent.MINECRAFT));
+        assertEquals(1, this.requests.size());
+    }
+
+    @Test
+    public void testRateLimitedPageIsRetried() throws Exception {
+        final HttpHandler tooManyRequests = respond(429, "{\"error\":\"TooManyRequestsException\",\"errorMessage\":\"The client has sent too many requests within a certain amount of time\"}");
+        final HttpHandler found = respond(200, "[{\"id\":\"069a79f444e94726a5befca90e38aaf5\",\"name\":\"Notch\"}]");
+        final AtomicInteger calls = new AtomicInteger();
+        this.handler = new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                (calls.getAndIncrement() == 0 ? tooManyRequests : found).handle(exchange);
+            }
+        };
+
+        final GameProfile profile = this.repository.findProfileByName("Notch", Agent.MINECRAFT).get(5L, TimeUnit.SECONDS);
+
+        assertEquals(NOTCH_ID, profile.getId());
+        assertEquals(2, this.requests.size());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(this.requestTimes.get(1) - this.requestTimes.get(0)) >= 700L);
+    }
+
+    @Test
+    public void testRateLimitedPageFailsAfterLastTry() throws Exception {
+        this.handler = respond(429, "{\"error\":\"TooManyRequestsException\",\"errorMessage\":\"The client has sent too many requests within a certain amount of time\"}");
+
+        try {
+            this.repository.findProfileByName("Notch", Agent.MINECRAFT).get(10L, TimeUnit.SECONDS);
+            fail("Expected the lookup to fail");
+        }
+        catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof com.mojang.authlib.exceptions.AuthenticationException);
+        }
+        assertEquals(3, this.requests.size());
+    }
+
+    @Test
+    public void testRequestsAreLimitedByTheBucket() throws Exception {
+        this.repository = this.createRepository(1, 4.0);
+        this.handler = respond(200, "[]");
+
+        // Opens the connection and takes the only token, both following requests wait for the bucket
+        assertNotFound(this.repository.findProfileByName("warmup", Agent.MINECRAFT));
+        assertNotFound(this.repository.findProfileByName("first", Agent.MINECRAFT));
+        assertNotFound(this.repository.findProfileByName("second", Agent.MINECRAFT));
+
+        assertEquals(3, this.requests.size());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(this.requestTimes.get(2) - this.requestTimes.get(1)) >= 200L);
+    }
+
+    private YggdrasilGameProfileRepository createRepository(final int requestBurst, final double requestsPerSecond) {
+        final String url = "http://127.0.0.1:" + this.server.getAddress().getPort() + "/profiles/";
+        return new YggdrasilGameProfileRepository(new YggdrasilAuthenticationService(Proxy.NO_PROXY, UUID.randomUUID().toString()), url, requestBurst, requestsPerSecond);
+    }
+
+    private static void assertNotFound(final CompletableFuture<GameProfile> future) throws Exception {
+        try {
+            future.get(5L, TimeUnit.SECONDS);
+            fail("Expected the lookup to fail");
+        }
+        catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ProfileNotFoundException);
+        }
+    }
+
+    private static HttpHandler respond(final int status, final String body) {
+        return new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                if (body == null) {
+                    exchange.sendResponseHeaders(status, -1L);
+                    exchange.close();
+                    return;
+                }
+                final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(status, bytes.length);
+                final OutputStream out = exchange.getResponseBody();
+                out.write(bytes);
+                out.close();
+            }
+        };
+    }
+}
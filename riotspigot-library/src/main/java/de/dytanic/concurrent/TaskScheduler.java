@@ -4,6 +4,7 @@ import java.time.*;
 import java.util.*;
 import java.util.concurrent.*;
 
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -18,7 +19,7 @@ public class TaskScheduler {
 
     protected final String name = threadGroup.getName();
 
-    protected final long sleepThreadSwitch;
+    protected final long sleepThreadSwitch; // idle workers park on the queue now, kept for the existing constructors
 
     protected final boolean dynamicWorkerCount;
 
@@ -28,7 +29,11 @@ public class TaskScheduler {
 
     protected Logger logger;
 
-    protected Deque<TaskEntry<?>> taskEntries = new ConcurrentLinkedDeque<>();
+    protected final DelayQueue<ScheduledEntry> taskEntries = new DelayQueue<>();
+
+    protected final AtomicLong entrySequence = new AtomicLong(0);
+
+    protected final AtomicInteger idleWorkers = new AtomicInteger(0);
 
     protected Collection<Worker> workers = new ConcurrentLinkedQueue<>();
 
@@ -162,7 +167,8 @@ public class TaskScheduler {
         this.logger = logger != null ? logger : Logger.getLogger("TaskScheduler-Logger@" + threadGroup.getName());
 
         if (entries != null)
-            taskEntries.addAll(entries);
+            for (TaskEntry<?> entry : entries)
+                taskEntries.offer(new ScheduledEntry(entry, entrySequence.incrementAndGet()));
     }
 
 
@@ -474,23 +480,16 @@ public class TaskScheduler {
     }
 
 
-    @SuppressWarnings("deprecation")
     public Collection<TaskEntry<?>> shutdown()
     {
 
         for (Worker worker : workers)
-        {
-            try
-            {
-                worker.interrupt();
-                worker.stop();
-            } catch (ThreadDeath th)
-            {
-                workers.remove(worker);
-            }
-        }
+            worker.interrupt();
+
+        Collection<TaskEntry<?>> entries = new ArrayList<>();
 
-        Collection<TaskEntry<?>> entries = new ArrayList<>(taskEntries);
+        for (ScheduledEntry scheduledEntry : taskEntries.toArray(new ScheduledEntry[0]))
+            entries.add(scheduledEntry.taskEntry);
 
         taskEntries.clear();
         workers.clear();
@@ -536,7 +535,12 @@ public class TaskScheduler {
 
     public Deque<TaskEntry<?>> getThreadEntries()
     {
-        return new ConcurrentLinkedDeque<>();
+        Deque<TaskEntry<?>> entries = new ConcurrentLinkedDeque<>();
+
+        for (ScheduledEntry scheduledEntry : taskEntries.toArray(new ScheduledEntry[0]))
+            entries.add(scheduledEntry.taskEntry);
+
+        return entries;
     }
 
 
@@ -552,37 +556,77 @@ public class TaskScheduler {
 
     /* =================================== */
 
-    private void checkEnougthThreads()
+    private synchronized void checkEnougthThreads()
     {
-        Worker worker = hasFreeWorker();
-        if (getCurrentThreadSize() < maxThreads
-                || (dynamicWorkerCount && maxThreads > 1 && taskEntries.size() > getCurrentThreadSize() && taskEntries.size() <= (getMaxThreads() * 2)) && worker == null)
+        if (idleWorkers.get() > 0) return;
+
+        int workerCount = getCurrentThreadSize();
+
+        if (workerCount < maxThreads
+                || (dynamicWorkerCount && maxThreads > 1 && taskEntries.size() > workerCount && workerCount < (getMaxThreads() * 2)))
             newWorker();
     }
 
-    private Worker hasFreeWorker()
+    /**
+     * Removes an idle worker, unless it is the last one while entries are still queued and need a worker to wait for them.
+     */
+    private synchronized boolean retireWorker(Worker worker)
     {
-        for (Worker worker : workers)
-            if (worker.isFreeWorker()) return worker;
+        if (!taskEntries.isEmpty() && getCurrentThreadSize() <= 1) return false;
 
-        return null;
+        workers.remove(worker);
+        return true;
     }
 
     private <V> TaskEntryFuture<V> offerEntry(TaskEntry<V> entry)
     {
-        this.taskEntries.offer(entry);
+        this.taskEntries.offer(new ScheduledEntry(entry, entrySequence.incrementAndGet()));
         checkEnougthThreads();
         return entry.drop();
     }
 
     /* =================================== */
 
+    /**
+     * Queue element of a task entry. The delay is taken from the entry when it is queued, entries with the same
+     * due time are handed out in the order they were queued.
+     */
+    protected static final class ScheduledEntry implements Delayed {
+
+        private final TaskEntry<?> taskEntry;
+
+        private final long sequence, triggerNanos;
+
+        ScheduledEntry(TaskEntry<?> taskEntry, long sequence)
+        {
+            this.taskEntry = taskEntry;
+            this.sequence = sequence;
+            this.triggerNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, taskEntry.delayTimeOut - System.currentTimeMillis()));
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit)
+        {
+            return unit.convert(triggerNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o)
+        {
+            if (o == this) return 0;
+
+            ScheduledEntry other = (ScheduledEntry) o;
+
+            if (triggerNanos != other.triggerNanos) return triggerNanos < other.triggerNanos ? -1 : 1;
+
+            return sequence < other.sequence ? -1 : 1;
+        }
+    }
+
     public class Worker extends Thread {
 
         volatile TaskEntry<?> taskEntry = null;
 
-        private long liveTimeStamp = System.currentTimeMillis();
-
         Worker()
         {
             super(threadGroup, threadGroup.getName() + "#" + threadId.addAndGet(1));
@@ -595,100 +639,69 @@ public class TaskScheduler {
         }
 
         @Override
-        public synchronized void run()
+        public void run()
         {
-            while ((liveTimeStamp + threadLiveMillis) > System.currentTimeMillis())
+            while (!isInterrupted())
             {
-                execute();
-                sleepUninterruptedly(sleepThreadSwitch);
-            }
-
-            workers.remove(this);
-        }
-
-        public synchronized void execute()
-        {
-            while (!taskEntries.isEmpty() && !isInterrupted())
-            {
-                taskEntry = taskEntries.poll();
-
-                if (taskEntry == null || taskEntry.task == null) continue;
-
-                liveTimeStamp = System.currentTimeMillis();
-
-                if (taskEntry.delayTimeOut != 0 && System.currentTimeMillis() < taskEntry.delayTimeOut)
-                {
-                    if (maxThreads != 1)
-                    {
-                        long difference = taskEntry.delayTimeOut - System.currentTimeMillis();
-
-                        if (difference > sleepThreadSwitch)
-                        {
-                            sleepUninterruptedly(sleepThreadSwitch - 1);
-                            offerEntry(taskEntry);
-                            continue;
-
-                        } else sleepUninterruptedly(difference);
-                    } else
-                    {
-                        sleepUninterruptedly(sleepThreadSwitch);
-                        offerEntry(taskEntry);
-                        continue;
-                    }
-                }
+                ScheduledEntry scheduledEntry;
 
+                idleWorkers.incrementAndGet();
                 try
                 {
-                    taskEntry.invoke();
-                } catch (Exception e)
+                    scheduledEntry = taskEntries.poll(threadLiveMillis, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e)
+                {
+                    break;
+                } finally
                 {
-                    logger.log(Level.SEVERE, "Error on handling Task on Thread [" + getName() + "]", e);
+                    idleWorkers.decrementAndGet();
                 }
 
-                if (checkEntry())
-                    taskEntry = null;
+                if (scheduledEntry != null)
+                    invoke(scheduledEntry.taskEntry);
+                else if (retireWorker(this))
+                    return;
             }
+
+            workers.remove(this);
         }
 
-        public TaskEntry<?> getTaskEntry()
+        /**
+         * Runs every entry that is due right now on the calling thread without waiting for further entries.
+         */
+        public void execute()
         {
-            return taskEntry;
-        }
+            ScheduledEntry scheduledEntry;
 
+            while (!isInterrupted() && (scheduledEntry = taskEntries.poll()) != null)
+                invoke(scheduledEntry.taskEntry);
+        }
 
-        private void offerEntry(TaskEntry<?> entry)
+        public TaskEntry<?> getTaskEntry()
         {
-            taskEntries.offer(taskEntry);
-            taskEntry = null;
+            return taskEntry;
         }
 
 
-        private boolean checkEntry()
+        private void invoke(TaskEntry<?> entry)
         {
-            if (taskEntry.repeat == -1)
-            {
-                offerEntry(taskEntry);
-                return false;
-            }
-
-            if (taskEntry.repeat > 0)
-            {
-                offerEntry(taskEntry);
-                return false;
-            }
-
-            return true;
-        }
+            if (entry.task == null) return;
 
+            taskEntry = entry;
 
-        private synchronized void sleepUninterruptedly(long millis)
-        {
             try
             {
-                Thread.sleep(millis);
-            } catch (InterruptedException e)
+                entry.invoke();
+            } catch (Exception e)
             {
+                logger.log(Level.SEVERE, "Error on handling Task on Thread [" + getName() + "]", e);
+                entry.delayTimeOut = System.currentTimeMillis() + entry.delay;
             }
+
+            taskEntry = null;
+
+            if (entry.repeat != 0 && entry.task != null)
+                taskEntries.offer(new ScheduledEntry(entry, entrySequence.incrementAndGet()));
         }
 
     }
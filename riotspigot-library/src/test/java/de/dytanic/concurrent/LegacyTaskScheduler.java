@@ -0,0 +1,157 @@
+package de.dytanic.concurrent;
+
+import java.util.Collection;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The polling TaskScheduler as it was before the workers parked on a delay queue, reduced to what the benchmarks use.
+ * Workers sleep sleepThreadSwitch ms between polls and delayed entries are re-queued by sleeping and offering them
+ * again. Only kept as the baseline of the {@link TaskSchedulerBenchmark}.
+ */
+public class LegacyTaskScheduler {
+
+    protected final ThreadGroup threadGroup = new ThreadGroup("LegacyTaskScheduler-Group");
+
+    protected final AtomicLong threadId = new AtomicLong(0);
+
+    protected final long sleepThreadSwitch;
+
+    protected final long threadLiveMillis;
+
+    protected final int maxThreads;
+
+    protected final Deque<TaskEntry<?>> taskEntries = new ConcurrentLinkedDeque<>();
+
+    protected final Collection<Worker> workers = new ConcurrentLinkedQueue<>();
+
+    public LegacyTaskScheduler(int maxThreads)
+    {
+        this(maxThreads, 10, 10000L);
+    }
+
+    public LegacyTaskScheduler(int maxThreads, long sleepThreadSwitch, long threadLiveMillis)
+    {
+        this.maxThreads = maxThreads;
+        this.sleepThreadSwitch = sleepThreadSwitch;
+        this.threadLiveMillis = threadLiveMillis;
+    }
+
+    public TaskEntryFuture<Void> schedule(final Runnable runnable, long delay)
+    {
+        TaskEntry<Void> entry = new TaskEntry<>(new java.util.concurrent.Callable<Void>() {
+            @Override
+            public Void call() throws Exception
+            {
+                runnable.run();
+                return null;
+            }
+        }, null, delay, 0);
+
+        taskEntries.offer(entry);
+        checkEnougthThreads();
+        return entry.drop();
+    }
+
+    public void shutdown()
+    {
+        for (Worker worker : workers)
+            worker.interrupt();
+
+        taskEntries.clear();
+        workers.clear();
+    }
+
+    private void checkEnougthThreads()
+    {
+        if (workers.size() < maxThreads)
+        {
+            Worker worker = new Worker();
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    public class Worker extends Thread {
+
+        volatile TaskEntry<?> taskEntry = null;
+
+        private long liveTimeStamp = System.currentTimeMillis();
+
+        Worker()
+        {
+            super(threadGroup, threadGroup.getName() + "#" + threadId.addAndGet(1));
+            setDaemon(true);
+        }
+
+        @Override
+        public synchronized void run()
+        {
+            while ((liveTimeStamp + threadLiveMillis) > System.currentTimeMillis() && !isInterrupted())
+            {
+                execute();
+                sleepUninterruptedly(sleepThreadSwitch);
+            }
+
+            workers.remove(this);
+        }
+
+        public synchronized void execute()
+        {
+            while (!taskEntries.isEmpty() && !isInterrupted())
+            {
+                taskEntry = taskEntries.poll();
+
+                if (taskEntry == null || taskEntry.task == null) continue;
+
+                liveTimeStamp = System.currentTimeMillis();
+
+                if (taskEntry.delayTimeOut != 0 && System.currentTimeMillis() < taskEntry.delayTimeOut)
+                {
+                    if (maxThreads != 1)
+                    {
+                        long difference = taskEntry.delayTimeOut - System.currentTimeMillis();
+
+                        if (difference > sleepThreadSwitch)
+                        {
+                            sleepUninterruptedly(sleepThreadSwitch - 1);
+                            taskEntries.offer(taskEntry);
+                            taskEntry = null;
+                            continue;
+
+                        } else sleepUninterruptedly(Math.max(0, difference)); // the original could pass a negative value and lose the worker
+                    } else
+                    {
+                        sleepUninterruptedly(sleepThreadSwitch);
+                        taskEntries.offer(taskEntry);
+                        taskEntry = null;
+                        continue;
+                    }
+                }
+
+                try
+                {
+                    taskEntry.invoke();
+                } catch (Exception e)
+                {
+                    e.printStackTrace();
+                }
+
+                taskEntry = null;
+            }
+        }
+
+        private void sleepUninterruptedly(long millis)
+        {
+            try
+            {
+                Thread.sleep(millis);
+            } catch (InterruptedException e)
+            {
+                interrupt();
+            }
+        }
+    }
+}
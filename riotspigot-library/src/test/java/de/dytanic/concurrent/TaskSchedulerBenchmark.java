@@ -0,0 +1,104 @@
+package de.dytanic.concurrent;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the parking TaskScheduler with the polling {@link LegacyTaskScheduler} it replaced. Run with
+ * mvn -P benchmarks -pl riotspigot-library verify
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TaskSchedulerBenchmark {
+
+    private static final int BATCH_SIZE = 10000;
+
+    @Param({"parking", "polling"})
+    public String scheduler;
+
+    private TaskScheduler taskScheduler;
+
+    private LegacyTaskScheduler legacyTaskScheduler;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        if (scheduler.equals("parking"))
+            taskScheduler = new TaskScheduler(4);
+        else
+            legacyTaskScheduler = new LegacyTaskScheduler(4);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        if (taskScheduler != null) taskScheduler.shutdown();
+        if (legacyTaskScheduler != null) legacyTaskScheduler.shutdown();
+    }
+
+    /**
+     * Time until a batch of 10k zero delay tasks has been run.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void batch() throws InterruptedException
+    {
+        CountDownLatch latch = new CountDownLatch(BATCH_SIZE);
+        Runnable countDown = countDown(latch);
+
+        for (int i = 0; i < BATCH_SIZE; i++)
+            schedule(countDown, 0);
+
+        latch.await();
+    }
+
+    /**
+     * Time from scheduling a single zero delay task on an idle scheduler until it has run.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void latency() throws InterruptedException
+    {
+        CountDownLatch latch = new CountDownLatch(1);
+        schedule(countDown(latch), 0);
+        latch.await();
+    }
+
+    /**
+     * Time from scheduling a task with a 5ms delay until it has run, everything above 5ms is jitter.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void delayed() throws InterruptedException
+    {
+        CountDownLatch latch = new CountDownLatch(1);
+        schedule(countDown(latch), 5);
+        latch.await();
+    }
+
+    private void schedule(Runnable runnable, long delay)
+    {
+        if (taskScheduler != null)
+            taskScheduler.schedule(runnable, delay);
+        else
+            legacyTaskScheduler.schedule(runnable, delay);
+    }
+
+    private static Runnable countDown(final CountDownLatch latch)
+    {
+        return new Runnable() {
+            @Override
+            public void run()
+            {
+                latch.countDown();
+            }
+        };
+    }
+}
@@ -0,0 +1,134 @@
+package de.dytanic.concurrent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TaskSchedulerTest {
+
+    private TaskScheduler taskScheduler;
+
+    @Before
+    public void setUp()
+    {
+        taskScheduler = new TaskScheduler(2);
+    }
+
+    @After
+    public void tearDown()
+    {
+        taskScheduler.shutdown();
+    }
+
+    @Test
+    public void testDelayedEntriesRunInDueOrder() throws Exception
+    {
+        final List<Integer> order = new CopyOnWriteArrayList<>();
+        final CountDownLatch latch = new CountDownLatch(3);
+
+        taskScheduler.schedule(record(order, latch, 3), 90);
+        taskScheduler.schedule(record(order, latch, 1), 10);
+        taskScheduler.schedule(record(order, latch, 2), 50);
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertEquals(java.util.Arrays.asList(1, 2, 3), order);
+    }
+
+    @Test
+    public void testDelayIsRespected() throws Exception
+    {
+        final CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+
+        taskScheduler.schedule(record(new CopyOnWriteArrayList<Integer>(), latch, 0), 40);
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 40);
+    }
+
+    @Test
+    public void testRepeatsAreRun() throws Exception
+    {
+        final AtomicInteger counter = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(3);
+
+        taskScheduler.schedule(new Runnable() {
+            @Override
+            public void run()
+            {
+                counter.incrementAndGet();
+                latch.countDown();
+            }
+        }, 5, 3);
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        assertEquals(3, counter.get());
+    }
+
+    @Test
+    public void testFutureReturnsValue() throws Exception
+    {
+        TaskEntryFuture<String> future = taskScheduler.schedule(new Callable<String>() {
+            @Override
+            public String call() throws Exception
+            {
+                return "value";
+            }
+        }, 10);
+
+        assertEquals("value", future.get(2, TimeUnit.SECONDS));
+        assertTrue(future.isDone());
+    }
+
+    @Test
+    public void testIdleWorkersPark() throws Exception
+    {
+        final CountDownLatch latch = new CountDownLatch(1);
+        taskScheduler.schedule(record(new CopyOnWriteArrayList<Integer>(), latch, 0), 0);
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        Thread.sleep(50);
+
+        assertTrue(taskScheduler.getCurrentThreadSize() > 0);
+        assertEquals(taskScheduler.getCurrentThreadSize(), taskScheduler.idleWorkers.get());
+
+        for (TaskScheduler.Worker worker : taskScheduler.workers)
+            assertEquals(Thread.State.TIMED_WAITING, worker.getState());
+    }
+
+    @Test
+    public void testIdleWorkerIsReused() throws Exception
+    {
+        for (int i = 0; i < 10; i++)
+        {
+            CountDownLatch latch = new CountDownLatch(1);
+            taskScheduler.schedule(record(new CopyOnWriteArrayList<Integer>(), latch, i), 0);
+            assertTrue(latch.await(2, TimeUnit.SECONDS));
+            Thread.sleep(5);
+        }
+
+        assertEquals(1, taskScheduler.getCurrentThreadSize());
+    }
+
+    private static Runnable record(final List<Integer> order, final CountDownLatch latch, final int value)
+    {
+        return new Runnable() {
+            @Override
+            public void run()
+            {
+                order.add(value);
+                latch.countDown();
+            }
+        };
+    }
+}
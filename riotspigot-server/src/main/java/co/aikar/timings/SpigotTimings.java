@@ -14,6 +14,10 @@ public final class SpigotTimings {
     public static final Timing minecraftSchedulerTimer = Timings.ofSafe("Minecraft Scheduler");
     public static final Timing bukkitSchedulerTimer = Timings.ofSafe("Bukkit Scheduler");
     public static final Timing chunkIOTickTimer = Timings.ofSafe("ChunkIOTick");
+    public static final Timing chunkLoadQueueTimer = Timings.ofSafe("Chunk Load Queue"); // Dytanic
+    public static final Timing chunkGenerationTimer = Timings.ofSafe("Chunk Generation"); // Dytanic
+    public static final Timing pregeneratorTimer = Timings.ofSafe("World Pre-generation"); // Dytanic
+    public static final Timing benchmarkTimer = Timings.ofSafe("Benchmark"); // Dytanic
     public static final Timing timeUpdateTimer = Timings.ofSafe("Time Update");
     public static final Timing serverCommandTimer = Timings.ofSafe("Server Command");
     public static final Timing worldSaveTimer = Timings.ofSafe("World Save");
@@ -76,6 +80,33 @@ public final class SpigotTimings {
         return Timings.ofSafe(plugin, name);
     }
 
+    //Dytanic start
+    /**
+     * Gets the timers for the time the async tasks of a plugin ran and waited in the queue.
+     * @param plugin
+     * @return the run timer and the queue wait timer
+     */
+    public static Timing[] getPluginAsyncTimings(Plugin plugin) {
+        return new Timing[] {
+            Timings.ofSafe(plugin.getName(), "Async Tasks", null),
+            Timings.ofSafe(plugin.getName(), "Async Tasks - Queue Wait", null)
+        };
+    }
+
+    /**
+     * Records time which was measured on another thread, has to be called by the main thread.
+     * @param timing
+     * @param nanos
+     */
+    public static void record(Timing timing, long nanos) {
+        TimingHandler handler = timing.getTimingHandler();
+
+        if (nanos > 0 && handler.enabled) {
+            handler.addDiff(nanos);
+        }
+    }
+    //Dytanic end
+
     /**
      * Get a named timer for the specified entity type to track type specific timings.
      * @param entity
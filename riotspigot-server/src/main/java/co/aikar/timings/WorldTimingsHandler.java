@@ -23,6 +23,8 @@ public class WorldTimingsHandler {
     public final Timing tileEntityTick;
     public final Timing tileEntityPending;
     public final Timing tracker;
+    public final Timing trackerEntries; //Dytanic
+    public final Timing trackerPlayers; //Dytanic
     public final Timing doTick;
     public final Timing tickEntities;
 
@@ -63,6 +65,8 @@ public class WorldTimingsHandler {
         syncChunkLoadPostTimer = Timings.ofSafe(name + "chunkLoad - Post");
 
         tracker = Timings.ofSafe(name + "tracker");
+        trackerEntries = Timings.ofSafe(name + "tracker - Entries"); //Dytanic
+        trackerPlayers = Timings.ofSafe(name + "tracker - Moved Players"); //Dytanic
         doTick = Timings.ofSafe(name + "doTick");
         tickEntities = Timings.ofSafe(name + "tickEntities");
     }
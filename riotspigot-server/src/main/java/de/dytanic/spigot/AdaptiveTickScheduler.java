@@ -0,0 +1,135 @@
+package de.dytanic.spigot;
+
+import org.spigotmc.SpigotConfig;
+
+/**
+ * Measures the phases of every server tick against the 50ms budget and degrades single subsystems while the
+ * server can't keep up, instead of skipping whole ticks. The level rises one step after the average tick time
+ * stayed above the degrade threshold for the configured amount of ticks and falls the same way below the recover
+ * threshold, so short spikes don't toggle anything.
+ * <p>
+ * Level 1 throttles mob spawning, level 2 additionally budgets tile entity ticking and level 3 additionally shrinks
+ * the entity activation ranges.
+ */
+public class AdaptiveTickScheduler {
+
+    public static final long TICK_BUDGET_NANOS = 50000000L;
+
+    public static final int MAX_LEVEL = 3;
+
+    private static final double SMOOTHING = 0.05D;
+
+    private final long[] phaseNanos = new long[Phase.values().length];
+
+    private final double[] phaseAverages = new double[Phase.values().length];
+
+    private double tickAverage;
+
+    private volatile int level;
+
+    private int pendingTicks;
+
+    /**
+     * Adds the time spent in the phase to the current tick, a phase can be recorded multiple times per tick and by
+     * multiple world tick threads.
+     */
+    public synchronized void record(Phase phase, long nanos)
+    {
+        phaseNanos[phase.ordinal()] += nanos;
+    }
+
+    /**
+     * Closes the current tick and updates the degradation level, called once at the end of each server tick.
+     *
+     * @param tickNanos the duration of the whole tick
+     */
+    public synchronized void endTick(long tickNanos)
+    {
+        tickAverage += (tickNanos - tickAverage) * SMOOTHING;
+
+        for (int i = 0; i < phaseNanos.length; i++)
+        {
+            phaseAverages[i] += (phaseNanos[i] - phaseAverages[i]) * SMOOTHING;
+            phaseNanos[i] = 0L;
+        }
+
+        co.aikar.timings.TimingHistory.tickDegradationTicks += level;
+
+        if (!SpigotConfig.adaptiveTickEnabled)
+        {
+            level = 0;
+            pendingTicks = 0;
+            return;
+        }
+
+        double usage = tickAverage * 100D / TICK_BUDGET_NANOS;
+
+        if (usage >= SpigotConfig.adaptiveTickDegradeAt && level < MAX_LEVEL)
+            pendingTicks = pendingTicks > 0 ? pendingTicks + 1 : 1;
+        else if (usage <= SpigotConfig.adaptiveTickRecoverAt && level > 0)
+            pendingTicks = pendingTicks < 0 ? pendingTicks - 1 : -1;
+        else
+            pendingTicks = 0;
+
+        if (Math.abs(pendingTicks) >= SpigotConfig.adaptiveTickLevelChangeTicks)
+        {
+            level += pendingTicks > 0 ? 1 : -1;
+            pendingTicks = 0;
+        }
+    }
+
+    public int getLevel()
+    {
+        return level;
+    }
+
+    /**
+     * @return the smoothed duration of a whole tick in milliseconds
+     */
+    public double getAverageTickTime()
+    {
+        return tickAverage / 1000000D;
+    }
+
+    /**
+     * @return the smoothed duration of the phase per tick in milliseconds
+     */
+    public double getAveragePhaseTime(Phase phase)
+    {
+        return phaseAverages[phase.ordinal()] / 1000000D;
+    }
+
+    /**
+     * @return whether the spawner runs this tick, on level 1 and above only every spawn interval ticks, doubled per further level
+     */
+    public boolean shouldSpawnMobs(long tick)
+    {
+        int level = this.level;
+
+        return level == 0 || tick % ((long) SpigotConfig.adaptiveTickSpawnInterval << (level - 1)) == 0L;
+    }
+
+    /**
+     * @return whether tile entities are ticked round robin within the tile tick budget of their world
+     */
+    public boolean limitTileEntities()
+    {
+        return level >= 2;
+    }
+
+    /**
+     * @return the activation range to use for this tick
+     */
+    public int scaleActivationRange(int range)
+    {
+        return level >= 3 ? (int) (range * SpigotConfig.adaptiveTickActivationRangeScale) : range;
+    }
+
+    public enum Phase {
+
+        WORLD_TICK,
+        ENTITY_TICK,
+        TRACKER,
+        CHUNK_IO
+    }
+}
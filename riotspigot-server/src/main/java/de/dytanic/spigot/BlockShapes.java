@@ -0,0 +1,130 @@
+package de.dytanic.spigot;
+
+import net.minecraft.server.AxisAlignedBB;
+import net.minecraft.server.Block;
+import net.minecraft.server.BlockBed;
+import net.minecraft.server.BlockBrewingStand;
+import net.minecraft.server.BlockButtonAbstract;
+import net.minecraft.server.BlockChest;
+import net.minecraft.server.BlockEnchantmentTable;
+import net.minecraft.server.BlockEnderChest;
+import net.minecraft.server.BlockFenceGate;
+import net.minecraft.server.BlockFluids;
+import net.minecraft.server.BlockLever;
+import net.minecraft.server.BlockMinecartTrackAbstract;
+import net.minecraft.server.BlockPlant;
+import net.minecraft.server.BlockPosition;
+import net.minecraft.server.BlockRedstoneWire;
+import net.minecraft.server.BlockReed;
+import net.minecraft.server.BlockSign;
+import net.minecraft.server.BlockSlowSand;
+import net.minecraft.server.BlockTorch;
+import net.minecraft.server.BlockTripwire;
+import net.minecraft.server.BlockTripwireHook;
+import net.minecraft.server.BlockVine;
+import net.minecraft.server.Blocks;
+import net.minecraft.server.Entity;
+import net.minecraft.server.IBlockAccess;
+import net.minecraft.server.IBlockData;
+import net.minecraft.server.World;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The collision shapes of all block states, indexed by the ids of the chunk sections. A block whose class doesn't
+ * change the collision box or the bounds of Block is a full cube, a block which inherits the collision box of a
+ * class without one, like fluids and plants, is empty. Both are checked without asking the block, every other block
+ * is asked with its position.
+ */
+public final class BlockShapes {
+
+    public static final byte EMPTY = 0, FULL = 1, CUSTOM = 2;
+
+    private static final byte[] SHAPES = new byte[1 << 16];
+
+    /**
+     * The blocks which falling blocks and TNT collide with if fallingBlocksCollideWithSigns is enabled
+     */
+    private static final boolean[] FALLING_SOLID = new boolean[1 << 16];
+
+    /**
+     * Classes whose collision box is always null
+     */
+    private static final List<Class<?>> EMPTY_CLASSES = Arrays.<Class<?>>asList(BlockFluids.class, BlockPlant.class,
+            BlockRedstoneWire.class, BlockMinecartTrackAbstract.class, BlockReed.class, BlockVine.class);
+
+    static
+    {
+        Map<Block, Byte> shapes = new IdentityHashMap<>();
+
+        for (int id = 0; id < SHAPES.length; id++)
+        {
+            IBlockData iblockdata = Block.d.a(id);
+
+            if (iblockdata == null || iblockdata.getBlock() == Blocks.AIR) continue;
+
+            Block block = iblockdata.getBlock();
+            Byte shape = shapes.get(block);
+
+            if (shape == null)
+                shapes.put(block, shape = getShape(block));
+
+            SHAPES[id] = shape;
+            FALLING_SOLID[id] = block instanceof BlockSign || block instanceof BlockFenceGate || block instanceof BlockTorch
+                    || block instanceof BlockButtonAbstract || block instanceof BlockLever || block instanceof BlockTripwireHook
+                    || block instanceof BlockTripwire || block instanceof BlockChest || block instanceof BlockSlowSand
+                    || block instanceof BlockBed || block instanceof BlockEnderChest || block instanceof BlockEnchantmentTable
+                    || block instanceof BlockBrewingStand;
+        }
+    }
+
+    private BlockShapes()
+    {
+    }
+
+    /**
+     * @param id the id of the block state in a chunk section
+     * @return {@link #EMPTY}, {@link #FULL} or {@link #CUSTOM}
+     */
+    public static byte getShape(char id)
+    {
+        return SHAPES[id];
+    }
+
+    public static boolean isFallingSolid(char id)
+    {
+        return FALLING_SOLID[id];
+    }
+
+    private static boolean isFullCube(Block block)
+    {
+        return block.B() == 0.0D && block.D() == 0.0D && block.F() == 0.0D && block.C() == 1.0D && block.E() == 1.0D && block.G() == 1.0D;
+    }
+
+    private static byte getShape(Block block)
+    {
+        Class<?> clazz = block.getClass();
+
+        try
+        {
+            if (clazz.getMethod("a", World.class, BlockPosition.class, IBlockData.class, AxisAlignedBB.class, List.class, Entity.class).getDeclaringClass() != Block.class)
+                return CUSTOM;
+
+            Class<?> box = clazz.getMethod("a", World.class, BlockPosition.class, IBlockData.class).getDeclaringClass();
+
+            if (EMPTY_CLASSES.contains(box)) return EMPTY;
+
+            // Without an own collision box the bounds are the box, they only change if the block updates its shape
+            return box == Block.class
+                    && clazz.getMethod("updateShape", IBlockAccess.class, BlockPosition.class).getDeclaringClass() == Block.class
+                    && clazz.getMethod("j").getDeclaringClass() == Block.class
+                    && isFullCube(block) ? FULL : CUSTOM;
+        } catch (NoSuchMethodException ex)
+        {
+            return CUSTOM;
+        }
+    }
+}
@@ -17,6 +17,8 @@ public class ChunkCallable implements Callable<Chunk> {
 
     private Consumer<Chunk> callback;
 
+    private double priority;
+
     public ChunkCallable(ChunkProviderServer chunkProvider, int x, int z)
     {
         this.chunkProvider = chunkProvider;
@@ -47,13 +49,47 @@ public class ChunkCallable implements Callable<Chunk> {
         };
     }
 
-    private Chunk load()
+    public ChunkProviderServer getChunkProvider()
     {
-        Chunk chunk = this.chunkProvider.getChunkAt(this.x, this.z);
+        return chunkProvider;
+    }
 
-        if(chunk != null && callback != null) callback.accept(chunk);
+    public int getX()
+    {
+        return x;
+    }
 
-        return chunk;
+    public int getZ()
+    {
+        return z;
+    }
+
+    double getPriority()
+    {
+        return priority;
+    }
+
+    void setPriority(double priority)
+    {
+        this.priority = priority;
+    }
+
+    /**
+     * Appends the callback of an identical request, so that both are notified by a single load.
+     */
+    void merge(ChunkCallable other)
+    {
+        if (other.callback == null) return;
+
+        this.callback = this.callback == null ? other.callback : this.callback.andThen(other.callback);
+    }
+
+    /**
+     * @return the chunk, or null if it is generated off the main thread and the callback is called later
+     */
+    private Chunk load()
+    {
+        return this.chunkProvider.getOrGenerateChunkAt(this.x, this.z, callback);
     }
 
     @Override
@@ -61,4 +97,20 @@ public class ChunkCallable implements Callable<Chunk> {
     {
         return load();
     }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) return true;
+        if (!(o instanceof ChunkCallable)) return false;
+
+        ChunkCallable that = (ChunkCallable) o;
+        return x == that.x && z == that.z && chunkProvider == that.chunkProvider;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return 31 * (31 * System.identityHashCode(chunkProvider) + x) + z;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,319 @@
+package de.dytanic.spigot;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import de.dytanic.log.DytanicLogger;
+import net.minecraft.server.Chunk;
+import net.minecraft.server.ChunkProviderGenerate;
+import net.minecraft.server.ChunkProviderServer;
+import net.minecraft.server.IChunkProvider;
+import net.minecraft.server.WorldChunkManager;
+import org.bukkit.craftbukkit.generator.NormalChunkGenerator;
+import org.bukkit.craftbukkit.util.LongHash;
+import org.spigotmc.SpigotConfig;
+import org.spigotmc.TickLimiter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Generates the new chunks of one world on the chunk generation threads. Every thread builds the terrain, surface,
+ * caves and ravines and the initial sky light with its own copy of the generator, the main thread only records the
+ * structures, adds the chunk to the world and populates it like a chunk loaded from disk. Only the vanilla overworld
+ * generator is supported, the chunks of other generators are still generated on the main thread.
+ */
+public class ChunkGenerationPipeline {
+
+    public enum Stage
+    {
+        QUEUED,
+        NOISE,
+        SURFACE,
+        CARVERS,
+        LIGHT,
+        /**
+         * Waits for the main thread, which populates the chunk once its neighbours are loaded
+         */
+        GENERATED
+    }
+
+    private static final DytanicLogger LOGGER = DytanicLogger.getInstance();
+
+    private static ExecutorService executor;
+
+    private final ChunkProviderServer chunkProviderServer;
+
+    private final ChunkProviderGenerate generator;
+
+    private final ThreadLocal<ChunkProviderGenerate> generators = new ThreadLocal<ChunkProviderGenerate>() {
+        @Override
+        protected ChunkProviderGenerate initialValue()
+        {
+            return generator.copy();
+        }
+    };
+
+    // Main thread only
+    private final Map<Long, Task> tasks = new HashMap<>();
+
+    // Tasks whose chunk was loaded by await and which are not drained yet, main thread only
+    private final Map<Long, Task> awaited = new HashMap<>();
+
+    private final Queue<Task> generated = new ConcurrentLinkedQueue<>();
+
+    private TickLimiter limiter;
+
+    private int limiterTime = -1;
+
+    private ChunkGenerationPipeline(ChunkProviderServer chunkProviderServer, ChunkProviderGenerate generator)
+    {
+        this.chunkProviderServer = chunkProviderServer;
+        this.generator = generator;
+    }
+
+    /**
+     * @return the pipeline for the generator of the world, or null if its chunks have to be generated on the main thread
+     */
+    public static ChunkGenerationPipeline create(ChunkProviderServer chunkProviderServer, IChunkProvider chunkProvider)
+    {
+        if (SpigotConfig.chunkGenerationThreads <= 0 || !(chunkProvider instanceof NormalChunkGenerator)) return null;
+
+        IChunkProvider provider = ((NormalChunkGenerator) chunkProvider).getProvider();
+
+        // The copies of the generator need their own biome layers, which only the default biome source can provide
+        if (provider.getClass() != ChunkProviderGenerate.class || chunkProviderServer.world.getWorldChunkManager().getClass() != WorldChunkManager.class)
+            return null;
+
+        return new ChunkGenerationPipeline(chunkProviderServer, (ChunkProviderGenerate) provider);
+    }
+
+    private static synchronized ExecutorService executor()
+    {
+        if (executor == null)
+        {
+            ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(SpigotConfig.chunkGenerationThreads, SpigotConfig.chunkGenerationThreads,
+                    60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactoryBuilder().setNameFormat("Chunk Generation Thread - %1$d").setDaemon(true).setPriority(Thread.NORM_PRIORITY - 1).build());
+
+            threadPoolExecutor.allowCoreThreadTimeOut(true);
+            executor = threadPoolExecutor;
+        }
+
+        return executor;
+    }
+
+    /**
+     * Generates the chunk, or joins its running generation. Main thread only.
+     *
+     * @param callback called on the main thread with the loaded chunk, may be null
+     */
+    public void generate(int x, int z, Consumer<Chunk> callback)
+    {
+        submit(x, z, callback);
+    }
+
+    /**
+     * @param callback run on the main thread once the chunk is loaded, may be null
+     * @see #drop(int, int, Runnable)
+     */
+    public void generate(int x, int z, Runnable callback)
+    {
+        submit(x, z, callback);
+    }
+
+    private void submit(final int x, final int z, Object callback)
+    {
+        long key = LongHash.toLong(x, z);
+        Task task = tasks.get(key);
+
+        if (task == null)
+        {
+            final Task created = task = new Task(x, z);
+
+            tasks.put(key, task);
+            executor().execute(new Runnable() {
+                @Override
+                public void run()
+                {
+                    if (created.claimed.compareAndSet(false, true))
+                        generateClaimed(created);
+                }
+            });
+        }
+
+        if (callback != null)
+            task.callbacks.add(callback);
+    }
+
+    /**
+     * Generates the chunk of the claimed task on the calling thread and queues it for the main thread
+     */
+    private void generateClaimed(Task task)
+    {
+        try
+        {
+            task.future.complete(generators.get().generate(task.x, task.z, task));
+        } catch (Throwable throwable)
+        {
+            task.future.completeExceptionally(throwable);
+        }
+
+        task.setStage(Stage.GENERATED);
+        generated.add(task);
+    }
+
+    /**
+     * Drops a callback which isn't interested in the chunk anymore. The chunk is loaded anyway.
+     */
+    public void drop(int x, int z, Runnable callback)
+    {
+        long key = LongHash.toLong(x, z);
+        Task task = tasks.get(key);
+
+        if (task == null) task = awaited.get(key);
+
+        if (task != null)
+            task.callbacks.remove(callback);
+    }
+
+    /**
+     * Waits for the chunk if it is generated right now, for a load which can't wait for the callback. A chunk which
+     * still waits for a generation thread is generated on the calling thread instead. Main thread only.
+     *
+     * @return the generated chunk without structures, or null if it isn't generated by the pipeline or failed
+     */
+    public Chunk await(int x, int z)
+    {
+        long key = LongHash.toLong(x, z);
+        Task task = tasks.remove(key);
+
+        if (task == null) return null;
+
+        awaited.put(key, task);
+
+        if (task.claimed.compareAndSet(false, true))
+            generateClaimed(task);
+
+        try
+        {
+            Chunk chunk = task.future.join();
+
+            generator.recreateStructures(chunk, x, z);
+            return chunk;
+        } catch (CompletionException ex)
+        {
+            LOGGER.error("Couldn't generate chunk " + x + ", " + z + " on a generation thread", ex.getCause());
+            return null;
+        }
+    }
+
+    /**
+     * Loads the generated chunks into the world and notifies their callbacks, at least one per call, more while the
+     * chunk load budget of the tick allows it. The chunk of an awaited task which was unloaded in the meantime is only
+     * loaded again if a callback still waits for it. Main thread only.
+     *
+     * @return the amount of loaded chunks
+     */
+    public int drain()
+    {
+        if (generated.isEmpty()) return 0;
+
+        if (limiterTime != SpigotConfig.chunkLoadQueueMaxTime)
+        {
+            limiterTime = SpigotConfig.chunkLoadQueueMaxTime;
+            limiter = new TickLimiter(limiterTime);
+        }
+
+        limiter.initTick();
+
+        int loaded = 0;
+        Task task;
+
+        while ((loaded == 0 || limiter.shouldContinue()) && (task = generated.poll()) != null)
+        {
+            long key = LongHash.toLong(task.x, task.z);
+            Chunk chunk;
+
+            if (awaited.remove(key, task))
+            {
+                chunk = chunkProviderServer.getChunkIfLoaded(task.x, task.z);
+
+                if (chunk == null)
+                {
+                    if (task.callbacks.isEmpty()) continue;
+
+                    chunk = chunkProviderServer.getChunkAt(task.x, task.z);
+                }
+            } else
+            {
+                // Loads the chunk through await
+                chunk = chunkProviderServer.getChunkAt(task.x, task.z);
+
+                // The chunk may have been loaded from disk without await, later requests must not join the drained task
+                tasks.remove(key, task);
+            }
+
+            for (Object callback : task.callbacks)
+                try
+                {
+                    if (callback instanceof Runnable)
+                        ((Runnable) callback).run();
+                    else
+                        ((Consumer<Chunk>) callback).accept(chunk);
+                } catch (Exception ex)
+                {
+                    ex.printStackTrace();
+                }
+
+            loaded++;
+        }
+
+        return loaded;
+    }
+
+    public static class Task {
+
+        private final int x, z;
+
+        private final CompletableFuture<Chunk> future = new CompletableFuture<>();
+
+        /**
+         * Set by the thread which generates the chunk, a generation thread or a main thread which can't wait
+         */
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        /**
+         * Runnables and consumers of the chunk, main thread only
+         */
+        private final List<Object> callbacks = new ArrayList<>(2);
+
+        private volatile Stage stage = Stage.QUEUED;
+
+        private Task(int x, int z)
+        {
+            this.x = x;
+            this.z = z;
+        }
+
+        public Stage getStage()
+        {
+            return stage;
+        }
+
+        public void setStage(Stage stage)
+        {
+            this.stage = stage;
+        }
+    }
+}
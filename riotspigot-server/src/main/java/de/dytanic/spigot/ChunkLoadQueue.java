@@ -0,0 +1,131 @@
+package de.dytanic.spigot;
+
+import net.minecraft.server.EntityHuman;
+import net.minecraft.server.World;
+import org.spigotmc.SpigotConfig;
+import org.spigotmc.TickLimiter;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chunk load requests of the main thread. Identical (world, x, z) requests are merged into one load,
+ * and each tick the pending requests closest to a player are loaded until the tick budget is spent.
+ */
+public class ChunkLoadQueue {
+
+    private static final Comparator<ChunkCallable> PRIORITY_COMPARATOR = new Comparator<ChunkCallable>() {
+        @Override
+        public int compare(ChunkCallable o1, ChunkCallable o2)
+        {
+            return Double.compare(o1.getPriority(), o2.getPriority());
+        }
+    };
+
+    private final Map<ChunkCallable, ChunkCallable> pending = new LinkedHashMap<>();
+
+    private TickLimiter limiter;
+
+    private int limiterTime = -1;
+
+    public void offer(ChunkCallable chunkCallable)
+    {
+        synchronized (pending)
+        {
+            ChunkCallable existing = pending.get(chunkCallable);
+
+            if (existing != null)
+                existing.merge(chunkCallable);
+            else
+                pending.put(chunkCallable, chunkCallable);
+        }
+    }
+
+    public int size()
+    {
+        synchronized (pending)
+        {
+            return pending.size();
+        }
+    }
+
+    public boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    /**
+     * Loads the pending chunks ordered by the distance to the nearest player in their world.
+     * At least one chunk is loaded per call, further ones only while the configured budget allows it.
+     *
+     * @return the amount of loaded chunks
+     */
+    public int drain()
+    {
+        ChunkCallable[] requests;
+
+        synchronized (pending)
+        {
+            if (pending.isEmpty()) return 0;
+
+            requests = pending.values().toArray(new ChunkCallable[pending.size()]);
+        }
+
+        for (ChunkCallable request : requests) request.setPriority(nearestPlayerDistance(request));
+
+        Arrays.sort(requests, PRIORITY_COMPARATOR);
+
+        if (limiterTime != SpigotConfig.chunkLoadQueueMaxTime)
+        {
+            limiterTime = SpigotConfig.chunkLoadQueueMaxTime;
+            limiter = new TickLimiter(limiterTime);
+        }
+
+        limiter.initTick();
+
+        int loaded = 0;
+
+        for (ChunkCallable request : requests)
+        {
+            if (loaded > 0 && !limiter.shouldContinue()) break;
+
+            synchronized (pending)
+            {
+                pending.remove(request);
+            }
+
+            try
+            {
+                request.call();
+            } catch (Exception ex)
+            {
+                ex.printStackTrace();
+            }
+
+            loaded++;
+        }
+
+        return loaded;
+    }
+
+    private static double nearestPlayerDistance(ChunkCallable request)
+    {
+        World world = request.getChunkProvider().world;
+        List<EntityHuman> players = world.players;
+
+        double centerX = (request.getX() << 4) + 8, centerZ = (request.getZ() << 4) + 8, nearest = Double.MAX_VALUE;
+
+        for (int i = 0; i < players.size(); i++)
+        {
+            EntityHuman player = players.get(i);
+            double dx = player.locX - centerX, dz = player.locZ - centerZ, distance = dx * dx + dz * dz;
+
+            if (distance < nearest) nearest = distance;
+        }
+
+        return nearest;
+    }
+}
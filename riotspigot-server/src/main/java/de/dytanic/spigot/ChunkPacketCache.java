@@ -0,0 +1,220 @@
+package de.dytanic.spigot;
+
+import net.minecraft.server.Chunk;
+import net.minecraft.server.Packet;
+import net.minecraft.server.PacketPlayOutMapChunk;
+import net.minecraft.server.PacketPlayOutMapChunkBulk;
+import net.minecraft.server.World;
+import org.spigotmc.SpigotConfig;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Chunk packets of one world, shared by all players which receive the same chunk in the same state. The chunk data
+ * is copied on the calling thread, AntiXray, serialization and compression run on the TaskScheduler. Entries are keyed
+ * by the section mask and the packet stamp of the chunk, a changed chunk never hits an old entry. The entry of a changed
+ * chunk is replaced once its next packet is built, block changes alone don't drop it.
+ */
+public class ChunkPacketCache {
+
+    private static final int FULL_MASK = 0xFFFF;
+
+    private final World world;
+
+    private final LinkedHashMap<Long, ChunkEntry> chunks = new LinkedHashMap<Long, ChunkEntry>(16, 0.75F, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, ChunkEntry> eldest)
+        {
+            return size() > SpigotConfig.chunkPacketCacheSize;
+        }
+    };
+
+    private final LinkedHashMap<BulkKey, PreparedPacket> bulks = new LinkedHashMap<BulkKey, PreparedPacket>(16, 0.75F, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<BulkKey, PreparedPacket> eldest)
+        {
+            return size() > SpigotConfig.chunkPacketCacheBulkSize;
+        }
+    };
+
+    public ChunkPacketCache(World world)
+    {
+        this.world = world;
+    }
+
+    /**
+     * @return the packet for the sections of the mask, or the whole chunk with biomes if ground up is set
+     */
+    public Packet mapChunk(Chunk chunk, boolean groundUp, int mask)
+    {
+        if (!SpigotConfig.chunkPacketCacheEnabled) return new PacketPlayOutMapChunk(chunk, groundUp, mask);
+
+        final int x = chunk.locX, z = chunk.locZ;
+        final boolean flag = groundUp;
+        int packetKey = groundUp ? mask | 1 << 16 : mask;
+
+        synchronized (this)
+        {
+            ChunkEntry entry = entry(chunk);
+            PreparedPacket preparedPacket = entry.packets.get(packetKey);
+
+            if (preparedPacket == null || preparedPacket.isFailed())
+            {
+                CompletableFuture<PacketPlayOutMapChunk.ChunkMap> chunkMap = groundUp && mask == FULL_MASK ? entry.fullChunkMap(chunk) : obfuscate(chunk, groundUp, mask);
+
+                preparedPacket = PreparedPacket.prepare(chunkMap.thenApply(new Function<PacketPlayOutMapChunk.ChunkMap, Packet>() {
+                    @Override
+                    public Packet apply(PacketPlayOutMapChunk.ChunkMap chunkMap)
+                    {
+                        return new PacketPlayOutMapChunk(x, z, flag, chunkMap);
+                    }
+                }));
+                entry.packets.put(packetKey, preparedPacket);
+            }
+
+            return new PacketPlayOutMapChunk(x, z, groundUp, preparedPacket);
+        }
+    }
+
+    /**
+     * @return the packet for all given chunks with all of their sections and biomes
+     */
+    public Packet mapChunkBulk(List<Chunk> list)
+    {
+        if (!SpigotConfig.chunkPacketCacheEnabled) return new PacketPlayOutMapChunkBulk(list);
+
+        final int size = list.size();
+        final int[] x = new int[size], z = new int[size];
+        final boolean skyLight = !world.worldProvider.o();
+
+        synchronized (this)
+        {
+            long[] key = new long[size * 2];
+            @SuppressWarnings("unchecked")
+            final CompletableFuture<PacketPlayOutMapChunk.ChunkMap>[] chunkMaps = new CompletableFuture[size];
+
+            for (int i = 0; i < size; ++i)
+            {
+                Chunk chunk = list.get(i);
+                ChunkEntry entry = entry(chunk);
+
+                x[i] = chunk.locX;
+                z[i] = chunk.locZ;
+                key[i * 2] = World.chunkToKey(chunk.locX, chunk.locZ);
+                key[i * 2 + 1] = entry.stamp;
+                chunkMaps[i] = entry.fullChunkMap(chunk);
+            }
+
+            BulkKey bulkKey = new BulkKey(key);
+            PreparedPacket preparedPacket = bulks.get(bulkKey);
+
+            if (preparedPacket == null || preparedPacket.isFailed())
+            {
+                preparedPacket = PreparedPacket.prepare(CompletableFuture.allOf(chunkMaps).thenApply(new Function<Void, Packet>() {
+                    @Override
+                    public Packet apply(Void ignored)
+                    {
+                        PacketPlayOutMapChunk.ChunkMap[] maps = new PacketPlayOutMapChunk.ChunkMap[size];
+
+                        for (int i = 0; i < size; ++i)
+                            maps[i] = chunkMaps[i].join();
+
+                        return new PacketPlayOutMapChunkBulk(x, z, maps, skyLight);
+                    }
+                }));
+                bulks.put(bulkKey, preparedPacket);
+            }
+
+            return new PacketPlayOutMapChunkBulk(x, z, skyLight, preparedPacket);
+        }
+    }
+
+    private ChunkEntry entry(Chunk chunk)
+    {
+        Long key = World.chunkToKey(chunk.locX, chunk.locZ);
+        long stamp = chunk.getPacketStamp();
+        ChunkEntry entry = chunks.get(key);
+
+        if (entry == null || entry.stamp != stamp)
+        {
+            entry = new ChunkEntry(stamp);
+            chunks.put(key, entry);
+        }
+
+        return entry;
+    }
+
+    /**
+     * Copies the chunk data on the calling thread, the copy is obfuscated on the TaskScheduler.
+     */
+    private CompletableFuture<PacketPlayOutMapChunk.ChunkMap> obfuscate(final Chunk chunk, boolean groundUp, int mask)
+    {
+        final PacketPlayOutMapChunk.ChunkMap chunkMap = PacketPlayOutMapChunk.a(chunk, groundUp, !world.worldProvider.o(), mask);
+
+        return CompletableFuture.supplyAsync(new Supplier<PacketPlayOutMapChunk.ChunkMap>() {
+            @Override
+            public PacketPlayOutMapChunk.ChunkMap get()
+            {
+                world.spigotConfig.antiXrayInstance.obfuscate(chunk.locX, chunk.locZ, chunkMap.b, chunkMap.a, world);
+                return chunkMap;
+            }
+        }, PreparedPacket.EXECUTOR);
+    }
+
+    private final class ChunkEntry {
+
+        private final long stamp;
+
+        private final Map<Integer, PreparedPacket> packets = new HashMap<>(2);
+
+        private CompletableFuture<PacketPlayOutMapChunk.ChunkMap> fullChunkMap;
+
+        private ChunkEntry(long stamp)
+        {
+            this.stamp = stamp;
+        }
+
+        private CompletableFuture<PacketPlayOutMapChunk.ChunkMap> fullChunkMap(Chunk chunk)
+        {
+            if (fullChunkMap == null || fullChunkMap.isCompletedExceptionally())
+            {
+                fullChunkMap = obfuscate(chunk, true, FULL_MASK);
+                packets.remove(FULL_MASK | 1 << 16);
+            }
+
+            return fullChunkMap;
+        }
+    }
+
+    private static final class BulkKey {
+
+        private final long[] key;
+
+        private final int hash;
+
+        private BulkKey(long[] key)
+        {
+            this.key = key;
+            this.hash = Arrays.hashCode(key);
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            return obj instanceof BulkKey && Arrays.equals(key, ((BulkKey) obj).key);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package de.dytanic.spigot;
+
+import net.minecraft.server.Chunk;
+import net.minecraft.server.ChunkSection;
+import net.minecraft.server.Entity;
+import org.bukkit.craftbukkit.util.UnsafeList;
+import org.spigotmc.SpigotConfig;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Recycles the sections with their block and light arrays and the entity slices of unloaded chunks, for the chunks
+ * which are loaded or generated later. A released chunk loses the recycled parts, a stale reference to it sees an
+ * empty chunk instead of the blocks and entities of another one.
+ */
+public class ChunkPool {
+
+    private static final List<Entity> RELEASED_SLICE = Collections.emptyList();
+
+    private static final Queue<ChunkSection> sections = new ConcurrentLinkedQueue<>();
+
+    private static final Queue<UnsafeList<Entity>> entitySlices = new ConcurrentLinkedQueue<>();
+
+    private static final AtomicInteger pooledSections = new AtomicInteger(), pooledEntitySlices = new AtomicInteger();
+
+    private ChunkPool()
+    {
+    }
+
+    /**
+     * @return an empty section, like {@code new ChunkSection(y, flag)}
+     */
+    public static ChunkSection section(int y, boolean flag)
+    {
+        ChunkSection section = sections.poll();
+
+        if (section == null) return new ChunkSection(y, flag);
+
+        pooledSections.decrementAndGet();
+        section.reuse(y, flag);
+        return section;
+    }
+
+    public static List<Entity> entitySlice()
+    {
+        UnsafeList<Entity> slice = entitySlices.poll();
+
+        if (slice == null) return new UnsafeList<>();
+
+        pooledEntitySlices.decrementAndGet();
+        return slice;
+    }
+
+    /**
+     * Releases the entity slices of the unloaded chunk once its entities are saved. Main thread only.
+     */
+    public static void releaseEntitySlices(Chunk chunk)
+    {
+        for (int i = 0; i < chunk.entitySlices.length; i++)
+        {
+            List<Entity> slice = chunk.entitySlices[i];
+
+            chunk.entitySlices[i] = RELEASED_SLICE;
+            if (!(slice instanceof UnsafeList)) continue;
+
+            if (pooledEntitySlices.incrementAndGet() <= SpigotConfig.chunkPoolSize)
+            {
+                slice.clear();
+                entitySlices.offer((UnsafeList<Entity>) slice);
+            } else
+                pooledEntitySlices.decrementAndGet();
+        }
+    }
+
+    /**
+     * Releases the sections of the unloaded chunk once its blocks are saved. With async lighting the sections are
+     * handed to the lighting writer of the world and recycled once the light updates queued before are applied, an
+     * update of the chunk or a neighbour may still write to them until then. Chunk packets copy the sections on the
+     * thread which builds them and keep no reference to them.
+     */
+    public static void releaseSections(final Chunk chunk)
+    {
+        if (chunk.world.paperSpigotConfig.useAsyncLighting)
+            chunk.world.lightingEngine.queueRelease(new Runnable() {
+                @Override
+                public void run()
+                {
+                    recycleSections(chunk);
+                }
+            });
+        else
+            recycleSections(chunk);
+    }
+
+    private static void recycleSections(Chunk chunk)
+    {
+        ChunkSection[] achunksection = chunk.getSections();
+
+        for (int i = 0; i < achunksection.length; i++)
+        {
+            ChunkSection section = achunksection[i];
+
+            if (section == null) continue;
+
+            achunksection[i] = null;
+            if (section.getIdArray().length != 4096) continue;
+
+            if (pooledSections.incrementAndGet() <= SpigotConfig.chunkPoolSize)
+            {
+                section.clear();
+                sections.offer(section);
+            } else
+                pooledSections.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package de.dytanic.spigot;
+
+import org.spigotmc.SpigotConfig;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the region passes of all chunk loaders. A pass writes the queued chunks of one region file, different region
+ * files are written in parallel by up to the configured amount of threads. Also counts the queued chunks of all
+ * worlds, a chunk which is saved again before it was written counts once.
+ */
+public class ChunkSaveQueue {
+
+    private static volatile ChunkSaveQueue instance;
+
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicInteger backlog = new AtomicInteger();
+
+    private final AtomicLong written = new AtomicLong(), coalesced = new AtomicLong();
+
+    private ChunkSaveQueue(int threads)
+    {
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+            private final AtomicInteger threadId = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, "Chunk Save Thread #" + threadId.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            }
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public static ChunkSaveQueue getInstance()
+    {
+        if (instance == null)
+            synchronized (ChunkSaveQueue.class)
+            {
+                if (instance == null) instance = new ChunkSaveQueue(SpigotConfig.chunkSaveThreads);
+            }
+
+        return instance;
+    }
+
+    public void execute(Runnable regionPass)
+    {
+        executor.execute(regionPass);
+    }
+
+    /**
+     * @param replaced whether the chunk was queued already and only its data was replaced
+     */
+    public void queued(boolean replaced)
+    {
+        if (replaced)
+            coalesced.incrementAndGet();
+        else
+            backlog.incrementAndGet();
+    }
+
+    public void written()
+    {
+        backlog.decrementAndGet();
+        written.incrementAndGet();
+    }
+
+    /**
+     * @return the amount of chunks of all worlds which are queued but not written yet
+     */
+    public int getBacklog()
+    {
+        return backlog.get();
+    }
+
+    public long getWritten()
+    {
+        return written.get();
+    }
+
+    public long getCoalesced()
+    {
+        return coalesced.get();
+    }
+}
@@ -0,0 +1,298 @@
+package de.dytanic.spigot;
+
+import com.google.common.collect.Sets;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import net.minecraft.server.Entity;
+import net.minecraft.server.World;
+import org.spigotmc.AsyncCatcher;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Entity list of a world. Every entity knows its slot, so add, remove and contains are O(1); a removal
+ * moves the last entity into the freed slot. While the world ticks its entities, removals are deferred
+ * until the end of the iteration so the order of the remaining slots stays stable. Also holds the
+ * id and UUID lookups of the world.
+ * <p>
+ * Only the thread which owns the world reads the slots without a lock. Other threads, like the async command
+ * threads, iterate a snapshot, and their removals are always deferred to the owner. All changes of the slots and
+ * lookups hold the lock of the store.
+ */
+public class EntityStore extends AbstractList<Entity> implements RandomAccess {
+
+    private final World world;
+
+    private Entity[] entities = new Entity[256];
+
+    // written after the slots, so a thread which reads the size sees the slots below it
+    private volatile int size;
+
+    private boolean iterating;
+
+    private final Set<Entity> pendingRemovals = Sets.newIdentityHashSet();
+
+    private final TIntObjectHashMap<Entity> entitiesById = new TIntObjectHashMap<>();
+
+    private final Map<UUID, Entity> entitiesByUUID = new HashMap<>();
+
+    public EntityStore(World world)
+    {
+        this.world = world;
+    }
+
+    @Override
+    public Entity get(int index)
+    {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+
+        return entities[index];
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    public boolean contains(Object o)
+    {
+        return o instanceof Entity && slotOf((Entity) o) != -1;
+    }
+
+    @Override
+    public int indexOf(Object o)
+    {
+        return o instanceof Entity ? slotOf((Entity) o) : -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o)
+    {
+        return indexOf(o);
+    }
+
+    @Override
+    public synchronized boolean add(Entity entity)
+    {
+        if (slotOf(entity) != -1)
+            // re-added while its removal was deferred
+            return pendingRemovals.remove(entity);
+
+        if (size == entities.length) entities = Arrays.copyOf(entities, size << 1);
+
+        entity.entityStoreIndex = size;
+        entities[size++] = entity;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public synchronized boolean remove(Object o)
+    {
+        if (!(o instanceof Entity)) return false;
+
+        Entity entity = (Entity) o;
+        int index = slotOf(entity);
+
+        if (index == -1) return false;
+
+        if (isDeferred()) return pendingRemovals.add(entity);
+
+        removeSlot(index);
+        return true;
+    }
+
+    @Override
+    public synchronized Entity remove(int index)
+    {
+        Entity entity = get(index);
+
+        if (isDeferred()) pendingRemovals.add(entity);
+        else removeSlot(index);
+
+        return entity;
+    }
+
+    @Override
+    public synchronized void clear()
+    {
+        for (int i = 0; i < size; i++)
+        {
+            if (entities[i].entityStoreIndex == i) entities[i].entityStoreIndex = -1;
+            entities[i] = null;
+        }
+
+        size = 0;
+        pendingRemovals.clear();
+        modCount++;
+    }
+
+    /**
+     * Iterates the slots without a modification check, entities added meanwhile are part of the iteration. Threads
+     * which don't own the world iterate a snapshot.
+     */
+    @Override
+    public Iterator<Entity> iterator()
+    {
+        if (!AsyncCatcher.isOwningThread(world)) return Arrays.asList(snapshot()).iterator();
+
+        return new Iterator<Entity>() {
+
+            private int cursor;
+
+            @Override
+            public boolean hasNext()
+            {
+                return cursor < size;
+            }
+
+            @Override
+            public Entity next()
+            {
+                Entity[] entities = EntityStore.this.entities;
+
+                if (cursor >= size || cursor >= entities.length) throw new NoSuchElementException();
+
+                return entities[cursor++];
+            }
+
+            @Override
+            public void remove()
+            {
+                if (cursor == 0) throw new IllegalStateException();
+
+                synchronized (EntityStore.this)
+                {
+                    if (iterating)
+                        pendingRemovals.add(entities[cursor - 1]);
+                    else
+                        removeSlot(--cursor);
+                }
+            }
+        };
+    }
+
+    /**
+     * @return a copy of the slots, for threads which don't own the world
+     */
+    public synchronized Entity[] snapshot()
+    {
+        return Arrays.copyOf(entities, size);
+    }
+
+    /**
+     * Defers removals until {@link #endIteration()}, the slots keep their order meanwhile.
+     */
+    public synchronized void beginIteration()
+    {
+        iterating = true;
+    }
+
+    public synchronized void endIteration()
+    {
+        iterating = false;
+
+        if (pendingRemovals.isEmpty()) return;
+
+        for (Entity entity : pendingRemovals)
+        {
+            int index = slotOf(entity);
+
+            if (index != -1)
+            {
+                removeSlot(index);
+                continue;
+            }
+
+            // the entity was added to another world's store in the meantime and took a slot index there
+            for (int i = 0; i < size; i++)
+                if (entities[i] == entity)
+                {
+                    removeSlot(i, false);
+                    break;
+                }
+        }
+
+        pendingRemovals.clear();
+    }
+
+    /* ================================================================== */
+
+    public synchronized void registerLookup(Entity entity)
+    {
+        entitiesById.put(entity.getId(), entity);
+        entitiesByUUID.put(entity.getUniqueID(), entity);
+
+        Entity[] parts = entity.aB();
+
+        if (parts != null)
+            for (Entity part : parts) entitiesById.put(part.getId(), part);
+    }
+
+    public synchronized void unregisterLookup(Entity entity)
+    {
+        entitiesById.remove(entity.getId());
+        entitiesByUUID.remove(entity.getUniqueID());
+
+        Entity[] parts = entity.aB();
+
+        if (parts != null)
+            for (Entity part : parts) entitiesById.remove(part.getId());
+    }
+
+    public synchronized Entity getById(int id)
+    {
+        return entitiesById.get(id);
+    }
+
+    public synchronized Entity getByUUID(UUID uuid)
+    {
+        return entitiesByUUID.get(uuid);
+    }
+
+    /* ================================================================== */
+
+    private boolean isDeferred()
+    {
+        return iterating || !AsyncCatcher.isOwningThread(world);
+    }
+
+    private int slotOf(Entity entity)
+    {
+        int index = entity.entityStoreIndex;
+
+        if (index >= 0 && index < size && entities[index] == entity) return index;
+
+        return -1;
+    }
+
+    private void removeSlot(int index)
+    {
+        removeSlot(index, true);
+    }
+
+    private void removeSlot(int index, boolean owned)
+    {
+        Entity removed = entities[index];
+        int last = --size;
+
+        if (index != last)
+        {
+            entities[index] = entities[last];
+            entities[index].entityStoreIndex = index;
+        }
+
+        entities[last] = null;
+        if (owned) removed.entityStoreIndex = -1;
+        modCount++;
+    }
+}
@@ -0,0 +1,214 @@
+package de.dytanic.spigot;
+
+import net.minecraft.server.BlockPosition;
+import net.minecraft.server.Entity;
+import net.minecraft.server.EntityTNTPrimed;
+import net.minecraft.server.Explosion;
+import net.minecraft.server.IBlockData;
+import net.minecraft.server.Material;
+import net.minecraft.server.MathHelper;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.World;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds the blocks destroyed by the explosions of one world, main thread only. The 1352 rays of the vanilla explosion
+ * walk a snapshot of the blocks around the explosion, so every block is looked up and its resistance is calculated
+ * only once per explosion, no positions are allocated while walking. The blocks are returned in the order of the
+ * vanilla HashSet and the random draws are the same. Primed TNT which explodes at the same position as the TNT before
+ * it in the same tick reuses its blocks, as long as no block of the world changed in between. Its random draws are
+ * still taken, but its rays are not walked with them, so the blocks at the edge of a merged explosion can differ
+ * from vanilla.
+ */
+public class ExplosionRayEngine {
+
+    /**
+     * Blocks further away than this from the explosion are looked up without the snapshot
+     */
+    private static final int RADIUS = 12;
+
+    private static final int SIDE = RADIUS * 2 + 1;
+
+    /**
+     * The normalized directions of the rays, in the order of the vanilla loop
+     */
+    private static final double[] RAYS;
+
+    private static final int RAY_COUNT;
+
+    static
+    {
+        List<double[]> rays = new ArrayList<>();
+
+        for (int k = 0; k < 16; ++k)
+            for (int i = 0; i < 16; ++i)
+                for (int j = 0; j < 16; ++j)
+                    if (k == 0 || k == 15 || i == 0 || i == 15 || j == 0 || j == 15)
+                    {
+                        double d0 = (double) ((float) k / 15.0F * 2.0F - 1.0F);
+                        double d1 = (double) ((float) i / 15.0F * 2.0F - 1.0F);
+                        double d2 = (double) ((float) j / 15.0F * 2.0F - 1.0F);
+                        double d3 = Math.sqrt(d0 * d0 + d1 * d1 + d2 * d2);
+
+                        rays.add(new double[]{d0 / d3, d1 / d3, d2 / d3});
+                    }
+
+        RAY_COUNT = rays.size();
+        RAYS = new double[RAY_COUNT * 3];
+
+        for (int i = 0; i < rays.size(); i++)
+            System.arraycopy(rays.get(i), 0, RAYS, i * 3, 3);
+    }
+
+    private final World world;
+
+    private final IBlockData[] blocks = new IBlockData[SIDE * SIDE * SIDE];
+
+    private final float[] resistances = new float[SIDE * SIDE * SIDE];
+
+    /**
+     * A cell is part of the snapshot of the current explosion if its stamp is the current generation
+     */
+    private final int[] loaded = new int[SIDE * SIDE * SIDE], destroyed = new int[SIDE * SIDE * SIDE];
+
+    private int generation;
+
+    private final BlockPosition.MutableBlockPosition position = new BlockPosition.MutableBlockPosition();
+
+    private int originX, originY, originZ;
+
+    private int lastTick = -1, lastModCount;
+
+    private double lastX, lastY, lastZ;
+
+    private float lastSize;
+
+    private List<BlockPosition> lastBlocks;
+
+    public ExplosionRayEngine(World world)
+    {
+        this.world = world;
+    }
+
+    /**
+     * Adds the positions of the blocks which the explosion destroys to the list, like the rays of
+     * {@link Explosion#a()}.
+     */
+    public void collect(Explosion explosion, double x, double y, double z, float size, Entity source, List<BlockPosition> result)
+    {
+        boolean mergeable = world.spigotConfig.mergeExplosions && source instanceof EntityTNTPrimed;
+
+        if (mergeable && lastTick == MinecraftServer.currentTick && lastModCount == world.blockModCount
+                && lastX == x && lastY == y && lastZ == z && lastSize == size)
+        {
+            // The draws of the rays, the random of the world stays in step with vanilla
+            for (int ray = 0; ray < RAY_COUNT; ray++)
+                world.random.nextFloat();
+
+            result.addAll(lastBlocks);
+            return;
+        }
+
+        if (++generation == 0)
+        {
+            Arrays.fill(loaded, 0);
+            Arrays.fill(destroyed, 0);
+            generation = 1;
+        }
+
+        originX = MathHelper.floor(x) - RADIUS;
+        originY = MathHelper.floor(y) - RADIUS;
+        originZ = MathHelper.floor(z) - RADIUS;
+
+        int start = result.size();
+        // Only filled with new positions, in the order vanilla adds them first, so it iterates like the vanilla set
+        Set<BlockPosition> hashset = new HashSet<>();
+
+        for (int ray = 0; ray < RAYS.length; ray += 3)
+        {
+            double d0 = RAYS[ray], d1 = RAYS[ray + 1], d2 = RAYS[ray + 2];
+            float f = size * (0.7F + world.random.nextFloat() * 0.6F);
+            double d4 = x, d5 = y, d6 = z;
+
+            for (; f > 0.0F; f -= 0.22500001F)
+            {
+                int i = MathHelper.floor(d4), j = MathHelper.floor(d5), k = MathHelper.floor(d6);
+                int cell = cell(i, j, k);
+                IBlockData iblockdata;
+
+                if (cell >= 0)
+                {
+                    if (loaded[cell] != generation)
+                        load(cell, i, j, k, explosion, source);
+
+                    iblockdata = blocks[cell];
+                    if (iblockdata.getBlock().getMaterial() != Material.AIR)
+                        f -= (resistances[cell] + 0.3F) * 0.3F;
+                } else
+                {
+                    iblockdata = world.getType(position.c(i, j, k));
+                    if (iblockdata.getBlock().getMaterial() != Material.AIR)
+                        f -= (resistance(explosion, source, iblockdata) + 0.3F) * 0.3F;
+                }
+
+                if (f > 0.0F && (source == null || source.a(explosion, world, position.c(i, j, k), iblockdata, f)) && j < 256 && j >= 0)
+                {
+                    if (cell < 0)
+                        hashset.add(new BlockPosition(i, j, k));
+                    else if (destroyed[cell] != generation)
+                    {
+                        destroyed[cell] = generation;
+                        hashset.add(new BlockPosition(i, j, k));
+                    }
+                }
+
+                d4 += d0 * 0.30000001192092896D;
+                d5 += d1 * 0.30000001192092896D;
+                d6 += d2 * 0.30000001192092896D;
+            }
+        }
+
+        result.addAll(hashset);
+
+        if (mergeable)
+        {
+            lastTick = MinecraftServer.currentTick;
+            lastModCount = world.blockModCount;
+            lastX = x;
+            lastY = y;
+            lastZ = z;
+            lastSize = size;
+            lastBlocks = new ArrayList<>(result.subList(start, result.size()));
+        }
+    }
+
+    private int cell(int i, int j, int k)
+    {
+        i -= originX;
+        j -= originY;
+        k -= originZ;
+
+        return i >= 0 && i < SIDE && j >= 0 && j < SIDE && k >= 0 && k < SIDE ? (j * SIDE + k) * SIDE + i : -1;
+    }
+
+    private void load(int cell, int i, int j, int k, Explosion explosion, Entity source)
+    {
+        IBlockData iblockdata = world.getType(position.c(i, j, k));
+
+        loaded[cell] = generation;
+        blocks[cell] = iblockdata;
+        if (iblockdata.getBlock().getMaterial() != Material.AIR)
+            resistances[cell] = resistance(explosion, source, iblockdata);
+    }
+
+    // Position is set to the block
+    private float resistance(Explosion explosion, Entity source, IBlockData iblockdata)
+    {
+        return source != null ? source.a(explosion, world, position, iblockdata) : iblockdata.getBlock().a((Entity) null);
+    }
+}
@@ -0,0 +1,317 @@
+package de.dytanic.spigot;
+
+import net.minecraft.server.BlockPosition;
+import net.minecraft.server.Chunk;
+import net.minecraft.server.EnumSkyBlock;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.World;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asynchronous lighting of one world. Updates are batched by chunk, identical pending updates are merged
+ * and all batches are processed by a single drain task on the TaskScheduler, so the light arrays and the
+ * scratch array of the world only ever have one writer.
+ * <p>
+ * The writer is per world, not per region. An update spreads up to 15 blocks into the neighbouring chunks and
+ * therefore across region borders, and every update uses the scratch array of the world. Writers per region
+ * would have to lock the border chunks of their neighbours for every update near a border.
+ */
+public class LightingEngine {
+
+    private final World world;
+
+    private final Map<Long, ChunkBatch> batches = new LinkedHashMap<>();
+
+    private final List<Runnable> releases = new ArrayList<>();
+
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    private final AtomicInteger queued = new AtomicInteger(), processed = new AtomicInteger(), merged = new AtomicInteger();
+
+    private volatile Thread writerThread;
+
+    // Every drain round processes the batches which were queued until it started, guarded by batches
+    private long startedRounds;
+
+    private volatile long completedRounds;
+
+    private final Runnable drainTask = new Runnable() {
+        @Override
+        public void run()
+        {
+            drain();
+        }
+    };
+
+    public LightingEngine(World world)
+    {
+        this.world = world;
+    }
+
+    public boolean queueUpdate(EnumSkyBlock enumskyblock, BlockPosition position, Chunk chunk)
+    {
+        // Updates caused by a running update are part of it and are applied right away
+        if (Thread.currentThread() == writerThread)
+            return world.c(enumskyblock, position, chunk, null);
+
+        LightUpdate update = new LightUpdate(enumskyblock, position);
+
+        synchronized (batches)
+        {
+            ChunkBatch batch = batch(chunk);
+
+            if (!batch.updates.add(update))
+            {
+                merged.incrementAndGet();
+                return true;
+            }
+
+            long time = world.getTime();
+            int x = position.getX() >> 4, z = position.getZ() >> 4;
+
+            chunk.pendingLightUpdates.incrementAndGet();
+            chunk.lightUpdateTime = time;
+
+            for (int cx = x - 1; cx <= x + 1; ++cx)
+                for (int cz = z - 1; cz <= z + 1; ++cz)
+                    if (cx != x && cz != z)
+                    {
+                        Chunk neighbor = world.getChunkIfLoaded(cx, cz);
+                        if (neighbor != null)
+                        {
+                            neighbor.pendingLightUpdates.incrementAndGet();
+                            neighbor.lightUpdateTime = time;
+                            update.neighbors.add(neighbor);
+                        }
+                    }
+        }
+
+        queued.incrementAndGet();
+        schedule();
+        return true;
+    }
+
+    /**
+     * Queues a task which has to run in order with the light updates of the chunk, like the sky light gap check.
+     * A task which is still pending for the chunk is replaced.
+     */
+    public void queueChunkTask(Chunk chunk, Runnable task)
+    {
+        if (Thread.currentThread() == writerThread)
+        {
+            task.run();
+            return;
+        }
+
+        synchronized (batches)
+        {
+            ChunkBatch batch = batch(chunk);
+
+            if (batch.task != null) merged.incrementAndGet();
+            else chunk.pendingLightUpdates.incrementAndGet();
+
+            batch.task = task;
+        }
+
+        queued.incrementAndGet();
+        schedule();
+    }
+
+    /**
+     * Runs the task on the writer once all light updates which were queued before it are applied, the sections of an
+     * unloaded chunk are recycled this way. Updates which are queued later can't reach an unloaded chunk anymore.
+     */
+    public void queueRelease(Runnable task)
+    {
+        synchronized (batches)
+        {
+            releases.add(task);
+        }
+
+        schedule();
+    }
+
+    /**
+     * The flush barrier before a chunk packet is built, called by the thread which ticks the world. Waits for the light
+     * updates which were queued when the chunk was first asked for, the updates which are queued later don't hold it
+     * back. A chunk with a steady stream of light updates, like one next to lava or a busy farm, is still sent.
+     *
+     * @return true if the chunk can be sent to players
+     */
+    public boolean isReadyToSend(Chunk chunk)
+    {
+        if (chunk.pendingLightUpdates.get() > 0)
+        {
+            if (chunk.lightSendTicket < 0)
+                synchronized (batches)
+                {
+                    chunk.lightSendTicket = batches.isEmpty() ? startedRounds : startedRounds + 1;
+                }
+
+            if (completedRounds < chunk.lightSendTicket) return false;
+        }
+
+        chunk.lightSendTicket = -1;
+        return true;
+    }
+
+    /**
+     * Adds the update counters since the last call to the timings tick record, called once per tick.
+     */
+    public void recordTimings()
+    {
+        co.aikar.timings.TimingHistory.lightQueuedTicks += queued.getAndSet(0);
+        co.aikar.timings.TimingHistory.lightProcessedTicks += processed.getAndSet(0);
+        co.aikar.timings.TimingHistory.lightMergedTicks += merged.getAndSet(0);
+    }
+
+    private ChunkBatch batch(Chunk chunk)
+    {
+        long key = World.chunkToKey(chunk.locX, chunk.locZ);
+        ChunkBatch batch = batches.get(key);
+
+        if (batch == null)
+        {
+            batch = new ChunkBatch(chunk);
+            batches.put(key, batch);
+        }
+
+        return batch;
+    }
+
+    private void schedule()
+    {
+        if (scheduled.compareAndSet(false, true))
+            DytanicSpigot.getInstance().getTaskScheduler().schedule(drainTask);
+    }
+
+    private void drain()
+    {
+        writerThread = Thread.currentThread();
+
+        while (true)
+        {
+            ChunkBatch[] work;
+            Runnable[] released;
+            long round;
+
+            synchronized (batches)
+            {
+                if (batches.isEmpty() && releases.isEmpty())
+                {
+                    writerThread = null;
+                    scheduled.set(false);
+                    return;
+                }
+
+                work = batches.values().toArray(new ChunkBatch[batches.size()]);
+                batches.clear();
+                released = releases.toArray(new Runnable[releases.size()]);
+                releases.clear();
+                round = ++startedRounds;
+            }
+
+            for (ChunkBatch batch : work) process(batch);
+
+            for (Runnable release : released)
+                try
+                {
+                    release.run();
+                } catch (Throwable throwable)
+                {
+                    MinecraftServer.LOGGER.error("Exception in lighting release task", throwable);
+                }
+
+            completedRounds = round;
+        }
+    }
+
+    private void process(ChunkBatch batch)
+    {
+        Chunk chunk = batch.chunk;
+
+        if (batch.task != null)
+        {
+            try
+            {
+                batch.task.run();
+            } catch (Throwable throwable)
+            {
+                MinecraftServer.LOGGER.error("Exception in lighting task of chunk " + chunk.locX + ", " + chunk.locZ, throwable);
+            } finally
+            {
+                chunk.pendingLightUpdates.decrementAndGet();
+                processed.incrementAndGet();
+            }
+        }
+
+        for (LightUpdate update : batch.updates)
+        {
+            try
+            {
+                world.c(update.enumskyblock, update.position, chunk, update.neighbors);
+            } catch (Throwable throwable)
+            {
+                MinecraftServer.LOGGER.error("Exception in light update at " + update.position, throwable);
+            } finally
+            {
+                chunk.pendingLightUpdates.decrementAndGet();
+                for (Chunk neighbor : update.neighbors) neighbor.pendingLightUpdates.decrementAndGet();
+                processed.incrementAndGet();
+            }
+        }
+    }
+
+    private static final class ChunkBatch {
+
+        private final Chunk chunk;
+
+        private final Set<LightUpdate> updates = new LinkedHashSet<>();
+
+        private Runnable task;
+
+        private ChunkBatch(Chunk chunk)
+        {
+            this.chunk = chunk;
+        }
+    }
+
+    private static final class LightUpdate {
+
+        private final EnumSkyBlock enumskyblock;
+
+        private final BlockPosition position;
+
+        private final List<Chunk> neighbors = new ArrayList<>(4);
+
+        private LightUpdate(EnumSkyBlock enumskyblock, BlockPosition position)
+        {
+            this.enumskyblock = enumskyblock;
+            this.position = position instanceof BlockPosition.MutableBlockPosition ? new BlockPosition(position) : position;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) return true;
+            if (!(o instanceof LightUpdate)) return false;
+
+            LightUpdate that = (LightUpdate) o;
+            return enumskyblock == that.enumskyblock && position.equals(that.position);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * enumskyblock.hashCode() + position.hashCode();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package de.dytanic.spigot;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency of the logins per minute, split by the phases of the LoginListener. Recorded by the netty, session and
+ * scheduler threads, the minutes are counted from the server start.
+ */
+public final class LoginMetrics
+{
+
+    public enum Phase
+    {
+        /**
+         * From the encryption response until the session server answered, including the wait for a session thread
+         */
+        SESSION,
+        /**
+         * From the verified session, or the login start in offline mode, until the AsyncPlayerPreLoginEvent was handled
+         */
+        PRE_LOGIN,
+        /**
+         * From the handled AsyncPlayerPreLoginEvent until the main thread accepted the player
+         */
+        ACCEPT,
+        /**
+         * From the login start until the main thread accepted the player
+         */
+        TOTAL
+    }
+
+    private static final long INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1L);
+
+    private static volatile Interval current = new Interval(System.nanoTime());
+
+    private static volatile Interval previous = new Interval(current.start - INTERVAL_NANOS);
+
+    private LoginMetrics()
+    {
+    }
+
+    public static void record(Phase phase, long time)
+    {
+        interval().record(phase, time);
+    }
+
+    /**
+     * @return the logins of the last full minute
+     */
+    public static Interval getLastMinute()
+    {
+        interval();
+        return previous;
+    }
+
+    private static Interval interval()
+    {
+        Interval interval = current;
+        long now = System.nanoTime();
+
+        if (now - interval.start < INTERVAL_NANOS) return interval;
+
+        synchronized (LoginMetrics.class)
+        {
+            interval = current;
+
+            if (now - interval.start >= INTERVAL_NANOS)
+            {
+                long start = interval.start + (now - interval.start) / INTERVAL_NANOS * INTERVAL_NANOS;
+
+                // Without a login in the minute before, it is empty
+                previous = start - interval.start == INTERVAL_NANOS ? interval : new Interval(start - INTERVAL_NANOS);
+                current = interval = new Interval(start);
+            }
+
+            return interval;
+        }
+    }
+
+    public static final class Interval
+    {
+
+        private final long start;
+
+        private final LongAdder[] counts = new LongAdder[Phase.values().length];
+
+        private final LongAdder[] nanos = new LongAdder[Phase.values().length];
+
+        private final AtomicLong[] maxNanos = new AtomicLong[Phase.values().length];
+
+        private Interval(long start)
+        {
+            this.start = start;
+
+            for (int i = 0; i < counts.length; i++)
+            {
+                counts[i] = new LongAdder();
+                nanos[i] = new LongAdder();
+                maxNanos[i] = new AtomicLong();
+            }
+        }
+
+        private void record(Phase phase, long time)
+        {
+            counts[phase.ordinal()].increment();
+            nanos[phase.ordinal()].add(time);
+
+            AtomicLong max = maxNanos[phase.ordinal()];
+            long current;
+
+            while (time > (current = max.get()) && !max.compareAndSet(current, time)) ;
+        }
+
+        public long getCount(Phase phase)
+        {
+            return counts[phase.ordinal()].sum();
+        }
+
+        public double getAverageMillis(Phase phase)
+        {
+            long count = counts[phase.ordinal()].sum();
+
+            return count == 0 ? 0D : (double) nanos[phase.ordinal()].sum() / count / TimeUnit.MILLISECONDS.toNanos(1L);
+        }
+
+        public double getMaxMillis(Phase phase)
+        {
+            return (double) maxNanos[phase.ordinal()].get() / TimeUnit.MILLISECONDS.toNanos(1L);
+        }
+    }
+}
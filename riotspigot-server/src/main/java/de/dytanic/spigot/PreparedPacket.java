@@ -0,0 +1,317 @@
+package de.dytanic.spigot;
+
+import com.google.common.collect.MapMaker;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.minecraft.server.EnumProtocol;
+import net.minecraft.server.EnumProtocolDirection;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.Packet;
+import net.minecraft.server.PacketDataSerializer;
+import org.spigotmc.SpigotConfig;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.zip.Deflater;
+
+/**
+ * A play packet which is serialized and compressed once on the TaskScheduler. An ordinary packet which is shared for
+ * a broadcast is serialized on the calling thread, a packet above the compression threshold is compressed on the
+ * TaskScheduler as well. All connections it is sent to share the same bytes, the PreparedPacketHandler of a
+ * connection writes them in place of the encoder and the compressor.
+ */
+public class PreparedPacket {
+
+    public static final Executor EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command)
+        {
+            DytanicSpigot.getInstance().getTaskScheduler().schedule(command);
+        }
+    };
+
+    private static final ThreadLocal<Deflater> DEFLATER = new ThreadLocal<Deflater>() {
+        @Override
+        protected Deflater initialValue()
+        {
+            return new Deflater();
+        }
+    };
+
+    /**
+     * The prepared bytes of shared packets by identity, an entry is dropped once its packet is collected
+     */
+    private static final ConcurrentMap<Packet, PreparedPacket> SHARED = new MapMaker().weakKeys().makeMap();
+
+    private final CompletableFuture<Frame> frame;
+
+    private PreparedPacket(CompletableFuture<Frame> frame)
+    {
+        this.frame = frame;
+    }
+
+    /**
+     * Builds the packet on the TaskScheduler and prepares its bytes.
+     */
+    public static PreparedPacket prepare(Callable<? extends Packet> builder)
+    {
+        return new PreparedPacket(CompletableFuture.supplyAsync(new FrameBuilder(builder), EXECUTOR));
+    }
+
+    /**
+     * Prepares the bytes once the packet, which is built by another stage, is complete.
+     */
+    public static PreparedPacket prepare(CompletableFuture<? extends Packet> packet)
+    {
+        return new PreparedPacket(packet.thenApplyAsync(new Function<Packet, Frame>() {
+            @Override
+            public Frame apply(Packet packet)
+            {
+                return Frame.of(packet);
+            }
+        }, EXECUTOR));
+    }
+
+    /**
+     * Encodes the packet once for a broadcast to several connections, each of them writes the same bytes afterwards
+     * instead of encoding the packet again. The packet must not be changed once it is shared. The packet is serialized
+     * on the calling thread, it is compressed on the TaskScheduler if it reaches the compression threshold, the
+     * broadcasting thread never deflates.
+     */
+    public static void share(Packet packet)
+    {
+        if (!SpigotConfig.sharedBroadcastPackets || of(packet) != null || EnumProtocol.a(packet) != EnumProtocol.PLAY) return;
+
+        final Frame frame;
+
+        try
+        {
+            frame = Frame.encode(packet);
+        } catch (RuntimeException ex)
+        {
+            // Encoded by every connection, the PacketEncoder reports the error
+            return;
+        }
+
+        int threshold = compressionThreshold();
+        CompletableFuture<Frame> future;
+
+        if (threshold >= 0 && frame.payload.length >= threshold)
+            future = CompletableFuture.supplyAsync(new Supplier<Frame>() {
+                @Override
+                public Frame get()
+                {
+                    frame.compressed();
+                    return frame;
+                }
+            }, EXECUTOR);
+        else
+        {
+            // Only the header of an uncompressed frame
+            if (threshold >= 0) frame.compressed();
+            future = CompletableFuture.completedFuture(frame);
+        }
+
+        SHARED.putIfAbsent(packet, new PreparedPacket(future));
+    }
+
+    /**
+     * @return the prepared bytes of a holder or a shared packet, null if the message is encoded by the connection
+     */
+    public static PreparedPacket of(Object msg)
+    {
+        if (msg instanceof Holder) return ((Holder) msg).getPreparedPacket();
+
+        return msg instanceof Packet && !SHARED.isEmpty() ? SHARED.get(msg) : null;
+    }
+
+    public boolean isDone()
+    {
+        return frame.isDone();
+    }
+
+    public boolean isFailed()
+    {
+        return frame.isCompletedExceptionally();
+    }
+
+    /**
+     * Runs the callback once the bytes are prepared or failed, on the completing thread.
+     */
+    public void whenDone(final Runnable callback)
+    {
+        frame.whenComplete(new BiConsumer<Frame, Throwable>() {
+            @Override
+            public void accept(Frame frame, Throwable throwable)
+            {
+                callback.run();
+            }
+        });
+    }
+
+    /**
+     * @param compressed whether the connection compresses its packets
+     * @return the packet id and data, compressed for the compression threshold of the server if requested
+     */
+    public ByteBuf toByteBuf(boolean compressed)
+    {
+        Frame frame = this.frame.join();
+
+        return Unpooled.wrappedBuffer(compressed ? frame.compressed() : frame.payload);
+    }
+
+    /**
+     * Writes the packet data without id, used if the packet is encoded like any other packet.
+     */
+    public void writeBody(PacketDataSerializer packetdataserializer)
+    {
+        Frame frame = this.frame.join();
+
+        packetdataserializer.writeBytes(frame.payload, frame.bodyOffset, frame.payload.length - frame.bodyOffset);
+    }
+
+    /**
+     * @return the compression threshold of the server, -1 if there is no server, like in the benchmarks
+     */
+    private static int compressionThreshold()
+    {
+        MinecraftServer server = MinecraftServer.getServer();
+
+        return server == null ? -1 : server.aK();
+    }
+
+    /**
+     * Implemented by packets which can carry prepared bytes.
+     */
+    public interface Holder {
+
+        /**
+         * @return the prepared bytes or null if the packet is encoded like any other packet
+         */
+        PreparedPacket getPreparedPacket();
+    }
+
+    private static final class FrameBuilder implements Supplier<Frame> {
+
+        private final Callable<? extends Packet> builder;
+
+        private FrameBuilder(Callable<? extends Packet> builder)
+        {
+            this.builder = builder;
+        }
+
+        @Override
+        public Frame get()
+        {
+            try
+            {
+                return Frame.of(builder.call());
+            } catch (RuntimeException ex)
+            {
+                throw ex;
+            } catch (Exception ex)
+            {
+                throw new RuntimeException(ex);
+            }
+        }
+    }
+
+    private static final class Frame {
+
+        private final byte[] payload;
+
+        private final int bodyOffset;
+
+        private volatile byte[] compressed;
+
+        private Frame(byte[] payload, int bodyOffset)
+        {
+            this.payload = payload;
+            this.bodyOffset = bodyOffset;
+        }
+
+        private static Frame of(Packet packet)
+        {
+            Frame frame = encode(packet);
+
+            if (compressionThreshold() >= 0) frame.compressed();
+            return frame;
+        }
+
+        /**
+         * Serializes the packet without compressing it
+         */
+        private static Frame encode(Packet packet)
+        {
+            ByteBuf buffer = Unpooled.buffer();
+            PacketDataSerializer packetdataserializer = new PacketDataSerializer(buffer);
+
+            try
+            {
+                packetdataserializer.b(EnumProtocol.PLAY.a(EnumProtocolDirection.CLIENTBOUND, packet).intValue());
+                int bodyOffset = buffer.writerIndex();
+                packet.b(packetdataserializer);
+
+                byte[] payload = new byte[buffer.readableBytes()];
+                buffer.readBytes(payload);
+
+                return new Frame(payload, bodyOffset);
+            } catch (IOException ex)
+            {
+                throw new RuntimeException(ex);
+            } finally
+            {
+                buffer.release();
+            }
+        }
+
+        /**
+         * Same format as the PacketCompressor of a connection.
+         */
+        private byte[] compressed()
+        {
+            byte[] compressed = this.compressed;
+
+            if (compressed != null) return compressed;
+
+            int threshold = compressionThreshold();
+            ByteBuf buffer = Unpooled.buffer(payload.length + 5);
+            PacketDataSerializer packetdataserializer = new PacketDataSerializer(buffer);
+
+            try
+            {
+                if (threshold < 0 || payload.length < threshold)
+                {
+                    packetdataserializer.b(0);
+                    packetdataserializer.writeBytes(payload);
+                } else
+                {
+                    Deflater deflater = DEFLATER.get();
+                    byte[] chunk = new byte[8192];
+
+                    packetdataserializer.b(payload.length);
+                    deflater.setInput(payload);
+                    deflater.finish();
+
+                    while (!deflater.finished())
+                        packetdataserializer.writeBytes(chunk, 0, deflater.deflate(chunk));
+
+                    deflater.reset();
+                }
+
+                compressed = new byte[buffer.readableBytes()];
+                buffer.readBytes(compressed);
+                return this.compressed = compressed;
+            } finally
+            {
+                buffer.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package de.dytanic.spigot;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.ReferenceCountUtil;
+import net.minecraft.server.EnumProtocol;
+import net.minecraft.server.EnumProtocolDirection;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.NetworkManager;
+import net.minecraft.server.PacketPlayOutKeepAlive;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+
+/**
+ * Writes the shared bytes of prepared packets between the compressor and the prepender of a connection. While a
+ * prepared packet isn't ready yet, it and every later write are held back, so the order of the packets is kept. Only
+ * keep alive packets pass the held back writes, a slow chunk packet must not time out the connection.
+ */
+public class PreparedPacketHandler extends ChannelOutboundHandlerAdapter {
+
+    private static final int KEEP_ALIVE_ID = EnumProtocol.PLAY.a(EnumProtocolDirection.CLIENTBOUND, new PacketPlayOutKeepAlive()).intValue();
+
+    private final ArrayDeque<PendingWrite> pending = new ArrayDeque<>();
+
+    private boolean flushPending;
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception
+    {
+        PreparedPacket preparedPacket = PreparedPacket.of(msg);
+
+        if (pending.isEmpty() && (preparedPacket == null || preparedPacket.isDone()))
+        {
+            writeNow(ctx, msg, preparedPacket, promise);
+            return;
+        }
+
+        if (isKeepAlive(ctx, msg))
+        {
+            // Passes the held back writes on purpose. The flush only reaches the writes which were passed on before the
+            // held back ones, those stay in pending until they are drained
+            ctx.write(msg, promise);
+            ctx.flush();
+            return;
+        }
+
+        pending.add(new PendingWrite(msg, preparedPacket, promise));
+
+        if (preparedPacket != null && !preparedPacket.isDone())
+        {
+            final ChannelHandlerContext context = ctx;
+
+            preparedPacket.whenDone(new Runnable() {
+                @Override
+                public void run()
+                {
+                    context.executor().execute(new Runnable() {
+                        @Override
+                        public void run()
+                        {
+                            drain(context);
+                        }
+                    });
+                }
+            });
+        }
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception
+    {
+        if (pending.isEmpty())
+            ctx.flush();
+        else
+            flushPending = true;
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception
+    {
+        discardPending();
+        super.close(ctx, promise);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception
+    {
+        discardPending();
+    }
+
+    private void drain(ChannelHandlerContext ctx)
+    {
+        boolean written = false;
+
+        while (!pending.isEmpty())
+        {
+            PendingWrite write = pending.peek();
+
+            if (write.preparedPacket != null && !write.preparedPacket.isDone()) break;
+
+            pending.poll();
+            writeNow(ctx, write.msg, write.preparedPacket, write.promise);
+            written = true;
+        }
+
+        if (written && flushPending)
+        {
+            if (pending.isEmpty()) flushPending = false;
+            ctx.flush();
+        }
+    }
+
+    private void writeNow(ChannelHandlerContext ctx, Object msg, PreparedPacket preparedPacket, ChannelPromise promise)
+    {
+        if (preparedPacket == null)
+        {
+            ctx.write(msg, promise);
+            return;
+        }
+
+        try
+        {
+            ctx.write(preparedPacket.toByteBuf(ctx.pipeline().get("compress") != null), promise);
+        } catch (Exception ex)
+        {
+            MinecraftServer.LOGGER.error("Could not prepare " + msg.getClass().getSimpleName(), ex);
+            promise.tryFailure(ex);
+        }
+    }
+
+    private void discardPending()
+    {
+        PendingWrite write;
+
+        while ((write = pending.poll()) != null)
+        {
+            ReferenceCountUtil.release(write.msg);
+            write.promise.tryFailure(new ClosedChannelException());
+        }
+    }
+
+    /**
+     * @return true if the message is the encoded frame of a keep alive packet, which is never compressed
+     */
+    private static boolean isKeepAlive(ChannelHandlerContext ctx, Object msg)
+    {
+        if (!(msg instanceof ByteBuf) || ctx.channel().attr(NetworkManager.c).get() != EnumProtocol.PLAY) return false;
+
+        ByteBuf buffer = (ByteBuf) msg;
+        int index = buffer.readerIndex();
+
+        // A frame of the compressor starts with the data length, which is 0 for an uncompressed packet
+        if (ctx.pipeline().get("compress") != null && (!buffer.isReadable() || buffer.getByte(index++) != 0)) return false;
+
+        // The packet id and the key, both var ints
+        return index < buffer.writerIndex() && buffer.writerIndex() - index <= 6 && buffer.getByte(index) == KEEP_ALIVE_ID;
+    }
+
+    private static final class PendingWrite {
+
+        private final Object msg;
+
+        private final PreparedPacket preparedPacket;
+
+        private final ChannelPromise promise;
+
+        private PendingWrite(Object msg, PreparedPacket preparedPacket, ChannelPromise promise)
+        {
+            this.msg = msg;
+            this.preparedPacket = preparedPacket;
+            this.promise = promise;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package de.dytanic.spigot;
+
+import de.dytanic.log.DytanicLogger;
+import org.bukkit.command.CommandSender;
+
+import java.util.Arrays;
+
+/**
+ * A benchmark scenario which runs over several ticks, main thread only. The server ticks it after the chunk load queue
+ * and passes the duration of the previous tick, the tick times are reported to the sender once the scenario is done.
+ */
+public abstract class TickBenchmark {
+
+    private static final String PREFIX = "§8[§a§lSpigot§8] §7";
+
+    private static final DytanicLogger LOGGER = DytanicLogger.getInstance();
+
+    protected final CommandSender sender;
+
+    protected final String name;
+
+    private final long startTime = System.nanoTime();
+
+    private long[] tickTimes = new long[128];
+
+    private int ticks = -1;
+
+    private boolean finished;
+
+    protected TickBenchmark(CommandSender sender, String name)
+    {
+        this.sender = sender;
+        this.name = name;
+    }
+
+    /**
+     * @param lastTickTime the duration of the previous tick in nanoseconds, the first call ignores it because the
+     *                     scenario started within that tick
+     */
+    public final void tick(long lastTickTime)
+    {
+        if (finished) return;
+
+        if (ticks >= 0)
+        {
+            if (ticks == tickTimes.length) tickTimes = Arrays.copyOf(tickTimes, ticks * 2);
+
+            tickTimes[ticks] = lastTickTime;
+        }
+
+        if (tick(++ticks))
+            finish();
+    }
+
+    /**
+     * Runs the scenario of a tick
+     *
+     * @param tick the number of ticks since the scenario started
+     * @return true if the scenario is done
+     */
+    protected abstract boolean tick(int tick);
+
+    /**
+     * @return the result of the scenario besides the tick times, appended to the report
+     */
+    protected String getResult(long elapsedNanos)
+    {
+        return "";
+    }
+
+    public void cancel()
+    {
+        if (finished) return;
+
+        finished = true;
+        sender.sendMessage(PREFIX + "Benchmark " + name + " cancelled");
+    }
+
+    public boolean isFinished()
+    {
+        return finished;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    private void finish()
+    {
+        finished = true;
+
+        long[] sorted = Arrays.copyOf(tickTimes, ticks);
+        Arrays.sort(sorted);
+
+        long total = 0;
+
+        for (long tickTime : sorted)
+            total += tickTime;
+
+        String report = sorted.length == 0 ? "no ticks" : String.format("%d ticks, mean %.2f ms, p50 %.2f ms, p95 %.2f ms, max %.2f ms",
+                sorted.length, total / (double) sorted.length / 1.0E6, percentile(sorted, 0.5), percentile(sorted, 0.95), sorted[sorted.length - 1] / 1.0E6);
+        String result = getResult(System.nanoTime() - startTime);
+
+        if (!result.isEmpty()) report += ", " + result;
+
+        LOGGER.info("Benchmark " + name + ": " + report);
+        sender.sendMessage(PREFIX + "Benchmark " + name + " §8» §7" + report);
+    }
+
+    private static double percentile(long[] sorted, double percentile)
+    {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(percentile * sorted.length) - 1)] / 1.0E6;
+    }
+}
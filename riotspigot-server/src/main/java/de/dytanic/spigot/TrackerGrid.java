@@ -0,0 +1,233 @@
+package de.dytanic.spigot;
+
+import net.minecraft.server.EntityHuman;
+import net.minecraft.server.EntityPlayer;
+import net.minecraft.server.EntityTrackerEntry;
+import net.minecraft.server.MathHelper;
+import net.minecraft.server.World;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Spatial index of one EntityTracker. Tracker entries are bucketed by the chunk their entity is in and moved when it
+ * crosses a chunk border, the players are bucketed once per tracker tick. Every entry also knows which players it is
+ * tracked by and every player which entries track it, so untracking never needs a scan over all entries.
+ */
+public class TrackerGrid {
+
+    private final Map<Long, List<EntityTrackerEntry>> entries = new HashMap<>();
+
+    private final Map<Long, List<EntityHuman>> players = new HashMap<>();
+
+    private final Map<EntityPlayer, Set<EntityTrackerEntry>> trackedBy = new HashMap<>();
+
+    private final List<EntityHuman> playerCandidates = new ArrayList<>();
+
+    private final List<EntityTrackerEntry> entryCandidates = new ArrayList<>();
+
+    private List<EntityHuman> allPlayers = Collections.emptyList();
+
+    private long pairChecks, cellMoves;
+
+    public void add(EntityTrackerEntry entry)
+    {
+        entry.grid = this;
+        entry.gridX = MathHelper.floor(entry.tracker.locX) >> 4;
+        entry.gridZ = MathHelper.floor(entry.tracker.locZ) >> 4;
+        bucket(entries, World.chunkToKey(entry.gridX, entry.gridZ)).add(entry);
+    }
+
+    public void remove(EntityTrackerEntry entry)
+    {
+        unbucket(entry);
+        entry.grid = null;
+
+        for (EntityPlayer entityplayer : entry.trackedPlayers)
+            untracked(entry, entityplayer);
+    }
+
+    /**
+     * Moves the entry into the bucket of the chunk its entity is in now.
+     */
+    public void move(EntityTrackerEntry entry)
+    {
+        int x = MathHelper.floor(entry.tracker.locX) >> 4, z = MathHelper.floor(entry.tracker.locZ) >> 4;
+
+        if (x == entry.gridX && z == entry.gridZ) return;
+
+        unbucket(entry);
+        entry.gridX = x;
+        entry.gridZ = z;
+        bucket(entries, World.chunkToKey(x, z)).add(entry);
+        cellMoves++;
+    }
+
+    /**
+     * Buckets the players of the world, called once per tick before the entries are updated.
+     */
+    public void updatePlayers(List<EntityHuman> list)
+    {
+        players.clear();
+        allPlayers = list;
+
+        for (EntityHuman entityhuman : list)
+            bucket(players, World.chunkToKey(MathHelper.floor(entityhuman.locX) >> 4, MathHelper.floor(entityhuman.locZ) >> 4)).add(entityhuman);
+    }
+
+    /**
+     * @return the players which may be in the tracking range of the entry and the players tracking it
+     */
+    public List<EntityHuman> getPlayerCandidates(EntityTrackerEntry entry)
+    {
+        int range = entry.b;
+        int minX = MathHelper.floor(entry.tracker.locX - range) >> 4, maxX = MathHelper.floor(entry.tracker.locX + range) >> 4;
+        int minZ = MathHelper.floor(entry.tracker.locZ - range) >> 4, maxZ = MathHelper.floor(entry.tracker.locZ + range) >> 4;
+
+        playerCandidates.clear();
+
+        if ((maxX - minX + 1) * (maxZ - minZ + 1) >= allPlayers.size())
+            playerCandidates.addAll(allPlayers);
+        else
+        {
+            for (int x = minX; x <= maxX; x++)
+                for (int z = minZ; z <= maxZ; z++)
+                {
+                    List<EntityHuman> bucket = players.get(World.chunkToKey(x, z));
+
+                    if (bucket != null) playerCandidates.addAll(bucket);
+                }
+
+            for (EntityPlayer entityplayer : entry.trackedPlayers)
+            {
+                int x = MathHelper.floor(entityplayer.locX) >> 4, z = MathHelper.floor(entityplayer.locZ) >> 4;
+
+                if (x < minX || x > maxX || z < minZ || z > maxZ) playerCandidates.add(entityplayer);
+            }
+        }
+
+        pairChecks += playerCandidates.size();
+        return playerCandidates;
+    }
+
+    /**
+     * @param range the largest tracking range of all entries
+     * @return the entries which may have the player in their tracking range and the entries which track the player
+     */
+    public List<EntityTrackerEntry> getEntryCandidates(EntityPlayer entityplayer, int range)
+    {
+        // One chunk more, the entries are moved once per tick only
+        int minX = (MathHelper.floor(entityplayer.locX - range) >> 4) - 1, maxX = (MathHelper.floor(entityplayer.locX + range) >> 4) + 1;
+        int minZ = (MathHelper.floor(entityplayer.locZ - range) >> 4) - 1, maxZ = (MathHelper.floor(entityplayer.locZ + range) >> 4) + 1;
+
+        entryCandidates.clear();
+
+        for (int x = minX; x <= maxX; x++)
+            for (int z = minZ; z <= maxZ; z++)
+            {
+                List<EntityTrackerEntry> bucket = entries.get(World.chunkToKey(x, z));
+
+                if (bucket != null) entryCandidates.addAll(bucket);
+            }
+
+        Set<EntityTrackerEntry> tracking = trackedBy.get(entityplayer);
+
+        if (tracking != null)
+            for (EntityTrackerEntry entry : tracking)
+            {
+                if (entry.gridX < minX || entry.gridX > maxX || entry.gridZ < minZ || entry.gridZ > maxZ)
+                    entryCandidates.add(entry);
+            }
+
+        pairChecks += entryCandidates.size();
+        return entryCandidates;
+    }
+
+    /**
+     * @return the entries in the chunk and its direct neighbours
+     */
+    public List<EntityTrackerEntry> getEntries(int chunkX, int chunkZ)
+    {
+        entryCandidates.clear();
+
+        for (int x = chunkX - 1; x <= chunkX + 1; x++)
+            for (int z = chunkZ - 1; z <= chunkZ + 1; z++)
+            {
+                List<EntityTrackerEntry> bucket = entries.get(World.chunkToKey(x, z));
+
+                if (bucket != null) entryCandidates.addAll(bucket);
+            }
+
+        return entryCandidates;
+    }
+
+    /**
+     * @return a copy of the entries which track the player
+     */
+    public Collection<EntityTrackerEntry> getTracking(EntityPlayer entityplayer)
+    {
+        Set<EntityTrackerEntry> tracking = trackedBy.get(entityplayer);
+
+        return tracking != null ? new ArrayList<>(tracking) : Collections.<EntityTrackerEntry>emptyList();
+    }
+
+    public void tracked(EntityTrackerEntry entry, EntityPlayer entityplayer)
+    {
+        Set<EntityTrackerEntry> tracking = trackedBy.get(entityplayer);
+
+        if (tracking == null)
+        {
+            tracking = new LinkedHashSet<>();
+            trackedBy.put(entityplayer, tracking);
+        }
+
+        tracking.add(entry);
+    }
+
+    public void untracked(EntityTrackerEntry entry, EntityPlayer entityplayer)
+    {
+        Set<EntityTrackerEntry> tracking = trackedBy.get(entityplayer);
+
+        if (tracking != null && tracking.remove(entry) && tracking.isEmpty())
+            trackedBy.remove(entityplayer);
+    }
+
+    /**
+     * Adds the counters of this grid to the timings of its world, called by the main thread after the worlds were
+     * ticked.
+     */
+    public void recordTimings(String world)
+    {
+        co.aikar.timings.TimingHistory.addTrackerTicks(world, pairChecks, cellMoves);
+        pairChecks = 0;
+        cellMoves = 0;
+    }
+
+    private void unbucket(EntityTrackerEntry entry)
+    {
+        long key = World.chunkToKey(entry.gridX, entry.gridZ);
+        List<EntityTrackerEntry> bucket = entries.get(key);
+
+        if (bucket != null && bucket.remove(entry) && bucket.isEmpty())
+            entries.remove(key);
+    }
+
+    private static <T> List<T> bucket(Map<Long, List<T>> map, long key)
+    {
+        List<T> bucket = map.get(key);
+
+        if (bucket == null)
+        {
+            bucket = new ArrayList<>(4);
+            map.put(key, bucket);
+        }
+
+        return bucket;
+    }
+}
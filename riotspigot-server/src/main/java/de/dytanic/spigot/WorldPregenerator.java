@@ -0,0 +1,452 @@
+package de.dytanic.spigot;
+
+import de.dytanic.document.Document;
+import de.dytanic.log.DytanicLogger;
+import net.minecraft.server.Chunk;
+import net.minecraft.server.ChunkProviderServer;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.WorldServer;
+import org.bukkit.craftbukkit.util.LongHash;
+import org.bukkit.craftbukkit.util.LongHashSet;
+import org.spigotmc.SpigotConfig;
+import org.spigotmc.TickLimiter;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Generates all chunks of a square or a circle around a center chunk of one world, main thread only. The region files
+ * are walked in a spiral around the region of the center, each region row by row. A region is finished with the
+ * chunks on its positive x and z border, so every chunk of the region is populated within its pass. A chunk is
+ * populated once the chunks at x + 1 and z + 1 are loaded, and it is needed to populate the chunks at x - 1 and z - 1,
+ * so a row is unloaded and saved as soon as the row after it is loaded. The last row is unloaded at the end of the
+ * pass. The last finished region is checkpointed to a file in the world folder, a pre-generation which was
+ * interrupted resumes with the region after it.
+ */
+public class WorldPregenerator {
+
+    public enum Shape
+    {
+        SQUARE,
+        CIRCLE
+    }
+
+    public static final String FILE_NAME = "pregenerator.json";
+
+    private static final DytanicLogger LOGGER = DytanicLogger.getInstance();
+
+    /**
+     * Chunks which may be requested from the chunk provider at once
+     */
+    private static final int MAX_PENDING = 64;
+
+    private static final long REPORT_INTERVAL = 10000L;
+
+    private final WorldServer world;
+
+    private final Shape shape;
+
+    private final int centerX, centerZ, radius;
+
+    private final int centerRegionX, centerRegionZ, rings;
+
+    private final long totalChunks;
+
+    private final File file;
+
+    private int region;
+
+    private long chunks;
+
+    private int checkpointRegion;
+
+    private long checkpointChunks;
+
+    private boolean paused, finished, cancelled;
+
+    // The pass of the current region
+    private int regionX = Integer.MIN_VALUE, regionZ, position;
+
+    private final List<Chunk> held = new ArrayList<>();
+
+    // The requests of each row of the pass which are still pending
+    private final int[] rowPending = new int[33];
+
+    private int releasedRows;
+
+    /**
+     * The chunks which were loaded by the pre-generation and may still be loaded, a border chunk which is requested
+     * again by the next pass before it is unloaded is held by that pass as well
+     */
+    private final LongHashSet owned = new LongHashSet();
+
+    private int pending;
+
+    private TickLimiter limiter;
+
+    private int limiterTime = -1;
+
+    private long reportTime, reportChunks;
+
+    private WorldPregenerator(WorldServer world, Shape shape, int centerX, int centerZ, int radius)
+    {
+        this.world = world;
+        this.shape = shape;
+        this.centerX = centerX;
+        this.centerZ = centerZ;
+        this.radius = radius;
+        this.centerRegionX = centerX >> 5;
+        this.centerRegionZ = centerZ >> 5;
+        this.rings = Math.max(
+                Math.max(centerRegionX - ((centerX - radius) >> 5), ((centerX + radius) >> 5) - centerRegionX),
+                Math.max(centerRegionZ - ((centerZ - radius) >> 5), ((centerZ + radius) >> 5) - centerRegionZ));
+        this.totalChunks = count(shape, radius);
+        this.file = new File(world.getDataManager().getDirectory(), FILE_NAME);
+    }
+
+    /**
+     * Starts a new pre-generation of the world, replacing the checkpoint of an earlier one
+     */
+    public static WorldPregenerator start(WorldServer world, Shape shape, int centerX, int centerZ, int radius)
+    {
+        WorldPregenerator pregenerator = new WorldPregenerator(world, shape, centerX, centerZ, radius);
+
+        pregenerator.reportTime = System.currentTimeMillis();
+        pregenerator.checkpoint();
+        return pregenerator;
+    }
+
+    /**
+     * @return the pre-generation which was interrupted, or null if the world has no checkpoint
+     */
+    public static WorldPregenerator resume(WorldServer world)
+    {
+        File file = new File(world.getDataManager().getDirectory(), FILE_NAME);
+
+        if (!file.exists()) return null;
+
+        try
+        {
+            Document document = new Document().append(file);
+            WorldPregenerator pregenerator = new WorldPregenerator(world, Shape.valueOf(document.getString("shape")),
+                    document.getInt("centerX"), document.getInt("centerZ"), document.getInt("radius"));
+
+            pregenerator.region = pregenerator.checkpointRegion = document.getInt("region");
+            pregenerator.chunks = pregenerator.checkpointChunks = document.getLong("chunks");
+            pregenerator.paused = document.getBoolean("paused");
+            pregenerator.reportTime = System.currentTimeMillis();
+            pregenerator.reportChunks = pregenerator.chunks;
+
+            LOGGER.info(String.format("Resuming the pre-generation of %s at region %d, %d of %d chunks",
+                    world.getWorldData().getName(), pregenerator.region, pregenerator.chunks, pregenerator.totalChunks));
+            return pregenerator;
+        } catch (Exception ex)
+        {
+            LOGGER.error("Couldn't read the pre-generation checkpoint " + file, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Requests the next chunks while the tick has time left and the server keeps the configured TPS
+     */
+    public void tick()
+    {
+        if (finished || paused) return;
+
+        report(false);
+
+        if (MinecraftServer.getServer().currentTps < SpigotConfig.pregeneratorTpsFloor) return;
+
+        if (limiterTime != SpigotConfig.pregeneratorMaxTime)
+        {
+            limiterTime = SpigotConfig.pregeneratorMaxTime;
+            limiter = new TickLimiter(limiterTime);
+        }
+
+        limiter.initTick();
+
+        while (!finished && pending < MAX_PENDING && limiter.shouldContinue())
+        {
+            if (regionX == Integer.MIN_VALUE && !nextRegion()) return;
+
+            if (position < 33 * 33)
+            {
+                int x = (regionX << 5) + position % 33, z = (regionZ << 5) + position / 33;
+
+                position++;
+                if (isRequired(x, z))
+                    request(x, z);
+
+                releaseRows();
+            } else if (pending == 0)
+            {
+                // Every chunk of the region is populated, its border chunks are loaded again by the next pass
+                releaseAll();
+                checkpointRegion = ++region;
+                checkpointChunks = chunks;
+                regionX = Integer.MIN_VALUE;
+                checkpoint();
+            } else
+            {
+                releaseRows();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Unloads the rows of the pass whose chunks and the chunks before them are populated, that is once the row after
+     * them is loaded completely. The last row stays loaded until the pass is finished.
+     */
+    private void releaseRows()
+    {
+        while (releasedRows < 32 && position >= (releasedRows + 2) * 33 && rowPending[releasedRows] == 0 && rowPending[releasedRows + 1] == 0)
+        {
+            int z = (regionZ << 5) + releasedRows;
+
+            for (Iterator<Chunk> iterator = held.iterator(); iterator.hasNext(); )
+            {
+                Chunk chunk = iterator.next();
+
+                if (chunk.locZ == z)
+                {
+                    release(chunk);
+                    iterator.remove();
+                }
+            }
+
+            releasedRows++;
+        }
+    }
+
+    private void request(int x, int z)
+    {
+        ChunkProviderServer chunkProviderServer = world.chunkProviderServer;
+        final long key = LongHash.toLong(x, z);
+        final boolean loaded = chunkProviderServer.isChunkLoaded(x, z) && !owned.contains(key);
+        final boolean counted = isInside(x, z) && x >> 5 == regionX && z >> 5 == regionZ;
+        final int row = z - (regionZ << 5);
+
+        pending++;
+        rowPending[row]++;
+        chunkProviderServer.getOrGenerateChunkAt(x, z, new Consumer<Chunk>() {
+            @Override
+            public void accept(Chunk chunk)
+            {
+                pending--;
+                rowPending[row]--;
+
+                if (counted) chunks++;
+
+                if (!loaded)
+                {
+                    owned.add(key);
+
+                    if (finished)
+                        release(chunk);
+                    else
+                        held.add(chunk);
+                }
+            }
+        });
+    }
+
+    /**
+     * Moves to the next region of the spiral which contains a chunk of the shape
+     *
+     * @return false if all regions are generated
+     */
+    private boolean nextRegion()
+    {
+        int regions = (2 * rings + 1) * (2 * rings + 1);
+
+        for (; region < regions; region++)
+        {
+            int[] offset = spiral(region);
+            int x = centerRegionX + offset[0], z = centerRegionZ + offset[1];
+
+            if (intersects(x, z))
+            {
+                regionX = x;
+                regionZ = z;
+                position = 0;
+                releasedRows = 0;
+                return true;
+            }
+        }
+
+        finish();
+        return false;
+    }
+
+    /**
+     * @return true if the chunk is inside the current region and the shape, or one of the chunks which are needed
+     * to populate such a chunk
+     */
+    private boolean isRequired(int x, int z)
+    {
+        for (int dx = 0; dx <= 1; dx++)
+            for (int dz = 0; dz <= 1; dz++)
+            {
+                int i = x - dx, j = z - dz;
+
+                if (i >> 5 == regionX && j >> 5 == regionZ && isInside(i, j)) return true;
+            }
+
+        return false;
+    }
+
+    private boolean isInside(int x, int z)
+    {
+        int dx = x - centerX, dz = z - centerZ;
+
+        return shape == Shape.SQUARE ? Math.abs(dx) <= radius && Math.abs(dz) <= radius : dx * dx + dz * dz <= radius * radius;
+    }
+
+    private boolean intersects(int regionX, int regionZ)
+    {
+        // The chunk of the region which is nearest to the center
+        int x = Math.max(regionX << 5, Math.min(centerX, (regionX << 5) + 31));
+        int z = Math.max(regionZ << 5, Math.min(centerZ, (regionZ << 5) + 31));
+
+        return isInside(x, z);
+    }
+
+    /**
+     * @return the offset of the region with the index from the center, ring by ring
+     */
+    private static int[] spiral(int index)
+    {
+        if (index == 0) return new int[]{0, 0};
+
+        int ring = (int) Math.ceil((Math.sqrt(index + 1) - 1) / 2);
+        int side = 2 * ring, i = index - (2 * ring - 1) * (2 * ring - 1);
+
+        switch (i / side)
+        {
+            case 0:
+                return new int[]{-ring + i, -ring};
+            case 1:
+                return new int[]{ring, -ring + i - side};
+            case 2:
+                return new int[]{ring - (i - 2 * side), ring};
+            default:
+                return new int[]{-ring, ring - (i - 3 * side)};
+        }
+    }
+
+    private static long count(Shape shape, int radius)
+    {
+        if (shape == Shape.SQUARE) return (2L * radius + 1) * (2L * radius + 1);
+
+        long count = 0;
+
+        for (int dx = -radius; dx <= radius; dx++)
+            count += 2 * (long) Math.sqrt((double) radius * radius - (double) dx * dx) + 1;
+
+        return count;
+    }
+
+    private void release(Chunk chunk)
+    {
+        if (!world.getPlayerChunkMap().isChunkInUse(chunk.locX, chunk.locZ))
+            world.chunkProviderServer.queueUnload(chunk.locX, chunk.locZ);
+    }
+
+    private void releaseAll()
+    {
+        for (Chunk chunk : held)
+            release(chunk);
+
+        held.clear();
+
+        // Chunks which were unloaded since an earlier pass aren't owned anymore
+        for (long key : owned.toArray())
+            if (finished || !world.chunkProviderServer.isChunkLoaded(LongHash.msw(key), LongHash.lsw(key)))
+                owned.remove(key);
+    }
+
+    private void finish()
+    {
+        finished = true;
+        releaseAll();
+        report(true);
+
+        if (!file.delete())
+            LOGGER.warn("Couldn't delete the pre-generation checkpoint " + file);
+    }
+
+    private void report(boolean force)
+    {
+        long now = System.currentTimeMillis();
+
+        if (!force && now - reportTime < REPORT_INTERVAL) return;
+
+        LOGGER.info(String.format("Pre-generation of %s: %s", world.getWorldData().getName(), getStatus(now)));
+        reportTime = now;
+        reportChunks = chunks;
+    }
+
+    private String getStatus(long now)
+    {
+        double chunksPerSecond = now > reportTime ? (chunks - reportChunks) * 1000D / (now - reportTime) : 0D;
+
+        return String.format("%d of %d chunks (%.1f%%), %.1f chunks/s%s", chunks, totalChunks,
+                totalChunks == 0 ? 100D : Math.min(100D, chunks * 100D / totalChunks), chunksPerSecond,
+                cancelled ? ", cancelled" : finished ? ", finished" : paused ? ", paused" : "");
+    }
+
+    private void checkpoint()
+    {
+        new Document()
+                .append("shape", shape.name())
+                .append("centerX", centerX)
+                .append("centerZ", centerZ)
+                .append("radius", radius)
+                .append("region", checkpointRegion)
+                .append("chunks", checkpointChunks)
+                .append("paused", paused)
+                .save(file);
+    }
+
+    /**
+     * Stops requesting chunks, the chunks of the current pass stay loaded until it is resumed
+     */
+    public void setPaused(boolean paused)
+    {
+        if (finished || this.paused == paused) return;
+
+        this.paused = paused;
+        checkpoint();
+    }
+
+    /**
+     * Stops the pre-generation and removes its checkpoint
+     */
+    public void cancel()
+    {
+        if (finished) return;
+
+        cancelled = true;
+        finish();
+    }
+
+    public boolean isPaused()
+    {
+        return paused;
+    }
+
+    public boolean isFinished()
+    {
+        return finished;
+    }
+
+    public String getStatus()
+    {
+        return getStatus(System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,316 @@
+package de.dytanic.spigot;
+
+import de.dytanic.spigot.event.EventRouter;
+import net.minecraft.server.Entity;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.WorldServer;
+import org.bukkit.event.Event;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Ticks the worlds of the server in parallel. Every world is ticked by exactly one pool thread per tick, which owns
+ * the world until the tick is joined again. Work which touches two worlds, like moving an entity to another world,
+ * is handed off to the main thread and runs after all worlds were ticked.
+ * <p>
+ * Plugin code never runs on a world tick thread. The events of a world tick thread are called on the main thread while
+ * the world tick thread waits, and only once every other world tick thread waits as well or is done. The listeners
+ * therefore run on the primary thread and may access every world, like with sequential ticking.
+ */
+public class WorldTickPool implements EventRouter {
+
+    private static final Runnable WORLD_DONE = new Runnable() {
+        @Override
+        public void run()
+        {
+        }
+    };
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Held by the main thread while the worlds are ticked, work which must not overlap with the world ticks locks it too.
+     */
+    private final ReentrantLock barrier = new ReentrantLock();
+
+    private final Map<Object, Runnable> handoffs = new LinkedHashMap<>();
+
+    /**
+     * Read locked by a world tick thread while it ticks, write locked by the main thread while it runs a task of a
+     * world tick thread. A world tick thread unlocks it while it waits for its task.
+     */
+    private final ReentrantReadWriteLock worldLock = new ReentrantReadWriteLock();
+
+    private final LinkedBlockingQueue<Runnable> mainThreadTasks = new LinkedBlockingQueue<>();
+
+    public WorldTickPool(int threads)
+    {
+        this.pool = new ForkJoinPool(threads, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+
+            private final AtomicInteger threadId = new AtomicInteger();
+
+            @Override
+            public ForkJoinWorkerThread newThread(ForkJoinPool pool)
+            {
+                WorldTickThread thread = new WorldTickThread(pool);
+                thread.setName("World Tick Thread #" + threadId.incrementAndGet());
+                thread.setPriority(Thread.NORM_PRIORITY + 2);
+                return thread;
+            }
+        }, null, false);
+    }
+
+    /**
+     * @return the world which is ticked by the current thread, or null if this is no world tick thread
+     */
+    public static WorldServer currentWorld()
+    {
+        Thread thread = Thread.currentThread();
+
+        return thread instanceof WorldTickThread ? ((WorldTickThread) thread).world : null;
+    }
+
+    public static boolean isWorldTickThread()
+    {
+        return currentWorld() != null;
+    }
+
+    /**
+     * Ticks all worlds and waits for them, the first exception of a world is rethrown on the calling thread. The tasks
+     * the world tick threads pass to the main thread are run in the meantime.
+     */
+    public void tick(List<WorldServer> worlds, final MinecraftServer server)
+    {
+        List<Callable<Void>> tasks = new ArrayList<>(worlds.size());
+
+        for (final WorldServer worldserver : worlds)
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception
+                {
+                    WorldTickThread thread = (WorldTickThread) Thread.currentThread();
+                    thread.world = worldserver;
+                    worldLock.readLock().lock();
+
+                    try
+                    {
+                        server.tickWorld(worldserver);
+                    } finally
+                    {
+                        worldLock.readLock().unlock();
+                        thread.world = null;
+                        mainThreadTasks.add(WORLD_DONE);
+                    }
+                    return null;
+                }
+            });
+
+        barrier.lock();
+
+        try
+        {
+            List<Future<Void>> futures = new ArrayList<>(tasks.size());
+
+            for (Callable<Void> task : tasks)
+                futures.add(pool.submit(task));
+
+            // Not interruptible, the world tick threads may wait for a task of the main thread
+            boolean interrupted = false;
+
+            for (int running = tasks.size(); running > 0; )
+            {
+                Runnable task;
+
+                try
+                {
+                    task = mainThreadTasks.take();
+                } catch (InterruptedException ex)
+                {
+                    interrupted = true;
+                    continue;
+                }
+
+                if (task == WORLD_DONE)
+                    running--;
+                else
+                    runExclusive(task);
+            }
+
+            if (interrupted) Thread.currentThread().interrupt();
+
+            for (Future<Void> future : futures)
+                try
+                {
+                    future.get();
+                } catch (ExecutionException ex)
+                {
+                    Throwable cause = ex.getCause();
+
+                    if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                    if (cause instanceof Error) throw (Error) cause;
+                    throw new RuntimeException(cause);
+                }
+        } catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        } finally
+        {
+            barrier.unlock();
+        }
+
+        runHandoffs();
+    }
+
+    /**
+     * Runs the task on the main thread if the current thread is a world tick thread and waits for it. The task runs once
+     * no other world tick thread is in the middle of its tick, so it may access every world.
+     *
+     * @return true if the task was run on the main thread, false if the caller must run it itself
+     */
+    public boolean runOnMainThread(Runnable runnable)
+    {
+        if (!isWorldTickThread()) return false;
+
+        FutureTask<Void> task = new FutureTask<>(runnable, null);
+        boolean interrupted = false;
+
+        worldLock.readLock().unlock();
+
+        try
+        {
+            mainThreadTasks.add(task);
+
+            while (true)
+                try
+                {
+                    task.get();
+                    break;
+                } catch (InterruptedException ex)
+                {
+                    interrupted = true;
+                } catch (ExecutionException ex)
+                {
+                    Throwable cause = ex.getCause();
+
+                    if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                    if (cause instanceof Error) throw (Error) cause;
+                    throw new RuntimeException(cause);
+                }
+        } finally
+        {
+            worldLock.readLock().lock();
+
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+
+        return true;
+    }
+
+    /**
+     * Calls the listeners of the events of world tick threads on the main thread, see {@link #runOnMainThread(Runnable)}.
+     */
+    @Override
+    public boolean route(Event event, Runnable dispatch)
+    {
+        if (!isWorldTickThread() || event.getHandlers().getRegisteredListeners().length == 0) return false;
+
+        return runOnMainThread(dispatch);
+    }
+
+    private void runExclusive(Runnable task)
+    {
+        worldLock.writeLock().lock();
+
+        try
+        {
+            task.run();
+        } finally
+        {
+            worldLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Runs the task while no world is ticked.
+     */
+    public void runBetweenTicks(Runnable runnable)
+    {
+        barrier.lock();
+
+        try
+        {
+            runnable.run();
+        } finally
+        {
+            barrier.unlock();
+        }
+    }
+
+    /**
+     * Hands the task off to the main thread if the current thread is a world tick thread. Only the first pending task
+     * per entity is kept, an entity standing in a portal requests the same move every tick.
+     *
+     * @return true if the task was handed off and the caller must not run it itself
+     */
+    public boolean handoff(Entity entity, Runnable runnable)
+    {
+        if (!isWorldTickThread()) return false;
+
+        synchronized (handoffs)
+        {
+            if (!handoffs.containsKey(entity)) handoffs.put(entity, runnable);
+        }
+
+        return true;
+    }
+
+    private void runHandoffs()
+    {
+        Runnable[] tasks;
+
+        synchronized (handoffs)
+        {
+            if (handoffs.isEmpty()) return;
+
+            tasks = handoffs.values().toArray(new Runnable[handoffs.size()]);
+            handoffs.clear();
+        }
+
+        for (Runnable task : tasks)
+            try
+            {
+                task.run();
+            } catch (Exception ex)
+            {
+                ex.printStackTrace();
+            }
+    }
+
+    public void shutdown()
+    {
+        pool.shutdown();
+    }
+
+    private static final class WorldTickThread extends ForkJoinWorkerThread {
+
+        private volatile WorldServer world;
+
+        private WorldTickThread(ForkJoinPool pool)
+        {
+            super(pool);
+        }
+    }
+}
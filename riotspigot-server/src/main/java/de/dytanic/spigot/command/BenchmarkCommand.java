@@ -0,0 +1,325 @@
+package de.dytanic.spigot.command;
+
+import de.dytanic.spigot.TickBenchmark;
+import net.minecraft.server.Chunk;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.WorldServer;
+import org.apache.commons.io.FileUtils;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.WorldCreator;
+import org.bukkit.WorldType;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.craftbukkit.CraftWorld;
+import org.bukkit.entity.Player;
+import org.bukkit.entity.TNTPrimed;
+import org.spigotmc.SpigotConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.function.Consumer;
+
+/**
+ * Runs a benchmark scenario on the server and reports the tick times, see {@link TickBenchmark}. Only one benchmark
+ * runs at a time. The scenarios change the world, so they belong on a test server.
+ */
+public class BenchmarkCommand extends Command {
+
+    private static final String PREFIX = "§8[§a§lSpigot§8] §7";
+
+    public BenchmarkCommand(String name)
+    {
+        super(name);
+        this.description = "Runs a benchmark scenario and reports the tick times";
+        this.usageMessage = "/benchmark tnt [amount] [ticks]\n" +
+                "/benchmark falling [amount] [ticks]\n" +
+                "/benchmark generate [radius in chunks]\n" +
+                "/benchmark <status|cancel>";
+        this.setPermission("bukkit.command.benchmark");
+    }
+
+    @Override
+    public boolean execute(final CommandSender sender, String currentAlias, final String[] args)
+    {
+        if (!testPermission(sender)) return true;
+
+        if (args.length < 1)
+        {
+            sender.sendMessage(usageMessage);
+            return true;
+        }
+
+        MinecraftServer.getServer().postToMainThread(new Runnable() {
+            @Override
+            public void run()
+            {
+                execute(sender, args);
+            }
+        });
+        return true;
+    }
+
+    private void execute(CommandSender sender, String[] args)
+    {
+        MinecraftServer server = MinecraftServer.getServer();
+
+        switch (args[0].toLowerCase())
+        {
+            case "status":
+                sender.sendMessage(PREFIX + (server.benchmark == null ? "No benchmark is running" : "Benchmark " + server.benchmark.getName() + " is running"));
+                return;
+            case "cancel":
+                if (server.benchmark == null)
+                {
+                    sender.sendMessage(PREFIX + "No benchmark is running");
+                    return;
+                }
+
+                server.benchmark.cancel();
+                server.benchmark = null;
+                return;
+        }
+
+        if (server.benchmark != null)
+        {
+            sender.sendMessage(PREFIX + "Benchmark " + server.benchmark.getName() + " is running, cancel it first");
+            return;
+        }
+
+        TickBenchmark benchmark;
+
+        try
+        {
+            switch (args[0].toLowerCase())
+            {
+                case "tnt":
+                    if (!(sender instanceof Player))
+                    {
+                        sender.sendMessage(PREFIX + "The benchmark spawns the TNT at your position");
+                        return;
+                    }
+
+                    benchmark = new TntBenchmark(sender, ((Player) sender).getLocation(), argument(args, 1, 500), argument(args, 2, 100));
+                    break;
+                case "falling":
+                    if (!(sender instanceof Player))
+                    {
+                        sender.sendMessage(PREFIX + "The benchmark spawns the falling blocks around your position");
+                        return;
+                    }
+
+                    benchmark = new FallingBenchmark(sender, ((Player) sender).getLocation(), argument(args, 1, 5000), argument(args, 2, 200));
+                    break;
+                case "generate":
+                {
+                    int radius = argument(args, 1, 16);
+
+                    if (Bukkit.getWorld(GenerationBenchmark.WORLD_NAME) != null || new File(Bukkit.getWorldContainer(), GenerationBenchmark.WORLD_NAME).exists())
+                    {
+                        sender.sendMessage(PREFIX + "The world " + GenerationBenchmark.WORLD_NAME + " of an earlier run still exists, delete it first");
+                        return;
+                    }
+
+                    // Creating the world generates its spawn area, this happens before the first measured tick
+                    World world = Bukkit.createWorld(new WorldCreator(GenerationBenchmark.WORLD_NAME).seed(GenerationBenchmark.SEED)
+                            .environment(World.Environment.NORMAL).type(WorldType.NORMAL));
+                    benchmark = new GenerationBenchmark(sender, ((CraftWorld) world).getHandle(), radius);
+                    break;
+                }
+                default:
+                    sender.sendMessage(usageMessage);
+                    return;
+            }
+        } catch (IllegalArgumentException ex)
+        {
+            sender.sendMessage(usageMessage);
+            return;
+        }
+
+        server.benchmark = benchmark;
+        sender.sendMessage(PREFIX + "Benchmark " + benchmark.getName() + " started");
+    }
+
+    private static int argument(String[] args, int index, int defaultValue)
+    {
+        if (args.length <= index) return defaultValue;
+
+        int value = Integer.parseInt(args[index]);
+
+        if (value <= 0) throw new IllegalArgumentException();
+
+        return value;
+    }
+
+    /**
+     * A TNT cannon: primed TNT stacked in one block, which explodes in the same tick. In water the explosions destroy
+     * nothing and are merged, on land each explosion destroys blocks.
+     */
+    private static class TntBenchmark extends TickBenchmark {
+
+        private static final int FUSE_TICKS = 40;
+
+        private final Location location;
+
+        private final int amount, ticks;
+
+        TntBenchmark(CommandSender sender, Location location, int amount, int ticks)
+        {
+            super(sender, "tnt (" + amount + " TNT)");
+            this.location = location.getBlock().getLocation().add(0.5, 0, 0.5);
+            this.amount = amount;
+            this.ticks = ticks;
+        }
+
+        @Override
+        protected boolean tick(int tick)
+        {
+            if (tick == 0)
+                for (int i = 0; i < amount; i++)
+                    location.getWorld().spawn(location, TNTPrimed.class).setFuseTicks(FUSE_TICKS);
+
+            return tick >= ticks;
+        }
+    }
+
+    /**
+     * Falling sand and gravel spread over 64 x 64 blocks around the player, which fall onto the terrain below and
+     * collide with it every tick until they land. The positions are the same in every run.
+     */
+    private static class FallingBenchmark extends TickBenchmark {
+
+        private static final int SPREAD = 32, MIN_HEIGHT = 8, HEIGHT_RANGE = 48;
+
+        private final Location location;
+
+        private final int amount, ticks;
+
+        FallingBenchmark(CommandSender sender, Location location, int amount, int ticks)
+        {
+            super(sender, "falling (" + amount + " falling blocks)");
+            this.location = location.getBlock().getLocation();
+            this.amount = amount;
+            this.ticks = ticks;
+        }
+
+        @Override
+        protected boolean tick(int tick)
+        {
+            if (tick == 0)
+            {
+                Random random = new Random(0L);
+
+                for (int i = 0; i < amount; i++)
+                {
+                    Location spawn = location.clone().add(random.nextInt(SPREAD * 2) - SPREAD + 0.5,
+                            MIN_HEIGHT + random.nextInt(HEIGHT_RANGE), random.nextInt(SPREAD * 2) - SPREAD + 0.5);
+
+                    if (spawn.getY() > 255) spawn.setY(255);
+
+                    location.getWorld().spawnFallingBlock(spawn, (i & 1) == 0 ? Material.SAND : Material.GRAVEL, (byte) 0).setDropItem(false);
+                }
+            }
+
+            return tick >= ticks;
+        }
+    }
+
+    /**
+     * Generates the chunks of a square far away from the spawn of a new world with a fixed seed, through the chunk
+     * generation pipeline if the server has generation threads. Up to 64 chunks are requested at once, as long as the
+     * tick has time left. The world is unloaded and deleted afterwards.
+     */
+    private static class GenerationBenchmark extends TickBenchmark {
+
+        static final String WORLD_NAME = "benchmark-generation";
+
+        static final long SEED = 8091867987493326313L;
+
+        private static final int CENTER = 1000, MAX_PENDING = 64;
+
+        private static final long MAX_TICK_NANOS = 40000000L;
+
+        private final WorldServer world;
+
+        private final int radius, total;
+
+        private int position, pending, generated;
+
+        GenerationBenchmark(CommandSender sender, WorldServer world, int radius)
+        {
+            super(sender, "generate (" + (radius * 2 + 1) * (radius * 2 + 1) + " chunks, seed " + SEED + ")");
+            this.world = world;
+            this.radius = radius;
+            this.total = (radius * 2 + 1) * (radius * 2 + 1);
+        }
+
+        @Override
+        protected boolean tick(int tick)
+        {
+            long start = System.nanoTime();
+
+            while (position < total && pending < MAX_PENDING && System.nanoTime() - start < MAX_TICK_NANOS)
+            {
+                int x = CENTER - radius + position % (radius * 2 + 1), z = CENTER - radius + position / (radius * 2 + 1);
+
+                position++;
+                pending++;
+                world.chunkProviderServer.getOrGenerateChunkAt(x, z, new Consumer<Chunk>() {
+                    @Override
+                    public void accept(Chunk chunk)
+                    {
+                        pending--;
+                        generated++;
+                    }
+                });
+            }
+
+            return position == total && pending == 0;
+        }
+
+        @Override
+        protected String getResult(long elapsedNanos)
+        {
+            String result = String.format("%d chunks in %.2f s, %.1f chunks/s, %d generation threads", generated,
+                    elapsedNanos / 1.0E9, generated / (elapsedNanos / 1.0E9), world.chunkProviderServer.generationPipeline == null ? 0 : SpigotConfig.chunkGenerationThreads);
+
+            delete();
+            return result;
+        }
+
+        @Override
+        public void cancel()
+        {
+            super.cancel();
+
+            // Requested chunks would still be added to the world once they are generated
+            if (pending == 0)
+                delete();
+            else
+                sender.sendMessage(PREFIX + "The world " + WORLD_NAME + " is still generating, delete it after a restart");
+        }
+
+        private void delete()
+        {
+            File folder = world.getWorld().getWorldFolder();
+
+            if (!Bukkit.unloadWorld(world.getWorld(), false))
+            {
+                sender.sendMessage(PREFIX + "Couldn't unload the world " + WORLD_NAME + ", delete it after a restart");
+                return;
+            }
+
+            try
+            {
+                FileUtils.deleteDirectory(folder);
+            } catch (IOException ex)
+            {
+                sender.sendMessage(PREFIX + "Couldn't delete the world folder " + folder);
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package de.dytanic.spigot.command;
+
+import de.dytanic.spigot.WorldPregenerator;
+import net.minecraft.server.BlockPosition;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.WorldServer;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.craftbukkit.CraftWorld;
+
+/**
+ * Starts and controls the pre-generation of a world, see {@link WorldPregenerator}. Commands are dispatched on the
+ * TaskScheduler, the pre-generator is only touched on the main thread.
+ */
+public class PregenerateCommand extends Command {
+
+    private static final String PREFIX = "§8[§a§lSpigot§8] §7";
+
+    public PregenerateCommand(String name)
+    {
+        super(name);
+        this.description = "Pre-generates the chunks around the spawn or a chunk of a world";
+        this.usageMessage = "/pregenerate start <world> <radius in chunks> [square|circle] [<chunk x> <chunk z>]\n" +
+                "/pregenerate <pause|resume|cancel|status> <world>";
+        this.setPermission("bukkit.command.pregenerate");
+    }
+
+    @Override
+    public boolean execute(final CommandSender sender, String currentAlias, final String[] args)
+    {
+        if (!testPermission(sender)) return true;
+
+        if (args.length < 2)
+        {
+            sender.sendMessage(usageMessage);
+            return true;
+        }
+
+        MinecraftServer.getServer().postToMainThread(new Runnable() {
+            @Override
+            public void run()
+            {
+                execute(sender, args);
+            }
+        });
+        return true;
+    }
+
+    private void execute(CommandSender sender, String[] args)
+    {
+        World bukkitWorld = Bukkit.getWorld(args[1]);
+
+        if (bukkitWorld == null)
+        {
+            sender.sendMessage(PREFIX + "World " + args[1] + " isn't loaded");
+            return;
+        }
+
+        WorldServer world = ((CraftWorld) bukkitWorld).getHandle();
+        WorldPregenerator pregenerator = world.pregenerator;
+
+        switch (args[0].toLowerCase())
+        {
+            case "start":
+            {
+                if (args.length != 3 && args.length != 4 && args.length != 6)
+                {
+                    sender.sendMessage(usageMessage);
+                    return;
+                }
+
+                if (pregenerator != null)
+                {
+                    sender.sendMessage(PREFIX + "The world is pre-generated already, cancel it first");
+                    return;
+                }
+
+                try
+                {
+                    int radius = Integer.parseInt(args[2]);
+                    WorldPregenerator.Shape shape = args.length > 3 ? WorldPregenerator.Shape.valueOf(args[3].toUpperCase()) : WorldPregenerator.Shape.SQUARE;
+                    BlockPosition spawn = world.getSpawn();
+                    int x = args.length > 4 ? Integer.parseInt(args[4]) : spawn.getX() >> 4;
+                    int z = args.length > 4 ? Integer.parseInt(args[5]) : spawn.getZ() >> 4;
+
+                    if (radius < 0)
+                    {
+                        sender.sendMessage(usageMessage);
+                        return;
+                    }
+
+                    world.pregenerator = WorldPregenerator.start(world, shape, x, z, radius);
+                    sender.sendMessage(PREFIX + "Pre-generating " + bukkitWorld.getName() + " §8» §7" + world.pregenerator.getStatus());
+                } catch (IllegalArgumentException ex)
+                {
+                    sender.sendMessage(usageMessage);
+                }
+                return;
+            }
+            case "pause":
+            case "resume":
+            case "cancel":
+            case "status":
+            {
+                if (pregenerator == null)
+                {
+                    sender.sendMessage(PREFIX + "The world isn't pre-generated");
+                    return;
+                }
+
+                if (args[0].equalsIgnoreCase("cancel"))
+                {
+                    pregenerator.cancel();
+                    world.pregenerator = null;
+                } else if (!args[0].equalsIgnoreCase("status"))
+                    pregenerator.setPaused(args[0].equalsIgnoreCase("pause"));
+
+                sender.sendMessage(PREFIX + "Pre-generation of " + bukkitWorld.getName() + " §8» §7" + pregenerator.getStatus());
+                return;
+            }
+            default:
+                sender.sendMessage(usageMessage);
+                return;
+        }
+    }
+}
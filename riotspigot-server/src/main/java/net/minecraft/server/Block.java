@@ -324,11 +324,11 @@ public class Block {
     }
 
     public void onPlace(World world, BlockPosition blockposition, IBlockData iblockdata) {
-        org.spigotmc.AsyncCatcher.catchOp( "block onPlace"); // Spigot
+        org.spigotmc.AsyncCatcher.catchOp( world, "block onPlace"); // Spigot //Dytanic edit
     }
 
     public void remove(World world, BlockPosition blockposition, IBlockData iblockdata) {
-        org.spigotmc.AsyncCatcher.catchOp( "block remove"); // Spigot
+        org.spigotmc.AsyncCatcher.catchOp( world, "block remove"); // Spigot //Dytanic edit
     }
 
     public int a(Random random) {
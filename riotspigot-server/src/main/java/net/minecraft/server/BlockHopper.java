@@ -90,6 +90,13 @@ public class BlockHopper extends BlockContainer {
 
     public void doPhysics(World world, BlockPosition blockposition, IBlockData iblockdata, Block block) {
         this.e(world, blockposition, iblockdata);
+        //Dytanic start - a neighbour changed, there may be something to move again
+        TileEntity tileentity = world.getTileEntity(blockposition);
+
+        if (tileentity instanceof TileEntityHopper) {
+            ((TileEntityHopper) tileentity).wake();
+        }
+        //Dytanic end
     }
 
     private void e(World world, BlockPosition blockposition, IBlockData iblockdata) {
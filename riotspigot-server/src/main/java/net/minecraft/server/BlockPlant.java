@@ -45,6 +45,7 @@ public class BlockPlant extends Block {
     protected void e(World world, BlockPosition blockposition, IBlockData iblockdata) {
         if (!this.f(world, blockposition, iblockdata)) {
             // CraftBukkit Start
+            if (org.bukkit.craftbukkit.event.CraftEventFactory.shouldFire(BlockPhysicsEvent.getHandlerList())) { //Dytanic
             org.bukkit.block.Block block = world.getWorld().getBlockAt(blockposition.getX(), blockposition.getY(), blockposition.getZ());
             BlockPhysicsEvent event = new BlockPhysicsEvent(block, block.getTypeId());
             world.getServer().getPluginManager().callEvent(event);
@@ -52,6 +53,7 @@ public class BlockPlant extends Block {
             if (event.isCancelled()) {
                 return;
             }
+            } //Dytanic
             // CraftBukkit end
             this.b(world, blockposition, iblockdata, 0);
             world.setTypeAndData(blockposition, Blocks.AIR.getBlockData(), 3);
@@ -10,7 +10,7 @@ import org.bukkit.event.block.BlockRedstoneEvent; // CraftBukkit
 
 public class BlockRedstoneTorch extends BlockTorch {
 
-    private static Map<World, List<BlockRedstoneTorch.RedstoneUpdateInfo>> b = new java.util.WeakHashMap(); // Spigot
+    private static Map<World, List<BlockRedstoneTorch.RedstoneUpdateInfo>> b = java.util.Collections.synchronizedMap(new java.util.WeakHashMap()); // Spigot //Dytanic edit synchronized for parallel world ticking
     private final boolean isOn;
 
     private boolean a(World world, BlockPosition blockposition, boolean flag) {
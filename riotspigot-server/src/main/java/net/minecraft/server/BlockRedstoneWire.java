@@ -17,8 +17,22 @@ public class BlockRedstoneWire extends Block {
     public static final BlockStateEnum<BlockRedstoneWire.EnumRedstoneWireConnection> SOUTH = BlockStateEnum.of("south", BlockRedstoneWire.EnumRedstoneWireConnection.class);
     public static final BlockStateEnum<BlockRedstoneWire.EnumRedstoneWireConnection> WEST = BlockStateEnum.of("west", BlockRedstoneWire.EnumRedstoneWireConnection.class);
     public static final BlockStateInteger POWER = BlockStateInteger.of("power", 0, 15);
-    private boolean Q = true;
-    private final Set<BlockPosition> R = Sets.newHashSet();
+    //private boolean Q = true; Dytanic edit the block is shared by all worlds, the flag is per tick thread
+    private final ThreadLocal<Boolean> Q = new ThreadLocal<Boolean>() {
+        @Override
+        protected Boolean initialValue()
+        {
+            return Boolean.TRUE;
+        }
+    };
+    //private final Set<BlockPosition> R = Sets.newHashSet(); Dytanic edit the positions to update are per tick thread as well
+    private final ThreadLocal<Set<BlockPosition>> R = new ThreadLocal<Set<BlockPosition>>() {
+        @Override
+        protected Set<BlockPosition> initialValue()
+        {
+            return Sets.newHashSet();
+        }
+    };
 
     public BlockRedstoneWire() {
         super(Material.ORIENTABLE);
@@ -65,9 +79,10 @@ public class BlockRedstoneWire extends Block {
 
     private IBlockData e(World world, BlockPosition blockposition, IBlockData iblockdata) {
         iblockdata = this.a(world, blockposition, blockposition, iblockdata);
-        ArrayList arraylist = Lists.newArrayList(this.R);
+        Set<BlockPosition> set = this.R.get(); //Dytanic
+        ArrayList arraylist = Lists.newArrayList(set); //Dytanic edit
 
-        this.R.clear();
+        set.clear(); //Dytanic edit
         Iterator iterator = arraylist.iterator();
 
         while (iterator.hasNext()) {
@@ -85,10 +100,10 @@ public class BlockRedstoneWire extends Block {
         byte b0 = 0;
         int j = this.getPower(world, blockposition1, b0);
 
-        this.Q = false;
+        this.Q.set(Boolean.FALSE); //Dytanic edit
         int k = world.A(blockposition);
 
-        this.Q = true;
+        this.Q.set(Boolean.TRUE); //Dytanic edit
         if (k > 0 && k > j - 1) {
             j = k;
         }
@@ -141,15 +156,15 @@ public class BlockRedstoneWire extends Block {
                 world.setTypeAndData(blockposition, iblockdata, 2);
             }
 
-            this.R.add(blockposition);
+            this.R.get().add(blockposition);
             // PaperSpigot start - Fix cannons
             if (world.paperSpigotConfig.fixCannons) {
-                this.R.add(blockposition.shift(EnumDirection.WEST));
-                this.R.add(blockposition.shift(EnumDirection.EAST));
-                this.R.add(blockposition.shift(EnumDirection.DOWN));
-                this.R.add(blockposition.shift(EnumDirection.UP));
-                this.R.add(blockposition.shift(EnumDirection.NORTH));
-                this.R.add(blockposition.shift(EnumDirection.SOUTH));
+                this.R.get().add(blockposition.shift(EnumDirection.WEST));
+                this.R.get().add(blockposition.shift(EnumDirection.EAST));
+                this.R.get().add(blockposition.shift(EnumDirection.DOWN));
+                this.R.get().add(blockposition.shift(EnumDirection.UP));
+                this.R.get().add(blockposition.shift(EnumDirection.NORTH));
+                this.R.get().add(blockposition.shift(EnumDirection.SOUTH));
                 return iblockdata;
             }
             // PaperSpigot end
@@ -159,7 +174,7 @@ public class BlockRedstoneWire extends Block {
             for (int j1 = 0; j1 < i1; ++j1) {
                 EnumDirection enumdirection1 = aenumdirection[j1];
 
-                this.R.add(blockposition.shift(enumdirection1));
+                this.R.get().add(blockposition.shift(enumdirection1));
             }
         }
 
@@ -292,11 +307,11 @@ public class BlockRedstoneWire extends Block {
     }
 
     public int b(IBlockAccess iblockaccess, BlockPosition blockposition, IBlockData iblockdata, EnumDirection enumdirection) {
-        return !this.Q ? 0 : this.a(iblockaccess, blockposition, iblockdata, enumdirection);
+        return !this.Q.get() ? 0 : this.a(iblockaccess, blockposition, iblockdata, enumdirection);
     }
 
     public int a(IBlockAccess iblockaccess, BlockPosition blockposition, IBlockData iblockdata, EnumDirection enumdirection) {
-        if (!this.Q) {
+        if (!this.Q.get()) {
             return 0;
         } else {
             int i = ((Integer) iblockdata.get(BlockRedstoneWire.POWER)).intValue();
@@ -361,7 +376,7 @@ public class BlockRedstoneWire extends Block {
     }
 
     public boolean isPowerSource() {
-        return this.Q;
+        return this.Q.get();
     }
 
     public IBlockData fromLegacyData(int i) {
@@ -14,7 +14,6 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger; // PaperSpigot
 
 import de.dytanic.log.DytanicLogger;
-import de.dytanic.spigot.DytanicSpigot;
 
 import com.google.common.collect.Lists; // CraftBukkit
 import org.bukkit.Bukkit; // CraftBukkit
@@ -41,6 +40,7 @@ public class Chunk {
     private final int[] itemCounts = new int[16];
     private final int[] inventoryEntityCounts = new int[16];
     // PaperSpigot end
+    public final List<EntityItem>[] itemSlices = (List[]) (new List[16]); //Dytanic - item index, kept in sync with the counts
     private boolean done;
     private boolean lit;
     private boolean p;
@@ -56,6 +56,7 @@ public class Chunk {
     public AtomicInteger pendingLightUpdates = new AtomicInteger();
     public long lightUpdateTime;
     // PaperSpigot end
+    public long lightSendTicket = -1; //Dytanic - see LightingEngine.isReadyToSend, world thread only
 
     // PaperSpigot start - ChunkMap caching
     private PacketPlayOutMapChunk.ChunkMap chunkMap;
@@ -100,6 +101,26 @@ public class Chunk {
     }
     // PaperSpigot end
 
+    //Dytanic start - chunk packet cache
+    private static final java.util.concurrent.atomic.AtomicLong packetInstanceIds = new java.util.concurrent.atomic.AtomicLong();
+    private final long packetInstanceId = packetInstanceIds.incrementAndGet();
+    public volatile int biomeVersion;
+
+    /**
+     * Changes whenever the content of a chunk packet for this chunk would change, so it can be used as cache key
+     * together with the coordinates. A chunk which was unloaded and loaded again never has the same stamp.
+     */
+    public long getPacketStamp() {
+        long stamp = packetInstanceId * 31L + biomeVersion;
+
+        for (ChunkSection section : sections) {
+            stamp = stamp * 31L + (section == null ? 0L : ((long) System.identityHashCode(section) << 32 | section.version.get() & 0xFFFFFFFFL));
+        }
+
+        return stamp;
+    }
+    //Dytanic end
+
     // CraftBukkit start - Neighbor loaded cache for chunk lighting and entity ticking
     private int neighbors = 0x1 << 12;
 
@@ -143,7 +164,8 @@ public class Chunk {
         this.heightMap = new int[256];
 
         for (int k = 0; k < this.entitySlices.length; ++k) {
-            this.entitySlices[k] = new org.bukkit.craftbukkit.util.UnsafeList<>(); // Spigot
+            this.entitySlices[k] = de.dytanic.spigot.ChunkPool.entitySlice(); // Spigot //Dytanic edit - pooled
+            this.itemSlices[k] = new java.util.ArrayList<EntityItem>(0); //Dytanic
         }
 
         Arrays.fill(this.f, -999);
@@ -174,7 +196,7 @@ public class Chunk {
                         int k1 = i1 >> 4;
 
                         if (this.sections[k1] == null) {
-                            this.sections[k1] = new ChunkSection(k1 << 4, flag);
+                            this.sections[k1] = de.dytanic.spigot.ChunkPool.section(k1 << 4, flag); //Dytanic edit - pooled
                         }
 
                         this.sections[k1].setType(k, i1 & 15, l, iblockdata);
@@ -593,7 +615,7 @@ public class Chunk {
                     return null;
                 }
 
-                chunksection = this.sections[j >> 4] = new ChunkSection(j >> 4 << 4, !this.world.worldProvider.o());
+                chunksection = this.sections[j >> 4] = de.dytanic.spigot.ChunkPool.section(j >> 4 << 4, !this.world.worldProvider.o()); //Dytanic edit - pooled
                 flag = j >= i1;
             }
 
@@ -676,7 +698,7 @@ public class Chunk {
         ChunkSection chunksection = this.sections[k >> 4];
 
         if (chunksection == null) {
-            chunksection = this.sections[k >> 4] = new ChunkSection(k >> 4 << 4, !this.world.worldProvider.o());
+            chunksection = this.sections[k >> 4] = de.dytanic.spigot.ChunkPool.section(k >> 4 << 4, !this.world.worldProvider.o()); //Dytanic edit - pooled
             this.initLighting();
         }
 
@@ -745,6 +767,7 @@ public class Chunk {
         // PaperSpigot start - update counts
         if (entity instanceof EntityItem) {
             itemCounts[k]++;
+            itemSlices[k].add((EntityItem) entity); //Dytanic
         } else if (entity instanceof IInventory) {
             inventoryEntityCounts[k]++;
         }
@@ -784,6 +807,7 @@ public class Chunk {
         // PaperSpigot start - update counts
         if (entity instanceof EntityItem) {
             itemCounts[i]--;
+            itemSlices[i].remove(entity); //Dytanic
         } else if (entity instanceof IInventory) {
             inventoryEntityCounts[i]--;
         }
@@ -933,6 +957,11 @@ public class Chunk {
                 }
             }
             // Spigot End
+            //Dytanic start
+            if (tileentity instanceof TileEntityHopper) {
+                ((TileEntityHopper) tileentity).clearCache();
+            }
+            //Dytanic end
 
             this.world.b(tileentity);
         }
@@ -1026,7 +1055,7 @@ public class Chunk {
 
         // PaperSpigot start
         int[] counts;
-        if (ItemStack.class.isAssignableFrom(oclass)) {
+        if (EntityItem.class.isAssignableFrom(oclass)) { //Dytanic edit - was ItemStack, which never matched an entity class
             counts = itemCounts;
         } else if (IInventory.class.isAssignableFrom(oclass)) {
             counts = inventoryEntityCounts;
@@ -1049,6 +1078,48 @@ public class Chunk {
 
     }
 
+    //Dytanic start
+    /**
+     * Adds the living items of the item index which intersect the box to the list, which is only created if there are
+     * any.
+     */
+    public List<EntityItem> a(double d0, double d1, double d2, double d3, double d4, double d5, List<EntityItem> list) {
+        int i = MathHelper.clamp(MathHelper.floor((d1 - 2.0D) / 16.0D), 0, this.itemSlices.length - 1);
+        int j = MathHelper.clamp(MathHelper.floor((d4 + 2.0D) / 16.0D), 0, this.itemSlices.length - 1);
+
+        for (int k = i; k <= j; ++k) {
+            List<EntityItem> slice = this.itemSlices[k];
+
+            for (int l = 0, size = slice.size(); l < size; ++l) {
+                EntityItem entityitem = slice.get(l);
+                AxisAlignedBB axisalignedbb = entityitem.getBoundingBox();
+
+                if (entityitem.isAlive() && axisalignedbb.d > d0 && axisalignedbb.a < d3 && axisalignedbb.e > d1 && axisalignedbb.b < d4 && axisalignedbb.f > d2 && axisalignedbb.c < d5) {
+                    if (list == null) {
+                        list = new java.util.ArrayList<EntityItem>(4);
+                    }
+                    list.add(entityitem);
+                }
+            }
+        }
+
+        return list;
+    }
+
+    public boolean hasInventoryEntities(double d1, double d4) {
+        int i = MathHelper.clamp(MathHelper.floor((d1 - 2.0D) / 16.0D), 0, this.inventoryEntityCounts.length - 1);
+        int j = MathHelper.clamp(MathHelper.floor((d4 + 2.0D) / 16.0D), 0, this.inventoryEntityCounts.length - 1);
+
+        for (int k = i; k <= j; ++k) {
+            if (this.inventoryEntityCounts[k] > 0) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+    //Dytanic end
+
     public boolean a(boolean flag) {
         if (flag) {
             if (this.r && this.world.getTime() != this.lastSaved || this.q) {
@@ -1182,7 +1253,7 @@ public class Chunk {
         }
 
         //world.lightingExecutor.submit(new Runnable() { Dytanic edit replace with taskscheduler
-        DytanicSpigot.getInstance().getTaskScheduler().schedule(new Runnable() {
+        world.lightingEngine.queueChunkTask(this, new Runnable() { //Dytanic edit run in order with the light updates of this chunk
             @Override
             public void run() {
                 Chunk.this.h(isClientSide);
@@ -1247,6 +1318,7 @@ public class Chunk {
             biomebase = worldchunkmanager.getBiome(blockposition, BiomeBase.PLAINS);
             k = biomebase.id;
             this.e[j << 4 | i] = (byte) (k & 255);
+            ++this.biomeVersion; //Dytanic
         }
 
         biomebase = BiomeBase.getBiome(k);
@@ -1264,6 +1336,7 @@ public class Chunk {
             for (int i = 0; i < this.e.length; ++i) {
                 this.e[i] = abyte[i];
             }
+            ++this.biomeVersion; //Dytanic
 
         }
     }
@@ -1489,12 +1562,4 @@ public class Chunk {
 
         private EnumTileEntityState() {}
     }
-
-    //Dytanic start
-    @Override
-    public void finalize() throws Throwable
-    {
-        super.finalize();
-    }
-    //Dytanic end
 }
\ No newline at end of file
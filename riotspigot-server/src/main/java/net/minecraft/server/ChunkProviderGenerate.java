@@ -33,6 +33,15 @@ public class ChunkProviderGenerate implements IChunkProvider {
     double[] e;
     double[] f;
     double[] g;
+    //Dytanic start
+    /**
+     * Some biomes keep the blocks of the surface in fields while they build it, so the surfaces of all generators are
+     * built one at a time
+     */
+    private static final Object SURFACE_LOCK = new Object();
+    private WorldChunkManager worldChunkManager; // Not shared with the main thread by the copies of the generation threads
+    private final String options;
+    //Dytanic end
 
     public ChunkProviderGenerate(World world, long i, boolean flag, String s) {
         this.s = Blocks.WATER;
@@ -45,6 +54,8 @@ public class ChunkProviderGenerate implements IChunkProvider {
         this.z = new WorldGenCanyon();
         this.A = new WorldGenMonument();
         this.m = world;
+        this.worldChunkManager = world.getWorldChunkManager(); //Dytanic
+        this.options = s; //Dytanic
         this.n = flag;
         this.o = world.getWorldData().getType();
         this.h = new Random(i);
@@ -75,7 +86,7 @@ public class ChunkProviderGenerate implements IChunkProvider {
     }
 
     public void a(int i, int j, ChunkSnapshot chunksnapshot) {
-        this.B = this.m.getWorldChunkManager().getBiomes(this.B, i * 4 - 2, j * 4 - 2, 10, 10);
+        this.B = this.worldChunkManager.getBiomes( /*Dytanic edit*/ this.B, i * 4 - 2, j * 4 - 2, 10, 10);
         this.a(i * 4, 0, j * 4);
 
         for (int k = 0; k < 4; ++k) {
@@ -149,6 +160,16 @@ public class ChunkProviderGenerate implements IChunkProvider {
 
     }
 
+    public Chunk getOrCreateChunk(int i, int j) {
+        //Dytanic start - built like on the generation threads, the structures only need the position of the chunk
+        Chunk chunk = this.generate(i, j, null);
+
+        this.recreateStructures(chunk, i, j);
+        return chunk;
+        //Dytanic end
+    }
+
+    /* Dytanic edit
     public Chunk getOrCreateChunk(int i, int j) {
         this.h.setSeed((long) i * 341873128712L + (long) j * 132897987541L);
         ChunkSnapshot chunksnapshot = new ChunkSnapshot();
@@ -194,6 +215,64 @@ public class ChunkProviderGenerate implements IChunkProvider {
         chunk.initLighting();
         return chunk;
     }
+    */
+
+    //Dytanic start
+    /**
+     * Builds the terrain, surface, caves and ravines and the initial sky light of the chunk, without recording the
+     * structures, which are kept by the generator of the main thread. Safe to call from a generation thread on a copy
+     * of {@link #copy()}.
+     *
+     * @param task notified about the stages of the chunk, may be null
+     */
+    public Chunk generate(int i, int j, de.dytanic.spigot.ChunkGenerationPipeline.Task task) {
+        this.h.setSeed((long) i * 341873128712L + (long) j * 132897987541L);
+        ChunkSnapshot chunksnapshot = new ChunkSnapshot();
+
+        if (task != null) task.setStage(de.dytanic.spigot.ChunkGenerationPipeline.Stage.NOISE);
+        this.a(i, j, chunksnapshot);
+        if (task != null) task.setStage(de.dytanic.spigot.ChunkGenerationPipeline.Stage.SURFACE);
+        this.B = this.worldChunkManager.getBiomeBlock(this.B, i * 16, j * 16, 16, 16);
+        synchronized (ChunkProviderGenerate.SURFACE_LOCK) {
+            this.a(i, j, chunksnapshot, this.B);
+        }
+
+        if (task != null) task.setStage(de.dytanic.spigot.ChunkGenerationPipeline.Stage.CARVERS);
+        if (this.r.r && this.m.paperSpigotConfig.generateCaves) { // PaperSpigot
+            this.u.a(this, this.m, i, j, chunksnapshot);
+        }
+
+        if (this.r.z && this.m.paperSpigotConfig.generateCanyon) { // PaperSpigot
+            this.z.a(this, this.m, i, j, chunksnapshot);
+        }
+
+        if (task != null) task.setStage(de.dytanic.spigot.ChunkGenerationPipeline.Stage.LIGHT);
+        Chunk chunk = new Chunk(this.m, chunksnapshot, i, j);
+        byte[] abyte = chunk.getBiomeIndex();
+
+        for (int k = 0; k < abyte.length; ++k) {
+            abyte[k] = (byte) this.B[k].id;
+        }
+
+        chunk.initLighting();
+        return chunk;
+    }
+
+    /**
+     * @return a generator for the same world with its own noise, biome layers and carvers, or null if the biomes of the
+     * world can't be copied
+     */
+    public ChunkProviderGenerate copy() {
+        if (this.worldChunkManager.getClass() != WorldChunkManager.class) {
+            return null;
+        }
+
+        ChunkProviderGenerate chunkprovidergenerate = new ChunkProviderGenerate(this.m, this.m.getSeed(), this.n, this.options);
+
+        chunkprovidergenerate.worldChunkManager = new WorldChunkManager(this.m);
+        return chunkprovidergenerate;
+    }
+    //Dytanic end
 
     private void a(int i, int j, int k) {
         this.g = this.b.a(this.g, i, k, 5, 5, (double) this.r.e, (double) this.r.f, (double) this.r.g);
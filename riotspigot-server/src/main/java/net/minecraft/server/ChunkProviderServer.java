@@ -29,12 +29,18 @@ public class ChunkProviderServer implements IChunkProvider {
     public boolean forceChunkLoad = false; // CraftBukkit - true -> false
     public LongObjectHashMap<Chunk> chunks = new LongObjectHashMap<>();
     public WorldServer world;
+    public final de.dytanic.spigot.ChunkGenerationPipeline generationPipeline; //Dytanic - null if new chunks are generated on the main thread
+    //Dytanic start
+    private org.spigotmc.TickLimiter unloadLimiter;
+    private int unloadLimiterTime = -1;
+    //Dytanic end
 
     public ChunkProviderServer(WorldServer worldserver, IChunkLoader ichunkloader, IChunkProvider ichunkprovider) {
         this.emptyChunk = new EmptyChunk(worldserver, 0, 0);
         this.world = worldserver;
         this.chunkLoader = ichunkloader;
         this.chunkProvider = ichunkprovider;
+        this.generationPipeline = de.dytanic.spigot.ChunkGenerationPipeline.create(this, ichunkprovider); //Dytanic
     }
 
     public boolean isChunkLoaded(int i, int j) {
@@ -128,6 +134,12 @@ public class ChunkProviderServer implements IChunkProvider {
                 chunk = ChunkIOExecutor.syncChunkLoad(world, loader, this, i, j);
             }
         } else if (chunk == null) {
+            //Dytanic start - a caller which can wait gets new chunks from the generation threads
+            if (runnable != null && loader != null && this.generationPipeline != null) {
+                this.generationPipeline.generate(i, j, runnable);
+                return null;
+            }
+            //Dytanic end
             chunk = originalGetChunkAt(i, j);
         }
 
@@ -138,6 +150,30 @@ public class ChunkProviderServer implements IChunkProvider {
 
         return chunk;
     }
+
+    //Dytanic start
+    /**
+     * Loads the chunk like {@link #getChunkAt(int, int)} and passes it to the callback, unless the chunk isn't generated
+     * yet and the world generates its chunks off the main thread. Then the callback is called once it is loaded.
+     *
+     * @return the chunk, or null if it is generated
+     */
+    public Chunk getOrGenerateChunkAt(int i, int j, java.util.function.Consumer<Chunk> consumer) {
+        if (this.generationPipeline != null && !this.isChunkLoaded(i, j) && this.chunkLoader instanceof ChunkRegionLoader && !((ChunkRegionLoader) this.chunkLoader).chunkExists(this.world, i, j)) {
+            this.generationPipeline.generate(i, j, consumer);
+            return null;
+        }
+
+        Chunk chunk = this.getChunkAt(i, j);
+
+        if (chunk != null && consumer != null) {
+            consumer.accept(chunk);
+        }
+
+        return chunk;
+    }
+    //Dytanic end
+
     public Chunk originalGetChunkAt(int i, int j) {
         this.unloadQueue.remove(i, j);
         Chunk chunk = (Chunk) this.chunks.get(LongHash.toLong(i, j));
@@ -147,6 +183,12 @@ public class ChunkProviderServer implements IChunkProvider {
         if (chunk == null) {
             world.timings.syncChunkLoadTimer.startTiming(); // Spigot
             chunk = this.loadChunk(i, j);
+            //Dytanic start - a chunk which is generated off the main thread right now only has to be waited for
+            if (chunk == null && this.generationPipeline != null) {
+                chunk = this.generationPipeline.await(i, j);
+                newChunk = chunk != null;
+            }
+            //Dytanic end
             if (chunk == null) {
                 if (this.chunkProvider == null) {
                     chunk = this.emptyChunk;
@@ -278,6 +320,41 @@ public class ChunkProviderServer implements IChunkProvider {
         }
     }
 
+    //Dytanic start
+    /**
+     * Saves a chunk which was removed from the world and recycles its sections and entity slices. The blocks are
+     * serialized off the main thread if the chunk loader supports it.
+     */
+    public void saveUnloadedChunk(Chunk chunk, boolean save) {
+        // The empty chunk is shared by all positions
+        if (chunk instanceof EmptyChunk) {
+            if (save) {
+                this.saveChunk(chunk);
+                this.saveChunkNOP(chunk);
+            }
+            return;
+        }
+
+        if (save && this.chunkLoader instanceof ChunkRegionLoader) {
+            try {
+                chunk.setLastSaved(this.world.getTime());
+                ((ChunkRegionLoader) this.chunkLoader).saveUnloaded(this.world, chunk);
+            } catch (ExceptionWorldConflict exceptionworldconflict) {
+                ChunkProviderServer.b.error("Couldn\'t save chunk; already in use by another instance of Minecraft?", exceptionworldconflict);
+            }
+            return;
+        }
+
+        if (save) {
+            this.saveChunk(chunk);
+            this.saveChunkNOP(chunk);
+        }
+
+        de.dytanic.spigot.ChunkPool.releaseEntitySlices(chunk);
+        de.dytanic.spigot.ChunkPool.releaseSections(chunk);
+    }
+    //Dytanic end
+
     public void getChunkAt(IChunkProvider ichunkprovider, int i, int j) {
         Chunk chunk = this.getOrCreateChunk(i, j);
 
@@ -363,7 +440,15 @@ public class ChunkProviderServer implements IChunkProvider {
         if (!this.world.savingDisabled) {
             // CraftBukkit start
             Server server = this.world.getServer();
-            for (int i = 0; i < 100 && !this.unloadQueue.isEmpty(); ++i) {
+            //Dytanic start - time budgeted instead of 100 chunks per tick
+            if (this.unloadLimiterTime != org.spigotmc.SpigotConfig.chunkUnloadMaxTime) {
+                this.unloadLimiterTime = org.spigotmc.SpigotConfig.chunkUnloadMaxTime;
+                this.unloadLimiter = new org.spigotmc.TickLimiter(this.unloadLimiterTime);
+            }
+            this.unloadLimiter.initTick();
+            //Dytanic end
+
+            for (int i = 0; !this.unloadQueue.isEmpty() && (i == 0 || this.unloadLimiter.shouldContinue()); ++i) { //Dytanic edit
                 long chunkcoordinates = this.unloadQueue.popFirst();
                 Chunk chunk = this.chunks.get(chunkcoordinates);
                 if (chunk == null) continue;
@@ -373,16 +458,10 @@ public class ChunkProviderServer implements IChunkProvider {
                 if (!event.isCancelled()) {
 
                     chunk.removeEntities();
-                    this.saveChunk(chunk);
-                    this.saveChunkNOP(chunk);
+                    //this.saveChunk(chunk); //Dytanic edit
+                    //this.saveChunkNOP(chunk); //Dytanic edit
                     this.chunks.remove(chunkcoordinates); // CraftBukkit
-
-                    //Dytanic start
-                    try
-                    {
-                        chunk.finalize();
-                    } catch (Throwable throwable) {}
-                    //Dytanic end
+                    this.saveUnloadedChunk(chunk, true); //Dytanic
 
                     // this.unloadQueue.remove(olong);
 
@@ -19,7 +19,13 @@ public class ChunkRegionLoader implements IChunkLoader, IAsyncChunkSaver {
 
     private static final DytanicLogger a = DytanicLogger.getInstance();
     private Map<ChunkCoordIntPair, NBTTagCompound> b = new ConcurrentHashMap<>(); //Dytanic edit add Generic
-    private Set<ChunkCoordIntPair> c = Collections.newSetFromMap(new ConcurrentHashMap<>()); //Dytanic edit add Generic
+    //private Set<ChunkCoordIntPair> c = Collections.newSetFromMap(new ConcurrentHashMap<>()); //Dytanic edit add Generic //Dytanic edit - chunks stay in b until they are written
+    //Dytanic start - saves are coalesced per chunk and written grouped by region file
+    private final Map<Long, Set<ChunkCoordIntPair>> regions = new ConcurrentHashMap<>();
+    private final Set<Long> scheduledRegions = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+    // Unloaded chunks whose blocks are serialized on a chunk save thread, they are put into b once done
+    private final Map<ChunkCoordIntPair, java.util.concurrent.FutureTask<NBTTagCompound>> serializing = new ConcurrentHashMap<>();
+    //Dytanic end
     private final File d;
     private boolean e = false;
 
@@ -31,14 +37,11 @@ public class ChunkRegionLoader implements IChunkLoader, IAsyncChunkSaver {
     public boolean chunkExists(World world, int i, int j) {
         ChunkCoordIntPair chunkcoordintpair = new ChunkCoordIntPair(i, j);
 
-        if (this.c.contains(chunkcoordintpair)) {
-            if (this.b.containsKey(chunkcoordintpair)) {
-                return true;
-            }
+        if (this.b.containsKey(chunkcoordintpair) || this.serializing.containsKey(chunkcoordintpair)) { //Dytanic edit
+            return true;
         }
 
-        final RegionFile region = RegionFileCache.a(this.d, i, j, false); // PaperSpigot
-        return region != null && region.chunkExists(i & 31, j & 31); // PaperSpigot
+        return RegionFileCache.chunkExists(this.d, i, j); // PaperSpigot //Dytanic edit - retries if the file is evicted meanwhile
     }
     // CraftBukkit end
 
@@ -60,7 +63,29 @@ public class ChunkRegionLoader implements IChunkLoader, IAsyncChunkSaver {
     public Object[] loadChunk(World world, int i, int j) throws IOException {
         // CraftBukkit end
         ChunkCoordIntPair chunkcoordintpair = new ChunkCoordIntPair(i, j);
-        NBTTagCompound nbttagcompound = (NBTTagCompound) this.b.get(chunkcoordintpair);
+        NBTTagCompound nbttagcompound = null; //Dytanic edit
+
+        //Dytanic start - a chunk which is loaded again before its blocks are serialized serializes them right away,
+        // an older save of it may still wait in b. The task puts its result into b before it is removed, so b is
+        // only read once there is no task.
+        java.util.concurrent.FutureTask<NBTTagCompound> task = this.serializing.get(chunkcoordintpair);
+
+        if (task != null) {
+            task.run();
+            try {
+                nbttagcompound = task.get();
+            } catch (InterruptedException interruptedexception) {
+                Thread.currentThread().interrupt();
+                throw new IOException(interruptedexception);
+            } catch (java.util.concurrent.ExecutionException executionexception) {
+                ChunkRegionLoader.a.error("Failed to save chunk", executionexception.getCause());
+            }
+        }
+
+        if (nbttagcompound == null) {
+            nbttagcompound = (NBTTagCompound) this.b.get(chunkcoordintpair);
+        }
+        //Dytanic end
 
         if (nbttagcompound == null) {
             DataInputStream datainputstream = RegionFileCache.c(this.d, i, j);
@@ -134,14 +159,128 @@ public class ChunkRegionLoader implements IChunkLoader, IAsyncChunkSaver {
 
     }
 
+    //Dytanic start
+    /**
+     * Saves a chunk which was removed from the world. Entities, tile entities and tile ticks are saved right away, the
+     * blocks are serialized on a chunk save thread, after that the sections are recycled by the ChunkPool. Main thread
+     * only.
+     */
+    public void saveUnloaded(World world, final Chunk chunk) throws ExceptionWorldConflict {
+        world.checkSession();
+
+        final ChunkCoordIntPair chunkcoordintpair = chunk.j();
+        final NBTTagCompound nbttagcompound = new NBTTagCompound();
+        final NBTTagCompound nbttagcompound1 = new NBTTagCompound();
+        final boolean flag = !world.worldProvider.o();
+
+        try {
+            nbttagcompound.set("Level", nbttagcompound1);
+            this.a(chunk, world, nbttagcompound1, false);
+        } catch (Exception exception) {
+            ChunkRegionLoader.a.error("Failed to save chunk", exception);
+            return;
+        } finally {
+            de.dytanic.spigot.ChunkPool.releaseEntitySlices(chunk);
+        }
+
+        final java.util.concurrent.FutureTask<NBTTagCompound> task = new java.util.concurrent.FutureTask<NBTTagCompound>(new java.util.concurrent.Callable<NBTTagCompound>() {
+            @Override
+            public NBTTagCompound call() {
+                try {
+                    a(chunk.getSections(), flag, nbttagcompound1);
+                    ChunkRegionLoader.this.a(chunkcoordintpair, nbttagcompound);
+                    de.dytanic.spigot.ChunkPool.releaseSections(chunk);
+                    return nbttagcompound;
+                } finally {
+                    ChunkRegionLoader.this.serializing.remove(chunkcoordintpair);
+                }
+            }
+        });
+
+        this.serializing.put(chunkcoordintpair, task);
+        de.dytanic.spigot.ChunkSaveQueue.getInstance().execute(task);
+    }
+    //Dytanic end
+
     protected void a(ChunkCoordIntPair chunkcoordintpair, NBTTagCompound nbttagcompound) {
-        if (!this.c.contains(chunkcoordintpair)) {
-            this.b.put(chunkcoordintpair, nbttagcompound);
+        //Dytanic start
+        de.dytanic.spigot.ChunkSaveQueue.getInstance().queued(this.b.put(chunkcoordintpair, nbttagcompound) != null);
+
+        final Long region = World.chunkToKey(chunkcoordintpair.x >> 5, chunkcoordintpair.z >> 5);
+        Set<ChunkCoordIntPair> chunks = this.regions.get(region);
+
+        if (chunks == null) {
+            Set<ChunkCoordIntPair> created = Collections.newSetFromMap(new ConcurrentHashMap<ChunkCoordIntPair, Boolean>());
+
+            chunks = this.regions.putIfAbsent(region, created);
+            if (chunks == null) {
+                chunks = created;
+            }
         }
 
-        FileIOThread.a().a(this);
+        chunks.add(chunkcoordintpair);
+
+        if (this.scheduledRegions.add(region)) {
+            de.dytanic.spigot.ChunkSaveQueue.getInstance().execute(new Runnable() {
+                @Override
+                public void run() {
+                    ChunkRegionLoader.this.saveRegion(region);
+                }
+            });
+        }
+        //Dytanic end
     }
 
+    //Dytanic start
+    /**
+     * Writes the queued chunks of the region in one pass ordered by their position in the file. Only one pass per
+     * region runs at a time, chunks queued during a pass are written by another pass right after it.
+     */
+    private void saveRegion(Long region) {
+        Set<ChunkCoordIntPair> chunks = this.regions.get(region);
+
+        do {
+            List<ChunkCoordIntPair> pass = new java.util.ArrayList<ChunkCoordIntPair>(chunks.size());
+
+            for (Iterator<ChunkCoordIntPair> iterator = chunks.iterator(); iterator.hasNext(); iterator.remove()) {
+                pass.add(iterator.next());
+            }
+
+            Collections.sort(pass, new java.util.Comparator<ChunkCoordIntPair>() {
+                @Override
+                public int compare(ChunkCoordIntPair chunk, ChunkCoordIntPair chunk1) {
+                    return Integer.compare((chunk.z & 31) << 5 | chunk.x & 31, (chunk1.z & 31) << 5 | chunk1.x & 31);
+                }
+            });
+
+            for (ChunkCoordIntPair chunkcoordintpair : pass) {
+                NBTTagCompound nbttagcompound = this.b.get(chunkcoordintpair);
+
+                if (nbttagcompound == null) {
+                    continue;
+                }
+
+                try {
+                    this.b(chunkcoordintpair, nbttagcompound);
+                } catch (Exception exception) {
+                    ChunkRegionLoader.a.error("Failed to save chunk", exception);
+                }
+
+                // A newer save of the chunk stays queued, it is part of the next pass
+                if (this.b.remove(chunkcoordintpair, nbttagcompound)) {
+                    de.dytanic.spigot.ChunkSaveQueue.getInstance().written();
+                }
+            }
+
+            this.scheduledRegions.remove(region);
+        } while (!chunks.isEmpty() && this.scheduledRegions.add(region));
+    }
+    //Dytanic end
+
+    public boolean c() {
+        return false; //Dytanic - chunks are written by the ChunkSaveQueue
+    }
+    /* Dytanic edit
     public boolean c() {
         if (this.b.isEmpty()) {
             if (this.e) {
@@ -174,6 +313,7 @@ public class ChunkRegionLoader implements IChunkLoader, IAsyncChunkSaver {
             return flag;
         }
     }
+    */
 
     private void b(ChunkCoordIntPair chunkcoordintpair, NBTTagCompound nbttagcompound) throws IOException {
         DataOutputStream dataoutputstream = RegionFileCache.d(this.d, chunkcoordintpair.x, chunkcoordintpair.z);
@@ -187,21 +327,42 @@ public class ChunkRegionLoader implements IChunkLoader, IAsyncChunkSaver {
     public void a() {}
 
     public void b() {
+        //Dytanic start - waits for the queued chunks of this world and reports the progress
+        long start = System.currentTimeMillis();
+        long lastReport = start;
+        int total = this.b.size() + this.serializing.size();
+
         try {
             this.e = true;
 
-            while (true) {
-                if (this.c()) {
-                    continue;
+            while (!this.b.isEmpty() || !this.serializing.isEmpty()) {
+                int remaining = this.b.size() + this.serializing.size();
+
+                total = Math.max(total, remaining);
+                if (System.currentTimeMillis() - lastReport >= 1000L) {
+                    lastReport = System.currentTimeMillis();
+                    ChunkRegionLoader.a.info("ThreadedAnvilChunkStorage ({}): {} of {} chunks saved", new Object[] { this.d.getName(), total - remaining, total});
                 }
+
+                Thread.sleep(10L);
             }
+
+            if (total > 0) {
+                ChunkRegionLoader.a.info("ThreadedAnvilChunkStorage ({}): All chunks are saved after {}ms", new Object[] { this.d.getName(), System.currentTimeMillis() - start});
+            }
+        } catch (InterruptedException interruptedexception) {
+            Thread.currentThread().interrupt();
         } finally {
             this.e = false;
         }
-
+        //Dytanic end
     }
 
     private void a(Chunk chunk, World world, NBTTagCompound nbttagcompound) {
+        this.a(chunk, world, nbttagcompound, true); //Dytanic
+    }
+
+    private void a(Chunk chunk, World world, NBTTagCompound nbttagcompound, boolean sections) { //Dytanic edit - the sections may be serialized later
         nbttagcompound.setByte("V", (byte) 1);
         nbttagcompound.setInt("xPos", chunk.locX);
         nbttagcompound.setInt("zPos", chunk.locZ);
@@ -210,65 +371,18 @@ public class ChunkRegionLoader implements IChunkLoader, IAsyncChunkSaver {
         nbttagcompound.setBoolean("TerrainPopulated", chunk.isDone());
         nbttagcompound.setBoolean("LightPopulated", chunk.u());
         nbttagcompound.setLong("InhabitedTime", chunk.w());
-        ChunkSection[] achunksection = chunk.getSections();
-        NBTTagList nbttaglist = new NBTTagList();
-        boolean flag = !world.worldProvider.o();
-        ChunkSection[] achunksection1 = achunksection;
-        int i = achunksection.length;
-
-        NBTTagCompound nbttagcompound1;
-
-        for (int j = 0; j < i; ++j) {
-            ChunkSection chunksection = achunksection1[j];
-
-            if (chunksection != null) {
-                nbttagcompound1 = new NBTTagCompound();
-                nbttagcompound1.setByte("Y", (byte) (chunksection.getYPosition() >> 4 & 255));
-                byte[] abyte = new byte[chunksection.getIdArray().length];
-                NibbleArray nibblearray = new NibbleArray();
-                NibbleArray nibblearray1 = null;
-
-                for (int k = 0; k < chunksection.getIdArray().length; ++k) {
-                    char c0 = chunksection.getIdArray()[k];
-                    int l = k & 15;
-                    int i1 = k >> 8 & 15;
-                    int j1 = k >> 4 & 15;
-
-                    if (c0 >> 12 != 0) {
-                        if (nibblearray1 == null) {
-                            nibblearray1 = new NibbleArray();
-                        }
-
-                        nibblearray1.a(l, i1, j1, c0 >> 12);
-                    }
-
-                    abyte[k] = (byte) (c0 >> 4 & 255);
-                    nibblearray.a(l, i1, j1, c0 & 15);
-                }
-
-                nbttagcompound1.setByteArray("Blocks", abyte);
-                nbttagcompound1.setByteArray("Data", nibblearray.a());
-                if (nibblearray1 != null) {
-                    nbttagcompound1.setByteArray("Add", nibblearray1.a());
-                }
-
-                nbttagcompound1.setByteArray("BlockLight", chunksection.getEmittedLightArray().a());
-                if (flag) {
-                    nbttagcompound1.setByteArray("SkyLight", chunksection.getSkyLightArray().a());
-                } else {
-                    nbttagcompound1.setByteArray("SkyLight", new byte[chunksection.getEmittedLightArray().a().length]);
-                }
-
-                nbttaglist.add(nbttagcompound1);
-            }
+        //Dytanic start
+        if (sections) {
+            a(chunk.getSections(), !world.worldProvider.o(), nbttagcompound);
         }
-
-        nbttagcompound.set("Sections", nbttaglist);
         nbttagcompound.setByteArray("Biomes", chunk.getBiomeIndex());
         chunk.g(false);
         NBTTagList nbttaglist1 = new NBTTagList();
 
         Iterator iterator;
+        NBTTagCompound nbttagcompound1;
+        int i;
+        //Dytanic end
 
         for (i = 0; i < chunk.getEntitySlices().length; ++i) {
             iterator = chunk.getEntitySlices()[i].iterator();
@@ -324,6 +438,60 @@ public class ChunkRegionLoader implements IChunkLoader, IAsyncChunkSaver {
 
     }
 
+    //Dytanic start - was part of a(Chunk, World, NBTTagCompound), thread safe for sections which aren't changed anymore
+    private static void a(ChunkSection[] achunksection, boolean flag, NBTTagCompound nbttagcompound) {
+        NBTTagList nbttaglist = new NBTTagList();
+        NBTTagCompound nbttagcompound1;
+
+        for (int j = 0; j < achunksection.length; ++j) {
+            ChunkSection chunksection = achunksection[j];
+
+            if (chunksection != null) {
+                nbttagcompound1 = new NBTTagCompound();
+                nbttagcompound1.setByte("Y", (byte) (chunksection.getYPosition() >> 4 & 255));
+                byte[] abyte = new byte[chunksection.getIdArray().length];
+                NibbleArray nibblearray = new NibbleArray();
+                NibbleArray nibblearray1 = null;
+
+                for (int k = 0; k < chunksection.getIdArray().length; ++k) {
+                    char c0 = chunksection.getIdArray()[k];
+                    int l = k & 15;
+                    int i1 = k >> 8 & 15;
+                    int j1 = k >> 4 & 15;
+
+                    if (c0 >> 12 != 0) {
+                        if (nibblearray1 == null) {
+                            nibblearray1 = new NibbleArray();
+                        }
+
+                        nibblearray1.a(l, i1, j1, c0 >> 12);
+                    }
+
+                    abyte[k] = (byte) (c0 >> 4 & 255);
+                    nibblearray.a(l, i1, j1, c0 & 15);
+                }
+
+                nbttagcompound1.setByteArray("Blocks", abyte);
+                nbttagcompound1.setByteArray("Data", nibblearray.a());
+                if (nibblearray1 != null) {
+                    nbttagcompound1.setByteArray("Add", nibblearray1.a());
+                }
+
+                nbttagcompound1.setByteArray("BlockLight", chunksection.getEmittedLightArray().a().clone()); //Dytanic edit - the arrays of a pooled section are reused
+                if (flag) {
+                    nbttagcompound1.setByteArray("SkyLight", chunksection.getSkyLightArray().a().clone()); //Dytanic edit
+                } else {
+                    nbttagcompound1.setByteArray("SkyLight", new byte[chunksection.getEmittedLightArray().a().length]);
+                }
+
+                nbttaglist.add(nbttagcompound1);
+            }
+        }
+
+        nbttagcompound.set("Sections", nbttaglist);
+    }
+    //Dytanic end
+
     private Chunk a(World world, NBTTagCompound nbttagcompound) {
         int i = nbttagcompound.getInt("xPos");
         int j = nbttagcompound.getInt("zPos");
@@ -341,11 +509,11 @@ public class ChunkRegionLoader implements IChunkLoader, IAsyncChunkSaver {
         for (int k = 0; k < nbttaglist.size(); ++k) {
             NBTTagCompound nbttagcompound1 = nbttaglist.get(k);
             byte b1 = nbttagcompound1.getByte("Y");
-            ChunkSection chunksection = new ChunkSection(b1 << 4, flag);
+            ChunkSection chunksection = de.dytanic.spigot.ChunkPool.section(b1 << 4, flag); //Dytanic edit - pooled
             byte[] abyte = nbttagcompound1.getByteArray("Blocks");
             NibbleArray nibblearray = new NibbleArray(nbttagcompound1.getByteArray("Data"));
             NibbleArray nibblearray1 = nbttagcompound1.hasKeyOfType("Add", 7) ? new NibbleArray(nbttagcompound1.getByteArray("Add")) : null;
-            char[] achar = new char[abyte.length];
+            char[] achar = abyte.length == chunksection.getIdArray().length ? chunksection.getIdArray() : new char[abyte.length]; //Dytanic edit - every entry is written
 
             for (int l = 0; l < achar.length; ++l) {
                 int i1 = l & 15;
@@ -376,10 +544,12 @@ public class ChunkRegionLoader implements IChunkLoader, IAsyncChunkSaver {
             }
 
             chunksection.a(achar);
-            chunksection.a(new NibbleArray(nbttagcompound1.getByteArray("BlockLight")));
+            //Dytanic start - copied into the arrays of the pooled section
+            chunksection.getEmittedLightArray().a(nbttagcompound1.getByteArray("BlockLight"));
             if (flag) {
-                chunksection.b(new NibbleArray(nbttagcompound1.getByteArray("SkyLight")));
+                chunksection.getSkyLightArray().a(nbttagcompound1.getByteArray("SkyLight"));
             }
+            //Dytanic end
 
             chunksection.recalcBlockCounts();
             achunksection[b1] = chunksection;
@@ -9,6 +9,7 @@ public class ChunkSection {
     private NibbleArray emittedLight;
     private NibbleArray skyLight;
     boolean isDirty; // PaperSpigot
+    public final java.util.concurrent.atomic.AtomicInteger version = new java.util.concurrent.atomic.AtomicInteger(); //Dytanic - bumped on every change, part of the chunk packet cache key. Changed by the world and the light threads
 
     public ChunkSection(int i, boolean flag) {
         this.yPos = i;
@@ -32,6 +33,29 @@ public class ChunkSection {
     }
     // CraftBukkit end
 
+    //Dytanic start - pooled sections, see de.dytanic.spigot.ChunkPool
+    public void reuse(int i, boolean flag) {
+        this.yPos = i;
+        if (flag && this.skyLight == null) {
+            this.skyLight = new NibbleArray();
+        } else if (!flag) {
+            this.skyLight = null;
+        }
+    }
+
+    public void clear() {
+        java.util.Arrays.fill(this.blockIds, (char) 0);
+        this.emittedLight.clear();
+        if (this.skyLight != null) {
+            this.skyLight.clear();
+        }
+        this.nonEmptyBlockCount = 0;
+        this.tickingBlockCount = 0;
+        isDirty = false; // PaperSpigot
+        version.incrementAndGet();
+    }
+    //Dytanic end
+
     public IBlockData getType(int i, int j, int k) {
         IBlockData iblockdata = (IBlockData) Block.d.a(this.blockIds[j << 8 | k << 4 | i]);
 
@@ -59,6 +83,7 @@ public class ChunkSection {
 
         this.blockIds[j << 8 | k << 4 | i] = (char) Block.d.b(iblockdata);
         isDirty = true; // PaperSpigot
+        version.incrementAndGet(); //Dytanic
     }
 
     public Block b(int i, int j, int k) {
@@ -86,6 +111,7 @@ public class ChunkSection {
     public void a(int i, int j, int k, int l) {
         this.skyLight.a(i, j, k, l);
         isDirty = true; // PaperSpigot
+        version.incrementAndGet(); //Dytanic
     }
 
     public int d(int i, int j, int k) {
@@ -95,6 +121,7 @@ public class ChunkSection {
     public void b(int i, int j, int k, int l) {
         this.emittedLight.a(i, j, k, l);
         isDirty = true; // PaperSpigot
+        version.incrementAndGet(); //Dytanic
     }
 
     public int e(int i, int j, int k) {
@@ -243,6 +243,7 @@ public class DedicatedServer extends MinecraftServer implements IMinecraftServer
                 this.getUserCache().c();
             }
             */
+            this.getUserCache().b(); //Dytanic - load the usercache in the background
 
             if (!NameReferencingFileConverter.a(this.propertyManager)) {
                 return false;
@@ -13,10 +13,10 @@ import java.util.Random;
 public class EnchantmentManager {
 
     private static final Random a = new Random();
-    private static final EnchantmentManager.EnchantmentModifierProtection b = new EnchantmentManager.EnchantmentModifierProtection((EnchantmentManager.SyntheticClass_1) null);
-    private static final EnchantmentManager.EnchantmentModifierDamage c = new EnchantmentManager.EnchantmentModifierDamage((EnchantmentManager.SyntheticClass_1) null);
-    private static final EnchantmentManager.EnchantmentModifierThorns d = new EnchantmentManager.EnchantmentModifierThorns((EnchantmentManager.SyntheticClass_1) null);
-    private static final EnchantmentManager.EnchantmentModifierArthropods e = new EnchantmentManager.EnchantmentModifierArthropods((EnchantmentManager.SyntheticClass_1) null);
+    //private static final EnchantmentManager.EnchantmentModifierProtection b = new EnchantmentManager.EnchantmentModifierProtection((EnchantmentManager.SyntheticClass_1) null); Dytanic edit modifiers are created per call, the world threads may call concurrently
+    //private static final EnchantmentManager.EnchantmentModifierDamage c = new EnchantmentManager.EnchantmentModifierDamage((EnchantmentManager.SyntheticClass_1) null); Dytanic edit
+    //private static final EnchantmentManager.EnchantmentModifierThorns d = new EnchantmentManager.EnchantmentModifierThorns((EnchantmentManager.SyntheticClass_1) null); Dytanic edit
+    //private static final EnchantmentManager.EnchantmentModifierArthropods e = new EnchantmentManager.EnchantmentModifierArthropods((EnchantmentManager.SyntheticClass_1) null); Dytanic edit
 
     public static int getEnchantmentLevel(int i, ItemStack itemstack) {
         if (itemstack == null) {
@@ -139,47 +139,51 @@ public class EnchantmentManager {
     }
 
     public static int a(ItemStack[] aitemstack, DamageSource damagesource) {
-        EnchantmentManager.b.a = 0;
-        EnchantmentManager.b.b = damagesource;
-        a((EnchantmentManager.EnchantmentModifier) EnchantmentManager.b, aitemstack);
-        if (EnchantmentManager.b.a > 25) {
-            EnchantmentManager.b.a = 25;
-        } else if (EnchantmentManager.b.a < 0) {
-            EnchantmentManager.b.a = 0;
+        EnchantmentManager.EnchantmentModifierProtection b = new EnchantmentManager.EnchantmentModifierProtection((EnchantmentManager.SyntheticClass_1) null); //Dytanic
+        b.a = 0;
+        b.b = damagesource;
+        a((EnchantmentManager.EnchantmentModifier) b, aitemstack);
+        if (b.a > 25) {
+            b.a = 25;
+        } else if (b.a < 0) {
+            b.a = 0;
         }
 
-        return (EnchantmentManager.b.a + 1 >> 1) + EnchantmentManager.a.nextInt((EnchantmentManager.b.a >> 1) + 1);
+        return (b.a + 1 >> 1) + EnchantmentManager.a.nextInt((b.a >> 1) + 1);
     }
 
     public static float a(ItemStack itemstack, EnumMonsterType enummonstertype) {
-        EnchantmentManager.c.a = 0.0F;
-        EnchantmentManager.c.b = enummonstertype;
-        a((EnchantmentManager.EnchantmentModifier) EnchantmentManager.c, itemstack);
-        return EnchantmentManager.c.a;
+        EnchantmentManager.EnchantmentModifierDamage c = new EnchantmentManager.EnchantmentModifierDamage((EnchantmentManager.SyntheticClass_1) null); //Dytanic
+        c.a = 0.0F;
+        c.b = enummonstertype;
+        a((EnchantmentManager.EnchantmentModifier) c, itemstack);
+        return c.a;
     }
 
     public static void a(EntityLiving entityliving, Entity entity) {
-        EnchantmentManager.d.b = entity;
-        EnchantmentManager.d.a = entityliving;
+        EnchantmentManager.EnchantmentModifierThorns d = new EnchantmentManager.EnchantmentModifierThorns((EnchantmentManager.SyntheticClass_1) null); //Dytanic
+        d.b = entity;
+        d.a = entityliving;
         if (entityliving != null) {
-            a((EnchantmentManager.EnchantmentModifier) EnchantmentManager.d, entityliving.getEquipment());
+            a((EnchantmentManager.EnchantmentModifier) d, entityliving.getEquipment());
         }
 
         if (entity instanceof EntityHuman) {
-            a((EnchantmentManager.EnchantmentModifier) EnchantmentManager.d, entityliving.bA());
+            a((EnchantmentManager.EnchantmentModifier) d, entityliving.bA());
         }
 
     }
 
     public static void b(EntityLiving entityliving, Entity entity) {
-        EnchantmentManager.e.a = entityliving;
-        EnchantmentManager.e.b = entity;
+        EnchantmentManager.EnchantmentModifierArthropods e = new EnchantmentManager.EnchantmentModifierArthropods((EnchantmentManager.SyntheticClass_1) null); //Dytanic
+        e.a = entityliving;
+        e.b = entity;
         if (entityliving != null) {
-            a((EnchantmentManager.EnchantmentModifier) EnchantmentManager.e, entityliving.getEquipment());
+            a((EnchantmentManager.EnchantmentModifier) e, entityliving.getEquipment());
         }
 
         if (entityliving instanceof EntityHuman) {
-            a((EnchantmentManager.EnchantmentModifier) EnchantmentManager.e, entityliving.bA());
+            a((EnchantmentManager.EnchantmentModifier) e, entityliving.bA());
         }
 
     }
@@ -49,7 +49,7 @@ public abstract class Entity implements ICommandListener {
     // CraftBukikt end
 
     private static final AxisAlignedBB a = new AxisAlignedBB(0.0D, 0.0D, 0.0D, 0.0D, 0.0D, 0.0D);
-    private static int entityCount;
+    private static final java.util.concurrent.atomic.AtomicInteger entityCount = new java.util.concurrent.atomic.AtomicInteger(); //Dytanic edit worlds may be ticked in parallel
     private int id;
     public double j;
     public boolean k;
@@ -97,6 +97,8 @@ public abstract class Entity implements ICommandListener {
     public int maxFireTicks;
     public int fireTicks;
     public boolean inWater; // Spigot - protected -> public // PAIL
+    public int entityStoreIndex = -1; //Dytanic - slot in the EntityStore of the world
+    public EntityTrackerEntry trackerEntry; //Dytanic
     public int noDamageTicks;
     protected boolean justCreated;
     protected boolean fireProof;
@@ -133,6 +135,7 @@ public abstract class Entity implements ICommandListener {
     public boolean forceExplosionKnockback; // CraftBukkit - SPIGOT-949
     public boolean inUnloadedChunk = false; // PaperSpigot - Remove entities in unloaded chunks
     public boolean loadChunks = false; // PaperSpigot - Entities can load chunks they move through and keep them loaded
+    private List<AxisAlignedBB> collisionBuffer; //Dytanic - reused by move
 
     // Spigot start
     public Timing tickTimer = SpigotTimings.getEntityTimings(this); // Spigot
@@ -156,7 +159,7 @@ public abstract class Entity implements ICommandListener {
     }
 
     public Entity(World world) {
-        this.id = Entity.entityCount++;
+        this.id = Entity.entityCount.getAndIncrement(); //Dytanic edit
         this.j = 1.0D;
         this.boundingBox = Entity.a;
         this.width = 0.6F;
@@ -417,7 +420,7 @@ public abstract class Entity implements ICommandListener {
     }
 
     private boolean b(AxisAlignedBB axisalignedbb) {
-        return this.world.getCubes(this, axisalignedbb).isEmpty() && !this.world.containsLiquid(axisalignedbb);
+        return !this.world.hasCubes(this, axisalignedbb) && !this.world.containsLiquid(axisalignedbb); //Dytanic edit - hasCubes
     }
 
     /**
@@ -485,7 +488,7 @@ public abstract class Entity implements ICommandListener {
             if (flag) {
                 double d9;
 
-                for (d9 = 0.05D; d0 != 0.0D && this.world.getCubes(this, this.getBoundingBox().c(d0, -1.0D, 0.0D)).isEmpty(); d6 = d0) {
+                for (d9 = 0.05D; d0 != 0.0D && !this.world.hasCubes(this, this.getBoundingBox().c(d0, -1.0D, 0.0D)); d6 = d0) { //Dytanic edit - hasCubes
                     if (d0 < d9 && d0 >= -d9) {
                         d0 = 0.0D;
                     } else if (d0 > 0.0D) {
@@ -495,7 +498,7 @@ public abstract class Entity implements ICommandListener {
                     }
                 }
 
-                for (; d2 != 0.0D && this.world.getCubes(this, this.getBoundingBox().c(0.0D, -1.0D, d2)).isEmpty(); d8 = d2) {
+                for (; d2 != 0.0D && !this.world.hasCubes(this, this.getBoundingBox().c(0.0D, -1.0D, d2)); d8 = d2) { //Dytanic edit - hasCubes
                     if (d2 < d9 && d2 >= -d9) {
                         d2 = 0.0D;
                     } else if (d2 > 0.0D) {
@@ -505,7 +508,7 @@ public abstract class Entity implements ICommandListener {
                     }
                 }
 
-                for (; d0 != 0.0D && d2 != 0.0D && this.world.getCubes(this, this.getBoundingBox().c(d0, -1.0D, d2)).isEmpty(); d8 = d2) {
+                for (; d0 != 0.0D && d2 != 0.0D && !this.world.hasCubes(this, this.getBoundingBox().c(d0, -1.0D, d2)); d8 = d2) { //Dytanic edit - hasCubes
                     if (d0 < d9 && d0 >= -d9) {
                         d0 = 0.0D;
                     } else if (d0 > 0.0D) {
@@ -525,7 +528,8 @@ public abstract class Entity implements ICommandListener {
                 }
             }
 
-            List list = this.world.getCubes(this, this.getBoundingBox().a(d0, d1, d2));
+            if (this.collisionBuffer == null) this.collisionBuffer = new java.util.ArrayList<AxisAlignedBB>(); //Dytanic
+            List list = this.world.getCubes(this, this.getBoundingBox().a(d0, d1, d2), this.collisionBuffer); //Dytanic edit
             AxisAlignedBB axisalignedbb = this.getBoundingBox();
 
             AxisAlignedBB axisalignedbb1;
@@ -559,7 +563,7 @@ public abstract class Entity implements ICommandListener {
 
                 this.a(axisalignedbb);
                 d1 = (double) this.S;
-                List list1 = this.world.getCubes(this, this.getBoundingBox().a(d6, d1, d8));
+                List list1 = this.world.getCubes(this, this.getBoundingBox().a(d6, d1, d8), this.collisionBuffer); //Dytanic edit - list isn't used anymore
                 AxisAlignedBB axisalignedbb4 = this.getBoundingBox();
                 AxisAlignedBB axisalignedbb5 = axisalignedbb4.a(d6, 0.0D, d8);
                 double d13 = d1;
@@ -1973,6 +1977,21 @@ public abstract class Entity implements ICommandListener {
     }
 
     public void teleportTo(Location exit, boolean portal) {
+        //Dytanic start - the move touches two worlds, it runs on the main thread after the parallel world ticks
+        if (de.dytanic.spigot.WorldTickPool.isWorldTickThread()) {
+            final Location target = exit;
+            final boolean viaPortal = portal;
+
+            MinecraftServer.getServer().worldTickPool.handoff(this, new Runnable() {
+                @Override
+                public void run()
+                {
+                    if (!dead) teleportTo(target, viaPortal);
+                }
+            });
+            return;
+        }
+        //Dytanic end
         if (true) {
             WorldServer worldserver = ((CraftWorld) getBukkitEntity().getLocation().getWorld()).getHandle();
             WorldServer worldserver1 = ((CraftWorld) exit.getWorld()).getHandle();
@@ -194,7 +194,7 @@ public class EntityEnderman extends EntityMonster {
                 Location to = teleport.getTo();
                 this.enderTeleportTo(to.getX(), to.getY(), to.getZ());
                 // CraftBukkit end
-                if (this.world.getCubes(this, this.getBoundingBox()).isEmpty() && !this.world.containsLiquid(this.getBoundingBox())) {
+                if (!this.world.hasCubes(this, this.getBoundingBox()) && !this.world.containsLiquid(this.getBoundingBox())) { //Dytanic edit - hasCubes
                     flag = true;
                 }
             }
@@ -288,7 +288,7 @@ public class EntityGhast extends EntityFlying implements IMonster {
 
             for (int i = 1; (double) i < d3; ++i) {
                 axisalignedbb = axisalignedbb.c(d4, d5, d6);
-                if (!this.g.world.getCubes(this.g, axisalignedbb).isEmpty()) {
+                if (this.g.world.hasCubes(this.g, axisalignedbb)) { //Dytanic edit - hasCubes
                     return false;
                 }
             }
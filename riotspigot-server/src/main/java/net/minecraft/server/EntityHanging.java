@@ -133,7 +133,7 @@ public abstract class EntityHanging extends Entity {
     }
 
     public boolean survives() {
-        if (!this.world.getCubes(this, this.getBoundingBox()).isEmpty()) {
+        if (this.world.hasCubes(this, this.getBoundingBox())) { //Dytanic edit - hasCubes
             return false;
         } else {
             int i = Math.max(1, this.l() / 16);
@@ -542,7 +542,7 @@ public abstract class EntityInsentient extends EntityLiving {
     }
 
     public boolean canSpawn() {
-        return this.world.a(this.getBoundingBox(), (Entity) this) && this.world.getCubes(this, this.getBoundingBox()).isEmpty() && !this.world.containsLiquid(this.getBoundingBox());
+        return this.world.a(this.getBoundingBox(), (Entity) this) && !this.world.hasCubes(this, this.getBoundingBox()) && !this.world.containsLiquid(this.getBoundingBox()); //Dytanic edit - hasCubes
     }
 
     public int bV() {
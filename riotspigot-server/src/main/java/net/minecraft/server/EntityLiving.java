@@ -584,7 +584,7 @@ public abstract class EntityLiving extends Entity {
     }
 
     public void addEffect(MobEffect mobeffect) {
-        org.spigotmc.AsyncCatcher.catchOp( "effect add"); // Spigot
+        org.spigotmc.AsyncCatcher.catchOp( this.world, "effect add"); // Spigot //Dytanic edit
         // CraftBukkit start
         if (isTickingEffects) {
             effectsToProcess.add(mobeffect);
@@ -107,7 +107,7 @@ public class EntityPlayer extends EntityHuman implements ICrafting {
         this.S = 0.0F;
         this.setPositionRotation(blockposition, 0.0F, 0.0F);
 
-        while (!worldserver.getCubes(this, this.getBoundingBox()).isEmpty() && this.locY < 255.0D) {
+        while (worldserver.hasCubes(this, this.getBoundingBox()) && this.locY < 255.0D) { //Dytanic edit - hasCubes
             this.setPosition(this.locX, this.locY + 1.0D, this.locZ);
         }
 
@@ -256,7 +256,7 @@ public class EntityPlayer extends EntityHuman implements ICrafting {
                 if (chunkcoordintpair != null) {
                     if (this.world.isLoaded(new BlockPosition(chunkcoordintpair.x << 4, 0, chunkcoordintpair.z << 4))) {
                         chunk = this.world.getChunkAt(chunkcoordintpair.x, chunkcoordintpair.z);
-                        if (chunk.isReady()) {
+                        if (chunk.isReady() && this.world.lightingEngine.isReadyToSend(chunk)) { //Dytanic edit wait for the light updates queued before
                             arraylist.add(chunk);
                             arraylist1.addAll(chunk.tileEntities.values()); // CraftBukkit - Get tile entities directly from the chunk instead of the world
                             this.chunkCoordIntPairQueue.remove(chunkcoordintpair);
@@ -270,9 +270,9 @@ public class EntityPlayer extends EntityHuman implements ICrafting {
 
             if (!arraylist.isEmpty()) {
                 if (arraylist.size() == 1) {
-                    this.playerConnection.sendPacket(new PacketPlayOutMapChunk((Chunk) arraylist.get(0), true, '\uffff'));
+                    this.playerConnection.sendPacket(this.world.chunkPacketCache.mapChunk((Chunk) arraylist.get(0), true, '\uffff')); //Dytanic edit
                 } else {
-                    this.playerConnection.sendPacket(new PacketPlayOutMapChunkBulk(arraylist));
+                    this.playerConnection.sendPacket(this.world.chunkPacketCache.mapChunkBulk(arraylist)); //Dytanic edit
                 }
 
                 Iterator iterator2 = arraylist1.iterator();
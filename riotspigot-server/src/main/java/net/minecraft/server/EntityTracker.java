@@ -15,19 +15,38 @@ public class EntityTracker {
     private static final DytanicLogger a = DytanicLogger.getInstance();
     private final WorldServer world;
     private Set<EntityTrackerEntry> c = new ConcurrentSet<>(); //Dytanic edit
-    public IntHashMap<EntityTrackerEntry> trackedEntities = new IntHashMap();
+    //public IntHashMap<EntityTrackerEntry> trackedEntities = new IntHashMap(); //Dytanic edit, entries are kept on the entity and found through the EntityStore of the world
     private int e;
+    private final de.dytanic.spigot.TrackerGrid grid = org.spigotmc.SpigotConfig.entityTrackerGrid ? new de.dytanic.spigot.TrackerGrid() : null; //Dytanic
 
     public EntityTracker(WorldServer worldserver) {
         this.world = worldserver;
         this.e = worldserver.getMinecraftServer().getPlayerList().d();
     }
 
+    //Dytanic start
+    /**
+     * @return the entries which may have to add or remove the player, all entries without the grid
+     */
+    private Iterable<EntityTrackerEntry> entries(EntityPlayer entityplayer) {
+        return this.grid != null ? this.grid.getEntryCandidates(entityplayer, this.e) : this.c;
+    }
+
+    /**
+     * Adds the counters of the grid to the timings, called after the worlds were ticked.
+     */
+    public void recordTimings() {
+        if (this.grid != null) {
+            this.grid.recordTimings(this.world.getWorld().getName());
+        }
+    }
+    //Dytanic end
+
     public void track(Entity entity) {
         if (entity instanceof EntityPlayer) {
             this.addEntity(entity, 512, 2);
             EntityPlayer entityplayer = (EntityPlayer) entity;
-            Iterator iterator = this.c.iterator();
+            Iterator iterator = this.entries(entityplayer).iterator(); //Dytanic edit
 
             while (iterator.hasNext()) {
                 EntityTrackerEntry entitytrackerentry = (EntityTrackerEntry) iterator.next();
@@ -95,21 +114,22 @@ public class EntityTracker {
     }
 
     public void addEntity(Entity entity, int i, final int j, boolean flag) {
-        org.spigotmc.AsyncCatcher.catchOp( "entity track"); // Spigot
+        org.spigotmc.AsyncCatcher.catchOp( this.world, "entity track"); // Spigot //Dytanic edit
         i = org.spigotmc.TrackingRange.getEntityTrackingRange(entity, i); // Spigot
         if (i > this.e) {
             i = this.e;
         }
 
         try {
-            if (this.trackedEntities.b(entity.getId())) {
+            if (entity.trackerEntry != null && this.c.contains(entity.trackerEntry)) { //Dytanic edit
                 throw new IllegalStateException("Entity is already tracked!");
             }
 
             EntityTrackerEntry entitytrackerentry = new EntityTrackerEntry(entity, i, j, flag);
 
             this.c.add(entitytrackerentry);
-            this.trackedEntities.a(entity.getId(), entitytrackerentry);
+            entity.trackerEntry = entitytrackerentry; //Dytanic edit
+            if (this.grid != null) this.grid.add(entitytrackerentry); //Dytanic
             entitytrackerentry.scanPlayers(this.world.players);
         } catch (Throwable throwable) {
             CrashReport crashreport = CrashReport.a(throwable, "Adding entity to track");
@@ -135,7 +155,7 @@ public class EntityTracker {
             entity.appendEntityCrashDetails(crashreportsystemdetails);
             CrashReportSystemDetails crashreportsystemdetails1 = crashreport.a("Entity That Is Already Tracked");
 
-            ((EntityTrackerEntry) this.trackedEntities.get(entity.getId())).tracker.appendEntityCrashDetails(crashreportsystemdetails1);
+            entity.trackerEntry.tracker.appendEntityCrashDetails(crashreportsystemdetails1); //Dytanic edit
 
             try {
                 throw new ReportedException(crashreport);
@@ -147,10 +167,10 @@ public class EntityTracker {
     }
 
     public void untrackEntity(Entity entity) {
-        org.spigotmc.AsyncCatcher.catchOp( "entity untrack"); // Spigot
+        org.spigotmc.AsyncCatcher.catchOp( this.world, "entity untrack"); // Spigot //Dytanic edit
         if (entity instanceof EntityPlayer) {
             EntityPlayer entityplayer = (EntityPlayer) entity;
-            Iterator iterator = this.c.iterator();
+            Iterator iterator = this.grid != null ? this.grid.getTracking(entityplayer).iterator() : this.c.iterator(); //Dytanic edit - only the entries tracking the player have to forget it
 
             while (iterator.hasNext()) {
                 EntityTrackerEntry entitytrackerentry = (EntityTrackerEntry) iterator.next();
@@ -159,31 +179,55 @@ public class EntityTracker {
             }
         }
 
-        EntityTrackerEntry entitytrackerentry1 = (EntityTrackerEntry) this.trackedEntities.d(entity.getId());
+        EntityTrackerEntry entitytrackerentry1 = entity.trackerEntry; //Dytanic edit
 
-        if (entitytrackerentry1 != null) {
-            this.c.remove(entitytrackerentry1);
+        if (entitytrackerentry1 != null && this.c.remove(entitytrackerentry1)) { //Dytanic edit
+            entity.trackerEntry = null; //Dytanic
+            if (this.grid != null) this.grid.remove(entitytrackerentry1); //Dytanic
             entitytrackerentry1.a();
         }
 
     }
 
+    //Dytanic start
+    /**
+     * @return the tracker entry of the entity with this id in the world of this tracker, or null
+     */
+    public EntityTrackerEntry getEntry(int id) {
+        Entity entity = this.world.entityList.getById(id);
+        EntityTrackerEntry entitytrackerentry = entity != null ? entity.trackerEntry : null;
+
+        return entitytrackerentry != null && this.c.contains(entitytrackerentry) ? entitytrackerentry : null;
+    }
+    //Dytanic end
+
     public void updatePlayers() {
         ArrayList arraylist = Lists.newArrayList();
         Iterator iterator = this.c.iterator();
 
+        //Dytanic start
+        this.world.timings.trackerEntries.startTiming();
+        if (this.grid != null) {
+            this.grid.updatePlayers(this.world.players);
+        }
+        //Dytanic end
+
         while (iterator.hasNext()) {
             EntityTrackerEntry entitytrackerentry = (EntityTrackerEntry) iterator.next();
 
+            if (entitytrackerentry.grid != null) entitytrackerentry.grid.move(entitytrackerentry); //Dytanic
             entitytrackerentry.track(this.world.players);
             if (entitytrackerentry.n && entitytrackerentry.tracker instanceof EntityPlayer) {
                 arraylist.add((EntityPlayer) entitytrackerentry.tracker);
             }
         }
 
+        this.world.timings.trackerEntries.stopTiming(); //Dytanic
+        this.world.timings.trackerPlayers.startTiming(); //Dytanic
+
         for (int i = 0; i < arraylist.size(); ++i) {
             EntityPlayer entityplayer = (EntityPlayer) arraylist.get(i);
-            Iterator iterator1 = this.c.iterator();
+            Iterator iterator1 = this.entries(entityplayer).iterator(); //Dytanic edit
 
             while (iterator1.hasNext()) {
                 EntityTrackerEntry entitytrackerentry1 = (EntityTrackerEntry) iterator1.next();
@@ -194,10 +238,16 @@ public class EntityTracker {
             }
         }
 
+        this.world.timings.trackerPlayers.stopTiming(); //Dytanic
     }
 
     public void a(EntityPlayer entityplayer) {
-        Iterator iterator = this.c.iterator();
+        //Dytanic start - the entry of the player itself is no candidate while it is in the bucket of the chunk it came from
+        if (entityplayer.trackerEntry != null && entityplayer.trackerEntry.grid != null) {
+            entityplayer.trackerEntry.grid.move(entityplayer.trackerEntry);
+        }
+        //Dytanic end
+        Iterator iterator = this.entries(entityplayer).iterator(); //Dytanic edit
 
         while (iterator.hasNext()) {
             EntityTrackerEntry entitytrackerentry = (EntityTrackerEntry) iterator.next();
@@ -212,7 +262,7 @@ public class EntityTracker {
     }
 
     public void a(Entity entity, Packet packet) {
-        EntityTrackerEntry entitytrackerentry = (EntityTrackerEntry) this.trackedEntities.get(entity.getId());
+        EntityTrackerEntry entitytrackerentry = entity.trackerEntry; //Dytanic edit
 
         if (entitytrackerentry != null) {
             entitytrackerentry.broadcast(packet);
@@ -221,7 +271,7 @@ public class EntityTracker {
     }
 
     public void sendPacketToEntity(Entity entity, Packet packet) {
-        EntityTrackerEntry entitytrackerentry = (EntityTrackerEntry) this.trackedEntities.get(entity.getId());
+        EntityTrackerEntry entitytrackerentry = entity.trackerEntry; //Dytanic edit
 
         if (entitytrackerentry != null) {
             entitytrackerentry.broadcastIncludingSelf(packet);
@@ -230,7 +280,7 @@ public class EntityTracker {
     }
 
     public void untrackPlayer(EntityPlayer entityplayer) {
-        Iterator iterator = this.c.iterator();
+        Iterator iterator = this.grid != null ? this.grid.getTracking(entityplayer).iterator() : this.c.iterator(); //Dytanic edit
 
         while (iterator.hasNext()) {
             EntityTrackerEntry entitytrackerentry = (EntityTrackerEntry) iterator.next();
@@ -241,7 +291,7 @@ public class EntityTracker {
     }
 
     public void a(EntityPlayer entityplayer, Chunk chunk) {
-        Iterator iterator = this.c.iterator();
+        Iterator iterator = this.grid != null ? this.grid.getEntries(chunk.locX, chunk.locZ).iterator() : this.c.iterator(); //Dytanic edit
 
         while (iterator.hasNext()) {
             EntityTrackerEntry entitytrackerentry = (EntityTrackerEntry) iterator.next();
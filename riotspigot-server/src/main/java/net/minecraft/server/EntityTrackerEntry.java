@@ -43,6 +43,11 @@ public class EntityTrackerEntry {
     public java.util.Map<EntityPlayer, Boolean> trackedPlayerMap = new java.util.HashMap<EntityPlayer, Boolean>();
     public Set<EntityPlayer> trackedPlayers = trackedPlayerMap.keySet();
     // PaperSpigot end
+    //Dytanic start - set while the entry is in the TrackerGrid of its EntityTracker
+    public de.dytanic.spigot.TrackerGrid grid;
+    public int gridX;
+    public int gridZ;
+    //Dytanic end
 
     public EntityTrackerEntry(Entity entity, int i, int j, boolean flag) {
         this.tracker = entity;
@@ -74,7 +79,7 @@ public class EntityTrackerEntry {
             this.s = this.tracker.locZ;
             this.isMoving = true;
             this.n = true;
-            this.scanPlayers(list);
+            this.scanPlayers(this.grid != null ? this.grid.getPlayerCandidates(this) : list); //Dytanic edit
         }
 
         if (this.w != this.tracker.vehicle || this.tracker.vehicle != null && this.m % 60 == 0) {
@@ -294,6 +299,8 @@ public class EntityTrackerEntry {
     }
 
     public void broadcast(Packet packet) {
+        if (this.trackedPlayers.size() > 1) de.dytanic.spigot.PreparedPacket.share(packet); //Dytanic
+
         Iterator iterator = this.trackedPlayers.iterator();
 
         while (iterator.hasNext()) {
@@ -305,6 +312,7 @@ public class EntityTrackerEntry {
     }
 
     public void broadcastIncludingSelf(Packet packet) {
+        if (this.tracker instanceof EntityPlayer && !this.trackedPlayers.isEmpty()) de.dytanic.spigot.PreparedPacket.share(packet); //Dytanic
         this.broadcast(packet);
         if (this.tracker instanceof EntityPlayer) {
             ((EntityPlayer) this.tracker).playerConnection.sendPacket(packet);
@@ -327,12 +335,13 @@ public class EntityTrackerEntry {
         if (this.trackedPlayers.contains(entityplayer)) {
             entityplayer.d(this.tracker);
             this.trackedPlayers.remove(entityplayer);
+            if (this.grid != null) this.grid.untracked(this, entityplayer); //Dytanic
         }
 
     }
 
     public void updatePlayer(EntityPlayer entityplayer) {
-        org.spigotmc.AsyncCatcher.catchOp( "player tracker update"); // Spigot
+        org.spigotmc.AsyncCatcher.catchOp( this.tracker.world, "player tracker update"); // Spigot //Dytanic edit
         if (entityplayer != this.tracker) {
             if (this.c(entityplayer)) {
                 if (!this.trackedPlayers.contains(entityplayer) && (this.e(entityplayer) || this.tracker.attachedToPlayer)) {
@@ -347,6 +356,7 @@ public class EntityTrackerEntry {
                     entityplayer.removeQueue.remove(Integer.valueOf(this.tracker.getId()));
                     // CraftBukkit end
                     this.trackedPlayerMap.put(entityplayer, true); // PaperBukkit
+                    if (this.grid != null) this.grid.tracked(this, entityplayer); //Dytanic
                     Packet packet = this.c();
 
                     entityplayer.playerConnection.sendPacket(packet);
@@ -426,6 +436,7 @@ public class EntityTrackerEntry {
                 }
             } else if (this.trackedPlayers.contains(entityplayer)) {
                 this.trackedPlayers.remove(entityplayer);
+                if (this.grid != null) this.grid.untracked(this, entityplayer); //Dytanic
                 entityplayer.d(this.tracker);
             }
 
@@ -563,9 +574,10 @@ public class EntityTrackerEntry {
     }
 
     public void clear(EntityPlayer entityplayer) {
-        org.spigotmc.AsyncCatcher.catchOp( "player tracker clear"); // Spigot
+        org.spigotmc.AsyncCatcher.catchOp( this.tracker.world, "player tracker clear"); // Spigot //Dytanic edit
         if (this.trackedPlayers.contains(entityplayer)) {
             this.trackedPlayers.remove(entityplayer);
+            if (this.grid != null) this.grid.untracked(this, entityplayer); //Dytanic
             entityplayer.d(this.tracker);
         }
 
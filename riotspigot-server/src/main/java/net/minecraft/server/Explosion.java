@@ -48,6 +48,7 @@ public class Explosion {
             return;
         }
         // CraftBukkit end
+        /* Dytanic edit - walked by the ray engine of the world
         HashSet hashset = Sets.newHashSet();
         boolean flag = true;
 
@@ -95,6 +96,12 @@ public class Explosion {
         }
 
         this.blocks.addAll(hashset);
+        */
+        //Dytanic start
+        this.world.explosionRayEngine.collect(this, this.posX, this.posY, this.posZ, this.size, this.source, this.blocks);
+        int i;
+        int j;
+        //Dytanic end
         float f3 = this.size * 2.0F;
 
         i = MathHelper.floor(this.posX - (double) f3 - 1.0D);
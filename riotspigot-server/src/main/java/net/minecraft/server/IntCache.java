@@ -5,59 +5,80 @@ import java.util.List;
 
 public class IntCache {
 
-    private static int a = 256;
-    private static List<int[]> b = Lists.newArrayList();
-    private static List<int[]> c = Lists.newArrayList();
-    private static List<int[]> d = Lists.newArrayList();
-    private static List<int[]> e = Lists.newArrayList();
+    //Dytanic start - one pool per thread, the chunk generation threads use the layers in parallel without a lock
+    private static final ThreadLocal<IntCache> pools = new ThreadLocal<IntCache>() {
+        @Override
+        protected IntCache initialValue() {
+            return new IntCache();
+        }
+    };
+
+    private int a = 256;
+    private List<int[]> b = Lists.newArrayList();
+    private List<int[]> c = Lists.newArrayList();
+    private List<int[]> d = Lists.newArrayList();
+    private List<int[]> e = Lists.newArrayList();
+
+    public static int[] a(int i) {
+        return IntCache.pools.get().take(i);
+    }
+
+    public static void a() {
+        IntCache.pools.get().release();
+    }
+
+    public static String b() {
+        return IntCache.pools.get().describe();
+    }
+    //Dytanic end
 
-    public static synchronized int[] a(int i) {
+    private int[] take(int i) { //Dytanic edit - was the static synchronized a(int)
         int[] aint;
 
         if (i <= 256) {
-            if (IntCache.b.isEmpty()) {
+            if (this.b.isEmpty()) {
                 aint = new int[256];
-                if (c.size() < org.spigotmc.SpigotConfig.intCacheLimit) IntCache.c.add(aint);
+                if (c.size() < org.spigotmc.SpigotConfig.intCacheLimit) this.c.add(aint);
                 return aint;
             } else {
-                aint = (int[]) IntCache.b.remove(IntCache.b.size() - 1);
-                if (c.size() < org.spigotmc.SpigotConfig.intCacheLimit) IntCache.c.add(aint);
+                aint = (int[]) this.b.remove(this.b.size() - 1);
+                if (c.size() < org.spigotmc.SpigotConfig.intCacheLimit) this.c.add(aint);
                 return aint;
             }
-        } else if (i > IntCache.a) {
-            IntCache.a = i;
-            IntCache.d.clear();
-            IntCache.e.clear();
-            aint = new int[IntCache.a];
-            if (e.size() < org.spigotmc.SpigotConfig.intCacheLimit) IntCache.e.add(aint);
+        } else if (i > this.a) {
+            this.a = i;
+            this.d.clear();
+            this.e.clear();
+            aint = new int[this.a];
+            if (e.size() < org.spigotmc.SpigotConfig.intCacheLimit) this.e.add(aint);
             return aint;
-        } else if (IntCache.d.isEmpty()) {
-            aint = new int[IntCache.a];
-            if (e.size() < org.spigotmc.SpigotConfig.intCacheLimit) IntCache.e.add(aint);
+        } else if (this.d.isEmpty()) {
+            aint = new int[this.a];
+            if (e.size() < org.spigotmc.SpigotConfig.intCacheLimit) this.e.add(aint);
             return aint;
         } else {
-            aint = (int[]) IntCache.d.remove(IntCache.d.size() - 1);
-            if (e.size() < org.spigotmc.SpigotConfig.intCacheLimit) IntCache.e.add(aint);
+            aint = (int[]) this.d.remove(this.d.size() - 1);
+            if (e.size() < org.spigotmc.SpigotConfig.intCacheLimit) this.e.add(aint);
             return aint;
         }
     }
 
-    public static synchronized void a() {
-        if (!IntCache.d.isEmpty()) {
-            IntCache.d.remove(IntCache.d.size() - 1);
+    private void release() { //Dytanic edit - was the static synchronized a()
+        if (!this.d.isEmpty()) {
+            this.d.remove(this.d.size() - 1);
         }
 
-        if (!IntCache.b.isEmpty()) {
-            IntCache.b.remove(IntCache.b.size() - 1);
+        if (!this.b.isEmpty()) {
+            this.b.remove(this.b.size() - 1);
         }
 
-        IntCache.d.addAll(IntCache.e);
-        IntCache.b.addAll(IntCache.c);
-        IntCache.e.clear();
-        IntCache.c.clear();
+        this.d.addAll(this.e);
+        this.b.addAll(this.c);
+        this.e.clear();
+        this.c.clear();
     }
 
-    public static synchronized String b() {
-        return "cache: " + IntCache.d.size() + ", tcache: " + IntCache.b.size() + ", allocated: " + IntCache.e.size() + ", tallocated: " + IntCache.c.size();
+    private String describe() { //Dytanic edit - was the static synchronized b()
+        return "cache: " + this.d.size() + ", tcache: " + this.b.size() + ", allocated: " + this.e.size() + ", tallocated: " + this.c.size();
     }
 }
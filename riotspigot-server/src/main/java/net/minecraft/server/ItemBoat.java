@@ -69,7 +69,7 @@ public class ItemBoat extends Item {
                     EntityBoat entityboat = new EntityBoat(world, (double) ((float) blockposition.getX() + 0.5F), (double) ((float) blockposition.getY() + 1.0F), (double) ((float) blockposition.getZ() + 0.5F));
 
                     entityboat.yaw = (float) (((MathHelper.floor((double) (entityhuman.yaw * 4.0F / 360.0F) + 0.5D) & 3) - 1) * 90);
-                    if (!world.getCubes(entityboat, entityboat.getBoundingBox().grow(-0.1D, -0.1D, -0.1D)).isEmpty()) {
+                    if (world.hasCubes(entityboat, entityboat.getBoundingBox().grow(-0.1D, -0.1D, -0.1D))) { //Dytanic edit - hasCubes
                         return itemstack;
                     }
 
@@ -5,6 +5,7 @@ import com.mojang.authlib.GameProfile;
 import com.mojang.authlib.exceptions.AuthenticationUnavailableException;
 import de.dytanic.log.DytanicLogger;
 import de.dytanic.spigot.DytanicSpigot;
+import de.dytanic.spigot.LoginMetrics;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.util.concurrent.GenericFutureListener;
@@ -13,7 +14,9 @@ import java.security.PrivateKey;
 import java.util.Arrays;
 import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 import javax.crypto.SecretKey;
 import org.apache.commons.lang3.Validate;
 
@@ -36,6 +39,10 @@ public class LoginListener implements PacketLoginInListener, IUpdatePlayerListBo
     private SecretKey loginKey;
     private EntityPlayer l;
     public String hostname = ""; // CraftBukkit - add field
+    //Dytanic start
+    private volatile long loginStart;
+    private volatile long phaseStart;
+    //Dytanic end
 
     public LoginListener(MinecraftServer minecraftserver, NetworkManager networkmanager) {
         this.g = LoginListener.EnumProtocolState.HELLO;
@@ -130,6 +137,10 @@ public class LoginListener implements PacketLoginInListener, IUpdatePlayerListBo
                 }, new GenericFutureListener[0]);
             }
 
+            //Dytanic start
+            this.recordPhase(LoginMetrics.Phase.ACCEPT);
+            LoginMetrics.record(LoginMetrics.Phase.TOTAL, System.nanoTime() - this.loginStart);
+            //Dytanic end
             this.networkManager.handle(new PacketLoginOutSuccess(this.i));
             EntityPlayer entityplayer = this.server.getPlayerList().a(this.i.getId());
 
@@ -154,6 +165,7 @@ public class LoginListener implements PacketLoginInListener, IUpdatePlayerListBo
     public void a(PacketLoginInStart packetlogininstart) {
         Validate.validState(this.g == LoginListener.EnumProtocolState.HELLO, "Unexpected hello packet", new Object[0]);
         this.i = packetlogininstart.a();
+        this.loginStart = this.phaseStart = System.nanoTime(); //Dytanic
         if (this.server.getOnlineMode() && !this.networkManager.c()) {
             this.g = LoginListener.EnumProtocolState.KEY;
             this.networkManager.handle(new PacketLoginOutEncryptionBegin(this.j, this.server.Q().getPublic(), this.e));
@@ -251,47 +263,23 @@ public class LoginListener implements PacketLoginInListener, IUpdatePlayerListBo
             }).start();
             */
 
-            DytanicSpigot.getInstance().getTaskScheduler().schedule(new Runnable() {
+            final GameProfile gameprofile = this.i;
+            final String s = (new BigInteger(MinecraftEncryption.a(this.j, this.server.Q().getPublic(), this.loginKey))).toString(16);
+
+            this.phaseStart = System.nanoTime();
+            this.server.aD().hasJoinedServerAsync(new GameProfile((UUID) null, gameprofile.getName()), s).whenComplete(new BiConsumer<GameProfile, Throwable>() {
                 @Override
-                public void run()
+                public void accept(final GameProfile profile, final Throwable throwable)
                 {
-                    GameProfile gameprofile = LoginListener.this.i;
-
-                    try {
-                        String s = (new BigInteger(MinecraftEncryption.a(LoginListener.this.j, LoginListener.this.server.Q().getPublic(), LoginListener.this.loginKey))).toString(16);
-
-                        LoginListener.this.i = LoginListener.this.server.aD().hasJoinedServer(new GameProfile((UUID) null, gameprofile.getName()), s);
-                        if (LoginListener.this.i != null) {
-                            // CraftBukkit start - fire PlayerPreLoginEvent
-                            if (!networkManager.g()) {
-                                return;
-                            }
-
-                            new LoginHandler().fireEvents();
-                        } else if (LoginListener.this.server.T()) {
-                            LoginListener.c.warn("Failed to verify username but will let them in anyway!");
-                            LoginListener.this.i = LoginListener.this.a(gameprofile);
-                            LoginListener.this.g = LoginListener.EnumProtocolState.READY_TO_ACCEPT;
-                        } else {
-                            LoginListener.this.disconnect("Failed to verify username!");
-                            LoginListener.c.error("Username \'" + gameprofile.getName() + "\' tried to join with an invalid session"); // CraftBukkit - fix null pointer
+                    LoginListener.this.recordPhase(LoginMetrics.Phase.SESSION);
+                    // The events may block, they don't occupy the session threads
+                    DytanicSpigot.getInstance().getTaskScheduler().schedule(new Runnable() {
+                        @Override
+                        public void run()
+                        {
+                            LoginListener.this.verified(gameprofile, profile, throwable);
                         }
-                    } catch (AuthenticationUnavailableException authenticationunavailableexception) {
-                        if (LoginListener.this.server.T()) {
-                            LoginListener.c.warn("Authentication servers are down but will let them in anyway!");
-                            LoginListener.this.i = LoginListener.this.a(gameprofile);
-                            LoginListener.this.g = LoginListener.EnumProtocolState.READY_TO_ACCEPT;
-                        } else {
-                            LoginListener.this.disconnect("Authentication servers are down. Please try again later, sorry!");
-                            LoginListener.c.error("Couldn\'t verify username because servers are unavailable");
-                        }
-                        // CraftBukkit start - catch all exceptions
-                    } catch (Exception exception) {
-                        disconnect("Failed to verify username!");
-                        server.server.getLogger().log(java.util.logging.Level.WARNING, "Exception verifying " + gameprofile.getName(), exception);
-                        // CraftBukkit end
-                    }
-
+                    });
                 }
             });
 
@@ -299,6 +287,54 @@ public class LoginListener implements PacketLoginInListener, IUpdatePlayerListBo
         }
     }
 
+    //Dytanic start
+    private void verified(GameProfile gameprofile, GameProfile profile, Throwable throwable) {
+        try {
+            if (throwable != null) {
+                throw throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+            }
+
+            LoginListener.this.i = profile;
+            if (LoginListener.this.i != null) {
+                // CraftBukkit start - fire PlayerPreLoginEvent
+                if (!networkManager.g()) {
+                    return;
+                }
+
+                new LoginHandler().fireEvents();
+            } else if (LoginListener.this.server.T()) {
+                LoginListener.c.warn("Failed to verify username but will let them in anyway!");
+                LoginListener.this.i = LoginListener.this.a(gameprofile);
+                LoginListener.this.g = LoginListener.EnumProtocolState.READY_TO_ACCEPT;
+            } else {
+                LoginListener.this.disconnect("Failed to verify username!");
+                LoginListener.c.error("Username \'" + gameprofile.getName() + "\' tried to join with an invalid session"); // CraftBukkit - fix null pointer
+            }
+        } catch (AuthenticationUnavailableException authenticationunavailableexception) {
+            if (LoginListener.this.server.T()) {
+                LoginListener.c.warn("Authentication servers are down but will let them in anyway!");
+                LoginListener.this.i = LoginListener.this.a(gameprofile);
+                LoginListener.this.g = LoginListener.EnumProtocolState.READY_TO_ACCEPT;
+            } else {
+                LoginListener.this.disconnect("Authentication servers are down. Please try again later, sorry!");
+                LoginListener.c.error("Couldn\'t verify username because servers are unavailable");
+            }
+            // CraftBukkit start - catch all exceptions
+        } catch (Throwable exception) {
+            disconnect("Failed to verify username!");
+            server.server.getLogger().log(java.util.logging.Level.WARNING, "Exception verifying " + gameprofile.getName(), exception);
+            // CraftBukkit end
+        }
+    }
+
+    private void recordPhase(LoginMetrics.Phase phase) {
+        long now = System.nanoTime();
+
+        LoginMetrics.record(phase, now - this.phaseStart);
+        this.phaseStart = now;
+    }
+    //Dytanic end
+
     // Spigot start
     public class LoginHandler {
 
@@ -337,6 +373,7 @@ public class LoginListener implements PacketLoginInListener, IUpdatePlayerListBo
                             }
                             // CraftBukkit end
                             LoginListener.c.info("UUID of player " + LoginListener.this.i.getName() + " is " + LoginListener.this.i.getId());
+                            LoginListener.this.recordPhase(LoginMetrics.Phase.PRE_LOGIN); //Dytanic
                             LoginListener.this.g = LoginListener.EnumProtocolState.READY_TO_ACCEPT;
         }
     }
@@ -11,8 +11,11 @@ import com.mojang.authlib.minecraft.MinecraftSessionService;
 import com.mojang.authlib.yggdrasil.YggdrasilAuthenticationService;
 import de.dytanic.$;
 import de.dytanic.log.DytanicLogger;
-import de.dytanic.spigot.ChunkCallable;
+import de.dytanic.spigot.AdaptiveTickScheduler;
+import de.dytanic.spigot.ChunkLoadQueue;
 import de.dytanic.spigot.DytanicSpigot;
+import de.dytanic.spigot.TickBenchmark;
+import de.dytanic.spigot.WorldTickPool;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufOutputStream;
 import io.netty.buffer.Unpooled;
@@ -26,7 +29,6 @@ import java.security.KeyPair;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executors;
 import java.util.concurrent.FutureTask;
 import java.util.logging.Level;
@@ -112,7 +114,10 @@ public abstract class MinecraftServer implements Runnable, ICommandListener, IAs
     // CraftBukkit end
 
     //Dytanic start
-    public final Queue<ChunkCallable> chunkQueue = new ConcurrentLinkedQueue<>();
+    public final ChunkLoadQueue chunkQueue = new ChunkLoadQueue();
+    public final AdaptiveTickScheduler tickScheduler = new AdaptiveTickScheduler();
+    public volatile WorldTickPool worldTickPool;
+    public TickBenchmark benchmark; // main thread only
     //Dytanic end
 
     public MinecraftServer(OptionSet options, Proxy proxy) { //Dytanic edit remove usercache file in constructor
@@ -467,6 +472,7 @@ public abstract class MinecraftServer implements Runnable, ICommandListener, IAs
     public void stop() throws ExceptionWorldConflict { // CraftBukkit - added throws
 
         DytanicSpigot.getInstance().getTaskScheduler().shutdown(); //Dytanic edit
+        if (this.worldTickPool != null) this.worldTickPool.shutdown(); //Dytanic
         // CraftBukkit start - prevent double stopping on multiple threads
         synchronized(stopLock) {
             if (hasStopped) return;
@@ -497,6 +503,12 @@ public abstract class MinecraftServer implements Runnable, ICommandListener, IAs
                 MinecraftServer.LOGGER.info("Saving worlds");
                 this.saveChunks(false);
 
+                //Dytanic start - the chunk save threads don't keep the server alive
+                for (WorldServer worldserver : this.worlds) {
+                    worldserver.flushSave();
+                }
+                //Dytanic end
+
                 /* CraftBukkit start - Handled in saveChunks
                 for (int i = 0; i < this.worldServer.length; ++i) {
                     WorldServer worldserver = this.worldServer[i];
@@ -514,9 +526,15 @@ public abstract class MinecraftServer implements Runnable, ICommandListener, IAs
             // Spigot start
             if( org.spigotmc.SpigotConfig.saveUserCacheOnStopOnly )
             {
-                LOGGER.info("Saving usercache.json");
+                LOGGER.info("Saving usercache"); //Dytanic edit
                 this.Z.c();
             }
+            //Dytanic start
+            else
+            {
+                this.Z.flush();
+            }
+            //Dytanic end
             //Spigot end
 
             //Dytanic start
@@ -551,12 +569,12 @@ public abstract class MinecraftServer implements Runnable, ICommandListener, IAs
 
     // PaperSpigot start - Further improve tick loop
     //Dytanic start
-    private static final int TPS = 40, SAMPLE_INTERVAL = TPS;
+    private static final int TPS = 20, SAMPLE_INTERVAL = TPS;
     private static final long SEC_IN_NANO = 1000000000, TICK_TIME = SEC_IN_NANO / TPS, MAX_CATCHUP_BUFFER = TICK_TIME * TPS * 60L;
     public final RollingAverage tps1 = new RollingAverage(60), tps5 = new RollingAverage(60 * 5), tps15 = new RollingAverage(60 * 15);
     public double[] recentTps = new double[ 3 ]; // PaperSpigot - Fine have your darn compat with bad plugins
 
-    public volatile boolean defaultTick = false;
+    //public volatile boolean defaultTick = false; replaced by the AdaptiveTickScheduler
     public volatile double currentTps = TPS;
     //Dytanic end
 
@@ -602,6 +620,14 @@ public abstract class MinecraftServer implements Runnable, ICommandListener, IAs
         try {
             if (this.init()) {
                 this.ab = az();
+
+                //Dytanic start
+                if (org.spigotmc.SpigotConfig.parallelWorldTicking) {
+                    this.worldTickPool = new WorldTickPool(org.spigotmc.SpigotConfig.parallelWorldTickingThreads);
+                    ((org.bukkit.plugin.SimplePluginManager) this.server.getPluginManager()).setEventRouter(this.worldTickPool);
+                    MinecraftServer.LOGGER.warn("Parallel world ticking is experimental, the timings are not accurate while it is enabled");
+                }
+                //Dytanic end
                 //long i = 0L; Dytanic edit
 
                 this.r.setMOTD(new ChatComponentText(this.motd));
@@ -660,7 +686,6 @@ public abstract class MinecraftServer implements Runnable, ICommandListener, IAs
                     }
                     lastTick = curTime;
 
-                    defaultTick = !defaultTick; //Dytanic edit
                     this.A();
                     this.Q = true;
                 }
@@ -778,7 +803,7 @@ public abstract class MinecraftServer implements Runnable, ICommandListener, IAs
 
         try
         {
-            if (autosavePeriod > 0 && (this.ticks / 2) % autosavePeriod == 0)
+            if (autosavePeriod > 0 && this.ticks % autosavePeriod == 0)
             { // CraftBukkit
                 SpigotTimings.worldSaveTimer.startTiming(); // Spigot
                 //this.methodProfiler.a("save"); Dytanic edit
@@ -807,6 +832,7 @@ public abstract class MinecraftServer implements Runnable, ICommandListener, IAs
 
         //this.methodProfiler.a("tallying"); Dytanic edit
         this.h[this.ticks % 100] = System.nanoTime() - i;
+        this.tickScheduler.endTick(this.h[this.ticks % 100]); //Dytanic
         /* Dytanic edit
         this.methodProfiler.b();
         this.methodProfiler.a("snooper");
@@ -858,15 +884,10 @@ public abstract class MinecraftServer implements Runnable, ICommandListener, IAs
 
         //this.methodProfiler.c("levels"); Dytanic edit
 
-        //Dytanic start
-        if(defaultTick)
-        {
-            SpigotTimings.bukkitSchedulerTimer.startTiming(); // Spigot
-            // CraftBukkit start
-            this.server.getScheduler().mainThreadHeartbeat(this.ticks / 2);
-            SpigotTimings.bukkitSchedulerTimer.stopTiming(); // Spigot
-        }
-        //Dytanic end
+        SpigotTimings.bukkitSchedulerTimer.startTiming(); // Spigot
+        // CraftBukkit start
+        this.server.getScheduler().mainThreadHeartbeat(this.ticks);
+        SpigotTimings.bukkitSchedulerTimer.stopTiming(); // Spigot
 
         // Run tasks that are waiting on processing
         /* Dytanic edit remove processQueue
@@ -881,27 +902,55 @@ public abstract class MinecraftServer implements Runnable, ICommandListener, IAs
         {
 
             //Dytanic start
-            ChunkCallable chunkCallable;
-            if (!this.chunkQueue.isEmpty() && (chunkCallable = this.chunkQueue.poll()) != null)
-                try
-                {
-                    chunkCallable.call();
-                } catch (Exception e1)
-                {
-                    e1.printStackTrace();
+            SpigotTimings.chunkLoadQueueTimer.startTiming();
+            co.aikar.timings.TimingHistory.chunkLoadQueueTicks += this.chunkQueue.size();
+            co.aikar.timings.TimingHistory.chunkLoadTicks += this.chunkQueue.drain();
+            SpigotTimings.chunkLoadQueueTimer.stopTiming();
+
+            SpigotTimings.chunkGenerationTimer.startTiming();
+            for (WorldServer worldserver : this.worlds) {
+                if (worldserver.chunkProviderServer.generationPipeline != null) {
+                    co.aikar.timings.TimingHistory.chunkGeneratedTicks += worldserver.chunkProviderServer.generationPipeline.drain();
                 }
+            }
+            SpigotTimings.chunkGenerationTimer.stopTiming();
 
+            SpigotTimings.pregeneratorTimer.startTiming();
+            for (WorldServer worldserver : this.worlds) {
+                if (worldserver.pregenerator != null) {
+                    worldserver.pregenerator.tick();
+                    if (worldserver.pregenerator.isFinished()) worldserver.pregenerator = null;
+                }
+            }
+            SpigotTimings.pregeneratorTimer.stopTiming();
             //Dytanic end
 
         }catch (Exception ex) {
             ex.printStackTrace();
         }
 
+        //Dytanic start - may load and unload worlds, never inside an iteration of the worlds
+        if (this.benchmark != null) {
+            SpigotTimings.benchmarkTimer.startTiming();
+            try {
+                this.benchmark.tick(this.h[(this.ticks + 99) % 100]);
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                this.benchmark.cancel();
+            } finally {
+                SpigotTimings.benchmarkTimer.stopTiming();
+            }
+            if (this.benchmark.isFinished()) this.benchmark = null;
+        }
+        //Dytanic end
+
         try
         {
 
             SpigotTimings.chunkIOTickTimer.startTiming(); // Spigot
+            long phaseStart = System.nanoTime(); //Dytanic
             org.bukkit.craftbukkit.chunkio.ChunkIOExecutor.tick();
+            this.tickScheduler.record(AdaptiveTickScheduler.Phase.CHUNK_IO, System.nanoTime() - phaseStart); //Dytanic
             SpigotTimings.chunkIOTickTimer.stopTiming(); // Spigot
 
         }catch (Exception ex) {
@@ -926,6 +975,11 @@ public abstract class MinecraftServer implements Runnable, ICommandListener, IAs
 
         int i;
 
+        //Dytanic start
+        if (this.worldTickPool != null && this.worlds.size() > 1)
+            this.worldTickPool.tick(this.worlds, this);
+        else
+        //Dytanic end
         for (i = 0; i < this.worlds.size(); ++i) {
             //long j = System.nanoTime(); Dytanic edit
 
@@ -943,59 +997,20 @@ public abstract class MinecraftServer implements Runnable, ICommandListener, IAs
 
                 //this.methodProfiler.a("tick"); Dytanic edit
 
-                CrashReport crashreport;
-
-                try {
-                    worldserver.timings.doTick.startTiming(); // Spigot
-                    worldserver.doTick();
-                    worldserver.timings.doTick.stopTiming(); // Spigot
-                } catch (Throwable throwable) {
-                    // Spigot Start
-                    try {
-                    crashreport = CrashReport.a(throwable, "Exception ticking world");
-                    } catch (Throwable t){
-                        throw new RuntimeException("Error generating crash report", t);
-                    }
-                    // Spigot End
-                    worldserver.a(crashreport);
-                    throw new ReportedException(crashreport);
-                }
-
-
-                if(defaultTick)
-                try {
-                    worldserver.timings.tickEntities.startTiming(); // Spigot
-                    worldserver.tickEntities();
-                    worldserver.timings.tickEntities.stopTiming(); // Spigot
-                } catch (Throwable throwable1) {
-                    // Spigot Start
-                    try {
-                    crashreport = CrashReport.a(throwable1, "Exception ticking world entities");
-                    } catch (Throwable t){
-                        throw new RuntimeException("Error generating crash report", t);
-                    }
-                    // Spigot End
-                    worldserver.a(crashreport);
-                    throw new ReportedException(crashreport);
-                }
-
-                /* Dytanic edit
-                this.methodProfiler.b();
-                this.methodProfiler.a("tracker");
-                */
-                worldserver.timings.tracker.startTiming(); // Spigot
-                worldserver.getTracker().updatePlayers();
-                worldserver.timings.tracker.stopTiming(); // Spigot
-                /* Dytanic edit
-                this.methodProfiler.b();
-                this.methodProfiler.b();
-                */
-                worldserver.explosionDensityCache.clear(); // PaperSpigot - Optimize explosions
+                this.tickWorld(worldserver); //Dytanic edit moved into tickWorld
             // } // CraftBukkit
 
             // this.i[i][this.ticks % 100] = System.nanoTime() - j; // CraftBukkit
         }
 
+        //Dytanic start
+        for (WorldServer worldserver : this.worlds) {
+            worldserver.lightingEngine.recordTimings();
+            worldserver.getTracker().recordTimings();
+        }
+        org.bukkit.craftbukkit.event.CraftEventFactory.recordTimings();
+        //Dytanic end
+
         //this.methodProfiler.c("connection"); Dytanic edit
         SpigotTimings.connectionTimer.startTiming(); // Spigot
         this.aq().c();
@@ -1012,14 +1027,78 @@ public abstract class MinecraftServer implements Runnable, ICommandListener, IAs
         for (i = 0; i < p.size(); (p.get(i++)).c()); //Dytanic edit
         SpigotTimings.tickablesTimer.stopTiming(); // Spigot
 
+        this.aq().flushPackets(); //Dytanic - packets batched after the connection tick
+
 
         //this.methodProfiler.b(); Dytanic edit
     }
 
+    //Dytanic start
+    /**
+     * Ticks one world, called by the main thread or with parallel world ticking by the world tick thread which owns the world.
+     */
+    public void tickWorld(WorldServer worldserver)
+    {
+        CrashReport crashreport;
+
+        try {
+            worldserver.timings.doTick.startTiming(); // Spigot
+            long phaseStart = System.nanoTime(); //Dytanic
+            worldserver.doTick();
+            this.tickScheduler.record(AdaptiveTickScheduler.Phase.WORLD_TICK, System.nanoTime() - phaseStart); //Dytanic
+            worldserver.timings.doTick.stopTiming(); // Spigot
+        } catch (Throwable throwable) {
+            // Spigot Start
+            try {
+            crashreport = CrashReport.a(throwable, "Exception ticking world");
+            } catch (Throwable t){
+                throw new RuntimeException("Error generating crash report", t);
+            }
+            // Spigot End
+            worldserver.a(crashreport);
+            throw new ReportedException(crashreport);
+        }
+
+
+        try {
+            worldserver.timings.tickEntities.startTiming(); // Spigot
+            long phaseStart = System.nanoTime(); //Dytanic
+            worldserver.tickEntities();
+            this.tickScheduler.record(AdaptiveTickScheduler.Phase.ENTITY_TICK, System.nanoTime() - phaseStart); //Dytanic
+            worldserver.timings.tickEntities.stopTiming(); // Spigot
+        } catch (Throwable throwable1) {
+            // Spigot Start
+            try {
+            crashreport = CrashReport.a(throwable1, "Exception ticking world entities");
+            } catch (Throwable t){
+                throw new RuntimeException("Error generating crash report", t);
+            }
+            // Spigot End
+            worldserver.a(crashreport);
+            throw new ReportedException(crashreport);
+        }
+
+        /* Dytanic edit
+        this.methodProfiler.b();
+        this.methodProfiler.a("tracker");
+        */
+        worldserver.timings.tracker.startTiming(); // Spigot
+        long phaseStart = System.nanoTime(); //Dytanic
+        worldserver.getTracker().updatePlayers();
+        this.tickScheduler.record(AdaptiveTickScheduler.Phase.TRACKER, System.nanoTime() - phaseStart); //Dytanic
+        worldserver.timings.tracker.stopTiming(); // Spigot
+        /* Dytanic edit
+        this.methodProfiler.b();
+        this.methodProfiler.b();
+        */
+        worldserver.explosionDensityCache.clear(); // PaperSpigot - Optimize explosions
+    }
+    //Dytanic end
+
     //Dytanic start
     private void initialDytanicSchedulerTask()
     {
-        DytanicSpigot.getInstance().getTaskScheduler().schedule(new Runnable() {
+        final Runnable playerListTick = new Runnable() {
             @Override
             public void run()
             {
@@ -1027,6 +1106,17 @@ public abstract class MinecraftServer implements Runnable, ICommandListener, IAs
                 v.tick();
                 SpigotTimings.playerListTimer.stopTiming();
             }
+        };
+
+        DytanicSpigot.getInstance().getTaskScheduler().schedule(new Runnable() {
+            @Override
+            public void run()
+            {
+                if (worldTickPool != null)
+                    worldTickPool.runBetweenTicks(playerListTick);
+                else
+                    playerListTick.run();
+            }
         }, 20, -1);
     }
     //Dytanic end
@@ -73,6 +73,11 @@ public class NetworkManager extends SimpleChannelInboundHandler<Packet> {
     private IChatBaseComponent n;
     private boolean o;
     private boolean p;
+    //Dytanic start - packet batching
+    private final Object sendLock = new Object();
+    private final java.util.List<Packet> batch = new java.util.ArrayList<Packet>();
+    private final java.util.concurrent.atomic.AtomicLong packetsSent = new java.util.concurrent.atomic.AtomicLong(), flushes = new java.util.concurrent.atomic.AtomicLong();
+    //Dytanic end
 
     public NetworkManager(EnumProtocolDirection enumprotocoldirection) {
         this.h = enumprotocoldirection;
@@ -136,8 +141,17 @@ public class NetworkManager extends SimpleChannelInboundHandler<Packet> {
 
     public void handle(Packet packet) {
         if (this.g()) {
-            this.m();
-            this.a(packet, (GenericFutureListener[]) null);
+            //Dytanic start
+            if (this.batch(packet)) {
+                return;
+            }
+
+            synchronized (this.sendLock) {
+                this.flushBatch();
+                this.m();
+                this.a(packet, (GenericFutureListener[]) null);
+            }
+            //Dytanic end
         } else {
             //this.j.writeLock().lock(); Dytanic edit
 
@@ -152,8 +166,13 @@ public class NetworkManager extends SimpleChannelInboundHandler<Packet> {
 
     public void a(Packet packet, GenericFutureListener<? extends Future<? super Void>> genericfuturelistener, GenericFutureListener<? extends Future<? super Void>>... agenericfuturelistener) {
         if (this.g()) {
-            this.m();
-            this.a(packet, (GenericFutureListener[]) ArrayUtils.add(agenericfuturelistener, 0, genericfuturelistener));
+            //Dytanic start
+            synchronized (this.sendLock) {
+                this.flushBatch();
+                this.m();
+                this.a(packet, (GenericFutureListener[]) ArrayUtils.add(agenericfuturelistener, 0, genericfuturelistener));
+            }
+            //Dytanic end
         } else {
             //this.j.writeLock().lock(); Dytanic edit
 
@@ -175,6 +194,9 @@ public class NetworkManager extends SimpleChannelInboundHandler<Packet> {
             this.channel.config().setAutoRead(false);
         }
 
+        this.packetsSent.incrementAndGet(); //Dytanic
+        this.flushes.incrementAndGet(); //Dytanic
+
         if (this.channel.eventLoop().inEventLoop()) {
             if (enumprotocol != enumprotocol1) {
                 this.a(enumprotocol);
@@ -225,7 +247,87 @@ public class NetworkManager extends SimpleChannelInboundHandler<Packet> {
         }
     }
 
+    //Dytanic start
+    /**
+     * Queues the packet until the end of the tick if it's a play packet without listeners while the connection is in
+     * the play state. Keep alive and disconnect packets are always sent right away.
+     *
+     * @return false if the packet has to be sent right away
+     */
+    private boolean batch(Packet packet) {
+        if (!org.spigotmc.SpigotConfig.packetBatching || packet instanceof PacketPlayOutKeepAlive || packet instanceof PacketPlayOutKickDisconnect
+            || this.channel.attr(NetworkManager.c).get() != EnumProtocol.PLAY || EnumProtocol.a(packet) != EnumProtocol.PLAY) {
+            return false;
+        }
+
+        synchronized (this.sendLock) {
+            this.m();
+            this.batch.add(packet);
+
+            if (this.batch.size() >= org.spigotmc.SpigotConfig.packetBatchMaxPackets) {
+                this.flushBatch();
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Writes and flushes the packets which were batched so far, called at the end of every tick.
+     */
+    public void flushPackets() {
+        synchronized (this.sendLock) {
+            if (this.g()) {
+                this.flushBatch();
+            }
+        }
+    }
+
+    private void flushBatch() {
+        if (this.batch.isEmpty()) {
+            return;
+        }
+
+        final Packet[] packets = this.batch.toArray(new Packet[this.batch.size()]);
+
+        this.batch.clear();
+        this.packetsSent.addAndGet(packets.length);
+        this.flushes.incrementAndGet();
+
+        Runnable runnable = new Runnable() {
+            public void run() {
+                for (Packet packet : packets) {
+                    NetworkManager.this.channel.write(packet).addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
+
+                    // Flushes once the written bytes exceed the high water mark of the channel
+                    if (!NetworkManager.this.channel.isWritable()) {
+                        NetworkManager.this.channel.flush();
+                        NetworkManager.this.flushes.incrementAndGet();
+                    }
+                }
+
+                NetworkManager.this.channel.flush();
+            }
+        };
+
+        if (this.channel.eventLoop().inEventLoop()) {
+            runnable.run();
+        } else {
+            this.channel.eventLoop().execute(runnable);
+        }
+    }
+
+    public long getPacketsSent() {
+        return this.packetsSent.get();
+    }
+
+    public long getFlushes() {
+        return this.flushes.get();
+    }
+    //Dytanic end
+
     public void a() {
+        this.flushPackets(); //Dytanic
         this.m();
         if (this.m instanceof IUpdatePlayerListBox) {
             ((IUpdatePlayerListBox) this.m).c();
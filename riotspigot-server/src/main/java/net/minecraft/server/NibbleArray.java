@@ -55,4 +55,18 @@ public class NibbleArray {
     public byte[] a() {
         return this.a;
     }
+
+    //Dytanic start - pooled sections, see de.dytanic.spigot.ChunkPool
+    public void a(byte[] abyte) {
+        if (abyte.length != 2048) {
+            throw new IllegalArgumentException("ChunkNibbleArrays should be 2048 bytes not: " + abyte.length);
+        }
+
+        System.arraycopy(abyte, 0, this.a, 0, 2048);
+    }
+
+    public void clear() {
+        java.util.Arrays.fill(this.a, (byte) 0);
+    }
+    //Dytanic end
 }
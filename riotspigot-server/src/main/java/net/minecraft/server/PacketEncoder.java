@@ -43,6 +43,13 @@ public class PacketEncoder extends MessageToByteEncoder<Packet> {
         }
     }
 
+    //Dytanic start - prepared and shared packets are written by the PreparedPacketHandler
+    @Override
+    public boolean acceptOutboundMessage(Object msg) throws Exception {
+        return super.acceptOutboundMessage(msg) && de.dytanic.spigot.PreparedPacket.of(msg) == null;
+    }
+    //Dytanic end
+
     protected void encode(ChannelHandlerContext channelhandlercontext, Packet object, ByteBuf bytebuf) throws Exception {
         this.a(channelhandlercontext, (Packet) object, bytebuf);
     }
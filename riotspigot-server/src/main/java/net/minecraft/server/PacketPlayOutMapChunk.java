@@ -5,12 +5,13 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 
-public class PacketPlayOutMapChunk implements Packet<PacketListenerPlayOut> {
+public class PacketPlayOutMapChunk implements Packet<PacketListenerPlayOut>, de.dytanic.spigot.PreparedPacket.Holder { //Dytanic edit
 
     private int a;
     private int b;
     private PacketPlayOutMapChunk.ChunkMap c;
     private boolean d;
+    private de.dytanic.spigot.PreparedPacket prepared; //Dytanic
 
     public PacketPlayOutMapChunk() {}
 
@@ -22,6 +23,27 @@ public class PacketPlayOutMapChunk implements Packet<PacketListenerPlayOut> {
         //chunk.world.spigotConfig.antiXrayInstance.obfuscateSync(chunk.locX, chunk.locZ, c.b, c.a, chunk.world);
     }
 
+    //Dytanic start - built by the ChunkPacketCache
+    public PacketPlayOutMapChunk(int x, int z, boolean flag, PacketPlayOutMapChunk.ChunkMap chunkMap) {
+        this.a = x;
+        this.b = z;
+        this.d = flag;
+        this.c = chunkMap;
+    }
+
+    public PacketPlayOutMapChunk(int x, int z, boolean flag, de.dytanic.spigot.PreparedPacket prepared) {
+        this.a = x;
+        this.b = z;
+        this.d = flag;
+        this.prepared = prepared;
+    }
+
+    @Override
+    public de.dytanic.spigot.PreparedPacket getPreparedPacket() {
+        return this.prepared;
+    }
+    //Dytanic end
+
     public void a(PacketDataSerializer packetdataserializer) throws IOException {
         this.a = packetdataserializer.readInt();
         this.b = packetdataserializer.readInt();
@@ -32,6 +54,12 @@ public class PacketPlayOutMapChunk implements Packet<PacketListenerPlayOut> {
     }
 
     public void b(PacketDataSerializer packetdataserializer) throws IOException {
+        //Dytanic start
+        if (this.prepared != null) {
+            this.prepared.writeBody(packetdataserializer);
+            return;
+        }
+        //Dytanic end
         packetdataserializer.writeInt(this.a);
         packetdataserializer.writeInt(this.b);
         packetdataserializer.writeBoolean(this.d);
@@ -3,13 +3,14 @@ package net.minecraft.server;
 import java.io.IOException;
 import java.util.List;
 
-public class PacketPlayOutMapChunkBulk implements Packet<PacketListenerPlayOut> {
+public class PacketPlayOutMapChunkBulk implements Packet<PacketListenerPlayOut>, de.dytanic.spigot.PreparedPacket.Holder { //Dytanic edit
 
     private int[] a;
     private int[] b;
     private PacketPlayOutMapChunk.ChunkMap[] c;
     private boolean d;
     private World world; // Spigot
+    private de.dytanic.spigot.PreparedPacket prepared; //Dytanic
 
     public PacketPlayOutMapChunkBulk() {}
 
@@ -33,6 +34,27 @@ public class PacketPlayOutMapChunkBulk implements Packet<PacketListenerPlayOut>
         world = ((Chunk) list.get(0)).getWorld(); // Spigot
     }
 
+    //Dytanic start - built by the ChunkPacketCache, the chunk maps are obfuscated already
+    public PacketPlayOutMapChunkBulk(int[] x, int[] z, PacketPlayOutMapChunk.ChunkMap[] chunkMaps, boolean flag) {
+        this.a = x;
+        this.b = z;
+        this.c = chunkMaps;
+        this.d = flag;
+    }
+
+    public PacketPlayOutMapChunkBulk(int[] x, int[] z, boolean flag, de.dytanic.spigot.PreparedPacket prepared) {
+        this.a = x;
+        this.b = z;
+        this.d = flag;
+        this.prepared = prepared;
+    }
+
+    @Override
+    public de.dytanic.spigot.PreparedPacket getPreparedPacket() {
+        return this.prepared;
+    }
+    //Dytanic end
+
     public void a(PacketDataSerializer packetdataserializer) throws IOException {
         this.d = packetdataserializer.readBoolean();
         int i = packetdataserializer.e();
@@ -58,6 +80,12 @@ public class PacketPlayOutMapChunkBulk implements Packet<PacketListenerPlayOut>
     }
 
     public void b(PacketDataSerializer packetdataserializer) throws IOException {
+        //Dytanic start
+        if (this.prepared != null) {
+            this.prepared.writeBody(packetdataserializer);
+            return;
+        }
+        //Dytanic end
         packetdataserializer.writeBoolean(this.d);
         packetdataserializer.b(this.c.length);
 
@@ -70,7 +98,7 @@ public class PacketPlayOutMapChunkBulk implements Packet<PacketListenerPlayOut>
         }
 
         for (i = 0; i < this.a.length; ++i) {
-            world.spigotConfig.antiXrayInstance.obfuscate(this.a[i], this.b[i], this.c[i].b, this.c[i].a, world); // Spigot
+            if (world != null) world.spigotConfig.antiXrayInstance.obfuscate(this.a[i], this.b[i], this.c[i].b, this.c[i].a, world); // Spigot //Dytanic edit
             packetdataserializer.writeBytes(this.c[i].a);
         }
 
@@ -56,7 +56,7 @@ public class PlayerChunkMap {
             java.util.Iterator iterator = this.e.iterator();
             while (iterator.hasNext()) {
                 playerchunkmap_playerchunk = (PlayerChunk) iterator.next();
-                playerchunkmap_playerchunk.b();
+                if (playerchunkmap_playerchunk.b()) //Dytanic - stays dirty while the light updates are pending
                 iterator.remove();
                 // CraftBukkit end
             }
@@ -409,6 +409,11 @@ public class PlayerChunkMap {
                 // CraftBukkit start - If we haven't loaded yet don't load the chunk just so we can clean it up
                 if (!this.loaded) {
                     ChunkIOExecutor.dropQueuedChunkLoad(PlayerChunkMap.this.a(), this.location.x, this.location.z, this.players.get(entityplayer));
+                    //Dytanic start
+                    if (PlayerChunkMap.this.a().chunkProviderServer.generationPipeline != null) {
+                        PlayerChunkMap.this.a().chunkProviderServer.generationPipeline.drop(this.location.x, this.location.z, this.players.get(entityplayer));
+                    }
+                    //Dytanic end
                     this.b.remove(entityplayer);
                     this.players.remove(entityplayer);
 
@@ -488,7 +493,7 @@ public class PlayerChunkMap {
 
         }
 
-        public void b() {
+        public boolean b() { //Dytanic edit return false if the changes are held back
             if (this.dirtyCount != 0) {
                 int i;
                 int j;
@@ -508,9 +513,16 @@ public class PlayerChunkMap {
                     int l;
 
                     if (this.dirtyCount == 64) {
+                        //Dytanic start - the same flush barrier as the chunks sent by EntityPlayer
+                        Chunk chunk = PlayerChunkMap.this.world.getChunkAt(this.location.x, this.location.z);
+
+                        if (!PlayerChunkMap.this.world.lightingEngine.isReadyToSend(chunk)) {
+                            return false;
+                        }
+                        //Dytanic end
                         i = this.location.x * 16;
                         j = this.location.z * 16;
-                        this.a((Packet) (new PacketPlayOutMapChunk(PlayerChunkMap.this.world.getChunkAt(this.location.x, this.location.z), false, this.f)));
+                        this.a(PlayerChunkMap.this.world.chunkPacketCache.mapChunk(chunk, false, this.f)); //Dytanic edit
 
                         for (k = 0; k < 16; ++k) {
                             if ((this.f & 1 << k) != 0) {
@@ -541,6 +553,8 @@ public class PlayerChunkMap {
                 this.dirtyCount = 0;
                 this.f = 0;
             }
+
+            return true;
         }
 
         private void a(TileEntity tileentity) {
@@ -225,6 +225,7 @@ public class PlayerConnection implements PacketListenerPlayIn, IUpdatePlayerList
                 }
                 // CraftBukkit start - fire PlayerMoveEvent
                 Player player = this.getPlayer();
+                if (CraftEventFactory.shouldFire(PlayerMoveEvent.getHandlerList())) { //Dytanic
                 // Spigot Start
                 if ( !hasMoved )
                 {
@@ -292,6 +293,43 @@ public class PlayerConnection implements PacketListenerPlayIn, IUpdatePlayerList
                         }
                     }
                 }
+                //Dytanic start - nobody listens, only the last event location is kept up to date without Locations
+                } else {
+                    if (!hasMoved) {
+                        lastPosX = this.player.locX;
+                        lastPosY = this.player.locY;
+                        lastPosZ = this.player.locZ;
+                        lastYaw = this.player.yaw;
+                        lastPitch = this.player.pitch;
+                        hasMoved = true;
+                    }
+
+                    double toX = this.player.locX, toY = this.player.locY, toZ = this.player.locZ;
+                    float toYaw = this.player.yaw, toPitch = this.player.pitch;
+
+                    if (packetplayinflying.hasPos && packetplayinflying.y != -999.0D) {
+                        toX = packetplayinflying.x;
+                        toY = packetplayinflying.y;
+                        toZ = packetplayinflying.z;
+                    }
+
+                    if (packetplayinflying.hasLook) {
+                        toYaw = packetplayinflying.yaw;
+                        toPitch = packetplayinflying.pitch;
+                    }
+
+                    double delta = (this.lastPosX - toX) * (this.lastPosX - toX) + (this.lastPosY - toY) * (this.lastPosY - toY) + (this.lastPosZ - toZ) * (this.lastPosZ - toZ);
+                    float deltaAngle = Math.abs(this.lastYaw - toYaw) + Math.abs(this.lastPitch - toPitch);
+
+                    if ((delta > 1f / 256 || deltaAngle > 10f) && (this.checkMovement && !this.player.dead)) {
+                        this.lastPosX = toX;
+                        this.lastPosY = toY;
+                        this.lastPosZ = toZ;
+                        this.lastYaw = toYaw;
+                        this.lastPitch = toPitch;
+                    }
+                }
+                //Dytanic end
 
                 if (this.checkMovement && !this.player.dead) {
                     // CraftBukkit end
@@ -400,7 +438,7 @@ public class PlayerConnection implements PacketListenerPlayIn, IUpdatePlayerList
                     }
 
                     float f4 = 0.0625F;
-                    boolean flag = worldserver.getCubes(this.player, this.player.getBoundingBox().shrink((double) f4, (double) f4, (double) f4)).isEmpty();
+                    boolean flag = !worldserver.hasCubes(this.player, this.player.getBoundingBox().shrink((double) f4, (double) f4, (double) f4)); //Dytanic edit - hasCubes
 
                     if (this.player.onGround && !packetplayinflying.f() && d12 > 0.0D) {
                         this.player.bF();
@@ -429,7 +467,7 @@ public class PlayerConnection implements PacketListenerPlayIn, IUpdatePlayerList
                     this.player.setLocation(d7, d8, d9, f2, f3);
                     this.player.checkMovement(this.player.locX - d0, this.player.locY - d1, this.player.locZ - d2);
                     if (!this.player.noclip) {
-                        boolean flag2 = worldserver.getCubes(this.player, this.player.getBoundingBox().shrink((double) f4, (double) f4, (double) f4)).isEmpty();
+                        boolean flag2 = !worldserver.hasCubes(this.player, this.player.getBoundingBox().shrink((double) f4, (double) f4, (double) f4)); //Dytanic edit - hasCubes
 
                         if (flag && (flag1 || !flag2) && !this.player.isSleeping()) {
                             this.a(this.o, this.p, this.q, f2, f3);
@@ -1192,9 +1230,16 @@ public class PlayerConnection implements PacketListenerPlayIn, IUpdatePlayerList
                 s = String.format(event.getFormat(), event.getPlayer().getDisplayName(), event.getMessage());
                 minecraftServer.console.sendMessage(s);
                 if (((LazyPlayerSet) event.getRecipients()).isLazy()) {
+                    /* Dytanic edit
                     for (Object recipient : minecraftServer.getPlayerList().players) {
                         ((EntityPlayer) recipient).sendMessage(CraftChatMessage.fromString(s));
                     }
+                    */
+                    //Dytanic start - the chat packets are built and encoded once for all players
+                    for (IChatBaseComponent component : CraftChatMessage.fromString(s)) {
+                        minecraftServer.getPlayerList().sendAll(new PacketPlayOutChat(component));
+                    }
+                    //Dytanic end
                 } else {
                     for (Player recipient : event.getRecipients()) {
                         recipient.sendMessage(s);
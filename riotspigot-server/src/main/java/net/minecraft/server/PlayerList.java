@@ -555,6 +555,24 @@ public abstract class PlayerList {
         return this.moveToWorld(entityplayer, i, flag, null, true);
     }
     public EntityPlayer moveToWorld(EntityPlayer entityplayer, int i, boolean flag, Location location, boolean avoidSuffocation) {
+        //Dytanic start - the move touches two worlds, it runs on the main thread after the parallel world ticks
+        if (this.server.worldTickPool != null && de.dytanic.spigot.WorldTickPool.isWorldTickThread()) {
+            final EntityPlayer player = entityplayer;
+            final int dimension = i;
+            final boolean keepData = flag;
+            final Location exit = location;
+            final boolean suffocation = avoidSuffocation;
+
+            this.server.worldTickPool.handoff(entityplayer, new Runnable() {
+                @Override
+                public void run()
+                {
+                    moveToWorld(player, dimension, keepData, exit, suffocation);
+                }
+            });
+            return entityplayer;
+        }
+        //Dytanic end
         entityplayer.u().getTracker().untrackPlayer(entityplayer);
         // entityplayer.u().getTracker().untrackEntity(entityplayer); // CraftBukkit
         entityplayer.u().getPlayerChunkMap().removePlayer(entityplayer);
@@ -634,7 +652,7 @@ public abstract class PlayerList {
         worldserver.chunkProviderServer.getChunkAt((int) entityplayer1.locX >> 4, (int) entityplayer1.locZ >> 4);
         //Dytanic end
 
-        while (avoidSuffocation && !worldserver.getCubes(entityplayer1, entityplayer1.getBoundingBox()).isEmpty() && entityplayer1.locY < 256.0D) {
+        while (avoidSuffocation && worldserver.hasCubes(entityplayer1, entityplayer1.getBoundingBox()) && entityplayer1.locY < 256.0D) { //Dytanic edit - hasCubes
             entityplayer1.setPosition(entityplayer1.locX, entityplayer1.locY + 1.0D, entityplayer1.locZ);
         }
         // CraftBukkit start
@@ -689,6 +707,22 @@ public abstract class PlayerList {
 
     // CraftBukkit start - Replaced the standard handling of portals with a more customised method.
     public void changeDimension(EntityPlayer entityplayer, int i, TeleportCause cause) {
+        //Dytanic start
+        if (this.server.worldTickPool != null && de.dytanic.spigot.WorldTickPool.isWorldTickThread()) {
+            final EntityPlayer player = entityplayer;
+            final int dimension = i;
+            final TeleportCause teleportCause = cause;
+
+            this.server.worldTickPool.handoff(entityplayer, new Runnable() {
+                @Override
+                public void run()
+                {
+                    changeDimension(player, dimension, teleportCause);
+                }
+            });
+            return;
+        }
+        //Dytanic end
         WorldServer exitWorld = null;
         if (entityplayer.dimension < CraftWorld.CUSTOM_DIMENSION_OFFSET) { // plugins must specify exit from custom Bukkit worlds
             // only target existing worlds (compensate for allow-nether/allow-end as false)
@@ -930,6 +964,8 @@ public abstract class PlayerList {
     }
 
     public void sendAll(Packet packet) {
+        if (this.players.size() > 1) de.dytanic.spigot.PreparedPacket.share(packet); //Dytanic
+
         for (int i = 0; i < this.players.size(); ++i) {
             ((EntityPlayer) this.players.get(i)).playerConnection.sendPacket(packet);
         }
@@ -938,6 +974,18 @@ public abstract class PlayerList {
 
     // CraftBukkit start - add a world/entity limited version
     public void sendAll(Packet packet, EntityHuman entityhuman) {
+        //Dytanic start - only shared if more than one player can see the source
+        int recipients = 0;
+
+        for (int i = 0; i < this.players.size() && recipients < 2; ++i) {
+            if (entityhuman == null || !(entityhuman instanceof EntityPlayer) || this.players.get(i).getBukkitEntity().canSee(((EntityPlayer) entityhuman).getBukkitEntity())) {
+                recipients++;
+            }
+        }
+
+        if (recipients > 1) de.dytanic.spigot.PreparedPacket.share(packet);
+        //Dytanic end
+
         for (int i = 0; i < this.players.size(); ++i) {
             EntityPlayer entityplayer =  this.players.get(i);
             if (entityhuman != null && entityhuman instanceof EntityPlayer && !entityplayer.getBukkitEntity().canSee(((EntityPlayer) entityhuman).getBukkitEntity())) {
@@ -948,6 +996,8 @@ public abstract class PlayerList {
     }
 
     public void sendAll(Packet packet, World world) {
+        if (world.players.size() > 1) de.dytanic.spigot.PreparedPacket.share(packet); //Dytanic
+
         for (int i = 0; i < world.players.size(); ++i) {
             ((EntityPlayer) world.players.get(i)).playerConnection.sendPacket(packet);
         }
@@ -1091,6 +1141,8 @@ public abstract class PlayerList {
     }
 
     public void sendPacketNearby(EntityHuman entityhuman, double d0, double d1, double d2, double d3, int i, Packet packet) {
+        int recipients = 0; //Dytanic
+
         for (int j = 0; j < this.players.size(); ++j) {
             EntityPlayer entityplayer = (EntityPlayer) this.players.get(j);
 
@@ -1106,6 +1158,7 @@ public abstract class PlayerList {
                 double d6 = d2 - entityplayer.locZ;
 
                 if (d4 * d4 + d5 * d5 + d6 * d6 < d3 * d3) {
+                    if (++recipients == 2) de.dytanic.spigot.PreparedPacket.share(packet); //Dytanic - the first one may not be encoded yet
                     entityplayer.playerConnection.sendPacket(packet);
                 }
             }
@@ -1,6 +1,5 @@
 package net.minecraft.server;
 
-import com.google.common.collect.Lists;
 import org.github.paperspigot.exception.ServerInternalException;
 
 import java.io.BufferedInputStream;
@@ -10,78 +9,88 @@ import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
 import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
 import java.util.zip.InflaterInputStream;
 
+//Dytanic - rewritten, the offset and timestamp tables are memory mapped, reads share a read lock per file and the compressors are reused per thread
 public class RegionFile {
 
     private static final byte[] a = new byte[4096]; // Spigot - note: if this ever changes to not be 4096 bytes, update constructor! // PAIL: empty 4k block
+    //Dytanic start
+    private static final int HEADER_SIZE = 8192;
+    private static final ThreadLocal<Inflater> INFLATER = new ThreadLocal<Inflater>() {
+        @Override
+        protected Inflater initialValue() {
+            return new Inflater();
+        }
+    };
+    private static final ThreadLocal<Deflater> DEFLATER = new ThreadLocal<Deflater>() {
+        @Override
+        protected Deflater initialValue() {
+            return new Deflater();
+        }
+    };
+    private static final ThreadLocal<byte[][]> READ_BUFFER = new ThreadLocal<byte[][]>() {
+        @Override
+        protected byte[][] initialValue() {
+            return new byte[][] { new byte[4096 * 4] };
+        }
+    };
+    //Dytanic end
     private final File b;
-    private RandomAccessFile c;
-    private final int[] d = new int[1024];
-    private final int[] e = new int[1024];
-    private List<Boolean> f;
-    private int g;
+    private FileChannel c; //Dytanic edit
+    private MappedByteBuffer header; //Dytanic - 1024 sector offsets followed by 1024 timestamps
+    private final BitSet f = new BitSet(); //Dytanic edit - set bits are free sectors
+    private int g; //Dytanic edit - sector count
     private long h;
+    //Dytanic start
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean closed;
+    volatile long lastAccess; // RegionFileCache
+    //Dytanic end
 
     public RegionFile(File file) {
         this.b = file;
-        this.g = 0;
 
         try {
             if (file.exists()) {
                 this.h = file.lastModified();
             }
 
-            this.c = new RandomAccessFile(file, "rw");
-            int i;
+            //Dytanic start
+            this.c = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long length = this.c.size();
 
-            if (this.c.length() < 4096L) {
-                // Spigot - more effecient chunk zero'ing
-                this.c.write(RegionFile.a); // Spigot
-                this.c.write(RegionFile.a); // Spigot
-
-                this.g += 8192;
+            if (length < HEADER_SIZE) {
+                this.pad(length, HEADER_SIZE - length);
+                length = HEADER_SIZE;
             }
 
-            if ((this.c.length() & 4095L) != 0L) {
-                for (i = 0; (long) i < (this.c.length() & 4095L); ++i) {
-                    this.c.write(0);
-                }
-            }
-
-            i = (int) this.c.length() / 4096;
-            this.f = Lists.newArrayListWithCapacity(i);
-
-            int j;
-
-            for (j = 0; j < i; ++j) {
-                this.f.add(Boolean.valueOf(true));
+            if ((length & 4095L) != 0L) {
+                this.pad(length, 4096L - (length & 4095L));
             }
 
-            this.f.set(0, Boolean.valueOf(false));
-            this.f.set(1, Boolean.valueOf(false));
-            this.c.seek(0L);
+            this.header = this.c.map(FileChannel.MapMode.READ_WRITE, 0L, HEADER_SIZE);
+            this.g = (int) (this.c.size() / 4096L);
+            this.f.set(2, this.g);
 
-            int k;
+            for (int j = 0; j < 1024; ++j) {
+                int k = this.header.getInt(j * 4);
 
-            for (j = 0; j < 1024; ++j) {
-                k = this.c.readInt();
-                this.d[j] = k;
-                if (k != 0 && (k >> 8) + (k & 255) <= this.f.size()) {
-                    for (int l = 0; l < (k & 255); ++l) {
-                        this.f.set((k >> 8) + l, Boolean.valueOf(false));
-                    }
+                if (k != 0 && (k >> 8) + (k & 255) <= this.g) {
+                    this.f.clear(k >> 8, (k >> 8) + (k & 255));
                 }
             }
-
-            for (j = 0; j < 1024; ++j) {
-                k = this.c.readInt();
-                this.e[j] = k;
-            }
+            //Dytanic end
         } catch (IOException ioexception) {
             ioexception.printStackTrace();
             ServerInternalException.reportInternalException(ioexception); // Paper
@@ -90,207 +99,347 @@ public class RegionFile {
     }
 
     // CraftBukkit start - This is a copy (sort of) of the method below it, make sure they stay in sync
-    public synchronized boolean chunkExists(int i, int j) {
+    public boolean chunkExists(int i, int j) { //Dytanic edit
         if (this.d(i, j)) {
             return false;
-        } else {
-            try {
-                int k = this.e(i, j);
+        }
 
-                if (k == 0) {
-                    return false;
-                } else {
-                    int l = k >> 8;
-                    int i1 = k & 255;
+        //Dytanic start
+        this.lock.readLock().lock();
 
-                    if (l + i1 > this.f.size()) {
-                        return false;
-                    }
+        try {
+            if (this.closed) {
+                return false;
+            }
 
-                    this.c.seek((long) (l * 4096));
-                    int j1 = this.c.readInt();
+            int k = this.e(i, j);
 
-                    if (j1 > 4096 * i1 || j1 <= 0) {
-                        return false;
-                    }
+            if (k == 0) {
+                return false;
+            }
 
-                    byte b0 = this.c.readByte();
-                    if (b0 == 1 || b0 == 2) {
-                        return true;
-                    }
-                }
-            } catch (IOException ioexception) {
+            int l = k >> 8;
+            int i1 = k & 255;
+
+            if (l + i1 > this.g) {
                 return false;
             }
-        }
 
-        return false;
+            byte[] abyte = readBuffer(5);
+
+            if (this.read(abyte, (long) l * 4096L, 5) < 5) {
+                return false;
+            }
+
+            int j1 = toInt(abyte);
+            byte b0 = abyte[4];
+
+            return j1 <= 4096 * i1 && j1 > 0 && (b0 == 1 || b0 == 2);
+        } catch (IOException ioexception) {
+            return false;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        //Dytanic end
     }
     // CraftBukkit end
 
-    public synchronized DataInputStream a(int i, int j) {
+    /**
+     * Dytanic - the stream reads from a buffer of the calling thread, it has to be consumed before the next read on the same thread.
+     */
+    public DataInputStream a(int i, int j) { //Dytanic edit
         if (this.d(i, j)) {
             return null;
-        } else {
-            try {
-                int k = this.e(i, j);
+        }
 
-                if (k == 0) {
-                    return null;
-                } else {
-                    int l = k >> 8;
-                    int i1 = k & 255;
-
-                    if (l + i1 > this.f.size()) {
-                        return null;
-                    } else {
-                        this.c.seek((long) (l * 4096));
-                        int j1 = this.c.readInt();
-
-                        if (j1 > 4096 * i1) {
-                            return null;
-                        } else if (j1 <= 0) {
-                            return null;
-                        } else {
-                            byte b0 = this.c.readByte();
-                            byte[] abyte;
-
-                            if (b0 == 1) {
-                                abyte = new byte[j1 - 1];
-                                this.c.read(abyte);
-                                return new DataInputStream(new BufferedInputStream(new GZIPInputStream(new ByteArrayInputStream(abyte))));
-                            } else if (b0 == 2) {
-                                abyte = new byte[j1 - 1];
-                                this.c.read(abyte);
-                                return new DataInputStream(new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(abyte))));
-                            } else {
-                                return null;
-                            }
-                        }
-                    }
-                }
-            } catch (IOException ioexception) {
+        //Dytanic start - the length, type and data are read in one go from the allocated sectors
+        byte[] abyte;
+        int j1;
+
+        this.lock.readLock().lock();
+
+        try {
+            if (this.closed) {
                 return null;
             }
+
+            int k = this.e(i, j);
+
+            if (k == 0) {
+                return null;
+            }
+
+            int l = k >> 8;
+            int i1 = k & 255;
+
+            if (l + i1 > this.g) {
+                return null;
+            }
+
+            abyte = readBuffer(4096 * i1);
+            int read = this.read(abyte, (long) l * 4096L, 4096 * i1);
+
+            if (read < 5) {
+                return null;
+            }
+
+            j1 = toInt(abyte);
+
+            if (j1 > 4096 * i1 || j1 <= 0 || j1 + 4 > read) {
+                return null;
+            }
+        } catch (IOException ioexception) {
+            return null;
+        } finally {
+            this.lock.readLock().unlock();
         }
+
+        try {
+            if (abyte[4] == 1) {
+                return new DataInputStream(new BufferedInputStream(new GZIPInputStream(new ByteArrayInputStream(abyte, 5, j1 - 1))));
+            } else if (abyte[4] == 2) {
+                Inflater inflater = INFLATER.get();
+
+                inflater.reset();
+                return new DataInputStream(new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(abyte, 5, j1 - 1), inflater)));
+            } else {
+                return null;
+            }
+        } catch (IOException ioexception) {
+            return null;
+        }
+        //Dytanic end
     }
 
     public DataOutputStream b(int i, int j) { // PAIL: getChunkOutputStream
         // PAIL: isInvalidRegion
-        return this.d(i, j) ? null : new DataOutputStream(new java.io.BufferedOutputStream(new DeflaterOutputStream(new RegionFile.ChunkBuffer(i, j)))); // Spigot - use a BufferedOutputStream to greatly improve file write performance
+        //Dytanic start
+        if (this.d(i, j)) {
+            return null;
+        }
+
+        Deflater deflater = DEFLATER.get();
+
+        deflater.reset();
+        return new DataOutputStream(new java.io.BufferedOutputStream(new DeflaterOutputStream(new RegionFile.ChunkBuffer(i, j), deflater))); // Spigot - use a BufferedOutputStream to greatly improve file write performance
+        //Dytanic end
     }
 
-    protected synchronized void a(int i, int j, byte[] abyte, int k) {
+    /**
+     * Dytanic - writes the chunk, the first 5 bytes of the buffer are reserved for the length and the compression type
+     *
+     * @return false if the file was closed in the meantime
+     */
+    protected boolean a(int i, int j, byte[] abyte, int k) { //Dytanic edit
+        this.lock.writeLock().lock(); //Dytanic
+
         try {
+            //Dytanic start
+            if (this.closed) {
+                return false;
+            }
+            //Dytanic end
+
             int l = this.e(i, j);
             int i1 = l >> 8;
             int j1 = l & 255;
-            int k1 = (k + 5) / 4096 + 1;
+            int k1 = k / 4096 + 1; //Dytanic edit - k includes the 5 header bytes
 
             if (k1 >= 256) {
-                return;
+                return true; //Dytanic edit
             }
 
+            //Dytanic start
+            abyte[0] = (byte) (k - 4 >>> 24);
+            abyte[1] = (byte) (k - 4 >>> 16);
+            abyte[2] = (byte) (k - 4 >>> 8);
+            abyte[3] = (byte) (k - 4);
+            abyte[4] = 2;
+            //Dytanic end
+
             if (i1 != 0 && j1 == k1) {
-                this.a(i1, abyte, k);
+                this.writeSectors(i1, k1, abyte, k);
             } else {
-                int l1;
-
-                for (l1 = 0; l1 < j1; ++l1) {
-                    this.f.set(i1 + l1, Boolean.valueOf(true));
+                //Dytanic start - first fit over the free sector bits
+                if (i1 != 0 && i1 + j1 <= this.g) {
+                    this.f.set(i1, i1 + j1);
                 }
 
-                l1 = this.f.indexOf(Boolean.valueOf(true));
-                int i2 = 0;
-                int j2;
+                int l1 = this.findFree(k1);
 
                 if (l1 != -1) {
-                    for (j2 = l1; j2 < this.f.size(); ++j2) {
-                        if (i2 != 0) {
-                            if (((Boolean) this.f.get(j2)).booleanValue()) {
-                                ++i2;
-                            } else {
-                                i2 = 0;
-                            }
-                        } else if (((Boolean) this.f.get(j2)).booleanValue()) {
-                            l1 = j2;
-                            i2 = 1;
-                        }
-
-                        if (i2 >= k1) {
-                            break;
-                        }
-                    }
-                }
-
-                if (i2 >= k1) {
-                    i1 = l1;
+                    this.f.clear(l1, l1 + k1);
+                    this.writeSectors(l1, k1, abyte, k);
                     this.a(i, j, l1 << 8 | k1);
-
-                    for (j2 = 0; j2 < k1; ++j2) {
-                        this.f.set(i1 + j2, Boolean.valueOf(false));
-                    }
-
-                    this.a(i1, abyte, k);
                 } else {
-                    this.c.seek(this.c.length());
-                    i1 = this.f.size();
-
-                    for (j2 = 0; j2 < k1; ++j2) {
-                        this.c.write(RegionFile.a);
-                        this.f.add(Boolean.valueOf(false));
-                    }
-
-                    this.g += 4096 * k1;
-                    this.a(i1, abyte, k);
-                    this.a(i, j, i1 << 8 | k1);
+                    l1 = this.g;
+                    this.g += k1;
+                    this.writeSectors(l1, k1, abyte, k);
+                    this.a(i, j, l1 << 8 | k1);
                 }
+                //Dytanic end
             }
 
             this.b(i, j, (int) (MinecraftServer.az() / 1000L));
         } catch (IOException ioexception) {
             ioexception.printStackTrace();
             ServerInternalException.reportInternalException(ioexception); // Paper
+        } finally {
+            this.lock.writeLock().unlock(); //Dytanic
+        }
+
+        return true; //Dytanic
+    }
+
+    //Dytanic start
+    private void writeSectors(int i, int j, byte[] abyte, int k) throws IOException {
+        long position = (long) i * 4096L;
+
+        this.write(ByteBuffer.wrap(abyte, 0, k), position);
+        // Keeps the file a multiple of whole sectors when appending
+        if (i + j >= this.c.size() / 4096L) {
+            this.pad(position + k, (long) j * 4096L - k);
+        }
+    }
+
+    private int findFree(int i) {
+        int j = this.f.nextSetBit(0);
+
+        while (j != -1 && j + i <= this.g) {
+            int k = this.f.nextClearBit(j);
+
+            if (k - j >= i) {
+                return j;
+            }
+
+            j = this.f.nextSetBit(k);
+        }
+
+        return -1;
+    }
+
+    private int read(byte[] abyte, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(abyte, 0, length);
+
+        while (buffer.hasRemaining()) {
+            if (this.c.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+
+        return buffer.position();
+    }
+
+    private void write(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += this.c.write(buffer, position);
         }
+    }
+
+    private void pad(long position, long length) throws IOException {
+        while (length > 0L) {
+            int i = (int) Math.min(length, (long) RegionFile.a.length);
+
+            this.write(ByteBuffer.wrap(RegionFile.a, 0, i), position);
+            position += i;
+            length -= i;
+        }
+    }
+
+    private static byte[] readBuffer(int length) {
+        byte[][] holder = READ_BUFFER.get();
+
+        if (holder[0].length < length) {
+            holder[0] = new byte[length];
+        }
+
+        return holder[0];
+    }
+
+    private static int toInt(byte[] abyte) {
+        return (abyte[0] & 255) << 24 | (abyte[1] & 255) << 16 | (abyte[2] & 255) << 8 | abyte[3] & 255;
+    }
+
+    /**
+     * Releases the mapping right away instead of once the buffer is collected, the file can't be deleted or renamed
+     * on Windows while it is mapped. The file must not be accessed through the buffer anymore.
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            java.lang.reflect.Method method = buffer.getClass().getMethod("cleaner");
+
+            method.setAccessible(true);
+            Object cleaner = method.invoke(buffer);
+
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (Exception exception) {
+            // left to the garbage collector
+        }
+    }
 
+    public boolean isClosed() {
+        return this.closed;
     }
 
-    private void a(int i, byte[] abyte, int j) throws IOException {
-        this.c.seek((long) (i * 4096));
-        this.c.writeInt(j + 1);
-        this.c.writeByte(2);
-        this.c.write(abyte, 0, j);
+    File getFile() {
+        return this.b;
     }
+    //Dytanic end
 
     private boolean d(int i, int j) {
         return i < 0 || i >= 32 || j < 0 || j >= 32;
     }
 
     private int e(int i, int j) {
-        return this.d[i + j * 32];
+        return this.header.getInt((i + j * 32) * 4); //Dytanic edit
     }
 
     public boolean c(int i, int j) {
-        return this.e(i, j) != 0;
+        //Dytanic start
+        this.lock.readLock().lock();
+
+        try {
+            return !this.closed && this.e(i, j) != 0;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        //Dytanic end
     }
 
     private void a(int i, int j, int k) throws IOException {
-        this.d[i + j * 32] = k;
-        this.c.seek((long) ((i + j * 32) * 4));
-        this.c.writeInt(k);
+        this.header.putInt((i + j * 32) * 4, k); //Dytanic edit
     }
 
     private void b(int i, int j, int k) throws IOException {
-        this.e[i + j * 32] = k;
-        this.c.seek((long) (4096 + (i + j * 32) * 4));
-        this.c.writeInt(k);
+        this.header.putInt(4096 + (i + j * 32) * 4, k); //Dytanic edit
     }
 
     public void c() throws IOException {
-        if (this.c != null) {
-            this.c.close();
-        }
+        //Dytanic start
+        this.lock.writeLock().lock();
 
+        try {
+            if (this.closed) {
+                return;
+            }
+
+            this.closed = true;
+
+            if (this.header != null) {
+                this.header.force();
+                unmap(this.header);
+                this.header = null;
+            }
+
+            if (this.c != null) {
+                this.c.close();
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+        //Dytanic end
     }
 
     class ChunkBuffer extends ByteArrayOutputStream {
@@ -300,12 +449,19 @@ public class RegionFile {
 
         public ChunkBuffer(int i, int j) {
             super(8096);
+            this.count = 5; //Dytanic - reserved for the length and the compression type
             this.b = i;
             this.c = j;
         }
 
         public void close() {
-            RegionFile.this.a(this.b, this.c, this.buf, this.count);
+            //Dytanic start - the file was evicted from the RegionFileCache while the chunk was written
+            RegionFile regionfile = RegionFile.this;
+
+            while (!regionfile.a(this.b, this.c, this.buf, this.count)) {
+                regionfile = RegionFileCache.a(regionfile.getFile());
+            }
+            //Dytanic end
         }
     }
 }
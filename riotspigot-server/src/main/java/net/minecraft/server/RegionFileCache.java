@@ -1,6 +1,5 @@
 package net.minecraft.server;
 
-import com.google.common.collect.Maps;
 import org.github.paperspigot.exception.ServerInternalException;
 
 import java.io.DataInputStream;
@@ -12,36 +11,82 @@ import java.util.Map;
 
 public class RegionFileCache {
 
-    public static final Map<File, RegionFile> a = Maps.newHashMap(); // Spigot - private -> public
+    public static final Map<File, RegionFile> a = new java.util.concurrent.ConcurrentHashMap<File, RegionFile>(); // Spigot - private -> public //Dytanic edit - hits don't lock
 
     // PaperSpigot start
-    public static synchronized RegionFile a(File file, int i, int j) {
+    public static RegionFile a(File file, int i, int j) { //Dytanic edit
         return a(file, i, j, true);
     }
-    public static synchronized RegionFile a(File file, int i, int j, boolean create) {
+    public static RegionFile a(File file, int i, int j, boolean create) { //Dytanic edit
         // PaperSpigot end
         File file1 = new File(file, "region");
         File file2 = new File(file1, "r." + (i >> 5) + "." + (j >> 5) + ".mca");
-        RegionFile regionfile = (RegionFile) RegionFileCache.a.get(file2);
+
+        return a(file2, create); //Dytanic
+    }
+
+    //Dytanic start - least recently used files are closed instead of the whole cache
+    static RegionFile a(File file2) {
+        return a(file2, true);
+    }
+
+    private static RegionFile a(File file2, boolean create) {
+        RegionFile regionfile = RegionFileCache.a.get(file2);
 
         if (regionfile != null) {
+            regionfile.lastAccess = System.nanoTime();
             return regionfile;
-        } else {
+        }
+
+        synchronized (RegionFileCache.class) {
+            regionfile = RegionFileCache.a.get(file2);
+
+            if (regionfile != null) {
+                regionfile.lastAccess = System.nanoTime();
+                return regionfile;
+            }
+
             if (!create && !file2.exists()) { return null; } // PaperSpigot
+            File file1 = file2.getParentFile();
+
             if (!file1.exists()) {
                 file1.mkdirs();
             }
 
-            if (RegionFileCache.a.size() >= 256) {
-                a();
+            while (RegionFileCache.a.size() >= org.spigotmc.SpigotConfig.regionFileCacheSize) {
+                b();
+            }
+
+            regionfile = new RegionFile(file2);
+            regionfile.lastAccess = System.nanoTime();
+            RegionFileCache.a.put(file2, regionfile);
+            return regionfile;
+        }
+    }
+
+    private static void b() {
+        Map.Entry<File, RegionFile> eldest = null;
+
+        for (Map.Entry<File, RegionFile> entry : RegionFileCache.a.entrySet()) {
+            if (eldest == null || entry.getValue().lastAccess - eldest.getValue().lastAccess < 0L) {
+                eldest = entry;
             }
+        }
 
-            RegionFile regionfile1 = new RegionFile(file2);
+        if (eldest == null) {
+            return;
+        }
+
+        RegionFileCache.a.remove(eldest.getKey());
 
-            RegionFileCache.a.put(file2, regionfile1);
-            return regionfile1;
+        try {
+            eldest.getValue().c();
+        } catch (IOException ioexception) {
+            ioexception.printStackTrace();
+            ServerInternalException.reportInternalException(ioexception); // Paper
         }
     }
+    //Dytanic end
 
     public static synchronized void a() {
         Iterator iterator = RegionFileCache.a.values().iterator();
@@ -63,10 +108,37 @@ public class RegionFileCache {
     }
 
     public static DataInputStream c(File file, int i, int j) {
-        RegionFile regionfile = a(file, i, j);
+        //Dytanic start - retry if the file was evicted between the lookup and the read
+        RegionFile regionfile;
+        DataInputStream datainputstream;
+
+        do {
+            regionfile = a(file, i, j);
+            datainputstream = regionfile.a(i & 31, j & 31);
+        } while (datainputstream == null && regionfile.isClosed());
+
+        return datainputstream;
+        //Dytanic end
+    }
+
+    //Dytanic start - retry if the file was evicted during the lookup
+    public static boolean chunkExists(File file, int i, int j) {
+        RegionFile regionfile;
+        boolean exists;
+
+        do {
+            regionfile = a(file, i, j, false);
+
+            if (regionfile == null) {
+                return false;
+            }
+
+            exists = regionfile.chunkExists(i & 31, j & 31);
+        } while (!exists && regionfile.isClosed());
 
-        return regionfile.a(i & 31, j & 31);
+        return exists;
     }
+    //Dytanic end
 
     public static DataOutputStream d(File file, int i, int j) {
         RegionFile regionfile = a(file, i, j);
@@ -93,6 +93,8 @@ public class ServerConnection {
                         channel.config().setOption(ChannelOption.TCP_NODELAY, true); //Dytanic edit
                         channel.config().setOption(ChannelOption.IP_TOS, 24);
                         channel.config().setOption(ChannelOption.ALLOCATOR, ByteBufAllocator.DEFAULT);
+                        channel.config().setWriteBufferLowWaterMark(Math.min(32 * 1024, org.spigotmc.SpigotConfig.packetBatchFlushBytes / 2)); //Dytanic - flush threshold of batched packets
+                        channel.config().setWriteBufferHighWaterMark(org.spigotmc.SpigotConfig.packetBatchFlushBytes); //Dytanic
                     } catch (ChannelException channelexception) {
                         ;
                     }
@@ -102,6 +104,7 @@ public class ServerConnection {
                             .addLast("splitter", new PacketSplitter())
                             .addLast("decoder", new PacketDecoder(EnumProtocolDirection.SERVERBOUND))
                             .addLast("prepender", new PacketPrepender())
+                            .addLast("prepared", new de.dytanic.spigot.PreparedPacketHandler()) //Dytanic
                             .addLast("encoder", new PacketEncoder(EnumProtocolDirection.CLIENTBOUND));
 
                     NetworkManager networkmanager = new NetworkManager(EnumProtocolDirection.SERVERBOUND);
@@ -137,6 +140,17 @@ public class ServerConnection {
         //Dyanic end
     }
 
+    //Dytanic start
+    /**
+     * Flushes the packets which were batched during the tick.
+     */
+    public void flushPackets() {
+        for (NetworkManager networkmanager : this.h) {
+            networkmanager.flushPackets();
+        }
+    }
+    //Dytanic end
+
     public void c() {
 
         //Dytanic start
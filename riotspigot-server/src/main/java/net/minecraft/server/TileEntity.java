@@ -22,6 +22,7 @@ public abstract class TileEntity {
     protected boolean d;
     private int h;
     protected Block e;
+    private java.util.List<TileEntityHopper> hoppers; //Dytanic - hoppers which cached this inventory, woken by update()
 
     public TileEntity() {
         this.position = BlockPosition.ZERO;
@@ -110,7 +111,32 @@ public abstract class TileEntity {
             }
         }
 
+        //Dytanic start
+        if (this.hoppers != null) {
+            for (int i = 0; i < this.hoppers.size(); ++i) {
+                this.hoppers.get(i).wake();
+            }
+        }
+        //Dytanic end
+    }
+
+    //Dytanic start
+    public void addHopper(TileEntityHopper tileentityhopper) {
+        if (this.hoppers == null) {
+            this.hoppers = new java.util.ArrayList<TileEntityHopper>(2);
+        }
+
+        if (!this.hoppers.contains(tileentityhopper)) {
+            this.hoppers.add(tileentityhopper);
+        }
+    }
+
+    public void removeHopper(TileEntityHopper tileentityhopper) {
+        if (this.hoppers != null) {
+            this.hoppers.remove(tileentityhopper);
+        }
     }
+    //Dytanic end
 
     public BlockPosition getPosition() {
         return this.position;
@@ -17,6 +17,17 @@ public class TileEntityHopper extends TileEntityContainer implements IHopper, IU
     private ItemStack[] items = new ItemStack[5];
     private String f;
     private int g = -1;
+    //Dytanic start - the tile inventories above and in front, resolved again when they are removed or unloaded
+    private TileEntity sourceTile;
+    private Chunk sourceChunk;
+    private TileEntity targetTile;
+    private Chunk targetChunk;
+    private List<TileEntity> watching;
+    private boolean sourceResolved;
+    private boolean targetResolved;
+    private boolean sleeping;
+    private int sleepTicks;
+    //Dytanic end
 
     // CraftBukkit start - add fields and methods
     public List<HumanEntity> transaction = new java.util.ArrayList<HumanEntity>();
@@ -91,8 +102,34 @@ public class TileEntityHopper extends TileEntityContainer implements IHopper, IU
 
     public void update() {
         super.update();
+        this.wake(); //Dytanic
     }
 
+    //Dytanic start
+    /**
+     * Lets a sleeping hopper move items again, called when one of the inventories it moves items between changed.
+     */
+    public void wake() {
+        this.sleeping = false;
+    }
+
+    /**
+     * Forgets the cached inventories, called when the hopper is removed or its chunk is unloaded.
+     */
+    public void clearCache() {
+        this.unwatch();
+        this.sourceTile = null;
+        this.sourceChunk = null;
+        this.targetTile = null;
+        this.targetChunk = null;
+    }
+
+    public void y() {
+        super.y();
+        this.clearCache();
+    }
+    //Dytanic end
+
     public int getSize() {
         return this.items.length;
     }
@@ -102,6 +139,7 @@ public class TileEntityHopper extends TileEntityContainer implements IHopper, IU
     }
 
     public ItemStack splitStack(int i, int j) {
+        this.sleeping = false; //Dytanic
         if (this.items[i] != null) {
             ItemStack itemstack;
 
@@ -134,6 +172,7 @@ public class TileEntityHopper extends TileEntityContainer implements IHopper, IU
     }
 
     public void setItem(int i, ItemStack itemstack) {
+        this.sleeping = false; //Dytanic
         this.items[i] = itemstack;
         if (itemstack != null && itemstack.count > this.getMaxStackSize()) {
             itemstack.count = this.getMaxStackSize();
@@ -172,6 +211,15 @@ public class TileEntityHopper extends TileEntityContainer implements IHopper, IU
     public void c() {
         if (this.world != null && !this.world.isClientSide) {
             --this.g;
+            //Dytanic start - nothing can be moved until an inventory changed, checked again after the max sleep
+            if (this.sleeping) {
+                if (++this.sleepTicks < this.world.spigotConfig.hopperMaxSleep) {
+                    return;
+                }
+
+                this.sleeping = false;
+            }
+            //Dytanic end
             if (!this.n()) {
                 this.d(0);
                 this.m();
@@ -198,6 +246,13 @@ public class TileEntityHopper extends TileEntityContainer implements IHopper, IU
                     this.update();
                     return true;
                 }
+
+                //Dytanic start - only tile inventories wake the hopper, items and minecarts have to be looked for
+                if ((this.p() || this.targetResolved) && (this.q() || this.sourceResolved)) {
+                    this.sleeping = true;
+                    this.sleepTicks = 0;
+                }
+                //Dytanic end
             }
             // PaperSpigot start
             if (world.paperSpigotConfig.useHopperCheck && !this.n()) {
@@ -347,7 +402,7 @@ public class TileEntityHopper extends TileEntityContainer implements IHopper, IU
     }
 
     public static boolean a(IHopper ihopper) {
-        IInventory iinventory = b(ihopper);
+        IInventory iinventory = ihopper instanceof TileEntityHopper ? ((TileEntityHopper) ihopper).getSourceInventory() : b(ihopper); //Dytanic edit
 
         if (iinventory != null) {
             EnumDirection enumdirection = EnumDirection.DOWN;
@@ -537,15 +592,130 @@ public class TileEntityHopper extends TileEntityContainer implements IHopper, IU
     private IInventory H() {
         EnumDirection enumdirection = BlockHopper.b(this.u());
 
-        return b(this.getWorld(), (double) (this.position.getX() + enumdirection.getAdjacentX()), (double) (this.position.getY() + enumdirection.getAdjacentY()), (double) (this.position.getZ() + enumdirection.getAdjacentZ()));
+        //return b(this.getWorld(), (double) (this.position.getX() + enumdirection.getAdjacentX()), (double) (this.position.getY() + enumdirection.getAdjacentY()), (double) (this.position.getZ() + enumdirection.getAdjacentZ())); //Dytanic edit
+        //Dytanic start
+        BlockPosition blockposition = this.position.shift(enumdirection);
+
+        if (!this.isCached(this.targetTile, this.targetChunk, blockposition)) {
+            TileEntity tileentity = this.resolveTile(blockposition);
+
+            this.targetChunk = tileentity != null ? this.world.getChunkAtWorldCoords(blockposition) : null;
+            if (tileentity != this.targetTile) {
+                this.targetTile = tileentity;
+                this.watch();
+            }
+        }
+
+        IInventory iinventory = this.getInventory(this.targetTile);
+
+        this.targetResolved = iinventory != null;
+        return iinventory != null ? iinventory : c(this.world, (double) blockposition.getX(), (double) blockposition.getY(), (double) blockposition.getZ());
+        //Dytanic end
+    }
+
+    //Dytanic start
+    private IInventory getSourceInventory() {
+        BlockPosition blockposition = this.position.up();
+
+        if (!this.isCached(this.sourceTile, this.sourceChunk, blockposition)) {
+            TileEntity tileentity = this.resolveTile(blockposition);
+
+            this.sourceChunk = tileentity != null ? this.world.getChunkAtWorldCoords(blockposition) : null;
+            if (tileentity != this.sourceTile) {
+                this.sourceTile = tileentity;
+                this.watch();
+            }
+        }
+
+        IInventory iinventory = this.getInventory(this.sourceTile);
+
+        this.sourceResolved = iinventory != null;
+        return iinventory != null ? iinventory : c(this.world, this.A(), this.B() + 1.0D, this.C());
+    }
+
+    private static boolean isCached(TileEntity tileentity, Chunk chunk, BlockPosition blockposition) {
+        return tileentity != null && !tileentity.x() && chunk.o() && tileentity.position.equals(blockposition);
     }
 
+    /**
+     * @return the tile inventory at the position or null. Nothing is cached if there is none, so a container placed
+     * without a neighbour update is found by the next lookup.
+     */
+    private TileEntity resolveTile(BlockPosition blockposition) {
+        if (!this.world.isLoaded(blockposition) || !this.world.getType(blockposition).getBlock().isTileEntity()) {
+            return null;
+        }
+
+        TileEntity tileentity = this.world.getTileEntity(blockposition);
+
+        return tileentity instanceof IInventory ? tileentity : null;
+    }
+
+    /**
+     * Lets the cached tiles wake the hopper when they change, instead of the ones cached before.
+     */
+    private void watch() {
+        this.unwatch();
+        this.watch(this.sourceTile);
+        this.watch(this.targetTile);
+    }
+
+    private void watch(TileEntity tileentity) {
+        if (tileentity == null) {
+            return;
+        }
+
+        if (this.watching == null) {
+            this.watching = new java.util.ArrayList<TileEntity>(2);
+        }
+
+        tileentity.addHopper(this);
+        this.watching.add(tileentity);
+        if (tileentity instanceof TileEntityChest) {
+            // The double chest is looked up by the block every time, the other half may change it as well
+            for (EnumDirection enumdirection : EnumDirection.EnumDirectionLimit.HORIZONTAL) {
+                BlockPosition blockposition = tileentity.position.shift(enumdirection);
+
+                if (this.world.isLoaded(blockposition) && this.world.getType(blockposition).getBlock() == tileentity.w()) {
+                    TileEntity tileentity1 = this.world.getTileEntity(blockposition);
+
+                    if (tileentity1 instanceof TileEntityChest) {
+                        tileentity1.addHopper(this);
+                        this.watching.add(tileentity1);
+                    }
+                }
+            }
+        }
+    }
+
+    private void unwatch() {
+        if (this.watching != null) {
+            for (int i = 0; i < this.watching.size(); ++i) {
+                this.watching.get(i).removeHopper(this);
+            }
+
+            this.watching.clear();
+        }
+    }
+
+    private IInventory getInventory(TileEntity tileentity) {
+        if (tileentity instanceof TileEntityChest) {
+            Block block = tileentity.w();
+
+            return block instanceof BlockChest ? ((BlockChest) block).f(this.world, tileentity.position) : (IInventory) tileentity;
+        }
+
+        return (IInventory) tileentity;
+    }
+    //Dytanic end
+
     public static IInventory b(IHopper ihopper) {
         return b(ihopper.getWorld(), ihopper.A(), ihopper.B() + 1.0D, ihopper.C());
     }
 
     public static List<EntityItem> a(World world, double d0, double d1, double d2) {
-        return world.a(EntityItem.class, new AxisAlignedBB(d0 - 0.5D, d1 - 0.5D, d2 - 0.5D, d0 + 0.5D, d1 + 0.5D, d2 + 0.5D), IEntitySelector.a);
+        //return world.a(EntityItem.class, new AxisAlignedBB(d0 - 0.5D, d1 - 0.5D, d2 - 0.5D, d0 + 0.5D, d1 + 0.5D, d2 + 0.5D), IEntitySelector.a); //Dytanic edit
+        return world.getItems(d0 - 0.5D, d1 - 0.5D, d2 - 0.5D, d0 + 0.5D, d1 + 0.5D, d2 + 0.5D); //Dytanic
     }
 
     public static IInventory b(World world, double d0, double d1, double d2) {
@@ -568,16 +738,31 @@ public class TileEntityHopper extends TileEntityContainer implements IHopper, IU
             }
         }
 
+        //Dytanic start
         if (object == null) {
+            object = c(world, d0, d1, d2);
+        }
+        //Dytanic end
+
+        return (IInventory) object;
+    }
+
+    //Dytanic start
+    /**
+     * @return a random entity with an inventory at the position, looks for them only if the chunks have any
+     */
+    private static IInventory c(World world, double d0, double d1, double d2) {
+        if (world.hasInventoryEntities(d0 - 0.5D, d1 - 0.5D, d2 - 0.5D, d0 + 0.5D, d1 + 0.5D, d2 + 0.5D)) {
             List list = world.a((Entity) null, new AxisAlignedBB(d0 - 0.5D, d1 - 0.5D, d2 - 0.5D, d0 + 0.5D, d1 + 0.5D, d2 + 0.5D), IEntitySelector.c);
 
             if (list.size() > 0) {
-                object = (IInventory) list.get(world.random.nextInt(list.size()));
+                return (IInventory) list.get(world.random.nextInt(list.size()));
             }
         }
 
-        return (IInventory) object;
+        return null;
     }
+    //Dytanic end
 
     private static boolean a(ItemStack itemstack, ItemStack itemstack1) {
         return itemstack.getItem() != itemstack1.getItem() ? false : (itemstack.getData() != itemstack1.getData() ? false : (itemstack.count > itemstack.getMaxStackSize() ? false : ItemStack.equals(itemstack, itemstack1)));
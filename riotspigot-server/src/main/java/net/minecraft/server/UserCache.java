@@ -1,8 +1,9 @@
 package net.minecraft.server;
 
-import com.google.common.collect.Iterators;
+import com.google.common.base.Charsets;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.io.Files;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonDeserializationContext;
@@ -16,7 +17,13 @@ import com.mojang.authlib.Agent;
 import com.mojang.authlib.GameProfile;
 import com.mojang.authlib.ProfileLookupCallback;
 import de.dytanic.$;
+import de.dytanic.spigot.DytanicSpigot;
+import org.apache.commons.io.IOUtils;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.text.ParseException;
@@ -24,18 +31,48 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Queue;
 import java.util.UUID;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class UserCache {
 
     public static final SimpleDateFormat a = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss Z");
-    private final Map<String, UserCache.UserCacheEntry> c = Maps.newHashMap();
+    //Dytanic start
+    public static final File FILE = new File("usercache.jsonl");
+    // Guarded by this, the name map is kept in the order of the last access and holds at most user-cache-size entries
+    private final Map<String, UserCache.UserCacheEntry> c = new LinkedHashMap<String, UserCache.UserCacheEntry>(16, 0.75F, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, UserCache.UserCacheEntry> eldest) {
+            if (this.size() <= Math.max(1, org.spigotmc.SpigotConfig.userCacheCap)) {
+                return false;
+            }
+
+            UserCache.this.d.remove(eldest.getValue().a().getId());
+            return true;
+        }
+    };
     private final Map<UUID, UserCache.UserCacheEntry> d = Maps.newHashMap();
-    private final java.util.Deque<GameProfile> e = new java.util.concurrent.LinkedBlockingDeque<GameProfile>(); // CraftBukkit
+    // private final java.util.Deque<GameProfile> e = new java.util.concurrent.LinkedBlockingDeque<GameProfile>(); // CraftBukkit
+    private final ConcurrentMap<String, CompletableFuture<GameProfile>> pendingNames = new ConcurrentHashMap<String, CompletableFuture<GameProfile>>();
+    private final ConcurrentMap<UUID, CompletableFuture<GameProfile>> pendingIds = new ConcurrentHashMap<UUID, CompletableFuture<GameProfile>>();
+    private final Queue<UserCache.UserCacheEntry> appendQueue = new ConcurrentLinkedQueue<UserCache.UserCacheEntry>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final Object fileLock = new Object();
+    private int fileLines; // Guarded by fileLock
+    private volatile boolean loaded;
+    //Dytanic end
     private final MinecraftServer f;
     protected final Gson b;
     //private final File g;
@@ -60,7 +97,7 @@ public class UserCache {
 
         gsonbuilder.registerTypeHierarchyAdapter(UserCache.UserCacheEntry.class, new UserCache.BanEntrySerializer(null));
         this.b = gsonbuilder.create();
-        this.b();
+        // this.b(); //Dytanic - the cache is loaded on the first access or by the server once the config is loaded
     }
 
     private static GameProfile a(MinecraftServer minecraftserver, String s) {
@@ -86,6 +123,19 @@ public class UserCache {
         return agameprofile[0];
     }
 
+    //Dytanic start
+    private static GameProfile a(MinecraftServer minecraftserver, UUID uuid) {
+        // Offline mode ids are name based, the session server doesn't know them
+        if (uuid.version() != 4) {
+            return null;
+        }
+
+        GameProfile gameprofile = minecraftserver.aD().fillProfileProperties(new GameProfile(uuid, null), false);
+
+        return gameprofile.getName() == null ? null : new GameProfile(uuid, gameprofile.getName());
+    }
+    //Dytanic end
+
     public void a(GameProfile gameprofile) {
         this.a(gameprofile, (Date) null);
     }
@@ -104,60 +154,181 @@ public class UserCache {
         String s = gameprofile.getName().toLowerCase(Locale.ROOT);
         UserCache.UserCacheEntry usercache_usercacheentry = new UserCache.UserCacheEntry(gameprofile, date, null);
 
-        if (this.d.containsKey(uuid)) {
-            UserCache.UserCacheEntry usercache_usercacheentry1 = (UserCache.UserCacheEntry) this.d.get(uuid);
+        //Dytanic start
+        this.ensureLoaded();
+        synchronized (this) {
+            this.put(usercache_usercacheentry);
+        }
+
+        // Spigot - skip saving if disabled
+        if( !org.spigotmc.SpigotConfig.saveUserCacheOnStopOnly ) {
+            this.appendQueue.add(usercache_usercacheentry);
+            this.scheduleFlush();
+        }
+        //Dytanic end
+    }
 
+    //Dytanic start
+    private void put(UserCache.UserCacheEntry usercache_usercacheentry) {
+        GameProfile gameprofile = usercache_usercacheentry.a();
+        UserCache.UserCacheEntry usercache_usercacheentry1 = this.d.put(gameprofile.getId(), usercache_usercacheentry);
+
+        if (usercache_usercacheentry1 != null) {
             this.c.remove(usercache_usercacheentry1.a().getName().toLowerCase(Locale.ROOT));
-            this.e.remove(gameprofile);
         }
 
-        this.c.put(gameprofile.getName().toLowerCase(Locale.ROOT), usercache_usercacheentry);
-        this.d.put(uuid, usercache_usercacheentry);
-        this.e.addFirst(gameprofile);
-        if( !org.spigotmc.SpigotConfig.saveUserCacheOnStopOnly ) this.c(); // Spigot - skip saving if disabled
+        UserCache.UserCacheEntry usercache_usercacheentry2 = this.c.put(gameprofile.getName().toLowerCase(Locale.ROOT), usercache_usercacheentry);
+
+        // The name belonged to another player before
+        if (usercache_usercacheentry2 != null && usercache_usercacheentry2 != usercache_usercacheentry1) {
+            this.d.remove(usercache_usercacheentry2.a().getId(), usercache_usercacheentry2);
+        }
+    }
+
+    /**
+     * @return the cached profile if it didn't expire yet, marks it as used
+     */
+    private synchronized GameProfile getCached(String s) {
+        return this.getValid(this.c.get(s));
+    }
+
+    // Called with the lock of this
+    private GameProfile getValid(UserCache.UserCacheEntry usercache_usercacheentry) {
+        if (usercache_usercacheentry == null) {
+            return null;
+        }
+
+        GameProfile gameprofile = usercache_usercacheentry.a();
+
+        if ((new Date()).getTime() >= usercache_usercacheentry.c.getTime()) {
+            this.d.remove(gameprofile.getId(), usercache_usercacheentry);
+            this.c.remove(gameprofile.getName().toLowerCase(Locale.ROOT), usercache_usercacheentry);
+            return null;
+        }
+
+        return gameprofile;
     }
+    //Dytanic end
 
     public GameProfile getProfile(String s) {
+        //Dytanic start
         String s1 = s.toLowerCase(Locale.ROOT);
-        UserCache.UserCacheEntry usercache_usercacheentry = (UserCache.UserCacheEntry) this.c.get(s1);
 
-        if (usercache_usercacheentry != null && (new Date()).getTime() >= usercache_usercacheentry.c.getTime()) {
-            this.d.remove(usercache_usercacheentry.a().getId());
-            this.c.remove(usercache_usercacheentry.a().getName().toLowerCase(Locale.ROOT));
-            this.e.remove(usercache_usercacheentry.a());
-            usercache_usercacheentry = null;
+        this.ensureLoaded();
+        GameProfile gameprofile = this.getCached(s1);
+
+        if (gameprofile != null) {
+            return gameprofile;
         }
 
-        GameProfile gameprofile;
+        // Looked up on this thread, unless another thread looks the name up already
+        return this.lookup(s1, s, this.pendingNames, false).join();
+        //Dytanic end
+    }
+
+    //Dytanic start
+    /**
+     * Looks the name up on the task scheduler if it isn't cached. Concurrent lookups of the same name share one request.
+     *
+     * @return a future which completes with the profile, or null if there is no player with the name
+     */
+    public CompletableFuture<GameProfile> getProfileAsync(String s) {
+        String s1 = s.toLowerCase(Locale.ROOT);
+
+        if (this.loaded) {
+            GameProfile gameprofile = this.getCached(s1);
+
+            if (gameprofile != null) {
+                return CompletableFuture.completedFuture(gameprofile);
+            }
+        }
+
+        return this.lookup(s1, s, this.pendingNames, true);
+    }
+
+    /**
+     * Looks the id up at the session server on the task scheduler if it isn't cached. Concurrent lookups of the same id
+     * share one request.
+     *
+     * @return a future which completes with the profile, or null if the id isn't known
+     */
+    public CompletableFuture<GameProfile> getProfileAsync(UUID uuid) {
+        if (this.loaded) {
+            GameProfile gameprofile = this.a(uuid);
 
-        if (usercache_usercacheentry != null) {
-            gameprofile = usercache_usercacheentry.a();
-            this.e.remove(gameprofile);
-            this.e.addFirst(gameprofile);
-        } else {
-            gameprofile = a(this.f, s); // Spigot - use correct case for offline players
             if (gameprofile != null) {
-                this.a(gameprofile);
-                usercache_usercacheentry = (UserCache.UserCacheEntry) this.c.get(s1);
+                return CompletableFuture.completedFuture(gameprofile);
             }
         }
 
-        if( !org.spigotmc.SpigotConfig.saveUserCacheOnStopOnly ) this.c(); // Spigot - skip saving if disabled
-        return usercache_usercacheentry == null ? null : usercache_usercacheentry.a();
+        return this.lookup(uuid, uuid, this.pendingIds, true);
     }
 
-    public String[] a() {
+    private <K> CompletableFuture<GameProfile> lookup(final K key, final Object query, final ConcurrentMap<K, CompletableFuture<GameProfile>> pending, boolean async) {
+        final CompletableFuture<GameProfile> future = new CompletableFuture<GameProfile>();
+        CompletableFuture<GameProfile> existing = pending.putIfAbsent(key, future);
+
+        if (existing != null) {
+            return existing;
+        }
+
+        Runnable runnable = new Runnable() {
+            @Override
+            public void run() {
+                GameProfile gameprofile = null;
+
+                try {
+                    UserCache.this.ensureLoaded();
+                    // The lookup before may have finished between the cache miss and the registration of this one
+                    gameprofile = query instanceof UUID ? UserCache.this.a((UUID) query) : UserCache.this.getCached((String) key);
+                    if (gameprofile == null) {
+                        gameprofile = query instanceof UUID ? UserCache.a(UserCache.this.f, (UUID) query) : UserCache.a(UserCache.this.f, (String) query); // Spigot - use correct case for offline players
+                        if (gameprofile != null) {
+                            UserCache.this.a(gameprofile);
+                        }
+                    }
+                } catch (Exception exception) {
+                    MinecraftServer.LOGGER.warn("Couldn't look up profile " + query, exception);
+                } finally {
+                    pending.remove(key, future);
+                    future.complete(gameprofile);
+                }
+            }
+        };
+
+        if (async) {
+            DytanicSpigot.getInstance().getTaskScheduler().schedule(runnable);
+        } else {
+            runnable.run();
+        }
+
+        return future;
+    }
+    //Dytanic end
+
+    public synchronized String[] a() { //Dytanic edit
         ArrayList arraylist = Lists.newArrayList(this.c.keySet());
 
         return (String[]) arraylist.toArray(new String[arraylist.size()]);
     }
 
     public GameProfile a(UUID uuid) {
-        UserCache.UserCacheEntry usercache_usercacheentry = (UserCache.UserCacheEntry) this.d.get(uuid);
+        //Dytanic start
+        this.ensureLoaded();
 
-        return usercache_usercacheentry == null ? null : usercache_usercacheentry.a();
+        synchronized (this) {
+            UserCache.UserCacheEntry usercache_usercacheentry = (UserCache.UserCacheEntry) this.d.get(uuid);
+
+            if (usercache_usercacheentry != null) {
+                this.c.get(usercache_usercacheentry.a().getName().toLowerCase(Locale.ROOT)); // Marks the name as used
+            }
+
+            return this.getValid(usercache_usercacheentry);
+        }
+        //Dytanic end
     }
 
+    /* Dytanic - the name map is kept in access order
     private UserCache.UserCacheEntry b(UUID uuid) {
         UserCache.UserCacheEntry usercache_usercacheentry = (UserCache.UserCacheEntry) this.d.get(uuid);
 
@@ -170,9 +341,76 @@ public class UserCache {
 
         return usercache_usercacheentry;
     }
+    */
 
     public void b() {
-        /* Dytanic edit remove caching in file
+        //Dytanic start - load the cache in the background, the first access waits for it
+        DytanicSpigot.getInstance().getTaskScheduler().schedule(new Runnable() {
+            @Override
+            public void run() {
+                UserCache.this.ensureLoaded();
+            }
+        });
+    }
+
+    private void ensureLoaded() {
+        if (this.loaded) {
+            return;
+        }
+
+        // The file lock is always taken before the cache, like flush() and c() do
+        synchronized (this.fileLock) {
+            synchronized (this) {
+                if (this.loaded) {
+                    return;
+                }
+
+                int lines = 0;
+                long now = System.currentTimeMillis();
+
+                if (FILE.exists()) {
+                    BufferedReader bufferedreader = null;
+
+                    try {
+                        bufferedreader = Files.newReader(FILE, Charsets.UTF_8);
+                        String line;
+
+                        // Later lines replace earlier ones and count as the more recent use
+                        while ((line = bufferedreader.readLine()) != null) {
+                            if (line.isEmpty()) {
+                                continue;
+                            }
+
+                            lines++;
+                            UserCache.UserCacheEntry usercache_usercacheentry;
+
+                            try {
+                                usercache_usercacheentry = this.b.fromJson(line, UserCache.UserCacheEntry.class);
+                            } catch (JsonParseException jsonparseexception) {
+                                // A line of a write which was cut off by a crash
+                                continue;
+                            }
+
+                            if (usercache_usercacheentry != null && usercache_usercacheentry.b() != null && now < usercache_usercacheentry.b().getTime()) {
+                                this.put(usercache_usercacheentry);
+                            }
+                        }
+                    } catch (IOException ioexception) {
+                        MinecraftServer.LOGGER.warn("Couldn't read " + FILE, ioexception);
+                    } finally {
+                        IOUtils.closeQuietly(bufferedreader);
+                    }
+                }
+
+                this.fileLines = lines;
+                this.loaded = true;
+            }
+        }
+    }
+    //Dytanic end
+
+    /* Dytanic edit remove caching in file
+    public void b() {
         BufferedReader bufferedreader = null;
 
         try {
@@ -203,11 +441,24 @@ public class UserCache {
         } finally {
             IOUtils.closeQuietly(bufferedreader);
         }
-        */
 
     }
+    */
 
+    /**
+     * Dytanic - rewrites the file with the cached entries, in the order of their last use
+     */
     public void c() {
+        //Dytanic start
+        if (!this.loaded) {
+            return;
+        }
+
+        synchronized (this.fileLock) {
+            this.appendQueue.clear();
+            this.compact();
+        }
+        //Dytanic end
 
         /* Dytanic edit remove caching in file
         String s = this.b.toJson(this.a(org.spigotmc.SpigotConfig.userCacheCap));
@@ -228,6 +479,96 @@ public class UserCache {
 
     }
 
+    //Dytanic start
+    /**
+     * Appends the entries which were added since the last flush to the file, or rewrites it once it holds twice as
+     * many lines as the cache.
+     */
+    public void flush() {
+        synchronized (this.fileLock) {
+            List<UserCache.UserCacheEntry> entries = Lists.newArrayList();
+            UserCache.UserCacheEntry usercache_usercacheentry;
+
+            while ((usercache_usercacheentry = this.appendQueue.poll()) != null) {
+                entries.add(usercache_usercacheentry);
+            }
+
+            if (entries.isEmpty()) {
+                return;
+            }
+
+            if (this.fileLines + entries.size() > 2 * Math.max(1, org.spigotmc.SpigotConfig.userCacheCap)) {
+                this.compact();
+                return;
+            }
+
+            BufferedWriter bufferedwriter = null;
+
+            try {
+                bufferedwriter = java.nio.file.Files.newBufferedWriter(FILE.toPath(), Charsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                this.write(bufferedwriter, entries);
+                this.fileLines += entries.size();
+            } catch (IOException ioexception) {
+                MinecraftServer.LOGGER.warn("Couldn't write " + FILE, ioexception);
+            } finally {
+                IOUtils.closeQuietly(bufferedwriter);
+            }
+        }
+    }
+
+    private void scheduleFlush() {
+        if (this.flushScheduled.compareAndSet(false, true)) {
+            DytanicSpigot.getInstance().getTaskScheduler().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    // Cleared first, an entry added during the flush schedules the next one
+                    UserCache.this.flushScheduled.set(false);
+                    UserCache.this.flush();
+                }
+            });
+        }
+    }
+
+    // Called with the file lock
+    private void compact() {
+        List<UserCache.UserCacheEntry> entries;
+
+        synchronized (this) {
+            entries = Lists.newArrayList(this.c.values());
+        }
+
+        File file = new File(FILE.getPath() + ".tmp");
+        BufferedWriter bufferedwriter = null;
+
+        try {
+            bufferedwriter = Files.newWriter(file, Charsets.UTF_8);
+            this.write(bufferedwriter, entries);
+            bufferedwriter.close();
+            bufferedwriter = null;
+
+            try {
+                java.nio.file.Files.move(file.toPath(), FILE.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                java.nio.file.Files.move(file.toPath(), FILE.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            this.fileLines = entries.size();
+        } catch (IOException ioexception) {
+            MinecraftServer.LOGGER.warn("Couldn't write " + FILE, ioexception);
+        } finally {
+            IOUtils.closeQuietly(bufferedwriter);
+        }
+    }
+
+    // Called with the file lock, which also guards the date format
+    private void write(BufferedWriter bufferedwriter, List<UserCache.UserCacheEntry> entries) throws IOException {
+        for (UserCache.UserCacheEntry usercache_usercacheentry : entries) {
+            bufferedwriter.write(this.b.toJson(usercache_usercacheentry, UserCache.UserCacheEntry.class));
+            bufferedwriter.newLine();
+        }
+    }
+    //Dytanic end
+
+    /* Dytanic - the name map is kept in access order
     private List<UserCache.UserCacheEntry> a(int i) {
         ArrayList arraylist = Lists.newArrayList();
         ArrayList arraylist1 = Lists.newArrayList(Iterators.limit(this.e.iterator(), i));
@@ -244,6 +585,7 @@ public class UserCache {
 
         return arraylist;
     }
+    */
 
     class UserCacheEntry {
 
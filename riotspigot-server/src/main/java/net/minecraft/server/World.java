@@ -4,7 +4,6 @@ import com.google.common.base.Predicate;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
-import de.dytanic.spigot.DytanicSpigot;
 import org.bukkit.Bukkit;
 import org.bukkit.block.BlockState;
 import org.bukkit.craftbukkit.CraftServer;
@@ -36,7 +35,7 @@ public abstract class World implements IBlockAccess {
     private int a = 63;
     protected boolean e;
     // Spigot start - guard entity list from removals
-    public final List<Entity> entityList = new CopyOnWriteArrayList<>();/*new java.util.ArrayList<Entity>() //Dytanic edit
+    public final de.dytanic.spigot.EntityStore entityList = new de.dytanic.spigot.EntityStore(this);/*new java.util.ArrayList<Entity>() //Dytanic edit
     {
         @Override
         public Entity remove(int index)
@@ -69,7 +68,7 @@ public abstract class World implements IBlockAccess {
     private final Set<TileEntity> c = Sets.newHashSet(); // Paper
     public final List<EntityHuman> players = Lists.newArrayList();
     public final List<Entity> k = Lists.newArrayList();
-    protected final IntHashMap<Entity> entitiesById = new IntHashMap();
+    //protected final IntHashMap<Entity> entitiesById = new IntHashMap(); //Dytanic edit moved to EntityStore
     private long d = 16777215L;
     private int I;
     protected int m = (new Random()).nextInt();
@@ -140,6 +139,10 @@ public abstract class World implements IBlockAccess {
     private org.spigotmc.TickLimiter tileLimiter;
     private int tileTickPosition;
     //public ExecutorService lightingExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("PaperSpigot - Lighting Thread").build()); // PaperSpigot - Asynchronous lighting updates //Dytanic edit replace with Dytanic's TaskScheduler
+    public final de.dytanic.spigot.LightingEngine lightingEngine = new de.dytanic.spigot.LightingEngine(this); //Dytanic
+    public final de.dytanic.spigot.ChunkPacketCache chunkPacketCache = new de.dytanic.spigot.ChunkPacketCache(this); //Dytanic
+    public final de.dytanic.spigot.ExplosionRayEngine explosionRayEngine = new de.dytanic.spigot.ExplosionRayEngine(this); //Dytanic
+    public int blockModCount; //Dytanic - counts the changed blocks, explosions only reuse the blocks of an earlier one if nothing changed
     public final Map<Explosion.CacheKey, Float> explosionDensityCache = new HashMap<Explosion.CacheKey, Float>(); // PaperSpigot - Optimize explosions
 
     public static long chunkToKey(int x, int z)
@@ -234,7 +237,7 @@ public abstract class World implements IBlockAccess {
         this.keepSpawnInMemory = this.paperSpigotConfig.keepSpawnInMemory; // PaperSpigot
         timings = new co.aikar.timings.WorldTimingsHandler(this); // Spigot - code below can generate new world and access timings
         this.entityLimiter = new org.spigotmc.TickLimiter(spigotConfig.entityMaxTickTime);
-        this.tileLimiter = new org.spigotmc.TickLimiter(spigotConfig.tileMaxTickTime);
+        this.tileLimiter = new org.spigotmc.TickLimiter(Math.min(spigotConfig.tileMaxTickTime, org.spigotmc.SpigotConfig.adaptiveTickTileMaxTime)); //Dytanic edit only used while tile ticking is degraded
     }
 
     public World b() {
@@ -408,6 +411,7 @@ public abstract class World implements IBlockAccess {
                 // CraftBukkit end
                 return false;
             } else {
+                ++this.blockModCount; //Dytanic
                 Block block1 = iblockdata1.getBlock();
 
                 if (block.p() != block1.p() || block.r() != block1.r()) {
@@ -572,7 +576,7 @@ public abstract class World implements IBlockAccess {
             try {
                 // CraftBukkit start
                 CraftWorld world = ((WorldServer) this).getWorld();
-                if (world != null) {
+                if (world != null && CraftEventFactory.shouldFire(BlockPhysicsEvent.getHandlerList())) { //Dytanic edit
                     BlockPhysicsEvent event = new BlockPhysicsEvent(world.getBlockAt(blockposition.getX(), blockposition.getY(), blockposition.getZ()), CraftMagicNumbers.getId(block));
                     this.getServer().getPluginManager().callEvent(event);
 
@@ -993,7 +997,7 @@ public abstract class World implements IBlockAccess {
     }
 
     public boolean addEntity(Entity entity, SpawnReason spawnReason) { // Changed signature, added SpawnReason
-        org.spigotmc.AsyncCatcher.catchOp( "entity add"); // Spigot
+        org.spigotmc.AsyncCatcher.catchOp( this, "entity add"); // Spigot //Dytanic edit
         if (entity == null) return false;
         // CraftBukkit end
         int i = MathHelper.floor(entity.locX / 16.0D);
@@ -1118,7 +1122,7 @@ public abstract class World implements IBlockAccess {
     }
 
     public void removeEntity(Entity entity) {
-        org.spigotmc.AsyncCatcher.catchOp( "entity remove"); // Spigot
+        org.spigotmc.AsyncCatcher.catchOp( this, "entity remove"); // Spigot //Dytanic edit
         entity.die();
         if (entity instanceof EntityHuman) {
             this.players.remove(entity);
@@ -1134,6 +1138,7 @@ public abstract class World implements IBlockAccess {
         }
 
         // CraftBukkit start - Decrement loop variable field if we've already ticked this entity
+        /* Dytanic edit, EntityStore removes in O(1) outside of the entity tick
         int index = this.entityList.indexOf(entity);
         if (index != -1) {
             if (index <= this.tickPosition) {
@@ -1141,6 +1146,8 @@ public abstract class World implements IBlockAccess {
             }
             this.entityList.remove(index);
         }
+        */
+        this.entityList.remove(entity);
         // CraftBukkit end
         } // Spigot
         this.b(entity);
@@ -1150,6 +1157,201 @@ public abstract class World implements IBlockAccess {
         this.u.add(iworldaccess);
     }
 
+    public List<AxisAlignedBB> getCubes(Entity entity, AxisAlignedBB axisalignedbb) {
+        return this.getCubes(entity, axisalignedbb, Lists.<AxisAlignedBB>newArrayList()); //Dytanic edit
+    }
+
+    //Dytanic start
+    /**
+     * Clears the list and adds the collision boxes of the blocks and entities in the box, like
+     * {@link #getCubes(Entity, AxisAlignedBB)}, so the caller can reuse the list.
+     */
+    public List<AxisAlignedBB> getCubes(Entity entity, AxisAlignedBB axisalignedbb, List<AxisAlignedBB> arraylist) {
+        arraylist.clear();
+        this.collectBlockCubes(entity, axisalignedbb, arraylist);
+
+        if (entity instanceof EntityItem) return arraylist; // PaperSpigot - Optimize item movement
+        if(entity instanceof EntityArmorStand) return arraylist; //Dytanic edit
+
+        double d0 = 0.25D;
+        List list = this.getEntities(entity, axisalignedbb.grow(d0, d0, d0));
+
+        for (int j2 = 0; j2 < list.size(); ++j2) {
+            if (entity.passenger != list && entity.vehicle != list) {
+                AxisAlignedBB axisalignedbb1 = ((Entity) list.get(j2)).S();
+
+                if (axisalignedbb1 != null && axisalignedbb1.b(axisalignedbb)) {
+                    arraylist.add(axisalignedbb1);
+                }
+
+                axisalignedbb1 = entity.j((Entity) list.get(j2));
+                if (axisalignedbb1 != null && axisalignedbb1.b(axisalignedbb)) {
+                    arraylist.add(axisalignedbb1);
+                }
+            }
+        }
+
+        return arraylist;
+    }
+
+    /**
+     * @return true if getCubes would find a collision box, without collecting them
+     */
+    public boolean hasCubes(Entity entity, AxisAlignedBB axisalignedbb) {
+        if (this.collectBlockCubes(entity, axisalignedbb, null)) return true;
+
+        if (entity instanceof EntityItem || entity instanceof EntityArmorStand) return false;
+
+        double d0 = 0.25D;
+        List list = this.getEntities(entity, axisalignedbb.grow(d0, d0, d0));
+
+        for (int j2 = 0; j2 < list.size(); ++j2) {
+            if (entity.passenger != list && entity.vehicle != list) {
+                AxisAlignedBB axisalignedbb1 = ((Entity) list.get(j2)).S();
+
+                if (axisalignedbb1 != null && axisalignedbb1.b(axisalignedbb)) {
+                    return true;
+                }
+
+                axisalignedbb1 = entity.j((Entity) list.get(j2));
+                if (axisalignedbb1 != null && axisalignedbb1.b(axisalignedbb)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Walks the block ids of the chunk sections in the box, empty sections are skipped. Full cubes and empty blocks
+     * are resolved by the BlockShapes table, only the other blocks are asked for their boxes.
+     *
+     * @param list the list for the boxes, or null to stop at the first one
+     * @return true if a box was found
+     */
+    private boolean collectBlockCubes(Entity entity, AxisAlignedBB axisalignedbb, List<AxisAlignedBB> list) {
+        int i = MathHelper.floor(axisalignedbb.a);
+        int j = MathHelper.floor(axisalignedbb.d + 1.0D);
+        int k = MathHelper.floor(axisalignedbb.b);
+        int l = MathHelper.floor(axisalignedbb.e + 1.0D);
+        int i1 = MathHelper.floor(axisalignedbb.c);
+        int j1 = MathHelper.floor(axisalignedbb.f + 1.0D);
+        WorldBorder worldborder = this.getWorldBorder();
+        boolean flag = entity.aT();
+        boolean flag1 = this.a(worldborder, entity);
+        // PaperSpigot - FallingBlocks and TNT collide with specific non-collidable blocks
+        boolean fallingSolid = this.paperSpigotConfig.fallingBlocksCollideWithSigns && (entity instanceof EntityTNTPrimed || entity instanceof EntityFallingBlock);
+        BlockPosition.MutableBlockPosition blockposition_mutableblockposition = new BlockPosition.MutableBlockPosition();
+        List<AxisAlignedBB> scratch = null;
+        boolean found = false;
+        int ystart = k - 1 < 0 ? 0 : k - 1;
+        int yend = l < 256 ? l : 256;
+
+        // Without a y range the chunks are still visited, loading them or marking the entity in an unloaded chunk
+        for (int chunkx = i >> 4; chunkx <= (j - 1) >> 4; chunkx++) {
+            int cx = chunkx << 4;
+
+            for (int chunkz = i1 >> 4; chunkz <= (j1 - 1) >> 4; chunkz++) {
+                Chunk chunk = this.getChunkIfLoaded(chunkx, chunkz);
+
+                if (chunk == null) {
+                    // PaperSpigot start
+                    if (entity.loadChunks) {
+                        chunk = ((ChunkProviderServer) entity.world.chunkProvider).getChunkAt(chunkx, chunkz);
+                    } else {
+                        entity.inUnloadedChunk = true; // PaperSpigot - Remove entities in unloaded chunks
+                        continue;
+                    }
+                    // PaperSpigot end
+                }
+
+                int cz = chunkz << 4;
+                int xstart = i < cx ? cx : i;
+                int xend = j < cx + 16 ? j : cx + 16;
+                int zstart = i1 < cz ? cz : i1;
+                int zend = j1 < cz + 16 ? j1 : cz + 16;
+                ChunkSection[] sections = chunk.getSections();
+
+                for (int x = xstart; x < xend; x++) {
+                    for (int z = zstart; z < zend; z++) {
+                        if (flag && flag1) {
+                            entity.h(false);
+                        } else if (!flag && !flag1) {
+                            entity.h(true);
+                        }
+
+                        // Outside of the border every block is stone
+                        if (flag1 && !worldborder.a(blockposition_mutableblockposition.c(x, 0, z))) {
+                            for (int y = ystart; y < l; y++) {
+                                if (intersects(axisalignedbb, x, y, z)) {
+                                    if (list == null) return true;
+
+                                    list.add(new AxisAlignedBB(x, y, z, x + 1.0D, y + 1.0D, z + 1.0D));
+                                    found = true;
+                                }
+                            }
+                            continue;
+                        }
+
+                        for (int y = ystart; y < yend; ) {
+                            ChunkSection section = sections[y >> 4];
+                            int sectionEnd = (y | 15) + 1 < yend ? (y | 15) + 1 : yend;
+
+                            if (section == null || section.a()) {
+                                y = sectionEnd;
+                                continue;
+                            }
+
+                            char[] ids = section.getIdArray();
+
+                            for (; y < sectionEnd; y++) {
+                                char id = ids[(y & 15) << 8 | (z & 15) << 4 | (x & 15)];
+                                byte shape = fallingSolid && de.dytanic.spigot.BlockShapes.isFallingSolid(id) ? de.dytanic.spigot.BlockShapes.FULL : de.dytanic.spigot.BlockShapes.getShape(id);
+
+                                if (shape == de.dytanic.spigot.BlockShapes.EMPTY) continue;
+
+                                if (shape == de.dytanic.spigot.BlockShapes.FULL) {
+                                    if (intersects(axisalignedbb, x, y, z)) {
+                                        if (list == null) return true;
+
+                                        list.add(new AxisAlignedBB(x, y, z, x + 1.0D, y + 1.0D, z + 1.0D));
+                                        found = true;
+                                    }
+                                    continue;
+                                }
+
+                                IBlockData block = Block.d.a(id);
+
+                                if (block == null) continue;
+
+                                if (list == null) {
+                                    if (scratch == null) scratch = Lists.newArrayListWithCapacity(2);
+
+                                    block.getBlock().a(this, blockposition_mutableblockposition.c(x, y, z), block, axisalignedbb, scratch, entity);
+                                    if (!scratch.isEmpty()) return true;
+                                } else {
+                                    int size = list.size();
+
+                                    block.getBlock().a(this, blockposition_mutableblockposition.c(x, y, z), block, axisalignedbb, list, entity);
+                                    found |= list.size() > size;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        return found;
+    }
+
+    private static boolean intersects(AxisAlignedBB axisalignedbb, int x, int y, int z) {
+        return x + 1.0D > axisalignedbb.a && x < axisalignedbb.d && y + 1.0D > axisalignedbb.b && y < axisalignedbb.e && z + 1.0D > axisalignedbb.c && z < axisalignedbb.f;
+    }
+    //Dytanic end
+
+    /* Dytanic edit - replaced by getCubes(Entity, AxisAlignedBB, List)
     public List<AxisAlignedBB> getCubes(Entity entity, AxisAlignedBB axisalignedbb) {
         ArrayList arraylist = Lists.newArrayList();
         int i = MathHelper.floor(axisalignedbb.a);
@@ -1254,6 +1456,8 @@ public abstract class World implements IBlockAccess {
         return arraylist;
     }
 
+    */
+
     public boolean a(WorldBorder worldborder, Entity entity) {
         double d0 = worldborder.b();
         double d1 = worldborder.c();
@@ -1400,7 +1604,7 @@ public abstract class World implements IBlockAccess {
 
         this.methodProfiler.c("remove");
         timings.entityRemoval.startTiming(); // Spigot
-        this.entityList.removeAll(this.g);
+        for (Entity e : this.g) this.entityList.remove(e); //Dytanic edit O(1) removal instead of removeAll
 
         int j;
         int k;
@@ -1426,6 +1630,7 @@ public abstract class World implements IBlockAccess {
         org.spigotmc.ActivationRange.activateEntities(this); // Spigot
         timings.entityTick.startTiming(); // Spigot
         guardEntityList = true; // Spigot
+        this.entityList.beginIteration(); //Dytanic
         // CraftBukkit start - Use field for loop variable
         co.aikar.timings.TimingHistory.entityTicks += this.entityList.size(); // Spigot
         int entitiesThisCycle = 0;
@@ -1474,7 +1679,7 @@ public abstract class World implements IBlockAccess {
                 }
 
                 guardEntityList = false; // Spigot
-                this.entityList.remove(this.tickPosition--); // CraftBukkit - Use field for loop variable
+                this.entityList.remove(entity); // CraftBukkit - Use field for loop variable //Dytanic edit deferred until the end of the iteration
                 guardEntityList = true; // Spigot
                 this.b(entity);
             }
@@ -1482,6 +1687,7 @@ public abstract class World implements IBlockAccess {
             this.methodProfiler.b();
         }
         guardEntityList = false; // Spigot
+        this.entityList.endIteration(); //Dytanic
 
         timings.entityTick.stopTiming(); // Spigot
         this.methodProfiler.c("blockEntities");
@@ -1497,7 +1703,13 @@ public abstract class World implements IBlockAccess {
 
         // Spigot start
         int tilesThisCycle = 0;
-        for (tileTickPosition = 0; tileTickPosition < tileEntityList.size(); tileTickPosition++) { // PaperSpigot - Disable tick limiters
+        //Dytanic start - round robin within the tile tick budget while the tick scheduler degrades tile entities
+        boolean limitTiles = MinecraftServer.getServer().tickScheduler.limitTileEntities();
+        if (limitTiles) tileLimiter.initTick();
+        else tileTickPosition = 0; // PaperSpigot - Disable tick limiters
+        if (tileTickPosition < 0) tileTickPosition = 0;
+        for (; tilesThisCycle < tileEntityList.size() && (!limitTiles || tilesThisCycle % 10 != 0 || tileLimiter.shouldContinue()); tileTickPosition++, tilesThisCycle++) {
+        //Dytanic end
             tileTickPosition = (tileTickPosition < tileEntityList.size()) ? tileTickPosition : 0;
             TileEntity tileentity = (TileEntity) this.tileEntityList.get(tileTickPosition);
             // Spigot start
@@ -2534,16 +2746,7 @@ public abstract class World implements IBlockAccess {
                 }
             }
 
-            // PaperSpigot start - Asynchronous light updates
-            if (chunk.world.paperSpigotConfig.useAsyncLighting) {
-                chunk.pendingLightUpdates.decrementAndGet();
-                if (neighbors != null) {
-                    for (Chunk neighbor : neighbors) {
-                        neighbor.pendingLightUpdates.decrementAndGet();
-                    }
-                }
-            }
-            // PaperSpigot end
+            // PaperSpigot - Asynchronous light updates, pending counters are released by the LightingEngine //Dytanic edit
             this.methodProfiler.b();
             return true;
         }
@@ -2564,34 +2767,7 @@ public abstract class World implements IBlockAccess {
             return this.c(enumskyblock, position, chunk, null);
         }
 
-        chunk.pendingLightUpdates.incrementAndGet();
-        chunk.lightUpdateTime = chunk.world.getTime();
-
-        final List<Chunk> neighbors = new ArrayList<Chunk>();
-        for (int cx = (x >> 4) - 1; cx <= (x >> 4) + 1; ++cx) {
-            for (int cz = (z >> 4) - 1; cz <= (z >> 4) + 1; ++cz) {
-                if (cx != x >> 4 && cz != z >> 4) {
-                    Chunk neighbor = this.getChunkIfLoaded(cx, cz);
-                    if (neighbor != null) {
-                        neighbor.pendingLightUpdates.incrementAndGet();
-                        neighbor.lightUpdateTime = chunk.world.getTime();
-                        neighbors.add(neighbor);
-                    }
-                }
-            }
-        }
-
-        if (!Bukkit.isPrimaryThread()) {
-            return this.c(enumskyblock, position, chunk, neighbors);
-        }
-
-        DytanicSpigot.getInstance().getTaskScheduler().schedule(new Runnable() { //Dytanic edit replace with TaskScheduler
-            @Override
-            public void run() {
-                World.this.c(enumskyblock, position, chunk, neighbors);
-            }
-        });
-        return true;
+        return this.lightingEngine.queueUpdate(enumskyblock, position, chunk); //Dytanic edit
     }
 
     public boolean a(boolean flag) {
@@ -2680,6 +2856,50 @@ public abstract class World implements IBlockAccess {
         return arraylist;
     }
 
+    //Dytanic start
+    /**
+     * @return the living items which intersect the box, looked up in the item index of the chunks. Allocates nothing if
+     * there are none.
+     */
+    public List<EntityItem> getItems(double d0, double d1, double d2, double d3, double d4, double d5) {
+        int i = MathHelper.floor((d0 - 2.0D) / 16.0D);
+        int j = MathHelper.floor((d3 + 2.0D) / 16.0D);
+        int k = MathHelper.floor((d2 - 2.0D) / 16.0D);
+        int l = MathHelper.floor((d5 + 2.0D) / 16.0D);
+        List<EntityItem> list = null;
+
+        for (int i1 = i; i1 <= j; ++i1) {
+            for (int j1 = k; j1 <= l; ++j1) {
+                if (this.isChunkLoaded(i1, j1, true)) {
+                    list = this.getChunkAt(i1, j1).a(d0, d1, d2, d3, d4, d5, list);
+                }
+            }
+        }
+
+        return list == null ? java.util.Collections.<EntityItem>emptyList() : list;
+    }
+
+    /**
+     * @return whether an entity with an inventory may intersect the box, false means there is none
+     */
+    public boolean hasInventoryEntities(double d0, double d1, double d2, double d3, double d4, double d5) {
+        int i = MathHelper.floor((d0 - 2.0D) / 16.0D);
+        int j = MathHelper.floor((d3 + 2.0D) / 16.0D);
+        int k = MathHelper.floor((d2 - 2.0D) / 16.0D);
+        int l = MathHelper.floor((d5 + 2.0D) / 16.0D);
+
+        for (int i1 = i; i1 <= j; ++i1) {
+            for (int j1 = k; j1 <= l; ++j1) {
+                if (this.isChunkLoaded(i1, j1, true) && this.getChunkAt(i1, j1).hasInventoryEntities(d1, d4)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+    //Dytanic end
+
     public <T extends Entity> T a(Class<? extends T> oclass, AxisAlignedBB axisalignedbb, T t0) {
         List list = this.a(oclass, axisalignedbb);
         Entity entity = null;
@@ -2702,7 +2922,7 @@ public abstract class World implements IBlockAccess {
     }
 
     public Entity a(int i) {
-        return (Entity) this.entitiesById.get(i);
+        return this.entityList.getById(i); //Dytanic edit
     }
 
     public void b(BlockPosition blockposition, TileEntity tileentity) {
@@ -2737,7 +2957,7 @@ public abstract class World implements IBlockAccess {
     }
 
     public void b(Collection<Entity> collection) {
-        org.spigotmc.AsyncCatcher.catchOp( "entity world add"); // Spigot
+        org.spigotmc.AsyncCatcher.catchOp( this, "entity world add"); // Spigot //Dytanic edit
         // CraftBukkit start
         // this.entityList.addAll(collection);
         Iterator iterator = collection.iterator();
@@ -32,7 +32,7 @@ public class WorldServer extends World implements IAsyncTaskHandler {
     private final PlayerChunkMap manager;
     // private final Set<NextTickListEntry> L = Sets.newHashSet(); // PAIL: Rename nextTickListHash
     private final HashTreeSet<NextTickListEntry> M = new HashTreeSet<NextTickListEntry>(); // CraftBukkit - HashTreeSet // PAIL: Rename nextTickList
-    private final Map<UUID, Entity> entitiesByUUID = Maps.newHashMap();
+    //private final Map<UUID, Entity> entitiesByUUID = Maps.newHashMap(); //Dytanic edit moved to EntityStore
     public ChunkProviderServer chunkProviderServer;
     public boolean savingDisabled;
     private boolean O;
@@ -47,6 +47,7 @@ public class WorldServer extends World implements IAsyncTaskHandler {
 
     // CraftBukkit start
     public final int dimension;
+    public de.dytanic.spigot.WorldPregenerator pregenerator; //Dytanic - main thread only
 
     // Add env and gen to constructor
     public WorldServer(MinecraftServer minecraftserver, IDataManager idatamanager, WorldData worlddata, int i, MethodProfiler methodprofiler, org.bukkit.World.Environment env, org.bukkit.generator.ChunkGenerator gen) {
@@ -60,6 +61,7 @@ public class WorldServer extends World implements IAsyncTaskHandler {
         this.manager = new PlayerChunkMap(this, spigotConfig.viewDistance); // Spigot
         this.worldProvider.a(this);
         this.chunkProvider = this.k();
+        this.pregenerator = de.dytanic.spigot.WorldPregenerator.resume(this); //Dytanic
         this.Q = ((org.bukkit.craftbukkit.CraftTravelAgent) new org.bukkit.craftbukkit.CraftTravelAgent(this).setSearchRadius(paperSpigotConfig.portalSearchRadius)); // CraftBukkit // Paper - configurable search radius
         this.B();
         this.C();
@@ -199,7 +201,6 @@ public class WorldServer extends World implements IAsyncTaskHandler {
     // CraftBukkit end
 
     public void doTick() {
-        if(MinecraftServer.getServer().defaultTick) //Dytanic edit
         super.doTick();
         if (this.getWorldData().isHardcore() && this.getDifficulty() != EnumDifficulty.HARD) {
             this.getWorldData().setDifficulty(EnumDifficulty.HARD);
@@ -216,40 +217,31 @@ public class WorldServer extends World implements IAsyncTaskHandler {
             this.e();
         }
 
-        //Dytanic start
-        if(MinecraftServer.getServer().defaultTick)
+        // CraftBukkit start - Only call spawner if we have players online and the world allows for mobs or animals
+        long time = this.worldData.getTime();
+        if (this.getGameRules().getBoolean("doMobSpawning") && this.worldData.getType() != WorldType.DEBUG_ALL_BLOCK_STATES && (this.allowMonsters || this.allowAnimals) && (this instanceof WorldServer && this.players.size() > 0)
+            && MinecraftServer.getServer().tickScheduler.shouldSpawnMobs(time)) //Dytanic edit throttle spawning while the tick is degraded
         {
-            // CraftBukkit start - Only call spawner if we have players online and the world allows for mobs or animals
-            long time = this.worldData.getTime();
-            if (this.getGameRules().getBoolean("doMobSpawning") && this.worldData.getType() != WorldType.DEBUG_ALL_BLOCK_STATES && (this.allowMonsters || this.allowAnimals) && (this instanceof WorldServer && this.players.size() > 0))
-            {
-                timings.mobSpawn.startTiming(); // Spigot
-                this.R.a(this, this.allowMonsters && (this.ticksPerMonsterSpawns != 0 && time % this.ticksPerMonsterSpawns == 0L), this.allowAnimals && (this.ticksPerAnimalSpawns != 0 && time % this.ticksPerAnimalSpawns == 0L), this.worldData.getTime() % 400L == 0L);
-                timings.mobSpawn.stopTiming(); // Spigot
-                // CraftBukkit end
-            }
+            timings.mobSpawn.startTiming(); // Spigot
+            this.R.a(this, this.allowMonsters && (this.ticksPerMonsterSpawns != 0 && time % this.ticksPerMonsterSpawns == 0L), this.allowAnimals && (this.ticksPerAnimalSpawns != 0 && time % this.ticksPerAnimalSpawns == 0L), this.worldData.getTime() % 400L == 0L);
+            timings.mobSpawn.stopTiming(); // Spigot
             // CraftBukkit end
-            timings.doChunkUnload.startTiming(); // Spigot
-            this.methodProfiler.c("chunkSource");
-            this.chunkProvider.unloadChunks();
-            int j = this.a(1.0F);
-
-            if (j != this.ab())
-            {
-                this.c(j);
-            }
         }
-        //Dytanic end
+        // CraftBukkit end
+        timings.doChunkUnload.startTiming(); // Spigot
+        this.methodProfiler.c("chunkSource");
+        this.chunkProvider.unloadChunks();
+        int j = this.a(1.0F);
 
-        //Dytanic start
-        if(MinecraftServer.getServer().defaultTick)
+        if (j != this.ab())
         {
-            this.worldData.setTime(this.worldData.getTime() + 1L);
-            if (this.getGameRules().getBoolean("doDaylightCycle")) {
-                this.worldData.setDayTime(this.worldData.getDayTime() + 1L);
-            }
+            this.c(j);
+        }
+
+        this.worldData.setTime(this.worldData.getTime() + 1L);
+        if (this.getGameRules().getBoolean("doDaylightCycle")) {
+            this.worldData.setDayTime(this.worldData.getDayTime() + 1L);
         }
-        //Dytanic end
 
         timings.doChunkUnload.stopTiming(); // Spigot
         this.methodProfiler.c("tickPending");
@@ -278,7 +270,6 @@ public class WorldServer extends World implements IAsyncTaskHandler {
         timings.doSounds.startTiming(); // Spigot
         this.ak();
 
-        if(MinecraftServer.getServer().defaultTick) //Dytanic edit
         this.getWorld().processChunkGC(); // CraftBukkit
         timings.doChunkGC.stopTiming(); // Spigot
     }
@@ -1010,30 +1001,12 @@ public class WorldServer extends World implements IAsyncTaskHandler {
 
     protected void a(Entity entity) {
         super.a(entity);
-        this.entitiesById.a(entity.getId(), entity);
-        this.entitiesByUUID.put(entity.getUniqueID(), entity);
-        Entity[] aentity = entity.aB();
-
-        if (aentity != null) {
-            for (int i = 0; i < aentity.length; ++i) {
-                this.entitiesById.a(aentity[i].getId(), aentity[i]);
-            }
-        }
-
+        this.entityList.registerLookup(entity); //Dytanic edit
     }
 
     protected void b(Entity entity) {
         super.b(entity);
-        this.entitiesById.d(entity.getId());
-        this.entitiesByUUID.remove(entity.getUniqueID());
-        Entity[] aentity = entity.aB();
-
-        if (aentity != null) {
-            for (int i = 0; i < aentity.length; ++i) {
-                this.entitiesById.d(aentity[i].getId());
-            }
-        }
-
+        this.entityList.unregisterLookup(entity); //Dytanic edit
     }
 
     public boolean strikeLightning(Entity entity) {
@@ -1210,6 +1183,7 @@ public class WorldServer extends World implements IAsyncTaskHandler {
     public void sendParticles(EntityPlayer sender, EnumParticle enumparticle, boolean flag, double d0, double d1, double d2, int i, double d3, double d4, double d5, double d6, int... aint) {
         // CraftBukkit end
         PacketPlayOutWorldParticles packetplayoutworldparticles = new PacketPlayOutWorldParticles(enumparticle, flag, (float) d0, (float) d1, (float) d2, (float) d3, (float) d4, (float) d5, (float) d6, i, aint);
+        int recipients = 0; //Dytanic
 
         for (int j = 0; j < this.players.size(); ++j) {
             EntityPlayer entityplayer = (EntityPlayer) this.players.get(j);
@@ -1218,6 +1192,7 @@ public class WorldServer extends World implements IAsyncTaskHandler {
             double d7 = blockposition.c(d0, d1, d2);
 
             if (d7 <= 256.0D || flag && d7 <= 65536.0D) {
+                if (++recipients == 2) de.dytanic.spigot.PreparedPacket.share(packetplayoutworldparticles); //Dytanic
                 entityplayer.playerConnection.sendPacket(packetplayoutworldparticles);
             }
         }
@@ -1225,7 +1200,7 @@ public class WorldServer extends World implements IAsyncTaskHandler {
     }
 
     public Entity getEntity(UUID uuid) {
-        return (Entity) this.entitiesByUUID.get(uuid);
+        return this.entityList.getByUUID(uuid); //Dytanic edit
     }
 
     public ListenableFuture<Object> postToMainThread(Runnable runnable) {
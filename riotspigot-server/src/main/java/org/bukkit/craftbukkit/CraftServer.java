@@ -14,6 +14,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.FutureTask;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -181,6 +182,8 @@ public final class CraftServer implements Server {
     //Dytanic edit register basic Spigot Commands
     {
         this.commandMap.register("spigot", new TicksPerSecondCommand("tps"));
+        this.commandMap.register("spigot", new de.dytanic.spigot.command.PregenerateCommand("pregenerate"));
+        this.commandMap.register("spigot", new de.dytanic.spigot.command.BenchmarkCommand("benchmark"));
     }
 
     public CraftServer(MinecraftServer console, PlayerList playerList) {
@@ -760,6 +763,8 @@ public final class CraftServer implements Server {
         resetRecipes();
 
         this.commandMap.register("spigot", new TicksPerSecondCommand("tps")); //Dytanic edit add registration for TPS Command
+        this.commandMap.register("spigot", new de.dytanic.spigot.command.PregenerateCommand("pregenerate")); //Dytanic
+        this.commandMap.register("spigot", new de.dytanic.spigot.command.BenchmarkCommand("benchmark")); //Dytanic
         //org.spigotmc.SpigotConfig.registerCommands(); // Spigot //Dytanic edit, remove method
         //org.github.paperspigot.PaperSpigotConfig.registerCommands(); // PaperSpigot //Dytanic edit, remove method
 
@@ -1024,6 +1029,7 @@ public final class CraftServer implements Server {
             try {
                 handle.save(true, null);
                 handle.saveLevel();
+                handle.flushSave(); //Dytanic - the region files are closed below
             } catch (ExceptionWorldConflict ex) {
                 getLogger().log(Level.SEVERE, null, ex);
             }
@@ -1891,6 +1897,28 @@ public final class CraftServer implements Server {
         {
             playerList.setMaxPlayers(maxPlayers);
         }
+
+        @Override
+        public CompletableFuture<OfflinePlayer> getOfflinePlayerAsync(final String name)
+        {
+            Validate.notNull(name, "Name cannot be null");
+            com.google.common.base.Preconditions.checkArgument(!org.apache.commons.lang.StringUtils.isBlank(name), "Name cannot be blank");
+
+            // Only fetch an online UUID in online mode
+            if (!MinecraftServer.getServer().getOnlineMode() && !org.spigotmc.SpigotConfig.bungee)
+                return CompletableFuture.completedFuture(getOfflinePlayer(new GameProfile(UUID.nameUUIDFromBytes(("OfflinePlayer:" + name).getBytes(Charsets.UTF_8)), name)));
+
+            return console.getUserCache().getProfileAsync(name).thenApply(new java.util.function.Function<GameProfile, OfflinePlayer>() {
+                @Override
+                public OfflinePlayer apply(GameProfile profile)
+                {
+                    if (profile == null)
+                        return getOfflinePlayer(new GameProfile(UUID.nameUUIDFromBytes(("OfflinePlayer:" + name).getBytes(Charsets.UTF_8)), name));
+
+                    return getOfflinePlayer(profile);
+                }
+            });
+        }
     };
 
     public DytanicServer dytanicServer()
@@ -198,7 +198,7 @@ public class CraftWorld implements World {
     }
 
     public boolean unloadChunkRequest(int x, int z, boolean safe) {
-        org.spigotmc.AsyncCatcher.catchOp( "chunk unload"); // Spigot
+        org.spigotmc.AsyncCatcher.catchOp( this.world, "chunk unload"); // Spigot //Dytanic edit
         if (safe && isChunkInUse(x, z)) {
             return false;
         }
@@ -209,7 +209,7 @@ public class CraftWorld implements World {
     }
 
     public boolean unloadChunk(int x, int z, boolean save, boolean safe) {
-        org.spigotmc.AsyncCatcher.catchOp( "chunk unload"); // Spigot
+        org.spigotmc.AsyncCatcher.catchOp( this.world, "chunk unload"); // Spigot //Dytanic edit
         if (safe && isChunkInUse(x, z)) {
             return false;
         }
@@ -226,20 +226,21 @@ public class CraftWorld implements World {
 
         chunk.removeEntities(); // Always remove entities - even if discarding, need to get them out of world table
 
+        /* Dytanic edit
         if (save && !(chunk instanceof EmptyChunk)) {
             world.chunkProviderServer.saveChunk(chunk);
             world.chunkProviderServer.saveChunkNOP(chunk);
         }
+        */
 
         world.chunkProviderServer.unloadQueue.remove(x, z);
 
         //Dytanic start
         world.chunkProviderServer.chunks.remove(LongHash.toLong(x, z));
 
-        try
-        {
-            chunk.finalize();
-        } catch (Throwable throwable) {}
+        if (!(chunk instanceof EmptyChunk)) {
+            world.chunkProviderServer.saveUnloadedChunk(chunk, save);
+        }
         //Dytanic end
 
         return true;
@@ -290,7 +291,7 @@ public class CraftWorld implements World {
     }
 
     public boolean loadChunk(int x, int z, boolean generate) {
-        org.spigotmc.AsyncCatcher.catchOp( "chunk load"); // Spigot
+        org.spigotmc.AsyncCatcher.catchOp( this.world, "chunk load"); // Spigot //Dytanic edit
         chunkLoadCount++;
         if (generate) {
             // Use the default variant of loadChunk when generate == true.
@@ -652,6 +653,7 @@ public class CraftWorld implements World {
             if (chunk != null) {
                 byte[] biomevals = chunk.getBiomeIndex();
                 biomevals[((z & 0xF) << 4) | (x & 0xF)] = (byte)bb.id;
+                ++chunk.biomeVersion; //Dytanic
             }
         }
     }
@@ -182,6 +182,12 @@ public class Main {
 
                 useJline = !(jline_UnsupportedTerminal).equals(System.getProperty(jline_terminal)) && !System.getProperty("os.name").toLowerCase().contains("windows");
 
+                //Dytanic start - the keep alive cache of the JDK holds 5 idle connections per host unless configured, it reads the property once when it is used first
+                if (System.getProperty("http.maxConnections") == null) {
+                    System.setProperty("http.maxConnections", String.valueOf(com.mojang.authlib.yggdrasil.YggdrasilMinecraftSessionService.SESSION_THREADS));
+                }
+                //Dytanic end
+
                 if (options.has("nojline")) {
                     System.setProperty("user.language", "en");
                     useJline = false;
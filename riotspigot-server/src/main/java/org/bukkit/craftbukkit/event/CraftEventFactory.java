@@ -47,6 +47,7 @@ import org.bukkit.entity.ThrownExpBottle;
 import org.bukkit.entity.ThrownPotion;
 import org.bukkit.event.Cancellable;
 import org.bukkit.event.Event;
+import org.bukkit.event.HandlerList;
 import org.bukkit.event.block.*;
 import org.bukkit.event.block.BlockIgniteEvent.IgniteCause;
 import org.bukkit.event.entity.*;
@@ -66,6 +67,47 @@ public class CraftEventFactory {
     public static final DamageSource POISON = CraftDamageSource.copyOf(DamageSource.MAGIC);
     public static org.bukkit.block.Block blockDamage; // For use in EntityDamageByBlockEvent
     public static Entity entityDamage; // For use in EntityDamageByEntityEvent
+    //Dytanic start
+    private static final java.util.concurrent.atomic.LongAdder firedEvents = new java.util.concurrent.atomic.LongAdder();
+    private static final java.util.concurrent.atomic.LongAdder skippedEvents = new java.util.concurrent.atomic.LongAdder();
+    private static final EntityChangeBlockEvent UNCALLED_CHANGE_BLOCK = uncalledChangeBlockEvent(false);
+    private static final EntityChangeBlockEvent UNCALLED_CHANGE_BLOCK_CANCELLED = uncalledChangeBlockEvent(true);
+
+    /**
+     * Checks whether anybody listens to the events of the handler list, hot call sites don't build the event otherwise.
+     */
+    public static boolean shouldFire(HandlerList handlers) {
+        if (handlers.hasListeners()) {
+            firedEvents.increment();
+            return true;
+        }
+
+        skippedEvents.increment();
+        return false;
+    }
+
+    /**
+     * Adds the fired and skipped events since the last tick to the timings, called by the main thread.
+     */
+    public static void recordTimings() {
+        co.aikar.timings.TimingHistory.eventsFiredTicks += firedEvents.sumThenReset();
+        co.aikar.timings.TimingHistory.eventsSkippedTicks += skippedEvents.sumThenReset();
+    }
+
+    // Returned while nobody listens, the callers only read the cancelled state
+    private static EntityChangeBlockEvent uncalledChangeBlockEvent(final boolean cancelled) {
+        return new EntityChangeBlockEvent(null, null, Material.AIR, (byte) 0) {
+            @Override
+            public boolean isCancelled() {
+                return cancelled;
+            }
+
+            @Override
+            public void setCancelled(boolean cancel) {
+            }
+        };
+    }
+    //Dytanic end
 
     // helper methods
     private static boolean canBuild(CraftWorld world, Player player, int x, int z) {
@@ -666,10 +708,15 @@ public class CraftEventFactory {
     }
 
     public static EntityChangeBlockEvent callEntityChangeBlockEvent(Entity entity, int x, int y, int z, net.minecraft.server.Block type, int data) {
+        if (!shouldFire(EntityChangeBlockEvent.getHandlerList())) return UNCALLED_CHANGE_BLOCK; //Dytanic - checked once, without the CraftBlock
         Block block = entity.world.getWorld().getBlockAt(x, y, z);
         Material material = CraftMagicNumbers.getMaterial(type);
 
-        return callEntityChangeBlockEvent(entity.getBukkitEntity(), block, material, data);
+        //Dytanic start - built here, the overload would check the listeners again
+        EntityChangeBlockEvent event = new EntityChangeBlockEvent(entity.getBukkitEntity(), block, material, (byte) data);
+        entity.getBukkitEntity().getServer().getPluginManager().callEvent(event);
+        return event;
+        //Dytanic end
     }
 
     public static EntityChangeBlockEvent callEntityChangeBlockEvent(org.bukkit.entity.Entity entity, Block block, Material material, int data) {
@@ -677,6 +724,7 @@ public class CraftEventFactory {
     }
 
     public static EntityChangeBlockEvent callEntityChangeBlockEvent(org.bukkit.entity.Entity entity, Block block, Material material, int data, boolean cancelled) {
+        if (!shouldFire(EntityChangeBlockEvent.getHandlerList())) return cancelled ? UNCALLED_CHANGE_BLOCK_CANCELLED : UNCALLED_CHANGE_BLOCK; //Dytanic
         EntityChangeBlockEvent event = new EntityChangeBlockEvent(entity, block, material, (byte) data);
         event.setCancelled(cancelled);
         entity.getServer().getPluginManager().callEvent(event);
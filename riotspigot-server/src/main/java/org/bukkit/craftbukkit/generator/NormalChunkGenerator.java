@@ -16,6 +16,12 @@ public class NormalChunkGenerator extends InternalChunkGenerator {
         provider = world.worldProvider.getChunkProvider();
     }
 
+    //Dytanic start
+    public IChunkProvider getProvider() {
+        return provider;
+    }
+    //Dytanic end
+
     @Override
     public byte[] generate(org.bukkit.World world, Random random, int x, int z) {
         throw new UnsupportedOperationException("Not supported.");
@@ -0,0 +1,166 @@
+package org.bukkit.craftbukkit.scheduler;
+
+import co.aikar.timings.SpigotTimings;
+import co.aikar.timings.Timing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.bukkit.plugin.Plugin;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Dytanic - runs the async tasks of all plugins on a fixed amount of named threads. Every plugin has its own queue
+ * and may only occupy up to its quota of the threads at once, so a plugin which floods the scheduler only delays its
+ * own tasks. The executor never holds more tasks than the quotas of all plugins allow.
+ */
+class CraftAsyncPool {
+
+    private final ThreadPoolExecutor executor;
+    private final int quota;
+    private final ConcurrentHashMap<Plugin, PluginQueue> queues = new ConcurrentHashMap<Plugin, PluginQueue>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    CraftAsyncPool(int threads, int quota) {
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactoryBuilder().setNameFormat("Craft Scheduler Thread - %1$d").setDaemon(true).build());
+        this.executor.allowCoreThreadTimeOut(true);
+        this.quota = Math.min(threads, Math.max(1, quota));
+    }
+
+    void execute(Plugin plugin, Runnable task) {
+        PluginQueue queue = queues.get(plugin);
+
+        if (queue == null) {
+            PluginQueue created = new PluginQueue(plugin);
+
+            queue = queues.putIfAbsent(plugin, created);
+            if (queue == null) {
+                queue = created;
+            }
+        }
+
+        queue.tasks.add(new QueuedTask(task));
+        queue.queued.incrementAndGet();
+        queued.incrementAndGet();
+        drain(queue);
+    }
+
+    private void drain(final PluginQueue queue) {
+        while (!queue.tasks.isEmpty()) {
+            int running = queue.running.get();
+
+            // A running task of the plugin drains the queue again when it finished
+            if (running >= quota) {
+                return;
+            }
+
+            if (!queue.running.compareAndSet(running, running + 1)) {
+                continue;
+            }
+
+            final QueuedTask task = queue.tasks.poll();
+
+            if (task == null) {
+                queue.running.decrementAndGet();
+                continue;
+            }
+
+            queue.queued.decrementAndGet();
+            queued.decrementAndGet();
+            executor.execute(new Runnable() {
+                public void run() {
+                    long start = System.nanoTime();
+
+                    queue.waitNanos.addAndGet(start - task.queuedAt);
+                    try {
+                        task.task.run();
+                    } finally {
+                        queue.runNanos.addAndGet(System.nanoTime() - start);
+                        queue.executed.incrementAndGet();
+                        queue.running.decrementAndGet();
+                        drain(queue);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Adds the run and queue wait time of every plugin since the last call to its timings, called by the main thread.
+     */
+    void recordTimings() {
+        for (PluginQueue queue : queues.values()) {
+            if (queue.timings == null) {
+                queue.timings = SpigotTimings.getPluginAsyncTimings(queue.plugin);
+            }
+
+            SpigotTimings.record(queue.timings[0], queue.runNanos.getAndSet(0L));
+            SpigotTimings.record(queue.timings[1], queue.waitNanos.getAndSet(0L));
+        }
+    }
+
+    /**
+     * @return the amount of async tasks of all plugins which wait for a thread
+     */
+    int getQueued() {
+        return queued.get();
+    }
+
+    int getQueued(Plugin plugin) {
+        PluginQueue queue = queues.get(plugin);
+
+        return queue != null ? queue.queued.get() : 0;
+    }
+
+    int getRunning(Plugin plugin) {
+        PluginQueue queue = queues.get(plugin);
+
+        return queue != null ? queue.running.get() : 0;
+    }
+
+    long getExecuted(Plugin plugin) {
+        PluginQueue queue = queues.get(plugin);
+
+        return queue != null ? queue.executed.get() : 0L;
+    }
+
+    int getThreads() {
+        return executor.getMaximumPoolSize();
+    }
+
+    int getQuota() {
+        return quota;
+    }
+
+    private static class PluginQueue {
+
+        private final Plugin plugin;
+        private final Queue<QueuedTask> tasks = new ConcurrentLinkedQueue<QueuedTask>();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicLong executed = new AtomicLong();
+        private final AtomicLong runNanos = new AtomicLong();
+        private final AtomicLong waitNanos = new AtomicLong();
+        private Timing[] timings; // Main thread only
+
+        private PluginQueue(Plugin plugin) {
+            this.plugin = plugin;
+        }
+    }
+
+    private static class QueuedTask {
+
+        private final Runnable task;
+        private final long queuedAt = System.nanoTime();
+
+        private QueuedTask(Runnable task) {
+            this.task = task;
+        }
+    }
+}
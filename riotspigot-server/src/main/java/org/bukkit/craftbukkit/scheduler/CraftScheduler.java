@@ -1,10 +1,8 @@
 package org.bukkit.craftbukkit.scheduler;
 
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
-import java.util.PriorityQueue;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
@@ -56,18 +54,14 @@ public class CraftScheduler implements BukkitScheduler {
     /**
      * Main thread logic only
      */
-    private final PriorityQueue<CraftTask> pending = new PriorityQueue<CraftTask>(10,
-            new Comparator<CraftTask>() {
-                public int compare(final CraftTask o1, final CraftTask o2) {
-                    return (int) (o1.getNextRun() - o2.getNextRun());
-                }
-            });
+    private final CraftTimerWheel pending = new CraftTimerWheel(-1); //Dytanic edit - constant time insert and cancel instead of a PriorityQueue
     /**
      * Main thread logic only
      */
     private final List<CraftTask> temp = new ArrayList<CraftTask>();
 
-    private final Executor executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    //private final Executor executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()); //Dytanic edit
+    private volatile CraftAsyncPool asyncPool; //Dytanic - created with the first async task, the SpigotConfig isn't loaded before
 
     /**
      * These are tasks that are currently active. It's provided for 'viewing' the current state.
@@ -171,9 +165,22 @@ public class CraftScheduler implements BukkitScheduler {
                 new Runnable() {
                     public void run() {
                         if (!check(CraftScheduler.this.temp)) {
-                            check(CraftScheduler.this.pending);
+                            checkPending(); //Dytanic edit
                         }
                     }
+                    //Dytanic start - every pending task is in the runners
+                    private boolean checkPending() {
+                        final CraftTask task = runners.get(taskId);
+                        if (task == null || !CraftScheduler.this.pending.remove(task)) {
+                            return false;
+                        }
+                        task.cancel0();
+                        if (task.isSync()) {
+                            runners.remove(taskId);
+                        }
+                        return true;
+                    }
+                    //Dytanic end
                     private boolean check(final Iterable<CraftTask> collection) {
                         final Iterator<CraftTask> tasks = collection.iterator();
                         while (tasks.hasNext()) {
@@ -205,7 +212,7 @@ public class CraftScheduler implements BukkitScheduler {
         final CraftTask task = new CraftTask(
                 new Runnable() {
                     public void run() {
-                        check(CraftScheduler.this.pending);
+                        check(CraftScheduler.this.pending.getTasks()); //Dytanic edit
                         check(CraftScheduler.this.temp);
                     }
                     void check(final Iterable<CraftTask> collection) {
@@ -215,6 +222,7 @@ public class CraftScheduler implements BukkitScheduler {
                             if (task.getOwner().equals(plugin)) {
                                 task.cancel0();
                                 tasks.remove();
+                                CraftScheduler.this.pending.remove(task); //Dytanic
                                 if (task.isSync()) {
                                     runners.remove(task.getTaskId());
                                 }
@@ -337,8 +345,9 @@ public class CraftScheduler implements BukkitScheduler {
         this.currentTick = currentTick;
         final List<CraftTask> temp = this.temp;
         parsePending();
-        while (isReady(currentTick)) {
-            final CraftTask task = pending.remove();
+        pending.advance(currentTick); //Dytanic
+        CraftTask task; //Dytanic
+        while ((task = pending.poll()) != null) { //Dytanic edit
             if (task.getPeriod() < -1l) {
                 if (task.isSync()) {
                     runners.remove(task.getTaskId(), task);
@@ -367,7 +376,7 @@ public class CraftScheduler implements BukkitScheduler {
                 parsePending();
             } else {
                 debugTail = debugTail.setNext(new CraftAsyncDebugger(currentTick + RECENT_TICKS, task.getOwner(), task.getTaskClass()));
-                executor.execute(new ServerSchedulerReportingWrapper(task)); // Paper
+                getAsyncPool().execute(task.getOwner(), new ServerSchedulerReportingWrapper(task)); // Paper //Dytanic edit
                 // We don't need to parse pending
                 // (async tasks must live with race-conditions if they attempt to cancel between these few lines of code)
             }
@@ -379,11 +388,69 @@ public class CraftScheduler implements BukkitScheduler {
                 runners.remove(task.getTaskId());
             }
         }
-        pending.addAll(temp);
+        //Dytanic start
+        for (int i = 0; i < temp.size(); i++) {
+            pending.add(temp.get(i));
+        }
+        //Dytanic end
         temp.clear();
         debugHead = debugHead.getNextHead(currentTick);
+        //Dytanic start
+        if (asyncPool != null) {
+            asyncPool.recordTimings();
+        }
+        //Dytanic end
     }
 
+    //Dytanic start
+    private CraftAsyncPool getAsyncPool() {
+        if (asyncPool == null) {
+            synchronized (this) {
+                if (asyncPool == null) {
+                    asyncPool = new CraftAsyncPool(org.spigotmc.SpigotConfig.schedulerAsyncThreads, org.spigotmc.SpigotConfig.schedulerAsyncPluginQuota);
+                }
+            }
+        }
+        return asyncPool;
+    }
+
+    /**
+     * @return the amount of async tasks of all plugins which wait for a thread
+     */
+    public int getAsyncQueued() {
+        return asyncPool != null ? asyncPool.getQueued() : 0;
+    }
+
+    /**
+     * @return the amount of async tasks of the plugin which wait for a thread
+     */
+    public int getAsyncQueued(Plugin plugin) {
+        return asyncPool != null ? asyncPool.getQueued(plugin) : 0;
+    }
+
+    /**
+     * @return the amount of async tasks of the plugin which run right now
+     */
+    public int getAsyncRunning(Plugin plugin) {
+        return asyncPool != null ? asyncPool.getRunning(plugin) : 0;
+    }
+
+    /**
+     * @return the amount of async task runs of the plugin
+     */
+    public long getAsyncExecuted(Plugin plugin) {
+        return asyncPool != null ? asyncPool.getExecuted(plugin) : 0L;
+    }
+
+    public int getAsyncThreads() {
+        return getAsyncPool().getThreads();
+    }
+
+    public int getAsyncPluginQuota() {
+        return getAsyncPool().getQuota();
+    }
+    //Dytanic end
+
     private void addTask(final CraftTask task) {
         final AtomicReference<CraftTask> tail = this.tail;
         CraftTask tailTask = tail.get();
@@ -432,10 +499,6 @@ public class CraftScheduler implements BukkitScheduler {
         this.head = lastTask;
     }
 
-    private boolean isReady(final int currentTick) {
-        return !pending.isEmpty() && pending.peek().getNextRun() <= currentTick;
-    }
-
     @Override
     public String toString() {
         int debugTick = currentTick;
@@ -24,6 +24,11 @@ public class CraftTask implements BukkitTask, Runnable { // Spigot
     public Timing timings; // Spigot
     private final Plugin plugin;
     private final int id;
+    //Dytanic start - main thread only, links the task into its slot of the CraftTimerWheel
+    CraftTimerWheel.Slot wheelSlot;
+    CraftTask wheelPrev;
+    CraftTask wheelNext;
+    //Dytanic end
 
     CraftTask() {
         this(null, null, -1, -1);
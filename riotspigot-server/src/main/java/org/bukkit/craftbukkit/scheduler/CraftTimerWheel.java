@@ -0,0 +1,198 @@
+package org.bukkit.craftbukkit.scheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Dytanic - hierarchical timing wheel for the pending tasks of the scheduler, main thread only. Four levels of 64
+ * slots cover 64, 4096, 262144 and 16777216 ticks, tasks which are due later wait in an overflow list. Adding and
+ * removing a task is constant time, tasks are linked into their slot through {@link CraftTask#wheelNext}. Due
+ * tasks are handed out in the order of their next run and in the order they were added for the same tick.
+ */
+class CraftTimerWheel {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    private final Slot[][] wheel = new Slot[LEVELS][SLOTS];
+    private final Slot overflow = new Slot();
+    private final Slot due = new Slot();
+    /**
+     * All tasks up to this tick were moved to {@link #due}
+     */
+    private long tick;
+    private int size;
+
+    CraftTimerWheel(long tick) {
+        this.tick = tick;
+        for (Slot[] level : wheel) {
+            for (int i = 0; i < SLOTS; i++) {
+                level[i] = new Slot();
+            }
+        }
+    }
+
+    void add(CraftTask task) {
+        long when = task.getNextRun();
+        long delta = when - tick;
+
+        if (delta <= 0) {
+            due.add(task);
+        } else if (delta >= 1L << SLOT_BITS * LEVELS) {
+            overflow.add(task);
+        } else {
+            int level = 0;
+
+            while (delta >= 1L << SLOT_BITS * (level + 1)) {
+                level++;
+            }
+
+            wheel[level][(int) (when >> SLOT_BITS * level) & MASK].add(task);
+        }
+        size++;
+    }
+
+    /**
+     * @return false if the task wasn't in the wheel
+     */
+    boolean remove(CraftTask task) {
+        if (task.wheelSlot == null) {
+            return false;
+        }
+
+        task.wheelSlot.remove(task);
+        size--;
+        return true;
+    }
+
+    /**
+     * Moves all tasks which are due up to the tick to the due list.
+     */
+    void advance(long currentTick) {
+        while (tick < currentTick) {
+            if (size == due.size) {
+                // Nothing is waiting in the wheel, the slots don't have to be visited
+                tick = currentTick;
+                return;
+            }
+
+            tick++;
+            for (int level = 1; level < LEVELS && (tick & (1L << SLOT_BITS * level) - 1) == 0; level++) {
+                if (level == LEVELS - 1 && (tick & (1L << SLOT_BITS * LEVELS) - 1) == 0) {
+                    cascade(overflow);
+                }
+                cascade(wheel[level][(int) (tick >> SLOT_BITS * level) & MASK]);
+            }
+
+            Slot slot = wheel[0][(int) tick & MASK];
+
+            for (CraftTask task = slot.head; task != null; task = slot.head) {
+                slot.remove(task);
+                due.add(task);
+            }
+        }
+    }
+
+    /**
+     * @return the next due task, or null
+     */
+    CraftTask poll() {
+        CraftTask task = due.head;
+
+        if (task != null) {
+            due.remove(task);
+            size--;
+        }
+        return task;
+    }
+
+    /**
+     * @return all tasks in the wheel, in no particular order
+     */
+    List<CraftTask> getTasks() {
+        List<CraftTask> tasks = new ArrayList<CraftTask>(size);
+
+        collect(due, tasks);
+        collect(overflow, tasks);
+        for (Slot[] level : wheel) {
+            for (Slot slot : level) {
+                collect(slot, tasks);
+            }
+        }
+        return tasks;
+    }
+
+    void clear() {
+        for (CraftTask task : getTasks()) {
+            remove(task);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void cascade(Slot slot) {
+        // Detached first, tasks of the overflow list may be added to it again
+        CraftTask task = slot.head;
+
+        slot.head = null;
+        slot.tail = null;
+        slot.size = 0;
+        while (task != null) {
+            CraftTask next = task.wheelNext;
+
+            task.wheelSlot = null;
+            task.wheelPrev = null;
+            task.wheelNext = null;
+            size--;
+            add(task);
+            task = next;
+        }
+    }
+
+    private static void collect(Slot slot, List<CraftTask> tasks) {
+        for (CraftTask task = slot.head; task != null; task = task.wheelNext) {
+            tasks.add(task);
+        }
+    }
+
+    static class Slot {
+
+        private CraftTask head;
+        private CraftTask tail;
+        private int size;
+
+        void add(CraftTask task) {
+            task.wheelSlot = this;
+            task.wheelPrev = tail;
+            task.wheelNext = null;
+            if (tail == null) {
+                head = task;
+            } else {
+                tail.wheelNext = task;
+            }
+            tail = task;
+            size++;
+        }
+
+        void remove(CraftTask task) {
+            if (task.wheelPrev == null) {
+                head = task.wheelNext;
+            } else {
+                task.wheelPrev.wheelNext = task.wheelNext;
+            }
+            if (task.wheelNext == null) {
+                tail = task.wheelPrev;
+            } else {
+                task.wheelNext.wheelPrev = task.wheelPrev;
+            }
+            task.wheelSlot = null;
+            task.wheelPrev = null;
+            task.wheelNext = null;
+            size--;
+        }
+    }
+}
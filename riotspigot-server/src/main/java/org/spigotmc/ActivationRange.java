@@ -37,10 +37,12 @@ import co.aikar.timings.SpigotTimings;
 public class ActivationRange
 {
 
+    /* Dytanic edit the boxes are locals of activateEntities, worlds may be ticked in parallel
     static AxisAlignedBB maxBB = AxisAlignedBB.a( 0, 0, 0, 0, 0, 0 );
     static AxisAlignedBB miscBB = AxisAlignedBB.a( 0, 0, 0, 0, 0, 0 );
     static AxisAlignedBB animalBB = AxisAlignedBB.a( 0, 0, 0, 0, 0, 0 );
     static AxisAlignedBB monsterBB = AxisAlignedBB.a( 0, 0, 0, 0, 0, 0 );
+    */
 
     /**
      * Initializes an entities type on construction to specify what group this
@@ -102,9 +104,12 @@ public class ActivationRange
     public static void activateEntities(World world)
     {
         SpigotTimings.entityActivationCheckTimer.startTiming();
-        final int miscActivationRange = world.spigotConfig.miscActivationRange;
-        final int animalActivationRange = world.spigotConfig.animalActivationRange;
-        final int monsterActivationRange = world.spigotConfig.monsterActivationRange;
+        //Dytanic start - shrink the ranges while the tick scheduler degrades entity activation
+        final de.dytanic.spigot.AdaptiveTickScheduler tickScheduler = MinecraftServer.getServer().tickScheduler;
+        final int miscActivationRange = tickScheduler.scaleActivationRange( world.spigotConfig.miscActivationRange );
+        final int animalActivationRange = tickScheduler.scaleActivationRange( world.spigotConfig.animalActivationRange );
+        final int monsterActivationRange = tickScheduler.scaleActivationRange( world.spigotConfig.monsterActivationRange );
+        //Dytanic end
 
         int maxRange = Math.max( monsterActivationRange, animalActivationRange );
         maxRange = Math.max( maxRange, miscActivationRange );
@@ -114,10 +119,10 @@ public class ActivationRange
         {
 
             player.activatedTick = MinecraftServer.currentTick;
-            maxBB = player.getBoundingBox().grow( maxRange, 256, maxRange );
-            miscBB = player.getBoundingBox().grow( miscActivationRange, 256, miscActivationRange );
-            animalBB = player.getBoundingBox().grow( animalActivationRange, 256, animalActivationRange );
-            monsterBB = player.getBoundingBox().grow( monsterActivationRange, 256, monsterActivationRange );
+            AxisAlignedBB maxBB = player.getBoundingBox().grow( maxRange, 256, maxRange ); //Dytanic edit
+            AxisAlignedBB miscBB = player.getBoundingBox().grow( miscActivationRange, 256, miscActivationRange ); //Dytanic edit
+            AxisAlignedBB animalBB = player.getBoundingBox().grow( animalActivationRange, 256, animalActivationRange ); //Dytanic edit
+            AxisAlignedBB monsterBB = player.getBoundingBox().grow( monsterActivationRange, 256, monsterActivationRange ); //Dytanic edit
 
             int i = MathHelper.floor( maxBB.a / 16.0D );
             int j = MathHelper.floor( maxBB.d / 16.0D );
@@ -130,7 +135,7 @@ public class ActivationRange
                 {
                     if ( world.getWorld().isChunkLoaded( i1, j1 ) )
                     {
-                        activateChunkEntities( world.getChunkAt( i1, j1 ) );
+                        activateChunkEntities( world.getChunkAt( i1, j1 ), miscBB, animalBB, monsterBB ); //Dytanic edit
                     }
                 }
             }
@@ -143,7 +148,7 @@ public class ActivationRange
      *
      * @param chunk
      */
-    private static void activateChunkEntities(Chunk chunk)
+    private static void activateChunkEntities(Chunk chunk, AxisAlignedBB miscBB, AxisAlignedBB animalBB, AxisAlignedBB monsterBB) //Dytanic edit
     {
         for ( List<Entity> slice : chunk.entitySlices )
         {
@@ -1,5 +1,14 @@
 package org.spigotmc;
 
+import de.dytanic.spigot.WorldTickPool;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.World;
+import net.minecraft.server.WorldServer;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 public class AsyncCatcher
 {
 
@@ -7,13 +16,53 @@ public class AsyncCatcher
 
     public static void catchOp(String reason)
     {
-        //Dytanic start
-        /*
-        if ( enabled && Thread.currentThread() != MinecraftServer.getServer().primaryThread )
+        //Dytanic start - the world tick threads are tick threads as well
+        if ( enabled && Thread.currentThread() != MinecraftServer.getServer().primaryThread && !WorldTickPool.isWorldTickThread() )
         {
             throw new IllegalStateException( "Asynchronous " + reason + "!" );
         }
-        */
         //Dytanic end
     }
+
+    //Dytanic start
+    private static final Set<String> reportedForeignAccess = Collections.newSetFromMap( new ConcurrentHashMap<String, Boolean>() );
+
+    /**
+     * Validates the operation against the thread which owns the world, which is the world tick thread while the world
+     * is ticked in parallel and the main thread otherwise. Plugin code runs on the main thread and the moves between
+     * worlds are handed off to it, so an access of a world tick thread to another world is a bug of the server. It is
+     * reported once per reason instead of thrown, throwing would end the tick of the world.
+     */
+    public static void catchOp(World world, String reason)
+    {
+        if ( isForeignWorld( world ) )
+        {
+            if ( reportedForeignAccess.add( reason ) )
+            {
+                MinecraftServer.LOGGER.warn( "Cross-world " + reason + " in world " + world.getWorldData().getName() + " from the world tick thread of "
+                        + WorldTickPool.currentWorld().getWorldData().getName() + ", please report this", new Throwable() );
+            }
+        } else if ( enabled && !isOwningThread( world ) )
+        {
+            throw new IllegalStateException( "Asynchronous " + reason + " in world " + world.getWorldData().getName() + "!" );
+        }
+    }
+
+    /**
+     * @return true if the current thread ticks another world
+     */
+    public static boolean isForeignWorld(World world)
+    {
+        WorldServer current = WorldTickPool.currentWorld();
+
+        return current != null && current != world;
+    }
+
+    public static boolean isOwningThread(World world)
+    {
+        WorldServer current = WorldTickPool.currentWorld();
+
+        return current != null ? current == world : Thread.currentThread() == MinecraftServer.getServer().primaryThread;
+    }
+    //Dytanic end
 }
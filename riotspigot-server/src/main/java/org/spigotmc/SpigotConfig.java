@@ -350,6 +350,100 @@ public class SpigotConfig
     }*/
     //Dytanic end
     
+    public static int chunkLoadQueueMaxTime;
+    private static void chunkLoadQueueMaxTime()
+    {
+        chunkLoadQueueMaxTime = getInt( "settings.chunk-load-queue.max-tick-time", 10 );
+    }
+
+    public static boolean adaptiveTickEnabled;
+    public static int adaptiveTickDegradeAt;
+    public static int adaptiveTickRecoverAt;
+    public static int adaptiveTickLevelChangeTicks;
+    public static int adaptiveTickSpawnInterval;
+    public static int adaptiveTickTileMaxTime;
+    public static double adaptiveTickActivationRangeScale;
+    private static void adaptiveTick()
+    {
+        adaptiveTickEnabled = getBoolean( "settings.adaptive-tick.enabled", true );
+        adaptiveTickDegradeAt = getInt( "settings.adaptive-tick.degrade-at-percent", 90 );
+        adaptiveTickRecoverAt = getInt( "settings.adaptive-tick.recover-at-percent", 70 );
+        adaptiveTickLevelChangeTicks = Math.max( 1, getInt( "settings.adaptive-tick.level-change-ticks", 100 ) );
+        adaptiveTickSpawnInterval = Math.max( 1, getInt( "settings.adaptive-tick.spawn-interval", 2 ) );
+        adaptiveTickTileMaxTime = getInt( "settings.adaptive-tick.tile-max-tick-time", 10 );
+        adaptiveTickActivationRangeScale = getDouble( "settings.adaptive-tick.activation-range-scale", 0.5D );
+    }
+
+    // Dytanic - experimental and off by default, the timings are not thread-safe
+    public static boolean parallelWorldTicking;
+    public static int parallelWorldTickingThreads;
+    private static void parallelWorldTicking()
+    {
+        parallelWorldTicking = getBoolean( "settings.parallel-world-ticking.enabled", false );
+        parallelWorldTickingThreads = getInt( "settings.parallel-world-ticking.threads", 0 );
+        if ( parallelWorldTickingThreads <= 0 )
+        {
+            parallelWorldTickingThreads = Runtime.getRuntime().availableProcessors();
+        }
+    }
+
+    public static boolean chunkPacketCacheEnabled;
+    public static int chunkPacketCacheSize;
+    public static int chunkPacketCacheBulkSize;
+    private static void chunkPacketCache()
+    {
+        chunkPacketCacheEnabled = getBoolean( "settings.chunk-packet-cache.enabled", true );
+        chunkPacketCacheSize = Math.max( 1, getInt( "settings.chunk-packet-cache.size", 512 ) );
+        chunkPacketCacheBulkSize = Math.max( 1, getInt( "settings.chunk-packet-cache.bulk-size", 64 ) );
+    }
+
+    public static int regionFileCacheSize;
+    private static void regionFileCacheSize()
+    {
+        regionFileCacheSize = Math.max( 1, getInt( "settings.region-file-cache-size", 256 ) );
+    }
+
+    public static int chunkSaveThreads;
+    private static void chunkSaveThreads()
+    {
+        chunkSaveThreads = Math.max( 1, getInt( "settings.chunk-save.threads", 2 ) );
+    }
+
+    public static boolean packetBatching;
+    public static int packetBatchMaxPackets;
+    public static int packetBatchFlushBytes;
+    private static void packetBatching()
+    {
+        packetBatching = getBoolean( "settings.packet-batching.enabled", true );
+        packetBatchMaxPackets = Math.max( 1, getInt( "settings.packet-batching.max-packets", 512 ) );
+        packetBatchFlushBytes = Math.max( 8192, getInt( "settings.packet-batching.flush-bytes", 65536 ) );
+    }
+
+    public static boolean sharedBroadcastPackets;
+    private static void sharedBroadcastPackets()
+    {
+        sharedBroadcastPackets = getBoolean( "settings.shared-broadcast-packets", true );
+    }
+
+    public static boolean entityTrackerGrid;
+    private static void entityTrackerGrid()
+    {
+        entityTrackerGrid = getBoolean( "settings.entity-tracker-grid", true );
+    }
+
+    public static int schedulerAsyncThreads;
+    public static int schedulerAsyncPluginQuota;
+    private static void schedulerAsync()
+    {
+        schedulerAsyncThreads = Math.max( 1, getInt( "settings.scheduler.async-threads", Math.max( 4, Runtime.getRuntime().availableProcessors() ) ) );
+        // 0 lets a single plugin use three quarters of the threads
+        schedulerAsyncPluginQuota = getInt( "settings.scheduler.async-plugin-quota", 0 );
+        if ( schedulerAsyncPluginQuota <= 0 )
+        {
+            schedulerAsyncPluginQuota = Math.max( 1, schedulerAsyncThreads * 3 / 4 );
+        }
+    }
+
     public static int userCacheCap;
     private static void userCacheCap()
     {
@@ -362,6 +456,30 @@ public class SpigotConfig
         saveUserCacheOnStopOnly = getBoolean( "settings.save-user-cache-on-stop-only", false );
     }
 
+    public static int chunkGenerationThreads;
+    private static void chunkGenerationThreads()
+    {
+        // 0 generates new chunks on the main thread
+        chunkGenerationThreads = getInt( "settings.chunk-generation.threads", Math.max( 1, Runtime.getRuntime().availableProcessors() / 2 ) );
+    }
+
+    public static double pregeneratorTpsFloor;
+    public static int pregeneratorMaxTime;
+    private static void pregenerator()
+    {
+        pregeneratorTpsFloor = getDouble( "settings.pregenerator.tps-floor", 18.0D );
+        pregeneratorMaxTime = getInt( "settings.pregenerator.max-tick-time", 10 );
+    }
+
+    public static int chunkUnloadMaxTime;
+    public static int chunkPoolSize;
+    private static void chunkUnload()
+    {
+        chunkUnloadMaxTime = getInt( "settings.chunk-unload.max-tick-time", 5 );
+        // Sections and entity slices each, a pooled section keeps about 12KB
+        chunkPoolSize = getInt( "settings.chunk-unload.pool-size", 1024 );
+    }
+
     public static int intCacheLimit;
     private static void intCacheLimit()
     {
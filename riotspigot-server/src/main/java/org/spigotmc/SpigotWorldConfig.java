@@ -171,6 +171,7 @@ public class SpigotWorldConfig
     public int hopperTransfer;
     public int hopperCheck;
     public int hopperAmount;
+    public int hopperMaxSleep; //Dytanic
     private void hoppers()
     {
         // Set the tick delay between hopper item movements
@@ -180,7 +181,10 @@ public class SpigotWorldConfig
         // hopper sorting machines from becoming out of sync.
         hopperCheck = getInt( "ticks-per.hopper-check", hopperTransfer );
         hopperAmount = getInt( "hopper-amount", 1 );
-        log( "Hopper Transfer: " + hopperTransfer + " Hopper Check: " + hopperCheck + " Hopper Amount: " + hopperAmount );
+        // Dytanic - a hopper which can't move anything waits until an inventory changed, but checks again after
+        // this many ticks for inventories changed by plugins without an update
+        hopperMaxSleep = getInt( "ticks-per.hopper-max-sleep", 20 );
+        log( "Hopper Transfer: " + hopperTransfer + " Hopper Check: " + hopperCheck + " Hopper Amount: " + hopperAmount + " Hopper Max Sleep: " + hopperMaxSleep );
     }
 
     public boolean randomLightUpdates;
@@ -329,6 +333,18 @@ public class SpigotWorldConfig
         log( "Max TNT Explosions: " + maxTntTicksPerTick );
     }
 
+    //Dytanic start
+    public boolean mergeExplosions;
+    private void mergeExplosions()
+    {
+        // Primed TNT exploding at the same position in the same tick reuses the destroyed blocks of the TNT before,
+        // as long as no block changed in between. Its own ray strengths are not rolled, the edge of the explosion
+        // can differ from vanilla
+        mergeExplosions = getBoolean( "merge-explosions", true );
+        log( "Merge Explosions: " + mergeExplosions );
+    }
+    //Dytanic end
+
     public int hangingTickFrequency;
     private void hangingTickFrequency()
     {
@@ -1,11 +1,17 @@
 package org.spigotmc;
 
+import de.dytanic.spigot.AdaptiveTickScheduler;
+import de.dytanic.spigot.ChunkSaveQueue;
+import de.dytanic.spigot.LoginMetrics;
 import de.dytanic.spigot.command.AsyncCommand;
+import net.minecraft.server.EntityPlayer;
 import net.minecraft.server.MinecraftServer;
 import org.apache.commons.lang.StringUtils;
+import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
+import org.bukkit.craftbukkit.scheduler.CraftScheduler;
 
 import javax.management.MBeanServerConnection;
 import java.io.IOException;
@@ -41,12 +47,55 @@ public class TicksPerSecondCommand extends Command implements AsyncCommand {
             String.format("§8[§a§lSpigot§8] §7Last 1m, 5m, 15m §8» %s",
                           StringUtils.join(tpsAvg, ", ")));
 
+        AdaptiveTickScheduler tickScheduler = MinecraftServer.getServer().tickScheduler;
+        sender.sendMessage(
+            String.format("§8[§a§lSpigot§8] §7Tick time §8» %s%.2fms §8(§7world %.2fms, entities %.2fms, tracker %.2fms, chunk io %.2fms§8)",
+                          tickScheduler.getAverageTickTime() < 45D ? ChatColor.GREEN : ChatColor.RED,
+                          tickScheduler.getAverageTickTime(),
+                          tickScheduler.getAveragePhaseTime(AdaptiveTickScheduler.Phase.WORLD_TICK),
+                          tickScheduler.getAveragePhaseTime(AdaptiveTickScheduler.Phase.ENTITY_TICK),
+                          tickScheduler.getAveragePhaseTime(AdaptiveTickScheduler.Phase.TRACKER),
+                          tickScheduler.getAveragePhaseTime(AdaptiveTickScheduler.Phase.CHUNK_IO)));
+        sender.sendMessage(
+            String.format("§8[§a§lSpigot§8] §7Degradation level §8» %s%d§8/§7%d",
+                          tickScheduler.getLevel() == 0 ? ChatColor.GREEN : ChatColor.RED,
+                          tickScheduler.getLevel(), AdaptiveTickScheduler.MAX_LEVEL));
+
+        ChunkSaveQueue chunkSaveQueue = ChunkSaveQueue.getInstance();
+        sender.sendMessage(
+            String.format("§8[§a§lSpigot§8] §7Chunk save backlog §8» §7%d §8(§7%d written, %d coalesced§8)",
+                          chunkSaveQueue.getBacklog(), chunkSaveQueue.getWritten(), chunkSaveQueue.getCoalesced()));
+
+        long packets = 0L, flushes = 0L;
+        for (EntityPlayer player : MinecraftServer.getServer().getPlayerList().players) {
+            if (player.playerConnection == null) continue;
+            packets += player.playerConnection.networkManager.getPacketsSent();
+            flushes += player.playerConnection.networkManager.getFlushes();
+        }
+        sender.sendMessage(
+            String.format("§8[§a§lSpigot§8] §7Packets per flush §8» §7%.1f §8(§7%d packets, %d flushes of online players§8)",
+                          flushes == 0L ? 0D : (double) packets / flushes, packets, flushes));
+
+        CraftScheduler scheduler = (CraftScheduler) Bukkit.getScheduler();
+        sender.sendMessage(
+            String.format("§8[§a§lSpigot§8] §7Queued async tasks §8» §7%d §8(§7%d threads, %d per plugin§8)",
+                          scheduler.getAsyncQueued(), scheduler.getAsyncThreads(), scheduler.getAsyncPluginQuota()));
+
+        LoginMetrics.Interval logins = LoginMetrics.getLastMinute();
+        sender.sendMessage(
+            String.format("§8[§a§lSpigot§8] §7Login time, last minute §8» §7%.1fms §8(§7%d logins, session %.1fms, pre-login %.1fms, accept %.1fms, max %.1fms§8)",
+                          logins.getAverageMillis(LoginMetrics.Phase.TOTAL), logins.getCount(LoginMetrics.Phase.TOTAL),
+                          logins.getAverageMillis(LoginMetrics.Phase.SESSION),
+                          logins.getAverageMillis(LoginMetrics.Phase.PRE_LOGIN),
+                          logins.getAverageMillis(LoginMetrics.Phase.ACCEPT),
+                          logins.getMaxMillis(LoginMetrics.Phase.TOTAL)));
+
         return true;
     }
 
     private static String format(double tps)
     {
-        return ((tps > 36.0) ? ChatColor.GREEN : (tps > 32.0) ? ChatColor.YELLOW : ChatColor.RED)
-            + ((tps > 40.0) ? "*" : "") + Math.min(Math.round(tps * 100.0) / 100.0, 40.0);
+        return ((tps > 18.0) ? ChatColor.GREEN : (tps > 16.0) ? ChatColor.YELLOW : ChatColor.RED)
+            + ((tps > 20.0) ? "*" : "") + Math.min(Math.round(tps * 100.0) / 100.0, 20.0);
     }
 }
@@ -0,0 +1,95 @@
+package de.dytanic.spigot;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import net.md_5.bungee.api.chat.TextComponent;
+import net.minecraft.server.EnumProtocol;
+import net.minecraft.server.EnumProtocolDirection;
+import net.minecraft.server.PacketDataSerializer;
+import net.minecraft.server.PacketPlayOutChat;
+import org.bukkit.craftbukkit.util.CraftChatMessage;
+import org.openjdk.jmh.annotations.*;
+import org.spigotmc.SpigotConfig;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A chat message broadcast to 200 players: every connection encodes the packet like the PacketEncoder did, or the
+ * packet is shared and every connection writes the bytes of the {@link PreparedPacket}. Each invocation builds a new
+ * packet like a broadcast does. The allocations per broadcast are reported by the gc profiler, run with
+ * mvn -P benchmarks -pl riotspigot-server verify -Djmh.args="BroadcastEncodingBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BroadcastEncodingBenchmark {
+
+    private static final int RECIPIENTS = 200;
+
+    private static final String MESSAGE = "§7[§aMember§7] §fPlayer123§7: §fhas anyone seen the spawn portal? meet me at §e100 64 -200";
+
+    /**
+     * vanilla: the chat component of a plugin message, bungee: the BaseComponents of a player chat message
+     */
+    @Param({"vanilla", "bungee"})
+    public String components;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        SpigotConfig.sharedBroadcastPackets = true;
+    }
+
+    @Benchmark
+    public int encodePerConnection() throws IOException
+    {
+        PacketPlayOutChat packet = chat();
+        int bytes = 0;
+
+        for (int i = 0; i < RECIPIENTS; i++)
+        {
+            ByteBuf buffer = ByteBufAllocator.DEFAULT.ioBuffer();
+            PacketDataSerializer packetdataserializer = new PacketDataSerializer(buffer);
+
+            packetdataserializer.b(EnumProtocol.PLAY.a(EnumProtocolDirection.CLIENTBOUND, packet).intValue());
+            packet.b(packetdataserializer);
+            bytes += buffer.readableBytes();
+            buffer.release();
+        }
+
+        return bytes;
+    }
+
+    @Benchmark
+    public int shared()
+    {
+        PacketPlayOutChat packet = chat();
+        int bytes = 0;
+
+        PreparedPacket.share(packet);
+
+        for (int i = 0; i < RECIPIENTS; i++)
+        {
+            ByteBuf buffer = PreparedPacket.of(packet).toByteBuf(false);
+
+            bytes += buffer.readableBytes();
+            buffer.release();
+        }
+
+        return bytes;
+    }
+
+    private PacketPlayOutChat chat()
+    {
+        if (components.equals("vanilla"))
+            return new PacketPlayOutChat(CraftChatMessage.fromString(MESSAGE)[0]);
+
+        PacketPlayOutChat packet = new PacketPlayOutChat();
+        packet.components = TextComponent.fromLegacyText(MESSAGE);
+        return packet;
+    }
+}
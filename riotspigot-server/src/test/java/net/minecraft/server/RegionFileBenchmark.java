@@ -0,0 +1,133 @@
+package net.minecraft.server;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads and writes the chunks of a generated region file through {@link RegionFile}. Every one of the 1024 chunks
+ * holds 12 KiB which compress about as well as the NBT of a generated chunk. Run with
+ * mvn -P benchmarks -pl riotspigot-server verify -Djmh.args=RegionFileBenchmark
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RegionFileBenchmark {
+
+    private static final int CHUNK_SIZE = 12 * 1024;
+
+    // Not part of the measured allocations
+    private static final ThreadLocal<byte[]> READ_BUFFER = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue()
+        {
+            return new byte[4096];
+        }
+    };
+
+    private final byte[][] payloads = new byte[8][];
+
+    private File directory;
+
+    private RegionFile regionFile;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException
+    {
+        Random random = new Random(0L);
+
+        for (int i = 0; i < payloads.length; i++)
+        {
+            byte[] payload = payloads[i] = new byte[CHUNK_SIZE];
+
+            // Runs of repeated bytes, like the block and light arrays of a chunk
+            for (int j = 0; j < payload.length; j++)
+                payload[j] = j > 0 && random.nextInt(4) != 0 ? payload[j - 1] : (byte) random.nextInt(16);
+        }
+
+        directory = Files.createTempDirectory("region-benchmark").toFile();
+        regionFile = new RegionFile(new File(directory, "r.0.0.mca"));
+
+        for (int x = 0; x < 32; x++)
+            for (int z = 0; z < 32; z++)
+                write(x, z);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException
+    {
+        regionFile.c();
+
+        for (File file : directory.listFiles())
+            file.delete();
+
+        directory.delete();
+    }
+
+    @Benchmark
+    public int readChunk() throws IOException
+    {
+        return read();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int readChunkParallel() throws IOException
+    {
+        return read();
+    }
+
+    @Benchmark
+    public void writeChunk() throws IOException
+    {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        write(random.nextInt(32), random.nextInt(32));
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public int mixedRead() throws IOException
+    {
+        return read();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public void mixedWrite() throws IOException
+    {
+        writeChunk();
+    }
+
+    private int read() throws IOException
+    {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        DataInputStream in = regionFile.a(random.nextInt(32), random.nextInt(32));
+        byte[] buffer = READ_BUFFER.get();
+        int length = 0;
+
+        for (int read; (read = in.read(buffer)) != -1; )
+            length += read;
+
+        in.close();
+        return length;
+    }
+
+    private void write(int x, int z) throws IOException
+    {
+        DataOutputStream out = regionFile.b(x, z);
+        out.write(payloads[(x + z * 32) % payloads.length]);
+        out.close();
+    }
+}